@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.ByteArrayEquivalence;
+import org.infinispan.util.concurrent.jdk8backported.EquivalentConcurrentHashMapV8;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link EquivalentConcurrentHashMapV8} with byte array keys compared by content, the way the server
+ * endpoints and compatibility mode use it.
+ *
+ * @since 5.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class EquivalentConcurrentHashMapV8Benchmark {
+
+   @Param({"100000"})
+   int keyCount;
+
+   @Param({"32"})
+   int keyLength;
+
+   private EquivalentConcurrentHashMapV8<byte[], String> map;
+   private byte[][] keys;
+   private byte[][] lookupKeys;
+
+   @Setup
+   public void setUp() {
+      map = new EquivalentConcurrentHashMapV8<byte[], String>(keyCount,
+            ByteArrayEquivalence.INSTANCE, AnyEquivalence.STRING);
+      keys = Keys.byteArrays(keyCount, keyLength);
+      // equal but not identical keys, as they would arrive from the network
+      lookupKeys = Keys.byteArrays(keyCount, keyLength);
+      for (byte[] key : keys) map.put(key, "value");
+   }
+
+   @Benchmark
+   public String get(KeySequence sequence) {
+      return map.get(sequence.next(lookupKeys));
+   }
+
+   @Benchmark
+   public String put(KeySequence sequence) {
+      return map.put(sequence.next(keys), "value");
+   }
+}
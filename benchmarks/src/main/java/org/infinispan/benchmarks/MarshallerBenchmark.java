@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.marshall.VersionAwareMarshaller;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link VersionAwareMarshaller} round trips of a value and of a replicated write command, i.e. the
+ * marshalling cost paid by every remote operation.
+ *
+ * @since 5.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MarshallerBenchmark {
+
+   private DefaultCacheManager cacheManager;
+   private StreamingMarshaller marshaller;
+   private String value;
+   private byte[] bytes;
+   private PutKeyValueCommand command;
+
+   @Setup
+   public void setUp() {
+      cacheManager = new DefaultCacheManager(new ConfigurationBuilder().build());
+      // the global marshaller is the VersionAwareMarshaller shared by all the caches
+      marshaller = cacheManager.getCache().getAdvancedCache().getComponentRegistry().getGlobalComponentRegistry()
+            .getComponent(StreamingMarshaller.class, KnownComponentNames.GLOBAL_MARSHALLER);
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 100; i++) sb.append((char) ('a' + i % 26));
+      value = sb.toString();
+      bytes = new byte[1024];
+      for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) i;
+      command = new PutKeyValueCommand("key", value, false, null,
+            new EmbeddedMetadata.Builder().lifespan(1, TimeUnit.MINUTES).build(),
+            Collections.singleton(Flag.SKIP_REMOTE_LOOKUP));
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public Object roundTripString() throws Exception {
+      return marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(value));
+   }
+
+   @Benchmark
+   public Object roundTripByteArray() throws Exception {
+      return marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(bytes));
+   }
+
+   @Benchmark
+   public Object roundTripPutKeyValueCommand() throws Exception {
+      return marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(command));
+   }
+}
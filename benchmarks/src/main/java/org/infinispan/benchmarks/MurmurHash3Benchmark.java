@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.commons.hash.MurmurHash3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MurmurHash3}, which is computed for every key on every clustered operation to find its owners.
+ *
+ * @since 5.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MurmurHash3Benchmark {
+
+   private static final int KEY_COUNT = 1024;
+
+   @Param({"8", "64", "512"})
+   int keyLength;
+
+   private final MurmurHash3 hash = new MurmurHash3();
+   private byte[][] byteKeys;
+   private String[] stringKeys;
+
+   @Setup
+   public void setUp() {
+      byteKeys = Keys.byteArrays(KEY_COUNT, keyLength);
+      stringKeys = new String[KEY_COUNT];
+      for (int i = 0; i < KEY_COUNT; i++) {
+         StringBuilder sb = new StringBuilder(keyLength);
+         for (int j = 0; j < keyLength; j++) sb.append((char) ('a' + (i + j) % 26));
+         stringKeys[i] = sb.toString();
+      }
+   }
+
+   @Benchmark
+   public int hashBytes(KeySequence sequence) {
+      return hash.hash(sequence.next(byteKeys));
+   }
+
+   @Benchmark
+   public int hashString(KeySequence sequence) {
+      return hash.hash((Object) sequence.next(stringKeys));
+   }
+}
@@ -43,6 +43,8 @@
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * An advanced interface that exposes additional methods not available on {@link Cache}.
@@ -399,4 +401,16 @@
     */
    CacheEntry getCacheEntry(K key);
 
+   /**
+    * Retrieves the values of several keys in a single invocation. In clustered caches, the keys that are not available
+    * locally are retrieved with a single remote call per owner, and the calls to the different owners are made in
+    * parallel.
+    *
+    * @param keys the keys whose associated values are to be returned
+    * @return a map holding the keys that are mapped to a value, and their values
+    *
+    * @since 5.3
+    */
+   Map<K, V> getAll(Set<?> keys);
+
 }
@@ -28,6 +28,7 @@
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -74,14 +75,18 @@
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.stats.Stats;
 import org.infinispan.stats.StatsImpl;
+import org.infinispan.transaction.LocalTransaction;
+import org.infinispan.transaction.SnapshotReadManager;
 import org.infinispan.transaction.TransactionCoordinator;
 import org.infinispan.transaction.TransactionTable;
 import org.infinispan.transaction.xa.TransactionXaAdapter;
 import org.infinispan.transaction.xa.recovery.RecoveryManager;
+import org.infinispan.util.InfinispanCollections;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.AbstractInProcessNotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingFutureAdaptor;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.locks.LockManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -94,6 +99,8 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -142,6 +149,7 @@
    private TransactionTable txTable;
    private RecoveryManager recoveryManager;
    private TransactionCoordinator txCoordinator;
+   private SnapshotReadManager snapshotReadManager;
    private GlobalConfiguration globalCfg;
    private boolean isClassLoaderInContext;
 
@@ -189,6 +197,11 @@ public void injectDependencies(EvictionManager evictionManager,
       this.globalCfg = globalCfg;
    }
 
+   @Inject
+   public void injectSnapshotReadManager(SnapshotReadManager snapshotReadManager) {
+      this.snapshotReadManager = snapshotReadManager;
+   }
+
    private void assertKeyNotNull(Object key) {
       if (key == null) {
          throw new NullPointerException("Null keys are not supported!");
@@ -367,6 +380,9 @@ public final boolean containsKey(Object key) {
 
    final boolean containsKey(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
       assertKeyNotNull(key);
+      if (isSnapshotRead(explicitFlags)) {
+         return snapshotRead(key, explicitFlags, explicitClassLoader) != null;
+      }
       InvocationContext ctx = getInvocationContextForRead(null, explicitClassLoader, 1);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, explicitFlags, false);
       Object response = invoker.invoke(ctx, command);
@@ -386,6 +402,10 @@ public final V get(Object key) {
    @SuppressWarnings("unchecked")
    final V get(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
       assertKeyNotNull(key);
+      if (isSnapshotRead(explicitFlags)) {
+         CacheEntry entry = snapshotRead(key, explicitFlags, explicitClassLoader);
+         return entry == null ? null : (V) entry.getValue();
+      }
       InvocationContext ctx = getInvocationContextForRead(null, explicitClassLoader, 1);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, explicitFlags, false);
       return (V) invoker.invoke(ctx, command);
@@ -394,6 +414,9 @@ final V get(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLo
    @Override
    public final CacheEntry getCacheEntry(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
       assertKeyNotNull(key);
+      if (isSnapshotRead(explicitFlags)) {
+         return snapshotRead(key, explicitFlags, explicitClassLoader);
+      }
       InvocationContext ctx = getInvocationContextForRead(null, explicitClassLoader, 1);
       GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, explicitFlags, true);
       Object ret = invoker.invoke(ctx, command);
@@ -405,6 +428,23 @@ public final CacheEntry getCacheEntry(K key) {
       return getCacheEntry(key, null, null);
    }
 
+   @Override
+   public final Map<K, V> getAll(Set<?> keys) {
+      return getAll(keys, null, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   final Map<K, V> getAll(Set<?> keys, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
+      for (Object key : keys) assertKeyNotNull(key);
+      if (keys.isEmpty()) return InfinispanCollections.emptyMap();
+      if (isSnapshotRead(explicitFlags)) {
+         return snapshotReadAll(keys, explicitFlags, explicitClassLoader);
+      }
+      InvocationContext ctx = getInvocationContextForRead(null, explicitClassLoader, keys.size());
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keys, explicitFlags, false);
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    @Override
    public final V remove(Object key) {
       return remove(key, null, null);
@@ -636,6 +676,70 @@ private boolean isPutForExternalRead(EnumSet<Flag> explicitFlags) {
       return explicitFlags != null && explicitFlags.contains(PUT_FOR_EXTERNAL_READ);
    }
 
+   private boolean isSnapshotRead(EnumSet<Flag> explicitFlags) {
+      return explicitFlags != null && explicitFlags.contains(Flag.SNAPSHOT_READ) && !isOngoingTransactionWriting();
+   }
+
+   /**
+    * @return true if the ongoing transaction has modified the cache, in which case its reads must see its own writes
+    */
+   private boolean isOngoingTransactionWriting() {
+      if (!config.transaction().transactionMode().isTransactional()) return false;
+      Transaction transaction = getOngoingTransaction();
+      if (transaction == null) return false;
+      LocalTransaction localTransaction = txTable.getLocalTransaction(transaction);
+      return localTransaction != null && !localTransaction.getAllModifications().isEmpty();
+   }
+
+   /**
+    * @return the snapshot of the ongoing transaction, or {@code null} if the read is not in the scope of a transaction
+    */
+   private SnapshotReadManager.Snapshot getSnapshot() {
+      if (!config.transaction().transactionMode().isTransactional()) return null;
+      Transaction transaction = getOngoingTransaction();
+      return transaction == null ? null : snapshotReadManager.getSnapshot(transaction);
+   }
+
+   /**
+    * Reads {@code key} outside of the ongoing transaction, unless the transaction already read it.
+    */
+   private CacheEntry snapshotRead(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
+      SnapshotReadManager.Snapshot snapshot = getSnapshot();
+      if (snapshot != null && snapshot.contains(key)) {
+         return snapshot.get(key);
+      }
+      InvocationContext ctx = setInvocationContextClassLoader(icc.createSingleKeyNonTxInvocationContext(), explicitClassLoader);
+      GetKeyValueCommand command = commandsFactory.buildGetKeyValueCommand(key, explicitFlags, true);
+      CacheEntry entry = (CacheEntry) invoker.invoke(ctx, command);
+      return snapshot == null ? entry : snapshot.record(key, entry);
+   }
+
+   @SuppressWarnings("unchecked")
+   private Map<K, V> snapshotReadAll(Set<?> keys, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
+      SnapshotReadManager.Snapshot snapshot = getSnapshot();
+      Map<K, V> result = new HashMap<K, V>(keys.size());
+      Set<Object> toRead = new HashSet<Object>(keys.size());
+      for (Object key : keys) {
+         if (snapshot != null && snapshot.contains(key)) {
+            CacheEntry entry = snapshot.get(key);
+            if (entry != null) result.put((K) key, (V) entry.getValue());
+         } else {
+            toRead.add(key);
+         }
+      }
+      if (toRead.isEmpty()) return result;
+
+      InvocationContext ctx = setInvocationContextClassLoader(icc.createNonTxInvocationContext(), explicitClassLoader);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(toRead, explicitFlags, true);
+      Map<Object, CacheEntry> entries = (Map<Object, CacheEntry>) invoker.invoke(ctx, command);
+      for (Object key : toRead) {
+         CacheEntry entry = entries.get(key);
+         if (snapshot != null) entry = snapshot.record(key, entry);
+         if (entry != null) result.put((K) key, (V) entry.getValue());
+      }
+      return result;
+   }
+
    private InvocationContext getInvocationContext(Transaction tx, ClassLoader explicitClassLoader) {
       InvocationContext ctx = icc.createInvocationContext(tx);
       return setInvocationContextClassLoader(ctx, explicitClassLoader);
@@ -1021,6 +1125,13 @@ public final NotifyingFuture<V> putAsync(K key, V value, long lifespan, TimeUnit
    }
 
    final NotifyingFuture<V> putAsync(final K key, final V value, final Metadata metadata, final EnumSet<Flag> explicitFlags, final ClassLoader explicitClassLoader) {
+      if (asyncWriteSkipsThread(explicitFlags, key)) {
+         try {
+            return wrapInFuture(putInternal(key, value, metadata, explicitFlags, getInvocationContextForAsyncWrite(explicitClassLoader)));
+         } catch (RuntimeException e) {
+            return failedFuture(e);
+         }
+      }
       final NotifyingFutureAdaptor<V> result = new NotifyingFutureAdaptor<V>();
       final InvocationContext ctx = getInvocationContextWithImplicitTransactionForAsyncOps(false, explicitClassLoader, 1);
       Future<V> returnValue = asyncExecutor.submit(new Callable<V>() {
@@ -1104,6 +1215,13 @@ public final NotifyingFuture<V> putIfAbsentAsync(K key, V value, long lifespan,
 
    final NotifyingFuture<V> putIfAbsentAsync(final K key, final V value, final Metadata metadata,
          final EnumSet<Flag> explicitFlags,final ClassLoader explicitClassLoader) {
+      if (asyncWriteSkipsThread(explicitFlags, key)) {
+         try {
+            return wrapInFuture(putIfAbsentInternal(key, value, metadata, explicitFlags, getInvocationContextForAsyncWrite(explicitClassLoader)));
+         } catch (RuntimeException e) {
+            return failedFuture(e);
+         }
+      }
       final NotifyingFutureAdaptor<V> result = new NotifyingFutureAdaptor<V>();
       final InvocationContext ctx = getInvocationContextWithImplicitTransactionForAsyncOps(false, explicitClassLoader, 1);
       Future<V> returnValue = asyncExecutor.submit(new Callable<V>() {
@@ -1127,6 +1245,13 @@ public final NotifyingFuture<V> removeAsync(Object key) {
    }
 
    final NotifyingFuture<V> removeAsync(final Object key, final EnumSet<Flag> explicitFlags, final ClassLoader explicitClassLoader) {
+      if (asyncWriteSkipsThread(explicitFlags, key)) {
+         try {
+            return wrapInFuture(removeInternal(key, explicitFlags, getInvocationContextForAsyncWrite(explicitClassLoader)));
+         } catch (RuntimeException e) {
+            return failedFuture(e);
+         }
+      }
       final NotifyingFutureAdaptor<V> result = new NotifyingFutureAdaptor<V>();
       final InvocationContext ctx = getInvocationContextWithImplicitTransactionForAsyncOps(false, explicitClassLoader, 1);
       Future<V> returnValue = asyncExecutor.submit(new Callable<V>() {
@@ -1177,6 +1302,13 @@ public final NotifyingFuture<V> replaceAsync(K key, V value, long lifespan, Time
 
    final NotifyingFuture<V> replaceAsync(final K key, final V value, final Metadata metadata,
          final EnumSet<Flag> explicitFlags, final ClassLoader explicitClassLoader) {
+      if (asyncWriteSkipsThread(explicitFlags, key)) {
+         try {
+            return wrapInFuture(replaceInternal(key, value, metadata, explicitFlags, getInvocationContextForAsyncWrite(explicitClassLoader)));
+         } catch (RuntimeException e) {
+            return failedFuture(e);
+         }
+      }
       final NotifyingFutureAdaptor<V> result = new NotifyingFutureAdaptor<V>();
       final InvocationContext ctx = getInvocationContextWithImplicitTransactionForAsyncOps(false, explicitClassLoader, 1);
       Future<V> returnValue = asyncExecutor.submit(new Callable<V>() {
@@ -1279,6 +1411,38 @@ private boolean asyncSkipsThread(EnumSet<Flag> flags, K key) {
       return distributionManager.getLocality(key).isLocal();
    }
 
+   /**
+    * Encodes the cases in which an async write can run in the caller thread. When the key is owned by other nodes
+    * of a non-transactional distributed cache, the caller thread only applies the write locally (if at all) and
+    * forwards it to the primary owner, and the returned future is completed by the thread receiving the primary
+    * owner's response.
+    *
+    * @return true if we skip the thread
+    */
+   private boolean asyncWriteSkipsThread(EnumSet<Flag> flags, Object key) {
+      if (!config.clustering().cacheMode().isDistributed() || config.transaction().transactionMode().isTransactional()
+            || config.compatibility().enabled() || !isSkipLoader(flags)) {
+         return false;
+      }
+      // InvocationContextInterceptor only suppresses the failures thrown in the caller thread
+      if (flags != null && (flags.contains(Flag.CACHE_MODE_LOCAL) || flags.contains(Flag.FAIL_SILENTLY))) {
+         return false;
+      }
+      return !distributionManager.getLocality(key).isLocal();
+   }
+
+   private InvocationContext getInvocationContextForAsyncWrite(ClassLoader explicitClassLoader) {
+      InvocationContext ctx = getInvocationContextWithImplicitTransaction(false, explicitClassLoader, 1);
+      ctx.setUseFutureReturnType(true);
+      return ctx;
+   }
+
+   private <X> NotifyingFuture<X> failedFuture(Throwable t) {
+      SettableNotifyingFuture<X> future = new SettableNotifyingFuture<X>();
+      future.setException(t);
+      return future;
+   }
+
    private boolean isSkipLoader(EnumSet<Flag> flags) {
       boolean hasCacheLoaderConfig = !config.loaders().cacheLoaders().isEmpty();
       return !hasCacheLoaderConfig
@@ -27,13 +27,17 @@
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.MapCombineCommand;
 import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.read.SizeCommand;
 import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.CoalescedRpcCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
@@ -140,6 +144,15 @@ public interface CommandsFactory {
     */
    GetKeyValueCommand buildGetKeyValueCommand(Object key, Set<Flag> flags, boolean returnEntry);
 
+   /**
+    * Builds a GetAllCommand
+    * @param keys keys to get
+    * @param returnEntries boolean indicating whether entire cache entries are
+    *                      returned, otherwise return just the value parts
+    * @return a GetAllCommand
+    */
+   GetAllCommand buildGetAllCommand(Collection<?> keys, Set<Flag> flags, boolean returnEntries);
+
    /**
     * Builds a KeySetCommand
     * @return a KeySetCommand
@@ -246,6 +259,13 @@ public interface CommandsFactory {
     */
    SingleRpcCommand buildSingleRpcCommand(ReplicableCommand call);
 
+   /**
+    * Builds a CoalescedRpcCommand "envelope" containing several synchronous commands bound for the same node
+    * @param commands commands to include in the envelope, each of them gets its own response
+    * @return a CoalescedRpcCommand
+    */
+   CoalescedRpcCommand buildCoalescedRpcCommand(List<CacheRpcCommand> commands);
+
    /**
     * Builds a ClusteredGetCommand, which is a remote lookup command
     * @param key key to look up
@@ -253,6 +273,13 @@ public interface CommandsFactory {
     */
    ClusteredGetCommand buildClusteredGetCommand(Object key, Set<Flag> flags, boolean acquireRemoteLock, GlobalTransaction gtx);
 
+   /**
+    * Builds a ClusteredGetAllCommand, which is a remote lookup of several keys owned by the same node
+    * @param keys keys to look up
+    * @return a ClusteredGetAllCommand
+    */
+   ClusteredGetAllCommand buildClusteredGetAllCommand(List<?> keys, Set<Flag> flags);
+
    /**
     * Builds a LockControlCommand to control explicit remote locking
     *
@@ -347,6 +374,14 @@ <KOut, VOut> ReduceCommand<KOut, VOut> buildReduceCommand(String taskId,
     * @see org.infinispan.commands.remote.recovery.TxCompletionNotificationCommand
     */
    TxCompletionNotificationCommand buildTxCompletionNotificationCommand(long internalId);
+
+   /**
+    * Builds a {@link org.infinispan.commands.remote.recovery.TxCompletionNotificationCommand} notifying the completion
+    * of several transactions at once.
+    *
+    * @param globalTransactions the transactions that completed
+    */
+   TxCompletionNotificationCommand buildTxCompletionNotificationCommand(Collection<GlobalTransaction> globalTransactions);
    
    
    /**
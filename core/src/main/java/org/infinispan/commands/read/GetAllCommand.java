@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.read;
+
+import org.infinispan.commands.AbstractFlagAffectedCommand;
+import org.infinispan.commands.LocalCommand;
+import org.infinispan.commands.Visitor;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.lifecycle.ComponentStatus;
+import org.infinispan.util.InfinispanCollections;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.infinispan.util.Util.toStr;
+
+/**
+ * Implements functionality defined by {@link org.infinispan.AdvancedCache#getAll(java.util.Set)}, i.e. retrieves
+ * the values of several keys in a single invocation.
+ * <p/>
+ * The command is never replicated as such: in clustered caches, the keys that are not available locally are fetched
+ * with one {@link org.infinispan.commands.remote.ClusteredGetAllCommand} per owner.
+ *
+ * @since 5.3
+ */
+public class GetAllCommand extends AbstractFlagAffectedCommand implements LocalCommand {
+   private static final Log log = LogFactory.getLog(GetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Collection<?> keys;
+   private final boolean returnEntries;
+   private Map<Object, InternalCacheEntry> remotelyFetched;
+
+   public GetAllCommand(Collection<?> keys, Set<Flag> flags, boolean returnEntries) {
+      this.keys = keys;
+      this.flags = flags;
+      this.returnEntries = returnEntries;
+   }
+
+   @Override
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable {
+      return visitor.visitGetAllCommand(ctx, this);
+   }
+
+   /**
+    * @return a map holding the value (or the {@link CacheEntry}, if {@link #isReturnEntries()}) of every key found in
+    *         the context. Keys without a value are not mapped.
+    */
+   @Override
+   public Map<Object, Object> perform(InvocationContext ctx) throws Throwable {
+      Map<Object, Object> map = new HashMap<Object, Object>();
+      for (Object key : keys) {
+         CacheEntry entry = ctx.lookupEntry(key);
+         if (entry == null || entry.isNull() || entry.isRemoved()) {
+            if (trace) log.tracef("Entry for key %s not found", toStr(key));
+            continue;
+         }
+         map.put(key, returnEntries ? entry : entry.getValue());
+      }
+      if (trace) log.tracef("Found entries for %s out of %s keys", map.size(), keys.size());
+      return map;
+   }
+
+   public Collection<?> getKeys() {
+      return keys;
+   }
+
+   public void setKeys(Collection<?> keys) {
+      this.keys = keys;
+   }
+
+   public boolean isReturnEntries() {
+      return returnEntries;
+   }
+
+   /**
+    * Records an entry that had to be fetched from a remote node.
+    */
+   public void addRemotelyFetchedValue(Object key, InternalCacheEntry entry) {
+      if (remotelyFetched == null) remotelyFetched = new HashMap<Object, InternalCacheEntry>();
+      remotelyFetched.put(key, entry);
+   }
+
+   /**
+    * If the cache needs to go remotely in order to obtain some of the values, the remote entries are stored in this
+    * map, keyed by their key.
+    */
+   public Map<Object, InternalCacheEntry> getRemotelyFetched() {
+      return remotelyFetched == null ? InfinispanCollections.<Object, InternalCacheEntry>emptyMap() : remotelyFetched;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return 0;  // no-op
+   }
+
+   @Override
+   public Object[] getParameters() {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] parameters) {
+      throw new UnsupportedOperationException();
+   }
+
+   @Override
+   public boolean shouldInvoke(InvocationContext ctx) {
+      return true;
+   }
+
+   @Override
+   public boolean ignoreCommandOnStatus(ComponentStatus status) {
+      return false;
+   }
+
+   @Override
+   public boolean isReturnValueExpected() {
+      return true;
+   }
+
+   @Override
+   public boolean canBlock() {
+      return false;
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder("GetAllCommand{keys=")
+         .append(toStr(keys))
+         .append(", flags=").append(flags)
+         .append("}")
+         .toString();
+   }
+}
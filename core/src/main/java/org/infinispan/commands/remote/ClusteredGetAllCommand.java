@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.Visitor;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.lifecycle.ComponentStatus;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.remoting.responses.UnsureResponse;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.infinispan.util.Util.toStr;
+
+/**
+ * Issues a remote get call for several keys at once, usually all the keys of a
+ * {@link org.infinispan.commands.read.GetAllCommand} that have the same owner.  This is not a
+ * {@link org.infinispan.commands.VisitableCommand} and hence not passed up the
+ * {@link org.infinispan.interceptors.base.CommandInterceptor} chain.
+ * <p/>
+ * The response is an array holding, at the position of each requested key, its {@link InternalCacheValue}, or
+ * {@code null} if the key does not exist. Keys that are affected by an ongoing rehash get an {@link UnsureResponse}
+ * instead, and it's up to the caller to retrieve them some other way.
+ *
+ * @since 5.3
+ */
+public class ClusteredGetAllCommand extends BaseRpcCommand implements FlagAffectedCommand {
+
+   public static final byte COMMAND_ID = 40;
+   private static final Log log = LogFactory.getLog(ClusteredGetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private List<?> keys;
+   private Set<Flag> flags;
+
+   private InvocationContextContainer icc;
+   private CommandsFactory commandsFactory;
+   private InterceptorChain invoker;
+   private DistributionManager distributionManager;
+   private InternalEntryFactory entryFactory;
+   private int topologyId;
+
+   private ClusteredGetAllCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public ClusteredGetAllCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   public ClusteredGetAllCommand(List<?> keys, String cacheName, Set<Flag> flags) {
+      super(cacheName);
+      this.keys = keys;
+      this.flags = flags;
+   }
+
+   public void initialize(InvocationContextContainer icc, CommandsFactory commandsFactory, InternalEntryFactory entryFactory,
+         InterceptorChain interceptorChain, DistributionManager distributionManager) {
+      this.icc = icc;
+      this.commandsFactory = commandsFactory;
+      this.entryFactory = entryFactory;
+      this.invoker = interceptorChain;
+      this.distributionManager = distributionManager;
+   }
+
+   /**
+    * Invokes a logical "getAll(keys)" on a remote cache and returns results.
+    *
+    * @param context invocation context, ignored.
+    * @return an array holding the <code>InternalCacheValue</code> of each key, null if the key doesn't exist, or
+    *         {@link UnsureResponse#INSTANCE} if the key is affected by a rehash.
+    */
+   @Override
+   public Object[] perform(InvocationContext context) throws Throwable {
+      Object[] values = new Object[keys.size()];
+      List<Object> keysToGet = new ArrayList<Object>(keys.size());
+      for (int i = 0; i < values.length; i++) {
+         Object key = keys.get(i);
+         if (distributionManager != null && distributionManager.isAffectedByRehash(key)) {
+            if (trace) log.tracef("Key %s is affected by rehash, the requestor needs to ask another owner", toStr(key));
+            values[i] = UnsureResponse.INSTANCE;
+         } else {
+            keysToGet.add(key);
+         }
+      }
+      if (keysToGet.isEmpty()) return values;
+
+      // make sure the get command doesn't perform a remote call
+      // as our caller is already calling the ClusteredGetAllCommand on all the relevant nodes
+      Set<Flag> commandFlags = EnumSet.of(Flag.SKIP_REMOTE_LOOKUP, Flag.CACHE_MODE_LOCAL);
+      if (this.flags != null) commandFlags.addAll(this.flags);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(keysToGet, commandFlags, true);
+      InvocationContext invocationContext = icc.createRemoteInvocationContextForCommand(command, getOrigin());
+      Map<?, ?> entries = (Map<?, ?>) invoker.invoke(invocationContext, command);
+      for (int i = 0; i < values.length; i++) {
+         if (values[i] != null) continue;
+         CacheEntry cacheEntry = (CacheEntry) entries.get(keys.get(i));
+         if (cacheEntry instanceof MVCCEntry) {
+            //this might happen if the value was fetched from a cache loader
+            values[i] = entryFactory.createValue(cacheEntry);
+         } else if (cacheEntry != null) {
+            values[i] = ((InternalCacheEntry) cacheEntry).toInternalCacheValue();
+         }
+      }
+      if (trace) log.tracef("Found %s out of %s keys", entries.size(), keys.size());
+      return values;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[]{keys, Flag.copyWithoutRemotableFlags(flags)};
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      keys = (List<?>) args[0];
+      flags = (Set<Flag>) args[1];
+   }
+
+   public List<?> getKeys() {
+      return keys;
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+
+   @Override
+   public void setFlags(Flag... flags) {
+      if (flags == null || flags.length == 0) return;
+      if (this.flags == null)
+         this.flags = EnumSet.copyOf(Arrays.asList(flags));
+      else
+         this.flags.addAll(Arrays.asList(flags));
+   }
+
+   @Override
+   public boolean hasFlag(Flag flag) {
+      return flags != null && flags.contains(flag);
+   }
+
+   @Override
+   public boolean isReturnValueExpected() {
+      return true;
+   }
+
+   @Override
+   public int getTopologyId() {
+      return topologyId;
+   }
+
+   @Override
+   public void setTopologyId(int topologyId) {
+      this.topologyId = topologyId;
+   }
+
+   @Override
+   public Object acceptVisitor(InvocationContext ctx, Visitor visitor) throws Throwable {
+      return visitor.visitUnknownCommand(ctx, this);
+   }
+
+   @Override
+   public boolean shouldInvoke(InvocationContext ctx) {
+      return true;
+   }
+
+   @Override
+   public boolean ignoreCommandOnStatus(ComponentStatus status) {
+      return false;
+   }
+
+   @Override
+   public Metadata getMetadata() {
+      return null;
+   }
+
+   @Override
+   public void setMetadata(Metadata metadata) {
+      // no-op
+   }
+
+   @Override
+   public String toString() {
+      return new StringBuilder()
+         .append("ClusteredGetAllCommand{keys=")
+         .append(toStr(keys))
+         .append(", flags=").append(flags)
+         .append("}")
+         .toString();
+   }
+}
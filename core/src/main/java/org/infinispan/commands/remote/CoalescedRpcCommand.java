@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.context.InvocationContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Carries several synchronous commands for the same cache from one node to another in a single message.
+ * <p/>
+ * Unlike {@link MultipleRpcCommand}, every command keeps its own response: the receiver handles each command as if it
+ * had arrived on its own and replies once all of them are done, with an array holding the response of each command in
+ * the order they were added. The commands are handled by the
+ * {@link org.infinispan.remoting.InboundInvocationHandler} rather than by {@link #perform(InvocationContext)}.
+ *
+ * @see org.infinispan.configuration.cache.SyncConfigurationBuilder#coalesceRpcs(boolean)
+ * @since 5.3
+ */
+public class CoalescedRpcCommand extends BaseRpcCommand {
+
+   public static final byte COMMAND_ID = 41;
+
+   private CacheRpcCommand[] commands;
+
+   private CoalescedRpcCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public CoalescedRpcCommand(List<CacheRpcCommand> commands, String cacheName) {
+      super(cacheName);
+      this.commands = commands.toArray(new CacheRpcCommand[commands.size()]);
+   }
+
+   public CoalescedRpcCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   @Override
+   public Object perform(InvocationContext ctx) throws Throwable {
+      throw new UnsupportedOperationException("Coalesced commands are handled by the InboundInvocationHandler");
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   public CacheRpcCommand[] getCommands() {
+      return commands;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      int numCommands = commands.length;
+      Object[] retval = new Object[numCommands];
+      System.arraycopy(commands, 0, retval, 0, numCommands);
+      return retval;
+   }
+
+   @Override
+   public void setParameters(int commandId, Object[] args) {
+      int numCommands = args.length;
+      commands = new CacheRpcCommand[numCommands];
+      System.arraycopy(args, 0, commands, 0, numCommands);
+   }
+
+   @Override
+   public boolean isReturnValueExpected() {
+      return true;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof CoalescedRpcCommand)) return false;
+
+      CoalescedRpcCommand that = (CoalescedRpcCommand) o;
+
+      if (cacheName != null ? !cacheName.equals(that.cacheName) : that.cacheName != null) return false;
+      if (!Arrays.equals(commands, that.commands)) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = commands != null ? Arrays.hashCode(commands) : 0;
+      result = 31 * result + (cacheName != null ? cacheName.hashCode() : 0);
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "CoalescedRpcCommand{" +
+            "commands=" + (commands == null ? null : Arrays.asList(commands)) +
+            ", cacheName='" + cacheName + '\'' +
+            '}';
+   }
+}
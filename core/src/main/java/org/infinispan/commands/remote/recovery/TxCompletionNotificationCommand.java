@@ -34,10 +34,14 @@
 import org.infinispan.util.logging.LogFactory;
 
 import javax.transaction.xa.Xid;
+import java.util.Collection;
 import java.util.Set;
 
 /**
  * Command for removing recovery related information from the cluster.
+ * <p/>
+ * Besides a single transaction, the command can carry the completion notification of a batch of transactions that
+ * completed on the same originator, see {@link org.infinispan.transaction.TxCompletionNotificationBatcher}.
  *
  * @author Mircea.Markus@jboss.com
  * @since 5.0
@@ -51,6 +55,7 @@ public class TxCompletionNotificationCommand  extends RecoveryCommand implements
    private Xid xid;
    private long internalId;
    private GlobalTransaction gtx;
+   private Collection<GlobalTransaction> batch;
    private TransactionTable txTable;
    private LockManager lockManager;
    private StateTransferManager stateTransferManager;
@@ -79,6 +84,11 @@ public TxCompletionNotificationCommand(long internalId, String cacheName) {
       this.internalId = internalId;
    }
 
+   public TxCompletionNotificationCommand(Collection<GlobalTransaction> batch, String cacheName) {
+      super(cacheName);
+      this.batch = batch;
+   }
+
    public TxCompletionNotificationCommand(String cacheName) {
       super(cacheName);
    }
@@ -100,6 +110,19 @@ public boolean isReturnValueExpected() {
 
    @Override
    public Object perform(InvocationContext ctx) throws Throwable {
+      if (batch != null) {
+         for (GlobalTransaction completed : batch) {
+            log.tracef("Processing completed transaction %s", completed);
+            RemoteTransaction remoteTx = txTable.removeRemoteTransaction(completed);
+            if (remoteTx == null) continue;
+            TxCompletionNotificationCommand single = new TxCompletionNotificationCommand(null, completed, cacheName);
+            single.setTopologyId(topologyId);
+            forwardCommandRemotely(single, remoteTx);
+            lockManager.unlock(remoteTx.getLockedKeys(), remoteTx.getGlobalTransaction());
+         }
+         return null;
+      }
+
       log.tracef("Processing completed transaction %s", gtx);
       RemoteTransaction remoteTx = null;
       if (recoveryManager != null) { //recovery in use
@@ -113,19 +136,20 @@ public Object perform(InvocationContext ctx) throws Throwable {
          remoteTx = txTable.removeRemoteTransaction(gtx);
       }
       if (remoteTx == null) return null;
-      forwardCommandRemotely(remoteTx);
+      forwardCommandRemotely(this, remoteTx);
 
       lockManager.unlock(remoteTx.getLockedKeys(), remoteTx.getGlobalTransaction());
       return null;
    }
 
    /**
-    * This only happens during state transfer.
+    * This only happens during state transfer. The transactions of a batch are forwarded one by one, because each of
+    * them may have to go to different owners.
     */
-   private void forwardCommandRemotely(RemoteTransaction remoteTx) {
+   private void forwardCommandRemotely(TxCompletionNotificationCommand command, RemoteTransaction remoteTx) {
       Set<Object> affectedKeys = remoteTx.getAffectedKeys();
-      log.tracef("Invoking forward of TxCompletionNotification for transaction %s. Affected keys: %s", gtx, affectedKeys);
-      stateTransferManager.forwardCommandIfNeeded(this, affectedKeys, remoteTx.getGlobalTransaction().getAddress(), false);
+      log.tracef("Invoking forward of TxCompletionNotification for transaction %s. Affected keys: %s", remoteTx.getGlobalTransaction(), affectedKeys);
+      stateTransferManager.forwardCommandIfNeeded(command, affectedKeys, remoteTx.getGlobalTransaction().getAddress(), false);
    }
 
    @Override
@@ -135,10 +159,11 @@ public byte getCommandId() {
 
    @Override
    public Object[] getParameters() {
-      return new Object[]{xid != null ? xid : internalId, gtx};
+      return new Object[]{xid != null ? xid : internalId, gtx, batch};
    }
 
    @Override
+   @SuppressWarnings("unchecked")
    public void setParameters(int commandId, Object[] parameters) {
       if (commandId != COMMAND_ID) {
          throw new IllegalArgumentException("Wrong command id. Received " + commandId + " and expected " + TxCompletionNotificationCommand.COMMAND_ID);
@@ -149,6 +174,7 @@ public void setParameters(int commandId, Object[] parameters) {
          internalId = (Long) parameters[0];
       }
       gtx = (GlobalTransaction) parameters[1];
+      batch = (Collection<GlobalTransaction>) parameters[2];
    }
 
    @Override
@@ -164,6 +190,7 @@ public String toString() {
             ", internalId=" + internalId +
             ", topologyId=" + topologyId +
             ", gtx=" + gtx +
+            ", batch=" + batch +
             ", cacheName=" + cacheName + "} ";
    }
 }
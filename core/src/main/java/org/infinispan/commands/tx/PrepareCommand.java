@@ -194,6 +194,16 @@ public PrepareCommand copy() {
       return copy;
    }
 
+   /**
+    * Creates a copy of this command, for the same transaction and topology, carrying only the given modifications.
+    * Used to send each owner only the modifications relevant to it.
+    */
+   public PrepareCommand copy(List<WriteCommand> modifications) {
+      PrepareCommand copy = new PrepareCommand(cacheName, globalTx, modifications, onePhaseCommit);
+      copy.setTopologyId(getTopologyId());
+      return copy;
+   }
+
    @Override
    public String toString() {
       return "PrepareCommand {" +
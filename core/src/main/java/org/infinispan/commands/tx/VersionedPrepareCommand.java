@@ -58,6 +58,14 @@ public void setVersionsSeen(EntryVersionsMap versionsSeen) {
       this.versionsSeen = versionsSeen;
    }
 
+   @Override
+   public VersionedPrepareCommand copy(List<WriteCommand> modifications) {
+      VersionedPrepareCommand copy = new VersionedPrepareCommand(cacheName, globalTx, modifications, onePhaseCommit);
+      copy.setTopologyId(getTopologyId());
+      copy.versionsSeen = versionsSeen;
+      return copy;
+   }
+
    @Override
    public byte getCommandId() {
       return COMMAND_ID;
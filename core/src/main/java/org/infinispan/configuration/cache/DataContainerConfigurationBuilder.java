@@ -20,6 +20,7 @@
 
 import java.util.Properties;
 
+import org.infinispan.config.ConfigurationException;
 import org.infinispan.configuration.Builder;
 import org.infinispan.container.DataContainer;
 import org.infinispan.util.AnyEquivalence;
@@ -38,6 +39,7 @@ public class DataContainerConfigurationBuilder extends AbstractConfigurationChil
    private DataContainer dataContainer;
    private Equivalence keyEquivalence = AnyEquivalence.getInstance();
    private Equivalence valueEquivalence = AnyEquivalence.getInstance();
+   private boolean offHeap = false;
    // TODO: What are properties used for? Is it just legacy?
    private Properties properties = new Properties();
 
@@ -108,15 +110,32 @@ public <V> DataContainerConfigurationBuilder valueEquivalence(Equivalence<V> val
       return this;
    }
 
+   /**
+    * Store keys, values and metadata in native memory, outside of the Java heap. Entries are kept
+    * in their marshalled form and only materialized on the heap when read, which keeps the heap
+    * small for very large data sets at the expense of marshalling on every access. Keys are
+    * compared by their marshalled form, and the configured key and value equivalences are not
+    * used. Cannot be combined with eviction or a custom data container.
+    *
+    * @param offHeap whether to store entries off-heap
+    * @return this configuration builder
+    */
+   public DataContainerConfigurationBuilder offHeap(boolean offHeap) {
+      this.offHeap = offHeap;
+      return this;
+   }
+
    @Override
    public void validate() {
+      if (offHeap && dataContainer != null)
+         throw new ConfigurationException("A custom data container cannot be used when storing entries off-heap");
    }
 
    @Override
    public DataContainerConfiguration create() {
       return new DataContainerConfiguration(dataContainer,
             TypedProperties.toTypedProperties(properties), keyEquivalence,
-            valueEquivalence);
+            valueEquivalence, offHeap);
    }
 
    @Override
@@ -125,6 +144,7 @@ public DataContainerConfigurationBuilder read(DataContainerConfiguration templat
       this.properties = template.properties();
       this.keyEquivalence = template.keyEquivalence();
       this.valueEquivalence = template.valueEquivalence();
+      this.offHeap = template.offHeap();
 
       return this;
    }
@@ -136,6 +156,7 @@ public String toString() {
             ", properties=" + properties +
             ", keyEquivalence=" + keyEquivalence +
             ", valueEquivalence=" + valueEquivalence +
+            ", offHeap=" + offHeap +
             '}';
    }
 
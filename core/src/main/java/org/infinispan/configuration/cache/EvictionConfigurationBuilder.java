@@ -20,6 +20,8 @@
 
 import org.infinispan.config.ConfigurationException;
 import org.infinispan.configuration.Builder;
+import org.infinispan.eviction.DefaultEntrySizeCalculator;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.util.logging.Log;
@@ -35,6 +37,8 @@ public class EvictionConfigurationBuilder extends AbstractConfigurationChildBuil
    private int maxEntries = -1;
    private EvictionStrategy strategy = EvictionStrategy.NONE;
    private EvictionThreadPolicy threadPolicy = EvictionThreadPolicy.DEFAULT;
+   private long maxMemory = -1;
+   private EntrySizeCalculator<Object, Object> sizeCalculator = DefaultEntrySizeCalculator.getInstance();
 
    EvictionConfigurationBuilder(ConfigurationBuilder builder) {
       super(builder);
@@ -42,7 +46,7 @@ public class EvictionConfigurationBuilder extends AbstractConfigurationChildBuil
 
 
    /**
-    * Eviction strategy. Available options are 'UNORDERED', 'LRU', 'LIRS' and 'NONE' (to disable
+    * Eviction strategy. Available options are 'UNORDERED', 'LRU', 'LIRS', 'TINYLFU' and 'NONE' (to disable
     * eviction).
     *
     * @param evictionStrategy
@@ -74,23 +78,57 @@ public EvictionConfigurationBuilder maxEntries(int maxEntries) {
       return this;
    }
 
+   /**
+    * Maximum estimated memory footprint, in bytes, of the entries in a cache instance. When set,
+    * entries are evicted based on their estimated size rather than their number, which makes
+    * capacity planning possible when entry sizes vary widely. Cannot be combined with
+    * {@link #maxEntries(int)}.
+    *
+    * @param maxMemory
+    */
+   public EvictionConfigurationBuilder maxMemory(long maxMemory) {
+      this.maxMemory = maxMemory;
+      return this;
+   }
+
+   /**
+    * Estimates the memory footprint of entries when eviction is bounded by
+    * {@link #maxMemory(long)}. Defaults to {@link DefaultEntrySizeCalculator}.
+    *
+    * @param sizeCalculator
+    */
+   public EvictionConfigurationBuilder sizeCalculator(EntrySizeCalculator<Object, Object> sizeCalculator) {
+      this.sizeCalculator = sizeCalculator;
+      return this;
+   }
+
    @Override
    public void validate() {
       if (!strategy.isEnabled() && getBuilder().loaders().passivation())
          log.passivationWithoutEviction();
       if(strategy == EvictionStrategy.FIFO)
          log.warn("FIFO strategy is deprecated, LRU will be used instead");
-      if (strategy.isEnabled() && maxEntries <= 0)
+      if (maxEntries > 0 && maxMemory > 0)
+         throw new ConfigurationException("Eviction can be bounded either by maxEntries or by maxMemory, but not both");
+      if (maxMemory > 0 && sizeCalculator == null)
+         throw new ConfigurationException("A size calculator is required when eviction is bounded by maxMemory");
+      if (maxMemory > 0 && strategy == EvictionStrategy.TINYLFU)
+         throw new ConfigurationException("The TINYLFU eviction strategy cannot be bounded by maxMemory");
+      if (strategy.isEnabled() && maxEntries <= 0 && maxMemory <= 0)
          throw new ConfigurationException("Eviction maxEntries value cannot be less than or equal to zero if eviction is enabled");
       if (maxEntries > 0 && !strategy.isEnabled()) {
          strategy = EvictionStrategy.LIRS;
          log.debugf("Max entries configured (%d) without eviction strategy. Eviction strategy overriden to %s", maxEntries, strategy);
       }
+      if (maxMemory > 0 && !strategy.isEnabled()) {
+         strategy = EvictionStrategy.LIRS;
+         log.debugf("Max memory configured (%d) without eviction strategy. Eviction strategy overriden to %s", maxMemory, strategy);
+      }
    }
 
    @Override
    public EvictionConfiguration create() {
-      return new EvictionConfiguration(maxEntries, strategy, threadPolicy);
+      return new EvictionConfiguration(maxEntries, strategy, threadPolicy, maxMemory, sizeCalculator);
    }
 
    @Override
@@ -98,6 +136,8 @@ public EvictionConfigurationBuilder read(EvictionConfiguration template) {
       this.maxEntries = template.maxEntries();
       this.strategy = template.strategy();
       this.threadPolicy = template.threadPolicy();
+      this.maxMemory = template.maxMemory();
+      this.sizeCalculator = template.sizeCalculator();
 
       return this;
    }
@@ -108,6 +148,8 @@ public String toString() {
             "maxEntries=" + maxEntries +
             ", strategy=" + strategy +
             ", threadPolicy=" + threadPolicy +
+            ", maxMemory=" + maxMemory +
+            ", sizeCalculator=" + sizeCalculator +
             '}';
    }
 
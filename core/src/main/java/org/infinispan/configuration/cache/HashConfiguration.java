@@ -20,6 +20,7 @@
 
 import org.infinispan.commons.hash.Hash;
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ReplicaSelector;
 import org.infinispan.distribution.ch.ConsistentHashFactory;
 
 /**
@@ -33,15 +34,20 @@ public class HashConfiguration {
    private final Hash hash;
    private final int numOwners;
    private final int numSegments;
+   private final boolean staggeredRemoteGets;
+   private final ReplicaSelector replicaSelector;
    private final GroupsConfiguration groupsConfiguration;
    private final StateTransferConfiguration stateTransferConfiguration;
 
    HashConfiguration(ConsistentHashFactory consistentHashFactory, Hash hash, int numOwners, int numSegments,
+                     boolean staggeredRemoteGets, ReplicaSelector replicaSelector,
                      GroupsConfiguration groupsConfiguration, StateTransferConfiguration stateTransferConfiguration) {
       this.consistentHashFactory = consistentHashFactory;
       this.hash = hash;
       this.numOwners = numOwners;
       this.numSegments = numSegments;
+      this.staggeredRemoteGets = staggeredRemoteGets;
+      this.replicaSelector = replicaSelector;
       this.groupsConfiguration = groupsConfiguration;
       this.stateTransferConfiguration = stateTransferConfiguration;
    }
@@ -99,6 +105,23 @@ public int numSegments() {
       return numSegments;
    }
 
+   /**
+    * If true, remote gets are sent to one owner at a time, in consistent hash order. The next owner is only asked
+    * if the previous one didn't reply within the delay it usually takes to reply, or if it couldn't answer.
+    * If false, remote gets are sent to all the owners at once and the first valid reply is used.
+    */
+   public boolean staggeredRemoteGets() {
+      return staggeredRemoteGets;
+   }
+
+   /**
+    * The replica selector choosing which owner is asked first when reading from remote owners. If null, each cache
+    * uses its own {@link org.infinispan.distribution.LeastLoadedReplicaSelector}.
+    */
+   public ReplicaSelector replicaSelector() {
+      return replicaSelector;
+   }
+
    /**
     * If false, no rebalancing or rehashing will take place when a new node joins the cluster or a
     * node leaves
@@ -140,6 +163,8 @@ public String toString() {
             ", hash=" + hash +
             ", numOwners=" + numOwners +
             ", numSegments=" + numSegments +
+            ", staggeredRemoteGets=" + staggeredRemoteGets +
+            ", replicaSelector=" + replicaSelector +
             ", groupsConfiguration=" + groupsConfiguration +
             ", stateTransferConfiguration=" + stateTransferConfiguration +
             '}';
@@ -154,12 +179,15 @@ public boolean equals(Object o) {
 
       if (numOwners != that.numOwners) return false;
       if (numSegments != that.numSegments) return false;
+      if (staggeredRemoteGets != that.staggeredRemoteGets) return false;
       if (consistentHashFactory != null ? !consistentHashFactory.equals(that.consistentHashFactory) : that.consistentHashFactory != null)
          return false;
       if (groupsConfiguration != null ? !groupsConfiguration.equals(that.groupsConfiguration) : that.groupsConfiguration != null)
          return false;
       if (hash != null ? !hash.equals(that.hash) : that.hash != null)
          return false;
+      if (replicaSelector != null ? !replicaSelector.equals(that.replicaSelector) : that.replicaSelector != null)
+         return false;
       if (stateTransferConfiguration != null ? !stateTransferConfiguration.equals(that.stateTransferConfiguration) : that.stateTransferConfiguration != null)
          return false;
 
@@ -172,6 +200,8 @@ public int hashCode() {
       result = 31 * result + (hash != null ? hash.hashCode() : 0);
       result = 31 * result + numOwners;
       result = 31 * result + numSegments;
+      result = 31 * result + (staggeredRemoteGets ? 1 : 0);
+      result = 31 * result + (replicaSelector != null ? replicaSelector.hashCode() : 0);
       result = 31 * result + (groupsConfiguration != null ? groupsConfiguration.hashCode() : 0);
       result = 31 * result + (stateTransferConfiguration != null ? stateTransferConfiguration.hashCode() : 0);
       return result;
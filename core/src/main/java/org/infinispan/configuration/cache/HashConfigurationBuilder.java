@@ -21,6 +21,7 @@
 import org.infinispan.commons.hash.Hash;
 import org.infinispan.commons.hash.MurmurHash3;
 import org.infinispan.configuration.Builder;
+import org.infinispan.distribution.ReplicaSelector;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashFactory;
 import org.infinispan.util.logging.Log;
@@ -41,6 +42,8 @@ public class HashConfigurationBuilder extends AbstractClusteringConfigurationChi
    // With the default consistent hash factory, this default gives us an even spread for clusters
    // up to 6 members and the difference between nodes stays under 20% up to 12 members.
    private int numSegments = 60;
+   private boolean staggeredRemoteGets = false;
+   private ReplicaSelector replicaSelector;
 
    private final GroupsConfigurationBuilder groupsConfigurationBuilder;
 
@@ -102,6 +105,29 @@ public HashConfigurationBuilder numSegments(int numSegments) {
       return this;
    }
 
+   /**
+    * If true, remote gets are sent to one owner at a time, in consistent hash order. The next owner is only asked
+    * if the previous one didn't reply within the delay it usually takes to reply, or if it couldn't answer. This
+    * reduces the number of owners handling each remote get to one most of the time, at the cost of some latency
+    * when an owner is slow to reply.
+    * <p>If false, remote gets are sent to all the owners at once and the first valid reply is used.
+    */
+   public HashConfigurationBuilder staggeredRemoteGets(boolean staggeredRemoteGets) {
+      this.staggeredRemoteGets = staggeredRemoteGets;
+      return this;
+   }
+
+   /**
+    * The replica selector choosing which owner is asked first when reading from remote owners, see
+    * {@link #staggeredRemoteGets(boolean)}. The selector keeps track of the owners' response times, so a
+    * selector instance must not be shared by several caches.
+    * <p>If not set, each cache uses its own {@link org.infinispan.distribution.LeastLoadedReplicaSelector}.
+    */
+   public HashConfigurationBuilder replicaSelector(ReplicaSelector replicaSelector) {
+      this.replicaSelector = replicaSelector;
+      return this;
+   }
+
    /**
     * Enable rebalancing and rehashing, which will take place when a new node joins the cluster or a
     * node leaves
@@ -179,8 +205,8 @@ public void validate() {
    @Override
    public HashConfiguration create() {
       // TODO stateTransfer().create() will create a duplicate StateTransferConfiguration instance. That's ok as long as none of the stateTransfer settings are modifiable at runtime.
-      return new HashConfiguration(consistentHashFactory, hash, numOwners, numSegments,
-            groupsConfigurationBuilder.create(), stateTransfer().create());
+      return new HashConfiguration(consistentHashFactory, hash, numOwners, numSegments, staggeredRemoteGets,
+            replicaSelector, groupsConfigurationBuilder.create(), stateTransfer().create());
    }
 
    @Override
@@ -189,6 +215,8 @@ public HashConfigurationBuilder read(HashConfiguration template) {
       this.hash = template.hash();
       this.numOwners = template.numOwners();
       this.numSegments = template.numSegments();
+      this.staggeredRemoteGets = template.staggeredRemoteGets();
+      this.replicaSelector = template.replicaSelector();
       this.groupsConfigurationBuilder.read(template.groups());
       return this;
    }
@@ -200,6 +228,8 @@ public String toString() {
             ", hash=" + hash +
             ", numOwners=" + numOwners +
             ", numSegments=" + numSegments +
+            ", staggeredRemoteGets=" + staggeredRemoteGets +
+            ", replicaSelector=" + replicaSelector +
             ", groups=" + groupsConfigurationBuilder +
             '}';
    }
@@ -33,14 +33,16 @@ public class LockingConfiguration {
    private long lockAcquisitionTimeout;
    private final boolean useLockStriping;
    private final boolean writeSkewCheck;
+   private final boolean parkRemoteCommands;
 
    LockingConfiguration(int concurrencyLevel, IsolationLevel isolationLevel, long lockAcquisitionTimeout,
-         boolean useLockStriping, boolean writeSkewCheck) {
+         boolean useLockStriping, boolean writeSkewCheck, boolean parkRemoteCommands) {
       this.concurrencyLevel = concurrencyLevel;
       this.isolationLevel = isolationLevel;
       this.lockAcquisitionTimeout = lockAcquisitionTimeout;
       this.useLockStriping = useLockStriping;
       this.writeSkewCheck = writeSkewCheck;
+      this.parkRemoteCommands = parkRemoteCommands;
    }
 
    /**
@@ -104,6 +106,14 @@ public boolean writeSkewCheck() {
       return writeSkewCheck;
    }
 
+   /**
+    * If true, remote commands that need locks held by other transactions wait in a queue until the locks are released,
+    * instead of blocking a remote command thread for up to {@link #lockAcquisitionTimeout()}.
+    */
+   public boolean parkRemoteCommands() {
+      return parkRemoteCommands;
+   }
+
    @Override
    public String toString() {
       return "LockingConfiguration{" +
@@ -112,6 +122,7 @@ public String toString() {
             ", lockAcquisitionTimeout=" + lockAcquisitionTimeout +
             ", useLockStriping=" + useLockStriping +
             ", writeSkewCheck=" + writeSkewCheck +
+            ", parkRemoteCommands=" + parkRemoteCommands +
             '}';
    }
 
@@ -126,6 +137,7 @@ public boolean equals(Object o) {
       if (lockAcquisitionTimeout != that.lockAcquisitionTimeout) return false;
       if (useLockStriping != that.useLockStriping) return false;
       if (writeSkewCheck != that.writeSkewCheck) return false;
+      if (parkRemoteCommands != that.parkRemoteCommands) return false;
       if (isolationLevel != that.isolationLevel) return false;
 
       return true;
@@ -138,6 +150,7 @@ public int hashCode() {
       result = 31 * result + (int) (lockAcquisitionTimeout ^ (lockAcquisitionTimeout >>> 32));
       result = 31 * result + (useLockStriping ? 1 : 0);
       result = 31 * result + (writeSkewCheck ? 1 : 0);
+      result = 31 * result + (parkRemoteCommands ? 1 : 0);
       return result;
    }
 
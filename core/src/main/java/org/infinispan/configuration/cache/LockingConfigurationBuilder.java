@@ -42,6 +42,7 @@ public class LockingConfigurationBuilder extends AbstractConfigurationChildBuild
    private long lockAcquisitionTimeout = TimeUnit.SECONDS.toMillis(10);
    private boolean useLockStriping = false;
    private boolean writeSkewCheck = false;
+   private boolean parkRemoteCommands = false;
 
    protected LockingConfigurationBuilder(ConfigurationBuilder builder) {
       super(builder);
@@ -115,6 +116,16 @@ public LockingConfigurationBuilder writeSkewCheck(boolean b) {
       return this;
    }
 
+   /**
+    * If true, remote commands that need locks held by other transactions wait in a queue until the locks are released,
+    * instead of blocking a remote command thread for up to the lock acquisition timeout. This keeps a few hot keys from
+    * exhausting the remote command thread pool.
+    */
+   public LockingConfigurationBuilder parkRemoteCommands(boolean b) {
+      this.parkRemoteCommands = b;
+      return this;
+   }
+
    @Override
    public void validate() {
       if (writeSkewCheck) {
@@ -143,7 +154,8 @@ && clustering().cacheMode() != CacheMode.LOCAL)
 
    @Override
    public LockingConfiguration create() {
-      return new LockingConfiguration(concurrencyLevel, isolationLevel, lockAcquisitionTimeout, useLockStriping, writeSkewCheck);
+      return new LockingConfiguration(concurrencyLevel, isolationLevel, lockAcquisitionTimeout, useLockStriping, writeSkewCheck,
+            parkRemoteCommands);
    }
 
    @Override
@@ -153,6 +165,7 @@ public LockingConfigurationBuilder read(LockingConfiguration template) {
       lockAcquisitionTimeout = template.lockAcquisitionTimeout();
       useLockStriping = template.useLockStriping();
       writeSkewCheck = template.writeSkewCheck();
+      parkRemoteCommands = template.parkRemoteCommands();
 
       return this;
    }
@@ -165,6 +178,7 @@ public String toString() {
             ", lockAcquisitionTimeout=" + lockAcquisitionTimeout +
             ", useLockStriping=" + useLockStriping +
             ", writeSkewCheck=" + writeSkewCheck +
+            ", parkRemoteCommands=" + parkRemoteCommands +
             '}';
    }
 
@@ -32,15 +32,20 @@ public class StateTransferConfiguration {
    private int chunkSize;
    private boolean awaitInitialTransfer;
    private Boolean originalAwaitInitialTransfer;
+   private final int maxInFlightChunks;
+   private final int maxConcurrentSources;
 
    StateTransferConfiguration(boolean fetchInMemoryState, Boolean originalFetchInMemoryState, long timeout, int chunkSize,
-                              boolean awaitInitialTransfer, Boolean originalAwaitInitialTransfer) {
+                              boolean awaitInitialTransfer, Boolean originalAwaitInitialTransfer,
+                              int maxInFlightChunks, int maxConcurrentSources) {
       this.fetchInMemoryState = fetchInMemoryState;
       this.originalFetchInMemoryState = originalFetchInMemoryState;
       this.timeout = timeout;
       this.chunkSize = chunkSize;
       this.awaitInitialTransfer = awaitInitialTransfer;
       this.originalAwaitInitialTransfer = originalAwaitInitialTransfer;
+      this.maxInFlightChunks = maxInFlightChunks;
+      this.maxConcurrentSources = maxConcurrentSources;
    }
 
    /**
@@ -106,6 +111,22 @@ protected Boolean originalAwaitInitialTransfer() {
       return originalAwaitInitialTransfer;
    }
 
+   /**
+    * The number of chunks a node sending state to this node may send before it has to wait for this node to apply
+    * the first of them. Higher values keep the network busy while the received chunks are applied, at the cost of
+    * keeping more received entries in memory.
+    */
+   public int maxInFlightChunks() {
+      return maxInFlightChunks;
+   }
+
+   /**
+    * The maximum number of nodes this node receives state from at the same time.
+    */
+   public int maxConcurrentSources() {
+      return maxConcurrentSources;
+   }
+
    @Override
    public String toString() {
       return "StateTransferConfiguration{" +
@@ -115,6 +136,8 @@ public String toString() {
             ", timeout=" + timeout +
             ", awaitInitialTransfer=" + awaitInitialTransfer +
             ", originalAwaitInitialTransfer=" + originalAwaitInitialTransfer +
+            ", maxInFlightChunks=" + maxInFlightChunks +
+            ", maxConcurrentSources=" + maxConcurrentSources +
             '}';
    }
 
@@ -133,6 +156,8 @@ public boolean equals(Object o) {
       if (awaitInitialTransfer != that.awaitInitialTransfer) return false;
       if (originalAwaitInitialTransfer != null ? !originalAwaitInitialTransfer.equals(that.originalAwaitInitialTransfer) : that.originalAwaitInitialTransfer != null)
          return false;
+      if (maxInFlightChunks != that.maxInFlightChunks) return false;
+      if (maxConcurrentSources != that.maxConcurrentSources) return false;
 
       return true;
    }
@@ -145,6 +170,8 @@ public int hashCode() {
       result = 31 * result + chunkSize;
       result = 31 * result + (awaitInitialTransfer ? 1 : 0);
       result = 31 * result + (originalAwaitInitialTransfer != null ? originalAwaitInitialTransfer.hashCode() : 0);
+      result = 31 * result + maxInFlightChunks;
+      result = 31 * result + maxConcurrentSources;
       return result;
    }
 
@@ -41,6 +41,8 @@ public class StateTransferConfigurationBuilder extends
    private Boolean awaitInitialTransfer = null;
    private int chunkSize = 10000;
    private long timeout = TimeUnit.MINUTES.toMillis(4);
+   private int maxInFlightChunks = 2;
+   private int maxConcurrentSources = 2;
 
    StateTransferConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -98,6 +100,25 @@ public StateTransferConfigurationBuilder timeout(long l, TimeUnit unit) {
       return timeout(unit.toMillis(l));
    }
 
+   /**
+    * The number of chunks a node sending state to this node may send before it has to wait for this node to apply
+    * the first of them. Higher values keep the network busy while the received chunks are applied, at the cost of
+    * keeping more received entries in memory: up to {@code maxInFlightChunks * chunkSize} entries from each source.
+    * Defaults to 2.
+    */
+   public StateTransferConfigurationBuilder maxInFlightChunks(int i) {
+      this.maxInFlightChunks = i;
+      return this;
+   }
+
+   /**
+    * The maximum number of nodes this node receives state from at the same time. Defaults to 2.
+    */
+   public StateTransferConfigurationBuilder maxConcurrentSources(int i) {
+      this.maxConcurrentSources = i;
+      return this;
+   }
+
    @Override
    public void validate() {
       // certain combinations are illegal, such as state transfer + invalidation
@@ -108,6 +129,10 @@ public void validate() {
             && !getClusteringBuilder().cacheMode().isReplicated() && !getClusteringBuilder().cacheMode().isDistributed())
          throw new ConfigurationException(
                "awaitInitialTransfer can be enabled only if cache mode is distributed or replicated.");
+      if (maxInFlightChunks < 1)
+         throw new ConfigurationException("maxInFlightChunks must be greater than 0");
+      if (maxConcurrentSources < 1)
+         throw new ConfigurationException("maxConcurrentSources must be greater than 0");
    }
 
    @Override
@@ -137,7 +162,7 @@ public  StateTransferConfiguration create() {
          _awaitInitialTransfer = false;
       }
       return new StateTransferConfiguration(_fetchInMemoryState, fetchInMemoryState,
-            timeout, chunkSize, _awaitInitialTransfer, awaitInitialTransfer);
+            timeout, chunkSize, _awaitInitialTransfer, awaitInitialTransfer, maxInFlightChunks, maxConcurrentSources);
    }
 
    @Override
@@ -146,6 +171,8 @@ public StateTransferConfigurationBuilder read(StateTransferConfiguration templat
       this.awaitInitialTransfer = template.originalAwaitInitialTransfer();
       this.timeout = template.timeout();
       this.chunkSize = template.chunkSize();
+      this.maxInFlightChunks = template.maxInFlightChunks();
+      this.maxConcurrentSources = template.maxConcurrentSources();
       return this;
    }
 
@@ -156,6 +183,8 @@ public String toString() {
             ", fetchInMemoryState=" + fetchInMemoryState +
             ", awaitInitialTransfer=" + awaitInitialTransfer +
             ", timeout=" + timeout +
+            ", maxInFlightChunks=" + maxInFlightChunks +
+            ", maxConcurrentSources=" + maxConcurrentSources +
             '}';
    }
 
@@ -26,10 +26,11 @@
 public class SyncConfiguration {
 
    private long replTimeout;
+   private final boolean coalesceRpcs;
 
-
-   SyncConfiguration(long replTimeout) {
+   SyncConfiguration(long replTimeout, boolean coalesceRpcs) {
       this.replTimeout = replTimeout;
+      this.coalesceRpcs = coalesceRpcs;
    }
 
    /**
@@ -49,10 +50,19 @@ public SyncConfiguration replTimeout(long l) {
       return this;
    }
 
+   /**
+    * If true, the synchronous remote calls that are sent to a node while an earlier call to the same node is still
+    * waiting for its response are queued and sent together in a single message once that response arrives.
+    */
+   public boolean coalesceRpcs() {
+      return coalesceRpcs;
+   }
+
    @Override
    public String toString() {
       return "SyncConfiguration{" +
             "replTimeout=" + replTimeout +
+            ", coalesceRpcs=" + coalesceRpcs +
             '}';
    }
 
@@ -64,13 +74,16 @@ public boolean equals(Object o) {
       SyncConfiguration that = (SyncConfiguration) o;
 
       if (replTimeout != that.replTimeout) return false;
+      if (coalesceRpcs != that.coalesceRpcs) return false;
 
       return true;
    }
 
    @Override
    public int hashCode() {
-      return (int) (replTimeout ^ (replTimeout >>> 32));
+      int result = (int) (replTimeout ^ (replTimeout >>> 32));
+      result = 31 * result + (coalesceRpcs ? 1 : 0);
+      return result;
    }
 
 }
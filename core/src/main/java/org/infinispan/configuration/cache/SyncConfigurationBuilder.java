@@ -30,6 +30,7 @@
 public class SyncConfigurationBuilder extends AbstractClusteringConfigurationChildBuilder implements Builder<SyncConfiguration> {
 
    private long replTimeout = TimeUnit.SECONDS.toMillis(15);
+   private boolean coalesceRpcs = false;
 
    protected SyncConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -52,6 +53,17 @@ public SyncConfigurationBuilder replTimeout(long l, TimeUnit unit) {
       return replTimeout(unit.toMillis(l));
    }
 
+   /**
+    * If true, the synchronous remote calls that are sent to a node while an earlier call to the same node is still
+    * waiting for its response are queued and sent together in a single message once that response arrives. A call
+    * sent to a node with nothing in flight goes out immediately, so this never adds latency to an idle cache, but
+    * under load many small commands share the cost of a single message. Defaults to false.
+    */
+   public SyncConfigurationBuilder coalesceRpcs(boolean coalesceRpcs) {
+      this.coalesceRpcs = coalesceRpcs;
+      return this;
+   }
+
    @Override
    public void validate() {
 
@@ -59,12 +71,13 @@ public void validate() {
 
    @Override
    public SyncConfiguration create() {
-      return new SyncConfiguration(replTimeout);
+      return new SyncConfiguration(replTimeout, coalesceRpcs);
    }
 
    @Override
    public SyncConfigurationBuilder read(SyncConfiguration template) {
       this.replTimeout = template.replTimeout();
+      this.coalesceRpcs = template.coalesceRpcs();
       return this;
    }
 
@@ -72,6 +85,7 @@ public SyncConfigurationBuilder read(SyncConfiguration template) {
    public String toString() {
       return "SyncConfigurationBuilder{" +
             "replTimeout=" + replTimeout +
+            ", coalesceRpcs=" + coalesceRpcs +
             '}';
    }
 
@@ -30,14 +30,16 @@ public class SerializationConfiguration {
    private final short version;
    private final Map<Integer, AdvancedExternalizer<?>> advancedExternalizers;
    private final ClassResolver classResolver;
+   private final int compressionThreshold;
    
    SerializationConfiguration(Marshaller marshaller, short version,
          Map<Integer, AdvancedExternalizer<?>> advancedExternalizers,
-         ClassResolver classResolver) {
+         ClassResolver classResolver, int compressionThreshold) {
       this.marshaller = marshaller;
       this.version = version;
       this.advancedExternalizers = advancedExternalizers;
       this.classResolver = classResolver;
+      this.compressionThreshold = compressionThreshold;
    }
 
    public Marshaller marshaller() {
@@ -56,6 +58,14 @@ public ClassResolver classResolver() {
       return classResolver;
    }
 
+   /**
+    * The size, in bytes, from which marshalled payloads are compressed, or a negative value if compression is
+    * disabled.
+    */
+   public int compressionThreshold() {
+      return compressionThreshold;
+   }
+
    @Override
    public String toString() {
       return "SerializationConfiguration{" +
@@ -63,6 +73,7 @@ public String toString() {
             ", marshaller=" + marshaller +
             ", version=" + version +
             ", classResolver=" + classResolver +
+            ", compressionThreshold=" + compressionThreshold +
             '}';
    }
 
@@ -37,6 +37,7 @@ public class SerializationConfigurationBuilder extends AbstractGlobalConfigurati
    private short marshallVersion = Short.valueOf(Version.MAJOR_MINOR.replace(".", ""));
    private Map<Integer, AdvancedExternalizer<?>> advancedExternalizers = new HashMap<Integer, AdvancedExternalizer<?>>();
    private ClassResolver classResolver;
+   private int compressionThreshold = -1;
 
    SerializationConfigurationBuilder(GlobalConfigurationBuilder globalConfig) {
       super(globalConfig);
@@ -137,6 +138,19 @@ public SerializationConfigurationBuilder classResolver(ClassResolver classResolv
       return this;
    }
 
+   /**
+    * Compresses the marshalled payloads (the commands sent to other nodes, the state transferred during rebalancing
+    * and the entries written by cache stores) that are at least this many bytes long. The payloads that don't shrink
+    * are kept uncompressed. Compressed payloads are flagged, so they can be read by every node whatever its own
+    * setting. A negative value disables compression, which is the default.
+    *
+    * @param compressionThreshold the size in bytes from which payloads are compressed
+    */
+   public SerializationConfigurationBuilder compressionThreshold(int compressionThreshold) {
+      this.compressionThreshold = compressionThreshold;
+      return this;
+   }
+
    @Override
    protected void validate() {
       // No-op, no validation required
@@ -145,7 +159,7 @@ protected void validate() {
    @Override
    SerializationConfiguration create() {
       return new SerializationConfiguration(
-            marshaller, marshallVersion, advancedExternalizers, classResolver);
+            marshaller, marshallVersion, advancedExternalizers, classResolver, compressionThreshold);
    }
 
    @Override
@@ -155,6 +169,7 @@ SerializationConfigurationBuilder read(SerializationConfiguration template) {
       this.marshaller = template.marshaller();
       this.marshallVersion = template.version();
       this.classResolver = template.classResolver();
+      this.compressionThreshold = template.compressionThreshold();
 
       return this;
    }
@@ -166,6 +181,7 @@ public String toString() {
             ", marshaller=" + marshaller +
             ", marshallVersion=" + marshallVersion +
             ", classResolver=" + classResolver +
+            ", compressionThreshold=" + compressionThreshold +
             '}';
    }
 
@@ -177,6 +193,7 @@ public boolean equals(Object o) {
       SerializationConfigurationBuilder that = (SerializationConfigurationBuilder) o;
 
       if (marshallVersion != that.marshallVersion) return false;
+      if (compressionThreshold != that.compressionThreshold) return false;
       if (advancedExternalizers != null ? !advancedExternalizers.equals(that.advancedExternalizers) : that.advancedExternalizers != null)
          return false;
       if (marshaller != null ? !marshaller.equals(that.marshaller) : that.marshaller != null)
@@ -193,6 +210,7 @@ public int hashCode() {
       result = 31 * result + marshallVersion;
       result = 31 * result + (advancedExternalizers != null ? advancedExternalizers.hashCode() : 0);
       result = 31 * result + (classResolver != null ? classResolver.hashCode() : 0);
+      result = 31 * result + compressionThreshold;
       return result;
    }
 
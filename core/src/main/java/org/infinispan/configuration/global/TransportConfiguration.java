@@ -31,10 +31,12 @@ public class TransportConfiguration {
    private final long distributedSyncTimeout;
    private final Transport transport;
    private final String nodeName;
+   private final long stateTransferBandwidth;
    private TypedProperties properties;
    
    TransportConfiguration(String clusterName, String machineId, String rackId, String siteId, boolean strictPeerToPeer,
-         long distributedSyncTimeout, Transport transport, String nodeName, TypedProperties properties) {
+         long distributedSyncTimeout, Transport transport, String nodeName, long stateTransferBandwidth,
+         TypedProperties properties) {
       this.clusterName = clusterName;
       this.machineId = machineId;
       this.rackId = rackId;
@@ -43,6 +45,7 @@ public class TransportConfiguration {
       this.distributedSyncTimeout = distributedSyncTimeout;
       this.transport = transport;
       this.nodeName = nodeName;
+      this.stateTransferBandwidth = stateTransferBandwidth;
       this.properties = properties;
    }
 
@@ -77,6 +80,14 @@ public String nodeName() {
    public boolean strictPeerToPeer() {
       return strictPeerToPeer;
    }
+
+   /**
+    * The maximum number of bytes per second this node sends to other nodes during state transfer, or 0 if it is not
+    * limited.
+    */
+   public long stateTransferBandwidth() {
+      return stateTransferBandwidth;
+   }
    
    public TypedProperties properties() {
       return properties;
@@ -97,6 +108,7 @@ public String toString() {
             ", distributedSyncTimeout=" + distributedSyncTimeout +
             ", transport=" + transport +
             ", nodeName='" + nodeName + '\'' +
+            ", stateTransferBandwidth=" + stateTransferBandwidth +
             ", properties=" + properties +
             '}';
    }
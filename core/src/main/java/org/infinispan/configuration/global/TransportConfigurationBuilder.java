@@ -44,6 +44,7 @@ public class TransportConfigurationBuilder extends AbstractGlobalConfigurationBu
    private String nodeName;
    private Properties properties = new Properties();
    private boolean strictPeerToPeer = false;
+   private long stateTransferBandwidth = 0;
 
    TransportConfigurationBuilder(GlobalConfigurationBuilder globalConfig) {
       super(globalConfig);
@@ -178,17 +179,33 @@ public TransportConfigurationBuilder strictPeerToPeer(Boolean strictPeerToPeer)
       return this;
    }
 
+   /**
+    * The maximum number of bytes per second this node sends to other nodes during state transfer, shared by all its
+    * caches. Limiting it leaves more of the network for the other traffic while the cluster rebalances, at the cost of
+    * a longer state transfer. Defaults to 0, meaning no limit. It can also be changed at runtime through the
+    * StateTransferThrottle MBean.
+    *
+    * @param stateTransferBandwidth the maximum number of bytes per second, or 0 for no limit
+    */
+   public TransportConfigurationBuilder stateTransferBandwidth(long stateTransferBandwidth) {
+      this.stateTransferBandwidth = stateTransferBandwidth;
+      return this;
+   }
+
 
    @Override
    void validate() {
       if(clusterName == null){
           throw new ConfigurationException("Transport clusterName cannot be null");
       }
+      if (stateTransferBandwidth < 0) {
+         throw new ConfigurationException("Transport stateTransferBandwidth cannot be negative");
+      }
    }
 
    @Override
    TransportConfiguration create() {
-      return new TransportConfiguration(clusterName, machineId, rackId, siteId, strictPeerToPeer, distributedSyncTimeout, transport, nodeName, TypedProperties.toTypedProperties(properties));
+      return new TransportConfiguration(clusterName, machineId, rackId, siteId, strictPeerToPeer, distributedSyncTimeout, transport, nodeName, stateTransferBandwidth, TypedProperties.toTypedProperties(properties));
    }
 
    public TransportConfigurationBuilder defaultTransport() {
@@ -207,6 +224,7 @@ TransportConfigurationBuilder read(TransportConfiguration template) {
       this.properties = template.properties();
       this.rackId = template.rackId();
       this.siteId = template.siteId();
+      this.stateTransferBandwidth = template.stateTransferBandwidth();
       this.strictPeerToPeer = template.strictPeerToPeer();
       this.transport = template.transport();
 
@@ -229,6 +247,7 @@ public String toString() {
             ", nodeName='" + nodeName + '\'' +
             ", properties=" + properties +
             ", strictPeerToPeer=" + strictPeerToPeer +
+            ", stateTransferBandwidth=" + stateTransferBandwidth +
             '}';
    }
 
@@ -241,6 +260,7 @@ public boolean equals(Object o) {
 
       if (distributedSyncTimeout != that.distributedSyncTimeout) return false;
       if (strictPeerToPeer != that.strictPeerToPeer) return false;
+      if (stateTransferBandwidth != that.stateTransferBandwidth) return false;
       if (clusterName != null ? !clusterName.equals(that.clusterName) : that.clusterName != null)
          return false;
       if (machineId != null ? !machineId.equals(that.machineId) : that.machineId != null)
@@ -270,6 +290,7 @@ public int hashCode() {
       result = 31 * result + (nodeName != null ? nodeName.hashCode() : 0);
       result = 31 * result + (properties != null ? properties.hashCode() : 0);
       result = 31 * result + (strictPeerToPeer ? 1 : 0);
+      result = 31 * result + (int) (stateTransferBandwidth ^ (stateTransferBandwidth >>> 32));
       return result;
    }
 
@@ -45,6 +45,8 @@ public enum Attribute {
     CHUNK_SIZE("chunkSize"),
     CLASS("class"),
     CLUSTER_NAME("clusterName"),
+    COALESCE_RPCS("coalesceRpcs"),
+    COMPRESSION_THRESHOLD("compressionThreshold"),
     CONCURRENCY_LEVEL("concurrencyLevel"),
     DISTRIBUTED_SYNC_TIMEOUT("distributedSyncTimeout"),
     EAGER_LOCK_SINGLE_NODE("eagerLockSingleNode"),
@@ -76,8 +78,11 @@ public enum Attribute {
     LOG_FLUSH_TIMEOUT("logFlushTimeout"),
     MACHINE_ID("machineId"),
     MARSHALLER_CLASS("marshallerClass"),
+    MAX_CONCURRENT_SOURCES("maxConcurrentSources"),
     MAX_ENTRIES("maxEntries"),
     MAX_IDLE("maxIdle"),
+    MAX_IN_FLIGHT_CHUNKS("maxInFlightChunks"),
+    MAX_MEMORY("maxMemory"),
     MAX_NON_PROGRESSING_LOG_WRITES("maxProgressingLogWrites"),
     MBEAN_SERVER_LOOKUP("mBeanServerLookup"),
     MODE("mode"),
@@ -89,6 +94,7 @@ public enum Attribute {
     NUM_RETRIES("numRetries"),
     NUM_VIRTUAL_NODES("numVirtualNodes"),
     ON_REHASH("onRehash"),
+    PARK_REMOTE_COMMANDS("parkRemoteCommands"),
     PASSIVATION("passivation"),
     POSITION("position"),
     PRELOAD("preload"),
@@ -108,11 +114,14 @@ public enum Attribute {
     REPL_QUEUE_CLASS("replQueueClass"),
     REPL_QUEUE_MAX_ELEMENTS("replQueueMaxElements"),
     REPL_TIMEOUT("replTimeout"),
+    REPLICA_SELECTOR("replicaSelector"),
     RETRY_WAIT_TIME_INCREASE_FACTOR("retryWaitTimeIncreaseFactor"),
     SHARED("shared"),
     SHUTDOWN_TIMEOUT("shutdownTimeout"),
     SITE_ID("siteId"),
     SPIN_DURATION("spinDuration"),
+    STAGGERED_REMOTE_GETS("staggeredRemoteGets"),
+    STATE_TRANSFER_BANDWIDTH("stateTransferBandwidth"),
     STORE_KEYS_AS_BINARY("storeKeysAsBinary"),
     STORE_VALUES_AS_BINARY("storeValuesAsBinary"),
     DEFENSIVE("defensive"),
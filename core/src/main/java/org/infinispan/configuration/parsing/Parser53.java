@@ -28,6 +28,7 @@
 import org.infinispan.configuration.global.ScheduledExecutorFactoryConfigurationBuilder;
 import org.infinispan.configuration.global.ShutdownHookBehavior;
 import org.infinispan.container.DataContainer;
+import org.infinispan.distribution.ReplicaSelector;
 import org.infinispan.distribution.ch.ConsistentHashFactory;
 import org.infinispan.distribution.group.Grouper;
 import org.infinispan.eviction.EvictionStrategy;
@@ -541,6 +542,9 @@ private void parseLocking(final XMLExtendedStreamReader reader, final Configurat
             case WRITE_SKEW_CHECK:
                builder.locking().writeSkewCheck(Boolean.parseBoolean(value));
                break;
+            case PARK_REMOTE_COMMANDS:
+               builder.locking().parkRemoteCommands(Boolean.parseBoolean(value));
+               break;
             case SUPPORTS_CONCURRENT_UPDATES:
                builder.locking().supportsConcurrentUpdates(Boolean.parseBoolean(value));
                break;
@@ -1076,6 +1080,9 @@ private void parseEviction(final XMLExtendedStreamReader reader, final Configura
             case MAX_ENTRIES:
                builder.eviction().maxEntries(Integer.parseInt(value));
                break;
+            case MAX_MEMORY:
+               builder.eviction().maxMemory(Long.parseLong(value));
+               break;
             case STRATEGY:
                builder.eviction().strategy(EvictionStrategy.valueOf(value));
                break;
@@ -1312,6 +1319,9 @@ private void parseSync(final XMLExtendedStreamReader reader, final Configuration
             case REPL_TIMEOUT:
                builder.clustering().sync().replTimeout(Long.parseLong(value));
                break;
+            case COALESCE_RPCS:
+               builder.clustering().sync().coalesceRpcs(Boolean.parseBoolean(value));
+               break;
 
             default:
                throw ParseUtils.unexpectedAttribute(reader, i);
@@ -1341,6 +1351,12 @@ private void parseStateTransfer(final XMLExtendedStreamReader reader, final Conf
             case CHUNK_SIZE:
                builder.clustering().stateTransfer().chunkSize(Integer.parseInt(value));
                break;
+            case MAX_IN_FLIGHT_CHUNKS:
+               builder.clustering().stateTransfer().maxInFlightChunks(Integer.parseInt(value));
+               break;
+            case MAX_CONCURRENT_SOURCES:
+               builder.clustering().stateTransfer().maxConcurrentSources(Integer.parseInt(value));
+               break;
             default:
                throw ParseUtils.unexpectedAttribute(reader, i);
          }
@@ -1408,6 +1424,12 @@ private void parseHash(final XMLExtendedStreamReader reader, final Configuration
             case NUM_SEGMENTS:
                builder.clustering().hash().numSegments(Integer.parseInt(value));
                break;
+            case REPLICA_SELECTOR:
+               builder.clustering().hash().replicaSelector(Util.<ReplicaSelector>getInstance(value, holder.getClassLoader()));
+               break;
+            case STAGGERED_REMOTE_GETS:
+               builder.clustering().hash().staggeredRemoteGets(Boolean.parseBoolean(value));
+               break;
             default:
                throw ParseUtils.unexpectedAttribute(reader, i);
          }
@@ -1606,6 +1628,10 @@ private void parseTransport(final XMLExtendedStreamReader reader, final Configur
                builder.transport().siteId(value);
                break;
             }
+            case STATE_TRANSFER_BANDWIDTH: {
+               builder.transport().stateTransferBandwidth(Long.parseLong(value));
+               break;
+            }
             case STRICT_PEER_TO_PEER: {
                builder.transport().strictPeerToPeer(Boolean.valueOf(value));
                break;
@@ -1671,6 +1697,10 @@ private void parseSerialization(final XMLExtendedStreamReader reader, final Conf
                builder.serialization().version(value);
                break;
             }
+            case COMPRESSION_THRESHOLD: {
+               builder.serialization().compressionThreshold(Integer.parseInt(value));
+               break;
+            }
             default: {
                throw ParseUtils.unexpectedAttribute(reader, i);
             }
@@ -26,7 +26,9 @@
 import org.infinispan.CacheException;
 import org.infinispan.metadata.Metadata;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheEntryMap;
 import org.infinispan.eviction.ActivationManager;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.eviction.EvictionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
@@ -35,7 +37,7 @@
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
-import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.AnyEquivalence;
 import org.infinispan.util.Equivalence;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.TimeService;
@@ -69,6 +71,7 @@ public class DefaultDataContainer implements DataContainer {
    final protected ConcurrentMap<Object, InternalCacheEntry> entries;
    protected InternalEntryFactory entryFactory;
    final protected DefaultEvictionListener evictionListener;
+   final protected ExpirationIndex expirationIndex;
    private EvictionManager evictionManager;
    private PassivationManager passivator;
    private ActivationManager activator;
@@ -76,48 +79,69 @@ public class DefaultDataContainer implements DataContainer {
    private TimeService timeService;
 
    public DefaultDataContainer(int concurrencyLevel) {
-      // If no comparing implementations passed, could fallback on JDK CHM
-      entries = CollectionFactory.makeConcurrentMap(128, concurrencyLevel);
-      evictionListener = null;
+      this(concurrencyLevel, AnyEquivalence.getInstance(), AnyEquivalence.getInstance());
    }
 
    public DefaultDataContainer(int concurrencyLevel,
          Equivalence keyEq, Equivalence valueEq) {
-      // If at least one comparing implementation give, use ComparingCHMv8
-      entries = CollectionFactory.makeConcurrentMap(128, concurrencyLevel, keyEq, valueEq);
+      // the entries are their own map nodes, so storing one does not allocate anything else
+      entries = new InternalCacheEntryMap(128, concurrencyLevel, keyEq);
       evictionListener = null;
+      expirationIndex = new ExpirationIndex(keyEq);
+   }
+
+   protected DefaultDataContainer(ConcurrentMap<Object, InternalCacheEntry> entries,
+         Equivalence keyEquivalence) {
+      this.entries = entries;
+      evictionListener = null;
+      expirationIndex = new ExpirationIndex(keyEquivalence);
    }
 
    protected DefaultDataContainer(int concurrencyLevel, int maxEntries,
          EvictionStrategy strategy, EvictionThreadPolicy policy,
          Equivalence keyEquivalence, Equivalence valueEquivalence) {
+      evictionListener = createEvictionListener(policy);
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(
+            maxEntries, concurrencyLevel, toEviction(strategy), evictionListener,
+            keyEquivalence, valueEquivalence);
+      expirationIndex = new ExpirationIndex(keyEquivalence);
+   }
+
+   protected DefaultDataContainer(int concurrencyLevel, long maxMemory,
+         EvictionStrategy strategy, EvictionThreadPolicy policy,
+         EntrySizeCalculator<Object, Object> sizeCalculator,
+         Equivalence keyEquivalence, Equivalence valueEquivalence) {
+      evictionListener = createEvictionListener(policy);
+      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(
+            maxMemory, concurrencyLevel, toEviction(strategy), evictionListener,
+            sizeCalculator, keyEquivalence, valueEquivalence);
+      expirationIndex = new ExpirationIndex(keyEquivalence);
+   }
+
+   private DefaultEvictionListener createEvictionListener(EvictionThreadPolicy policy) {
       // translate eviction policy and strategy
       switch (policy) {
          case PIGGYBACK:
          case DEFAULT:
-            evictionListener = new DefaultEvictionListener();
-            break;
+            return new DefaultEvictionListener();
          default:
-            throw new IllegalArgumentException("No such eviction thread policy " + strategy);
+            throw new IllegalArgumentException("No such eviction thread policy " + policy);
       }
+   }
 
-      Eviction eviction;
+   private static Eviction toEviction(EvictionStrategy strategy) {
       switch (strategy) {
          case FIFO:
          case UNORDERED:
          case LRU:
-            eviction = Eviction.LRU;
-            break;
+            return Eviction.LRU;
          case LIRS:
-            eviction = Eviction.LIRS;
-            break;
+            return Eviction.LIRS;
+         case TINYLFU:
+            return Eviction.TINYLFU;
          default:
             throw new IllegalArgumentException("No such eviction strategy " + strategy);
       }
-
-      entries = new BoundedConcurrentHashMap<Object, InternalCacheEntry>(
-            maxEntries, concurrencyLevel, eviction, evictionListener,
-            keyEquivalence, valueEquivalence);
    }
 
    @Inject
@@ -138,6 +162,14 @@ public static DataContainer boundedDataContainer(int concurrencyLevel, int maxEn
             policy, keyEquivalence, valueEquivalence);
    }
 
+   public static DataContainer memoryBoundedDataContainer(int concurrencyLevel, long maxMemory,
+            EvictionStrategy strategy, EvictionThreadPolicy policy,
+            EntrySizeCalculator<Object, Object> sizeCalculator,
+            Equivalence keyEquivalence, Equivalence valueEquivalence) {
+      return new DefaultDataContainer(concurrencyLevel, maxMemory, strategy,
+            policy, sizeCalculator, keyEquivalence, valueEquivalence);
+   }
+
    public static DataContainer unBoundedDataContainer(int concurrencyLevel,
          Equivalence keyEquivalence, Equivalence valueEquivalence) {
       return new DefaultDataContainer(concurrencyLevel, keyEquivalence, valueEquivalence);
@@ -159,6 +191,7 @@ public InternalCacheEntry get(Object k) {
          long currentTimeMillis = timeService.wallClockTime();
          if (e.isExpired(currentTimeMillis)) {
             entries.remove(k);
+            unindex(k);
             e = null;
          } else {
             e.touch(currentTimeMillis);
@@ -183,6 +216,13 @@ public void put(Object k, Object v, Metadata metadata) {
          e = entryFactory.create(k, v, metadata);
       }
       entries.put(k, e);
+      // always (re)index after the entry is in: the previous entry might have been purged, and
+      // its key dropped from the index, since it was read
+      if (e.canExpire()) {
+         expirationIndex.add(k, e.getExpiryTime());
+      } else {
+         expirationIndex.remove(k);
+      }
    }
 
    @Override
@@ -190,6 +230,7 @@ public boolean containsKey(Object k) {
       InternalCacheEntry ice = peek(k);
       if (ice != null && ice.canExpire() && ice.isExpired(timeService.wallClockTime())) {
          entries.remove(k);
+         unindex(k);
          ice = null;
       }
       return ice != null;
@@ -198,17 +239,43 @@ public boolean containsKey(Object k) {
    @Override
    public InternalCacheEntry remove(Object k) {
       InternalCacheEntry e = entries.remove(k);
+      if (e != null && e.canExpire()) {
+         unindex(k);
+      }
       return e == null || (e.canExpire() && e.isExpired(timeService.wallClockTime())) ? null : e;
    }
 
+   /**
+    * Drops a removed key from the expiration index, unless a new entry was put for it concurrently.
+    */
+   private void unindex(Object k) {
+      expirationIndex.remove(k);
+      InternalCacheEntry current = entries.get(k);
+      if (current != null && current.canExpire()) {
+         expirationIndex.add(k, current.getExpiryTime());
+      }
+   }
+
    @Override
    public int size() {
       return entries.size();
    }
 
+   /**
+    * Returns the estimated memory footprint of the entries in this container, in bytes, or -1 if
+    * the container is not bounded by memory.
+    */
+   public long memoryUsage() {
+      if (entries instanceof BoundedConcurrentHashMap) {
+         return ((BoundedConcurrentHashMap<Object, InternalCacheEntry>) entries).memoryUsage();
+      }
+      return -1;
+   }
+
    @Override
    public void clear() {
       entries.clear();
+      expirationIndex.clear();
    }
 
    @Override
@@ -229,10 +296,16 @@ public Set<InternalCacheEntry> entrySet() {
    @Override
    public void purgeExpired() {
       long currentTimeMillis = timeService.wallClockTime();
-      for (Iterator<InternalCacheEntry> purgeCandidates = entries.values().iterator(); purgeCandidates.hasNext();) {
-         InternalCacheEntry e = purgeCandidates.next();
-         if (e.isExpired(currentTimeMillis)) {
-            purgeCandidates.remove();
+      // only visit the keys indexed as due, the rest of the container cannot have expired yet
+      for (Object key : expirationIndex.pollDue(currentTimeMillis)) {
+         InternalCacheEntry e = entries.get(key);
+         if (e != null && e.canExpire() && e.isExpired(currentTimeMillis) && entries.remove(key, e)) {
+            continue;
+         }
+         // not expired yet (e.g. touched since it was indexed), or concurrently updated
+         e = entries.get(key);
+         if (e != null && e.canExpire()) {
+            expirationIndex.add(key, e.getExpiryTime());
          }
       }
    }
@@ -246,6 +319,11 @@ private final class DefaultEvictionListener implements EvictionListener<Object,
 
       @Override
       public void onEntryEviction(Map<Object, InternalCacheEntry> evicted) {
+         for (Map.Entry<Object, InternalCacheEntry> e : evicted.entrySet()) {
+            if (e.getValue() != null && e.getValue().canExpire()) {
+               unindex(e.getKey());
+            }
+         }
          evictionManager.onEntryEviction(evicted);
       }
 
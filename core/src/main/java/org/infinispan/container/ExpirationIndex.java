@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.Equivalence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A bucketed deadline queue holding the keys of the entries that can expire, so that expired
+ * entries can be purged without scanning the whole data container.
+ * <p>
+ * Keys are grouped in buckets spanning {@link #BUCKET_RESOLUTION} milliseconds, ordered by their
+ * deadline. Each key is kept in a single bucket: indexing it again with another expiry time moves
+ * it, and {@link #remove(Object) removing} it drops it from the index, so removed and evicted keys
+ * are not referenced until their deadline. Concurrent updates may still leave a key in a bucket it
+ * no longer belongs to, so it is up to the caller of {@link #pollDue(long)} to check each returned
+ * key against the container, and to {@link #add(Object, long) add} back those that are not expired
+ * yet.
+ *
+ * @since 5.3
+ */
+final class ExpirationIndex {
+
+   /**
+    * The time span, in milliseconds, covered by a single bucket.
+    */
+   static final long BUCKET_RESOLUTION = 1000;
+
+   private final ConcurrentNavigableMap<Long, ConcurrentMap<Object, Boolean>> buckets =
+         new ConcurrentSkipListMap<Long, ConcurrentMap<Object, Boolean>>();
+
+   /**
+    * The bucket of each indexed key.
+    */
+   private final ConcurrentMap<Object, Long> bucketOfKey;
+
+   private final Equivalence<Object> keyEquivalence;
+
+   ExpirationIndex(Equivalence<Object> keyEquivalence) {
+      this.keyEquivalence = keyEquivalence;
+      this.bucketOfKey = CollectionFactory.makeConcurrentMap(keyEquivalence, AnyEquivalence.<Long>getInstance());
+   }
+
+   /**
+    * Indexes a key whose entry expires at the given time, moving it out of the bucket it was
+    * indexed in before, if any.
+    */
+   void add(Object key, long expiryTime) {
+      Long bucket = expiryTime / BUCKET_RESOLUTION;
+      while (true) {
+         ConcurrentMap<Object, Boolean> keys = buckets.get(bucket);
+         if (keys == null) {
+            keys = CollectionFactory.makeConcurrentMap(16, keyEquivalence, AnyEquivalence.<Boolean>getInstance());
+            ConcurrentMap<Object, Boolean> existing = buckets.putIfAbsent(bucket, keys);
+            if (existing != null) keys = existing;
+         }
+         keys.put(key, Boolean.TRUE);
+         // The bucket might have been polled concurrently, in which case the key must be added
+         // to a new one
+         if (buckets.get(bucket) == keys) break;
+      }
+      Long previous = bucketOfKey.put(key, bucket);
+      if (previous != null && !previous.equals(bucket)) {
+         removeFromBucket(key, previous);
+      }
+   }
+
+   /**
+    * Drops a key from the index, e.g. because its entry was removed or evicted.
+    */
+   void remove(Object key) {
+      Long bucket = bucketOfKey.remove(key);
+      if (bucket != null) {
+         removeFromBucket(key, bucket);
+      }
+   }
+
+   private void removeFromBucket(Object key, Long bucket) {
+      ConcurrentMap<Object, Boolean> keys = buckets.get(bucket);
+      if (keys != null) keys.remove(key);
+   }
+
+   /**
+    * Removes from the index all the buckets that are due at the given time and returns their
+    * keys. The keys might belong to entries that were updated or touched since they were indexed.
+    */
+   Collection<Object> pollDue(long now) {
+      Long nowBucket = now / BUCKET_RESOLUTION;
+      List<Object> due = new ArrayList<Object>();
+      // Only visit the buckets present now: keys re-added by the caller to the current bucket
+      // must wait for the next poll
+      for (Long bucket : new ArrayList<Long>(buckets.headMap(nowBucket, true).keySet())) {
+         Map<Object, Boolean> keys = buckets.remove(bucket);
+         if (keys == null) continue;
+         for (Object key : keys.keySet()) {
+            // a key moved to a later bucket concurrently stays indexed there
+            bucketOfKey.remove(key, bucket);
+            due.add(key);
+         }
+      }
+      return due;
+   }
+
+   /**
+    * @return the number of indexed keys
+    */
+   int size() {
+      return bucketOfKey.size();
+   }
+
+   void clear() {
+      buckets.clear();
+      bucketOfKey.clear();
+   }
+}
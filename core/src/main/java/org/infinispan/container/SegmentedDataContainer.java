@@ -0,0 +1,326 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.commons.hash.Hash;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheEntryMap;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.util.Equivalence;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A data container that keeps its entries in one map per consistent hash segment, so that the
+ * entries of a set of segments can be iterated, counted or removed without visiting the entries
+ * of the other segments.
+ * <p>
+ * Keys are mapped to segments with {@link ConsistentHash#getSegment(Object)}, once the container
+ * is {@link #segmentBy(ConsistentHash) bound} to the first consistent hash installed for the cache.
+ * State transfer already relies on a key staying in the same segment for the lifetime of the cache,
+ * so any later consistent hash with the same number of segments maps keys the same way. Until then,
+ * e.g. while preloading, keys are mapped using the cache's hash function and number of segments.
+ * The segment based operations must only be used with a consistent hash for which
+ * {@link #isSegmentedBy(ConsistentHash)} returns true.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+public class SegmentedDataContainer extends DefaultDataContainer {
+
+   private final SegmentedMap segmentedEntries;
+
+   protected SegmentedDataContainer(SegmentedMap segmentedEntries, Equivalence keyEquivalence) {
+      super(segmentedEntries, keyEquivalence);
+      this.segmentedEntries = segmentedEntries;
+   }
+
+   public static SegmentedDataContainer segmentedDataContainer(int concurrencyLevel,
+         Hash hashFunction, int numSegments, Equivalence keyEquivalence, Equivalence valueEquivalence) {
+      SegmentedMap map = new SegmentedMap(concurrencyLevel, hashFunction, numSegments, keyEquivalence);
+      return new SegmentedDataContainer(map, keyEquivalence);
+   }
+
+   /**
+    * Maps the keys to segments with the given consistent hash from now on, moving the entries
+    * already in the container to their segment. Only the first call has an effect, and it must
+    * happen before the cache accepts any operation, i.e. when the initial topology is installed.
+    */
+   public void segmentBy(ConsistentHash ch) {
+      if (segmentedEntries.consistentHash == null && ch.getNumSegments() == segmentedEntries.numSegments()) {
+         segmentedEntries.segmentBy(ch);
+      }
+   }
+
+   /**
+    * @return true if this container maps every key to the same segment as the given consistent hash
+    */
+   public boolean isSegmentedBy(ConsistentHash ch) {
+      return segmentedEntries.consistentHash != null && ch.getNumSegments() == segmentedEntries.numSegments();
+   }
+
+   public int getNumSegments() {
+      return segmentedEntries.numSegments();
+   }
+
+   /**
+    * Iterates over the entries of the given segments only.
+    */
+   public Iterator<InternalCacheEntry> iterator(Set<Integer> segments) {
+      return new EntryIterator(segmentedEntries.valueIterator(segments.iterator()));
+   }
+
+   /**
+    * @return the number of entries in the given segments
+    */
+   public int size(Set<Integer> segments) {
+      int size = 0;
+      for (int segment : segments) {
+         size += segmentedEntries.segment(segment).size();
+      }
+      return size;
+   }
+
+   /**
+    * A {@link ConcurrentMap} delegating each key to the map of its segment.
+    */
+   protected static final class SegmentedMap extends AbstractMap<Object, InternalCacheEntry>
+         implements ConcurrentMap<Object, InternalCacheEntry> {
+
+      private final ConcurrentMap<Object, InternalCacheEntry>[] segments;
+      private final Hash hashFunction;
+      private final int segmentSize;
+      private volatile ConsistentHash consistentHash;
+
+      @SuppressWarnings("unchecked")
+      SegmentedMap(int concurrencyLevel, Hash hashFunction, int numSegments, Equivalence keyEquivalence) {
+         this.hashFunction = hashFunction;
+         this.segmentSize = (int) Math.ceil((double) Integer.MAX_VALUE / numSegments);
+         this.segments = new ConcurrentMap[numSegments];
+         // the writes are spread over all the segments, so each map needs a fraction of the concurrency level
+         int segmentConcurrencyLevel = Math.max(1, concurrencyLevel / numSegments);
+         for (int i = 0; i < numSegments; i++) {
+            segments[i] = new InternalCacheEntryMap(16, segmentConcurrencyLevel, keyEquivalence);
+         }
+      }
+
+      int numSegments() {
+         return segments.length;
+      }
+
+      ConcurrentMap<Object, InternalCacheEntry> segment(int segment) {
+         return segments[segment];
+      }
+
+      private ConcurrentMap<Object, InternalCacheEntry> segmentFor(Object key) {
+         return segments[segmentOf(key)];
+      }
+
+      private int segmentOf(Object key) {
+         ConsistentHash ch = consistentHash;
+         if (ch != null) return ch.getSegment(key);
+         // same computation as DefaultConsistentHash.getSegment()
+         return (hashFunction.hash(key) & Integer.MAX_VALUE) / segmentSize;
+      }
+
+      synchronized void segmentBy(ConsistentHash ch) {
+         if (consistentHash != null) return;
+         consistentHash = ch;
+         // e.g. with grouping, the preloaded entries might now belong to another segment
+         for (int i = 0; i < segments.length; i++) {
+            for (InternalCacheEntry ice : segments[i].values()) {
+               int segment = ch.getSegment(ice.getKey());
+               // the removed entry still links to the rest of its chain, so the new segment gets a copy,
+               // unless a write already went there
+               if (segment != i && segments[i].remove(ice.getKey(), ice)) {
+                  segments[segment].putIfAbsent(ice.getKey(), ice.clone());
+               }
+            }
+         }
+      }
+
+      @Override
+      public InternalCacheEntry get(Object key) {
+         return segmentFor(key).get(key);
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+         return segmentFor(key).containsKey(key);
+      }
+
+      @Override
+      public InternalCacheEntry put(Object key, InternalCacheEntry value) {
+         return segmentFor(key).put(key, value);
+      }
+
+      @Override
+      public InternalCacheEntry remove(Object key) {
+         return segmentFor(key).remove(key);
+      }
+
+      @Override
+      public InternalCacheEntry putIfAbsent(Object key, InternalCacheEntry value) {
+         return segmentFor(key).putIfAbsent(key, value);
+      }
+
+      @Override
+      public boolean remove(Object key, Object value) {
+         return segmentFor(key).remove(key, value);
+      }
+
+      @Override
+      public boolean replace(Object key, InternalCacheEntry oldValue, InternalCacheEntry newValue) {
+         return segmentFor(key).replace(key, oldValue, newValue);
+      }
+
+      @Override
+      public InternalCacheEntry replace(Object key, InternalCacheEntry value) {
+         return segmentFor(key).replace(key, value);
+      }
+
+      @Override
+      public int size() {
+         int size = 0;
+         for (Map<Object, InternalCacheEntry> segment : segments) {
+            size += segment.size();
+         }
+         return size;
+      }
+
+      @Override
+      public boolean isEmpty() {
+         for (Map<Object, InternalCacheEntry> segment : segments) {
+            if (!segment.isEmpty()) return false;
+         }
+         return true;
+      }
+
+      @Override
+      public void clear() {
+         for (Map<Object, InternalCacheEntry> segment : segments) {
+            segment.clear();
+         }
+      }
+
+      @Override
+      public Collection<InternalCacheEntry> values() {
+         return new ValuesCollection();
+      }
+
+      @Override
+      public Set<Entry<Object, InternalCacheEntry>> entrySet() {
+         return new AbstractSet<Entry<Object, InternalCacheEntry>>() {
+            @Override
+            public Iterator<Entry<Object, InternalCacheEntry>> iterator() {
+               return new SegmentsIterator<Entry<Object, InternalCacheEntry>>(allSegments()) {
+                  @Override
+                  Iterator<Entry<Object, InternalCacheEntry>> iterator(Map<Object, InternalCacheEntry> segment) {
+                     return segment.entrySet().iterator();
+                  }
+               };
+            }
+
+            @Override
+            public int size() {
+               return SegmentedMap.this.size();
+            }
+         };
+      }
+
+      Iterator<InternalCacheEntry> valueIterator(Iterator<Integer> segmentIds) {
+         return new SegmentsIterator<InternalCacheEntry>(segmentIds) {
+            @Override
+            Iterator<InternalCacheEntry> iterator(Map<Object, InternalCacheEntry> segment) {
+               return segment.values().iterator();
+            }
+         };
+      }
+
+      private Iterator<Integer> allSegments() {
+         Integer[] ids = new Integer[segments.length];
+         for (int i = 0; i < ids.length; i++) ids[i] = i;
+         return Arrays.asList(ids).iterator();
+      }
+
+      private final class ValuesCollection extends AbstractCollection<InternalCacheEntry> {
+         @Override
+         public Iterator<InternalCacheEntry> iterator() {
+            return valueIterator(allSegments());
+         }
+
+         @Override
+         public int size() {
+            return SegmentedMap.this.size();
+         }
+      }
+
+      /**
+       * Chains the iterators of the maps of the given segments.
+       */
+      private abstract class SegmentsIterator<E> implements Iterator<E> {
+         private final Iterator<Integer> segmentIds;
+         private Iterator<E> current;
+         private Iterator<E> lastReturnedFrom;
+
+         SegmentsIterator(Iterator<Integer> segmentIds) {
+            this.segmentIds = segmentIds;
+         }
+
+         abstract Iterator<E> iterator(Map<Object, InternalCacheEntry> segment);
+
+         @Override
+         public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+               if (!segmentIds.hasNext()) return false;
+               current = iterator(segments[segmentIds.next()]);
+            }
+            return true;
+         }
+
+         @Override
+         public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            lastReturnedFrom = current;
+            return current.next();
+         }
+
+         @Override
+         public void remove() {
+            if (lastReturnedFrom == null) throw new IllegalStateException();
+            lastReturnedFrom.remove();
+            lastReturnedFrom = null;
+         }
+      }
+   }
+}
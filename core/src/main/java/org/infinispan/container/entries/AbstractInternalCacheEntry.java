@@ -35,6 +35,10 @@ public abstract class AbstractInternalCacheEntry implements InternalCacheEntry {
 
    protected Object key;
 
+   // the links of the InternalCacheEntryMap chains, so that the entries are their own map nodes
+   int hash;
+   volatile AbstractInternalCacheEntry next;
+
    protected AbstractInternalCacheEntry() {
    }
 
@@ -147,7 +151,9 @@ public String toString() {
    @Override
    public AbstractInternalCacheEntry clone() {
       try {
-         return (AbstractInternalCacheEntry) super.clone();
+         AbstractInternalCacheEntry clone = (AbstractInternalCacheEntry) super.clone();
+         clone.next = null;
+         return clone;
       } catch (CloneNotSupportedException e) {
          throw new RuntimeException("Should never happen!", e);
       }
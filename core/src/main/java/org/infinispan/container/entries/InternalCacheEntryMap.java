@@ -0,0 +1,486 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import org.infinispan.util.Equivalence;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ConcurrentMap} of {@link InternalCacheEntry} instances in which the entries themselves are the nodes of
+ * the hash table, so that storing an entry does not allocate a separate map node for it.
+ * <p>
+ * The map is split in segments, each of them guarded by a lock for writes, while reads do not lock. Entries are
+ * linked through {@link AbstractInternalCacheEntry#next}, which means that an entry can only be stored under its own
+ * key, and in a single map at a time. An entry that still links to other entries, because it is stored in another map
+ * or because it was removed from one, is copied when stored. The last entry of a chain has no link though, so
+ * callers moving an entry between maps must remove it first and store a {@link InternalCacheEntry#clone() copy}.
+ * <p>
+ * Resizing a segment re-links its entries, which a concurrent read could observe as a missing key, so every segment
+ * keeps a sequence number that is odd while it is being resized. A read that does not find its key re-checks the
+ * sequence number and retries under the segment lock if a resize happened in the meantime.
+ * <p>
+ * Iterators are weakly consistent, and they never return the same entry twice.
+ *
+ * @since 5.3
+ */
+public final class InternalCacheEntryMap extends AbstractMap<Object, InternalCacheEntry>
+      implements ConcurrentMap<Object, InternalCacheEntry> {
+
+   private static final int MAXIMUM_CAPACITY = 1 << 30;
+   private static final int MAX_SEGMENTS = 1 << 16;
+   private static final float LOAD_FACTOR = 0.75f;
+
+   private final Equivalence<Object> keyEquivalence;
+   private final Segment[] segments;
+   private final int segmentShift;
+   private final int segmentMask;
+
+   @SuppressWarnings("unchecked")
+   public InternalCacheEntryMap(int initialCapacity, int concurrencyLevel, Equivalence keyEquivalence) {
+      this.keyEquivalence = keyEquivalence;
+      int shift = 0;
+      int numSegments = 1;
+      while (numSegments < Math.min(Math.max(concurrencyLevel, 1), MAX_SEGMENTS)) {
+         ++shift;
+         numSegments <<= 1;
+      }
+      segmentShift = 32 - shift;
+      segmentMask = numSegments - 1;
+      segments = new Segment[numSegments];
+
+      int perSegment = Math.min(initialCapacity, MAXIMUM_CAPACITY) / numSegments;
+      int capacity = 1;
+      while (capacity < perSegment) capacity <<= 1;
+      for (int i = 0; i < numSegments; i++) {
+         segments[i] = new Segment(capacity);
+      }
+   }
+
+   private int hash(Object key) {
+      // spread the bits the same way ConcurrentHashMap does, the equivalence hash codes can be poor
+      int h = keyEquivalence.hashCode(key);
+      h += (h << 15) ^ 0xffffcd7d;
+      h ^= (h >>> 10);
+      h += (h << 3);
+      h ^= (h >>> 6);
+      h += (h << 2) + (h << 14);
+      return h ^ (h >>> 16);
+   }
+
+   private Segment segmentFor(int hash) {
+      return segments[(hash >>> segmentShift) & segmentMask];
+   }
+
+   private static AbstractInternalCacheEntry toNode(Object key, InternalCacheEntry entry) {
+      if (entry == null) throw new NullPointerException("Null entry for key " + key);
+      return (AbstractInternalCacheEntry) entry;
+   }
+
+   /**
+    * Returns the node to link in a chain: the entry itself, or a copy of it if it still links to other entries.
+    */
+   private static AbstractInternalCacheEntry unlinked(AbstractInternalCacheEntry node) {
+      if (node.next == null) return node;
+      AbstractInternalCacheEntry copy = node.clone();
+      assert copy.next == null : "The copy of " + node + " is still linked";
+      return copy;
+   }
+
+   private void checkKey(Object key, AbstractInternalCacheEntry node) {
+      if (key != node.key && !keyEquivalence.equals(key, node.key))
+         throw new IllegalArgumentException("Entry " + node + " cannot be stored under key " + key);
+   }
+
+   @Override
+   public InternalCacheEntry get(Object key) {
+      int hash = hash(key);
+      return segmentFor(hash).get(key, hash);
+   }
+
+   @Override
+   public boolean containsKey(Object key) {
+      return get(key) != null;
+   }
+
+   @Override
+   public InternalCacheEntry put(Object key, InternalCacheEntry value) {
+      AbstractInternalCacheEntry node = toNode(key, value);
+      checkKey(key, node);
+      int hash = hash(key);
+      return segmentFor(hash).put(node, hash, false);
+   }
+
+   @Override
+   public InternalCacheEntry putIfAbsent(Object key, InternalCacheEntry value) {
+      AbstractInternalCacheEntry node = toNode(key, value);
+      checkKey(key, node);
+      int hash = hash(key);
+      return segmentFor(hash).put(node, hash, true);
+   }
+
+   @Override
+   public InternalCacheEntry remove(Object key) {
+      int hash = hash(key);
+      return segmentFor(hash).remove(key, hash, null);
+   }
+
+   @Override
+   public boolean remove(Object key, Object value) {
+      if (value == null) return false;
+      int hash = hash(key);
+      return segmentFor(hash).remove(key, hash, value) != null;
+   }
+
+   @Override
+   public boolean replace(Object key, InternalCacheEntry oldValue, InternalCacheEntry newValue) {
+      if (oldValue == null) throw new NullPointerException();
+      AbstractInternalCacheEntry node = toNode(key, newValue);
+      checkKey(key, node);
+      int hash = hash(key);
+      return segmentFor(hash).replace(node, hash, oldValue) != null;
+   }
+
+   @Override
+   public InternalCacheEntry replace(Object key, InternalCacheEntry value) {
+      AbstractInternalCacheEntry node = toNode(key, value);
+      checkKey(key, node);
+      int hash = hash(key);
+      return segmentFor(hash).replace(node, hash, null);
+   }
+
+   @Override
+   public int size() {
+      long size = 0;
+      for (Segment segment : segments) size += segment.count;
+      return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+   }
+
+   @Override
+   public boolean isEmpty() {
+      for (Segment segment : segments) {
+         if (segment.count != 0) return false;
+      }
+      return true;
+   }
+
+   @Override
+   public void clear() {
+      for (Segment segment : segments) segment.clear();
+   }
+
+   @Override
+   public Collection<InternalCacheEntry> values() {
+      return new AbstractCollection<InternalCacheEntry>() {
+         @Override
+         public Iterator<InternalCacheEntry> iterator() {
+            return new EntryIterator();
+         }
+
+         @Override
+         public int size() {
+            return InternalCacheEntryMap.this.size();
+         }
+      };
+   }
+
+   @Override
+   public Set<Entry<Object, InternalCacheEntry>> entrySet() {
+      return new AbstractSet<Entry<Object, InternalCacheEntry>>() {
+         @Override
+         public Iterator<Entry<Object, InternalCacheEntry>> iterator() {
+            final EntryIterator it = new EntryIterator();
+            return new Iterator<Entry<Object, InternalCacheEntry>>() {
+               @Override
+               public boolean hasNext() {
+                  return it.hasNext();
+               }
+
+               @Override
+               public Entry<Object, InternalCacheEntry> next() {
+                  InternalCacheEntry entry = it.next();
+                  return new SimpleImmutableEntry<Object, InternalCacheEntry>(entry.getKey(), entry);
+               }
+
+               @Override
+               public void remove() {
+                  it.remove();
+               }
+            };
+         }
+
+         @Override
+         public int size() {
+            return InternalCacheEntryMap.this.size();
+         }
+      };
+   }
+
+   private final class Segment extends ReentrantLock {
+
+      private volatile AtomicReferenceArray<AbstractInternalCacheEntry> table;
+      volatile int count;
+      /**
+       * Odd while the table is being resized.
+       */
+      private volatile int sequence;
+      private int threshold;
+
+      Segment(int capacity) {
+         setTable(new AtomicReferenceArray<AbstractInternalCacheEntry>(capacity));
+      }
+
+      private void setTable(AtomicReferenceArray<AbstractInternalCacheEntry> table) {
+         threshold = (int) (table.length() * LOAD_FACTOR);
+         this.table = table;
+      }
+
+      private boolean matches(AbstractInternalCacheEntry e, Object key, int hash) {
+         return e.hash == hash && (e.key == key || keyEquivalence.equals(e.key, key));
+      }
+
+      AbstractInternalCacheEntry get(Object key, int hash) {
+         int seq = sequence;
+         if ((seq & 1) == 0) {
+            AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+            for (AbstractInternalCacheEntry e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+               if (matches(e, key, hash)) return e;
+            }
+            if (sequence == seq) return null;
+         }
+         // a resize re-linked the entries while we were reading, so the key could have been missed
+         lock();
+         try {
+            AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+            for (AbstractInternalCacheEntry e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+               if (matches(e, key, hash)) return e;
+            }
+            return null;
+         } finally {
+            unlock();
+         }
+      }
+
+      AbstractInternalCacheEntry put(AbstractInternalCacheEntry node, int hash, boolean onlyIfAbsent) {
+         lock();
+         try {
+            int c = count;
+            if (c >= threshold) resize();
+            AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+            int index = hash & (tab.length() - 1);
+            AbstractInternalCacheEntry first = tab.get(index);
+            AbstractInternalCacheEntry pred = null;
+            for (AbstractInternalCacheEntry e = first; e != null; pred = e, e = e.next) {
+               if (matches(e, node.key, hash)) {
+                  if (!onlyIfAbsent) link(tab, index, pred, e, node, hash);
+                  return e;
+               }
+            }
+            node = unlinked(node);
+            node.hash = hash;
+            node.next = first;
+            tab.set(index, node);
+            count = c + 1;
+            return null;
+         } finally {
+            unlock();
+         }
+      }
+
+      AbstractInternalCacheEntry replace(AbstractInternalCacheEntry node, int hash, Object expected) {
+         lock();
+         try {
+            AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+            int index = hash & (tab.length() - 1);
+            AbstractInternalCacheEntry pred = null;
+            for (AbstractInternalCacheEntry e = tab.get(index); e != null; pred = e, e = e.next) {
+               if (matches(e, node.key, hash)) {
+                  if (expected != null && e != expected && !e.equals(expected)) return null;
+                  link(tab, index, pred, e, node, hash);
+                  return e;
+               }
+            }
+            return null;
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * Puts the node in place of the existing entry. The existing entry keeps its link, so that readers positioned
+       * on it can continue to the rest of the chain.
+       */
+      private void link(AtomicReferenceArray<AbstractInternalCacheEntry> tab, int index,
+                        AbstractInternalCacheEntry pred, AbstractInternalCacheEntry existing,
+                        AbstractInternalCacheEntry node, int hash) {
+         if (existing == node) return;
+         node = unlinked(node);
+         node.hash = hash;
+         node.next = existing.next;
+         if (pred == null) {
+            tab.set(index, node);
+         } else {
+            pred.next = node;
+         }
+      }
+
+      AbstractInternalCacheEntry remove(Object key, int hash, Object expected) {
+         lock();
+         try {
+            AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+            int index = hash & (tab.length() - 1);
+            AbstractInternalCacheEntry pred = null;
+            for (AbstractInternalCacheEntry e = tab.get(index); e != null; pred = e, e = e.next) {
+               if (matches(e, key, hash)) {
+                  if (expected != null && e != expected && !e.equals(expected)) return null;
+                  // the removed entry keeps its link for the readers positioned on it
+                  if (pred == null) {
+                     tab.set(index, e.next);
+                  } else {
+                     pred.next = e.next;
+                  }
+                  count = count - 1;
+                  return e;
+               }
+            }
+            return null;
+         } finally {
+            unlock();
+         }
+      }
+
+      void clear() {
+         lock();
+         try {
+            if (count != 0) {
+               setTable(new AtomicReferenceArray<AbstractInternalCacheEntry>(table.length()));
+               count = 0;
+            }
+         } finally {
+            unlock();
+         }
+      }
+
+      /**
+       * Doubles the table. Must be called with the lock held.
+       */
+      private void resize() {
+         AtomicReferenceArray<AbstractInternalCacheEntry> oldTable = table;
+         int oldCapacity = oldTable.length();
+         if (oldCapacity >= MAXIMUM_CAPACITY) return;
+
+         AtomicReferenceArray<AbstractInternalCacheEntry> newTable =
+               new AtomicReferenceArray<AbstractInternalCacheEntry>(oldCapacity << 1);
+         int mask = newTable.length() - 1;
+         sequence++;
+         try {
+            for (int i = 0; i < oldCapacity; i++) {
+               AbstractInternalCacheEntry e = oldTable.get(i);
+               while (e != null) {
+                  AbstractInternalCacheEntry next = e.next;
+                  int index = e.hash & mask;
+                  e.next = newTable.get(index);
+                  newTable.set(index, e);
+                  e = next;
+               }
+            }
+            setTable(newTable);
+         } finally {
+            sequence++;
+         }
+      }
+
+      /**
+       * Copies the entries of this segment, without locking unless a resize happens concurrently.
+       */
+      List<AbstractInternalCacheEntry> snapshot() {
+         int seq = sequence;
+         if ((seq & 1) == 0) {
+            List<AbstractInternalCacheEntry> entries = collect();
+            if (sequence == seq) return entries;
+         }
+         lock();
+         try {
+            return collect();
+         } finally {
+            unlock();
+         }
+      }
+
+      private List<AbstractInternalCacheEntry> collect() {
+         if (count == 0) return Collections.emptyList();
+         AtomicReferenceArray<AbstractInternalCacheEntry> tab = table;
+         List<AbstractInternalCacheEntry> entries = new ArrayList<AbstractInternalCacheEntry>(count);
+         for (int i = 0; i < tab.length(); i++) {
+            for (AbstractInternalCacheEntry e = tab.get(i); e != null; e = e.next) {
+               entries.add(e);
+            }
+         }
+         return entries;
+      }
+   }
+
+   /**
+    * Iterates over a snapshot of one segment at a time.
+    */
+   private final class EntryIterator implements Iterator<InternalCacheEntry> {
+      private int nextSegment;
+      private Iterator<AbstractInternalCacheEntry> current = Collections.<AbstractInternalCacheEntry>emptyList().iterator();
+      private InternalCacheEntry lastReturned;
+
+      @Override
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextSegment >= segments.length) return false;
+            current = segments[nextSegment++].snapshot().iterator();
+         }
+         return true;
+      }
+
+      @Override
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         lastReturned = current.next();
+         return lastReturned;
+      }
+
+      @Override
+      public void remove() {
+         if (lastReturned == null) throw new IllegalStateException();
+         InternalCacheEntryMap.this.remove(lastReturned.getKey(), lastReturned);
+         lastReturned = null;
+      }
+   }
+}
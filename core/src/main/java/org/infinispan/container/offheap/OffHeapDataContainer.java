@@ -0,0 +1,691 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.commons.hash.Hash;
+import org.infinispan.commons.hash.MurmurHash3;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.entries.ExpiryHelper;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.util.Immutables;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.infinispan.factories.KnownComponentNames.CACHE_MARSHALLER;
+
+/**
+ * A {@link DataContainer} that keeps keys, values and metadata in native memory, outside of the
+ * Java heap.
+ * <p/>
+ * Entries are stored in a native hash table whose buckets hold the address of the first entry in
+ * the bucket. Each entry is a single native memory block with the following layout:
+ * <pre>
+ *    [next entry address (8)] [hash (4)] [key length (4)] [value length (4)] [metadata length (4)]
+ *    [created (8)] [last used (8)] [lifespan (8)] [max idle (8)] [key] [value] [metadata]
+ * </pre>
+ * Keys, values and metadata are serialized with the cache marshaller, and key equality is
+ * therefore based on the marshalled form of the key. Metadata is only serialized when it carries
+ * more than lifespan and max idle information (i.e. a version, or a custom metadata type), since
+ * those are kept in the entry header so that expiration can be evaluated without deserializing
+ * anything.
+ * <p/>
+ * {@link InternalCacheEntry} instances are only created on the heap when a caller reads an entry,
+ * so each instance returned is a copy: modifying it has no effect on the container until it is
+ * put back. Access timestamps are updated in native memory by {@link #get(Object)}.
+ * <p/>
+ * Concurrency is handled with a fixed number of read/write lock stripes, selected by the hash of
+ * the marshalled key. Resizing the bucket table acquires all stripes.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+public class OffHeapDataContainer implements DataContainer {
+
+   private static final Log log = LogFactory.getLog(OffHeapDataContainer.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private static final int NEXT_OFFSET = 0;
+   private static final int HASH_OFFSET = 8;
+   private static final int KEY_LENGTH_OFFSET = 12;
+   private static final int VALUE_LENGTH_OFFSET = 16;
+   private static final int METADATA_LENGTH_OFFSET = 20;
+   private static final int CREATED_OFFSET = 24;
+   private static final int LAST_USED_OFFSET = 32;
+   private static final int LIFESPAN_OFFSET = 40;
+   private static final int MAX_IDLE_OFFSET = 48;
+   private static final int HEADER_SIZE = 56;
+
+   private static final int MAXIMUM_CAPACITY = 1 << 30;
+   private static final float LOAD_FACTOR = 0.75f;
+
+   private final OffHeapMemory memory = OffHeapMemory.getInstance();
+   private final Hash hashFunction = new MurmurHash3();
+   private final ReentrantReadWriteLock[] locks;
+   private final int lockMask;
+   private final int initialCapacity;
+   private final AtomicInteger count = new AtomicInteger();
+
+   // Only modified while holding all the lock stripes
+   private volatile long table;
+   private volatile int capacity;
+
+   private StreamingMarshaller marshaller;
+   private InternalEntryFactory entryFactory;
+   private TimeService timeService;
+
+   public OffHeapDataContainer(int concurrencyLevel) {
+      this(concurrencyLevel, 1024);
+   }
+
+   public OffHeapDataContainer(int concurrencyLevel, int initialCapacity) {
+      int stripes = 1;
+      while (stripes < concurrencyLevel) stripes <<= 1;
+      int cap = 1;
+      while (cap < initialCapacity || cap < stripes) cap <<= 1;
+      this.locks = new ReentrantReadWriteLock[stripes];
+      for (int i = 0; i < stripes; i++) locks[i] = new ReentrantReadWriteLock();
+      this.lockMask = stripes - 1;
+      this.initialCapacity = Math.min(cap, MAXIMUM_CAPACITY);
+      allocateTable(this.initialCapacity);
+   }
+
+   @Inject
+   public void initialize(@ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller,
+         InternalEntryFactory entryFactory, TimeService timeService) {
+      this.marshaller = marshaller;
+      this.entryFactory = entryFactory;
+      this.timeService = timeService;
+   }
+
+   @Start
+   public void start() {
+      acquireAll();
+      try {
+         if (table == 0) allocateTable(initialCapacity);
+      } finally {
+         releaseAll();
+      }
+   }
+
+   /**
+    * Releases the native bucket table. Runs after {@link #clear()} has released all the entries.
+    */
+   @Stop(priority = 1000)
+   public void stop() {
+      acquireAll();
+      try {
+         freeEntries();
+         if (table != 0) {
+            memory.free(table);
+            table = 0;
+            capacity = 0;
+         }
+      } finally {
+         releaseAll();
+      }
+   }
+
+   @Override
+   public InternalCacheEntry peek(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(keyBytes);
+      Lock lock = lockFor(hash).readLock();
+      lock.lock();
+      try {
+         long address = find(hash, keyBytes);
+         return address == 0 ? null : toEntry(address, k);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   @Override
+   public InternalCacheEntry get(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(keyBytes);
+      Lock lock = lockFor(hash).readLock();
+      lock.lock();
+      try {
+         long address = find(hash, keyBytes);
+         if (address == 0) return null;
+         if (canExpire(address)) {
+            long now = timeService.wallClockTime();
+            if (isExpired(address, now)) {
+               address = 0;
+            } else {
+               memory.putLongVolatile(address + LAST_USED_OFFSET, now);
+            }
+         }
+         if (address != 0) return toEntry(address, k);
+      } finally {
+         lock.unlock();
+      }
+      // expired, remove it
+      removeInternal(k, keyBytes, hash);
+      return null;
+   }
+
+   @Override
+   public void put(Object k, Object v, Metadata metadata) {
+      byte[] keyBytes = marshall(k);
+      byte[] valueBytes = marshall(v);
+      byte[] metadataBytes = isStoreMetadata(metadata) ? marshall(metadata) : null;
+      int hash = hash(keyBytes);
+      long now = timeService.wallClockTime();
+      long lifespan = metadata == null ? -1 : metadata.lifespan();
+      long maxIdle = metadata == null ? -1 : metadata.maxIdle();
+
+      long address = writeEntry(hash, keyBytes, valueBytes, metadataBytes, now, lifespan, maxIdle);
+      boolean added;
+      Lock lock = lockFor(hash).writeLock();
+      lock.lock();
+      try {
+         added = replaceOrAdd(hash, keyBytes, address);
+      } finally {
+         lock.unlock();
+      }
+      if (added && count.incrementAndGet() > capacity * LOAD_FACTOR) resize();
+   }
+
+   @Override
+   public boolean containsKey(Object k) {
+      byte[] keyBytes = marshall(k);
+      int hash = hash(keyBytes);
+      Lock lock = lockFor(hash).readLock();
+      lock.lock();
+      try {
+         long address = find(hash, keyBytes);
+         if (address == 0) return false;
+         if (!canExpire(address) || !isExpired(address, timeService.wallClockTime())) return true;
+      } finally {
+         lock.unlock();
+      }
+      removeInternal(k, keyBytes, hash);
+      return false;
+   }
+
+   @Override
+   public InternalCacheEntry remove(Object k) {
+      byte[] keyBytes = marshall(k);
+      InternalCacheEntry e = removeInternal(k, keyBytes, hash(keyBytes));
+      return e == null || (e.canExpire() && e.isExpired(timeService.wallClockTime())) ? null : e;
+   }
+
+   @Override
+   public int size() {
+      return count.get();
+   }
+
+   @Override
+   public void clear() {
+      acquireAll();
+      try {
+         freeEntries();
+      } finally {
+         releaseAll();
+      }
+   }
+
+   @Override
+   public Set<Object> keySet() {
+      return new KeySet();
+   }
+
+   @Override
+   public Collection<Object> values() {
+      return new Values();
+   }
+
+   @Override
+   public Set<InternalCacheEntry> entrySet() {
+      return new EntrySet();
+   }
+
+   @Override
+   public void purgeExpired() {
+      long now = timeService.wallClockTime();
+      int purged = 0;
+      for (int stripe = 0; stripe < locks.length; stripe++) {
+         Lock lock = locks[stripe].writeLock();
+         lock.lock();
+         try {
+            // buckets of a given stripe are those whose index shares the stripe's low bits
+            for (int bucket = stripe; bucket < capacity; bucket += locks.length) {
+               long bucketAddress = table + ((long) bucket << 3);
+               long prev = 0;
+               long address = memory.getLong(bucketAddress);
+               while (address != 0) {
+                  long next = memory.getLong(address + NEXT_OFFSET);
+                  if (canExpire(address) && isExpired(address, now)) {
+                     if (prev == 0) memory.putLong(bucketAddress, next);
+                     else memory.putLong(prev + NEXT_OFFSET, next);
+                     memory.free(address);
+                     count.decrementAndGet();
+                     purged++;
+                  } else {
+                     prev = address;
+                  }
+                  address = next;
+               }
+            }
+         } finally {
+            lock.unlock();
+         }
+      }
+      if (trace) log.tracef("Purged %d expired entries from off-heap container", purged);
+   }
+
+   @Override
+   public Iterator<InternalCacheEntry> iterator() {
+      return new EntryIterator();
+   }
+
+   private InternalCacheEntry removeInternal(Object k, byte[] keyBytes, int hash) {
+      Lock lock = lockFor(hash).writeLock();
+      lock.lock();
+      try {
+         long bucketAddress = bucketAddress(hash);
+         long prev = 0;
+         long address = memory.getLong(bucketAddress);
+         while (address != 0) {
+            long next = memory.getLong(address + NEXT_OFFSET);
+            if (matches(address, hash, keyBytes)) {
+               InternalCacheEntry removed = toEntry(address, k);
+               if (prev == 0) memory.putLong(bucketAddress, next);
+               else memory.putLong(prev + NEXT_OFFSET, next);
+               memory.free(address);
+               count.decrementAndGet();
+               return removed;
+            }
+            prev = address;
+            address = next;
+         }
+         return null;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Links the new entry in place of an existing one with the same key, freeing the old block,
+    * or appends it to the bucket. Must be called holding the stripe's write lock.
+    *
+    * @return true if the entry was added, false if it replaced an existing entry
+    */
+   private boolean replaceOrAdd(int hash, byte[] keyBytes, long newAddress) {
+      long bucketAddress = bucketAddress(hash);
+      long prev = 0;
+      long address = memory.getLong(bucketAddress);
+      while (address != 0) {
+         long next = memory.getLong(address + NEXT_OFFSET);
+         if (matches(address, hash, keyBytes)) {
+            memory.putLong(newAddress + NEXT_OFFSET, next);
+            if (prev == 0) memory.putLong(bucketAddress, newAddress);
+            else memory.putLong(prev + NEXT_OFFSET, newAddress);
+            memory.free(address);
+            return false;
+         }
+         prev = address;
+         address = next;
+      }
+      memory.putLong(newAddress + NEXT_OFFSET, memory.getLong(bucketAddress));
+      memory.putLong(bucketAddress, newAddress);
+      return true;
+   }
+
+   private long writeEntry(int hash, byte[] keyBytes, byte[] valueBytes, byte[] metadataBytes,
+                           long now, long lifespan, long maxIdle) {
+      int metadataLength = metadataBytes == null ? 0 : metadataBytes.length;
+      long address = memory.allocate(HEADER_SIZE + keyBytes.length + valueBytes.length + metadataLength);
+      memory.putLong(address + NEXT_OFFSET, 0);
+      memory.putInt(address + HASH_OFFSET, hash);
+      memory.putInt(address + KEY_LENGTH_OFFSET, keyBytes.length);
+      memory.putInt(address + VALUE_LENGTH_OFFSET, valueBytes.length);
+      memory.putInt(address + METADATA_LENGTH_OFFSET, metadataLength);
+      memory.putLong(address + CREATED_OFFSET, now);
+      memory.putLong(address + LAST_USED_OFFSET, now);
+      memory.putLong(address + LIFESPAN_OFFSET, lifespan);
+      memory.putLong(address + MAX_IDLE_OFFSET, maxIdle);
+      long offset = address + HEADER_SIZE;
+      memory.putBytes(offset, keyBytes);
+      offset += keyBytes.length;
+      memory.putBytes(offset, valueBytes);
+      if (metadataBytes != null) memory.putBytes(offset + valueBytes.length, metadataBytes);
+      return address;
+   }
+
+   private long find(int hash, byte[] keyBytes) {
+      long address = memory.getLong(bucketAddress(hash));
+      while (address != 0) {
+         if (matches(address, hash, keyBytes)) return address;
+         address = memory.getLong(address + NEXT_OFFSET);
+      }
+      return 0;
+   }
+
+   private boolean matches(long address, int hash, byte[] keyBytes) {
+      return memory.getInt(address + HASH_OFFSET) == hash
+            && memory.getInt(address + KEY_LENGTH_OFFSET) == keyBytes.length
+            && memory.equals(address + HEADER_SIZE, keyBytes);
+   }
+
+   private boolean canExpire(long address) {
+      return memory.getLong(address + LIFESPAN_OFFSET) > -1 || memory.getLong(address + MAX_IDLE_OFFSET) > -1;
+   }
+
+   private boolean isExpired(long address, long now) {
+      return ExpiryHelper.isExpiredTransientMortal(
+            memory.getLong(address + MAX_IDLE_OFFSET), memory.getLongVolatile(address + LAST_USED_OFFSET),
+            memory.getLong(address + LIFESPAN_OFFSET), memory.getLong(address + CREATED_OFFSET), now);
+   }
+
+   /**
+    * Materializes the entry stored at the given address on the heap. If the caller already has
+    * the key instance, it is reused instead of unmarshalling the stored key.
+    */
+   private InternalCacheEntry toEntry(long address, Object key) {
+      int keyLength = memory.getInt(address + KEY_LENGTH_OFFSET);
+      int valueLength = memory.getInt(address + VALUE_LENGTH_OFFSET);
+      int metadataLength = memory.getInt(address + METADATA_LENGTH_OFFSET);
+      long offset = address + HEADER_SIZE;
+      if (key == null) key = unmarshall(memory.getBytes(offset, keyLength));
+      offset += keyLength;
+      Object value = unmarshall(memory.getBytes(offset, valueLength));
+      Metadata metadata = metadataLength == 0 ? null :
+            (Metadata) unmarshall(memory.getBytes(offset + valueLength, metadataLength));
+      return entryFactory.create(key, value, metadata,
+            memory.getLong(address + CREATED_OFFSET), memory.getLong(address + LIFESPAN_OFFSET),
+            memory.getLongVolatile(address + LAST_USED_OFFSET), memory.getLong(address + MAX_IDLE_OFFSET));
+   }
+
+   private void resize() {
+      acquireAll();
+      try {
+         int oldCapacity = capacity;
+         if (count.get() <= oldCapacity * LOAD_FACTOR || oldCapacity >= MAXIMUM_CAPACITY) return;
+         int newCapacity = oldCapacity << 1;
+         long oldTable = table;
+         long newTable = memory.allocateZeroed((long) newCapacity << 3);
+         for (int bucket = 0; bucket < oldCapacity; bucket++) {
+            long address = memory.getLong(oldTable + ((long) bucket << 3));
+            while (address != 0) {
+               long next = memory.getLong(address + NEXT_OFFSET);
+               int newBucket = memory.getInt(address + HASH_OFFSET) & (newCapacity - 1);
+               long newBucketAddress = newTable + ((long) newBucket << 3);
+               memory.putLong(address + NEXT_OFFSET, memory.getLong(newBucketAddress));
+               memory.putLong(newBucketAddress, address);
+               address = next;
+            }
+         }
+         table = newTable;
+         capacity = newCapacity;
+         memory.free(oldTable);
+         if (trace) log.tracef("Resized off-heap container table from %d to %d buckets", oldCapacity, newCapacity);
+      } finally {
+         releaseAll();
+      }
+   }
+
+   private void allocateTable(int tableCapacity) {
+      table = memory.allocateZeroed((long) tableCapacity << 3);
+      capacity = tableCapacity;
+   }
+
+   /**
+    * Frees every entry block, leaving the bucket table empty. Must be called holding all stripes.
+    */
+   private void freeEntries() {
+      if (table == 0) return;
+      for (int bucket = 0; bucket < capacity; bucket++) {
+         long bucketAddress = table + ((long) bucket << 3);
+         long address = memory.getLong(bucketAddress);
+         while (address != 0) {
+            long next = memory.getLong(address + NEXT_OFFSET);
+            memory.free(address);
+            address = next;
+         }
+         memory.putLong(bucketAddress, 0);
+      }
+      count.set(0);
+   }
+
+   /**
+    * Copies the entries of a bucket onto the heap while holding the bucket's read lock.
+    */
+   private List<InternalCacheEntry> readBucket(int bucket) {
+      Lock lock = locks[bucket & lockMask].readLock();
+      lock.lock();
+      try {
+         if (bucket >= capacity) return Collections.emptyList();
+         long address = memory.getLong(table + ((long) bucket << 3));
+         if (address == 0) return Collections.emptyList();
+         List<InternalCacheEntry> entries = new ArrayList<InternalCacheEntry>(2);
+         while (address != 0) {
+            entries.add(toEntry(address, null));
+            address = memory.getLong(address + NEXT_OFFSET);
+         }
+         return entries;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   private long bucketAddress(int hash) {
+      return table + ((long) (hash & (capacity - 1)) << 3);
+   }
+
+   private ReentrantReadWriteLock lockFor(int hash) {
+      // capacity is always a multiple of the number of stripes, so all entries in a bucket share a stripe
+      return locks[hash & lockMask];
+   }
+
+   private void acquireAll() {
+      for (ReentrantReadWriteLock lock : locks) lock.writeLock().lock();
+   }
+
+   private void releaseAll() {
+      for (ReentrantReadWriteLock lock : locks) lock.writeLock().unlock();
+   }
+
+   private int hash(byte[] keyBytes) {
+      return hashFunction.hash(keyBytes);
+   }
+
+   private static boolean isStoreMetadata(Metadata metadata) {
+      return metadata != null
+            && (metadata.version() != null || !(metadata instanceof EmbeddedMetadata));
+   }
+
+   private byte[] marshall(Object o) {
+      try {
+         return marshaller.objectToByteBuffer(o);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException("Interrupted while marshalling " + o, e);
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall " + o, e);
+      }
+   }
+
+   private Object unmarshall(byte[] bytes) {
+      try {
+         return marshaller.objectFromByteBuffer(bytes);
+      } catch (Exception e) {
+         throw new CacheException("Unable to unmarshall off-heap entry", e);
+      }
+   }
+
+   /**
+    * Weakly consistent iterator, copying one bucket at a time onto the heap.
+    */
+   private class EntryIterator implements Iterator<InternalCacheEntry> {
+      private int nextBucket;
+      private Iterator<InternalCacheEntry> current = Collections.<InternalCacheEntry>emptyList().iterator();
+
+      @Override
+      public boolean hasNext() {
+         while (!current.hasNext()) {
+            if (nextBucket >= capacity) return false;
+            current = readBucket(nextBucket++).iterator();
+         }
+         return true;
+      }
+
+      @Override
+      public InternalCacheEntry next() {
+         if (!hasNext()) throw new NoSuchElementException();
+         return current.next();
+      }
+
+      @Override
+      public void remove() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private class KeySet extends AbstractSet<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            @Override
+            public Object next() {
+               return it.next().getKey();
+            }
+
+            @Override
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+         return peek(o) != null;
+      }
+
+      @Override
+      public int size() {
+         return count.get();
+      }
+   }
+
+   private class Values extends AbstractCollection<Object> {
+      @Override
+      public Iterator<Object> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            @Override
+            public Object next() {
+               return it.next().getValue();
+            }
+
+            @Override
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return count.get();
+      }
+   }
+
+   private class EntrySet extends AbstractSet<InternalCacheEntry> {
+      @Override
+      public boolean contains(Object o) {
+         if (!(o instanceof Map.Entry)) {
+            return false;
+         }
+
+         @SuppressWarnings("rawtypes")
+         Map.Entry e = (Map.Entry) o;
+         InternalCacheEntry ice = peek(e.getKey());
+         return ice != null && ice.getValue().equals(e.getValue());
+      }
+
+      @Override
+      public Iterator<InternalCacheEntry> iterator() {
+         final Iterator<InternalCacheEntry> it = new EntryIterator();
+         return new Iterator<InternalCacheEntry>() {
+            @Override
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            @Override
+            public InternalCacheEntry next() {
+               return Immutables.immutableInternalCacheEntry(it.next());
+            }
+
+            @Override
+            public void remove() {
+               throw new UnsupportedOperationException();
+            }
+         };
+      }
+
+      @Override
+      public int size() {
+         return count.get();
+      }
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+
+/**
+ * Thin wrapper around {@link Unsafe} providing the raw native memory operations needed by the
+ * {@link OffHeapDataContainer}. All addresses handled here are absolute addresses obtained from
+ * {@link #allocate(long)}.
+ *
+ * @since 5.3
+ */
+final class OffHeapMemory {
+
+   private static final OffHeapMemory INSTANCE = new OffHeapMemory();
+
+   private final Unsafe unsafe;
+   private final long byteArrayBaseOffset;
+
+   private OffHeapMemory() {
+      unsafe = getUnsafe();
+      byteArrayBaseOffset = unsafe.arrayBaseOffset(byte[].class);
+   }
+
+   static OffHeapMemory getInstance() {
+      return INSTANCE;
+   }
+
+   long allocate(long bytes) {
+      return unsafe.allocateMemory(bytes);
+   }
+
+   long allocateZeroed(long bytes) {
+      long address = unsafe.allocateMemory(bytes);
+      unsafe.setMemory(address, bytes, (byte) 0);
+      return address;
+   }
+
+   void free(long address) {
+      unsafe.freeMemory(address);
+   }
+
+   long getLong(long address) {
+      return unsafe.getLong(address);
+   }
+
+   void putLong(long address, long value) {
+      unsafe.putLong(address, value);
+   }
+
+   long getLongVolatile(long address) {
+      return unsafe.getLongVolatile(null, address);
+   }
+
+   void putLongVolatile(long address, long value) {
+      unsafe.putLongVolatile(null, address, value);
+   }
+
+   int getInt(long address) {
+      return unsafe.getInt(address);
+   }
+
+   void putInt(long address, int value) {
+      unsafe.putInt(address, value);
+   }
+
+   void putBytes(long address, byte[] src) {
+      unsafe.copyMemory(src, byteArrayBaseOffset, null, address, src.length);
+   }
+
+   byte[] getBytes(long address, int length) {
+      byte[] dst = new byte[length];
+      unsafe.copyMemory(null, address, dst, byteArrayBaseOffset, length);
+      return dst;
+   }
+
+   /**
+    * Compares the given number of bytes stored at the address with the contents of the byte array,
+    * eight bytes at a time where possible.
+    */
+   boolean equals(long address, byte[] bytes) {
+      int length = bytes.length;
+      int i = 0;
+      for (; i + 8 <= length; i += 8) {
+         if (unsafe.getLong(address + i) != unsafe.getLong(bytes, byteArrayBaseOffset + i))
+            return false;
+      }
+      for (; i < length; i++) {
+         if (unsafe.getByte(address + i) != bytes[i])
+            return false;
+      }
+      return true;
+   }
+
+   private static Unsafe getUnsafe() {
+      try {
+         return Unsafe.getUnsafe();
+      } catch (SecurityException tryReflectionInstead) {
+         // ignore, we're not in the boot class path
+      }
+      try {
+         return AccessController.doPrivileged(new PrivilegedExceptionAction<Unsafe>() {
+            @Override
+            public Unsafe run() throws Exception {
+               for (Field f : Unsafe.class.getDeclaredFields()) {
+                  f.setAccessible(true);
+                  Object x = f.get(null);
+                  if (Unsafe.class.isInstance(x))
+                     return Unsafe.class.cast(x);
+               }
+               throw new NoSuchFieldError("the Unsafe");
+            }
+         });
+      } catch (PrivilegedActionException e) {
+         throw new RuntimeException("Could not access native memory", e.getCause());
+      }
+   }
+}
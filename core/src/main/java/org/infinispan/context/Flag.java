@@ -248,6 +248,24 @@ public enum Flag {
     */
    OPERATION_MEMCACHED,
 
+   /**
+    * Declares the reads of the ongoing transaction as read-only snapshot reads, see
+    * {@link org.infinispan.transaction.SnapshotReadManager}. The transaction doesn't register with the cache, doesn't
+    * acquire any lock and doesn't send any prepare or commit when it completes. Each key is read once, the following
+    * reads of the key in the same transaction return the same value. Write operations ignore this flag, and so do the
+    * reads of a transaction that has already written to the cache, so that they see its own writes.
+    * <p/>
+    * Only {@link Cache#get(Object)}, {@link Cache#containsKey(Object)}, {@link AdvancedCache#getAll(Set)} and
+    * {@link AdvancedCache#getCacheEntry(Object)} take snapshot reads.
+    * <p/>
+    * The keys read are validated before the transaction completes, and the transaction is rolled back if any of them
+    * was modified since it was read. The keys not stored on the local node are validated with one
+    * {@link org.infinispan.commands.remote.ClusteredGetAllCommand} RPC to each of their primary owners.
+    * Without versioning the values are compared instead of the versions, so a key set back to the value read in the
+    * meantime goes unnoticed.
+    */
+   SNAPSHOT_READ,
+
    ;
 
    /**
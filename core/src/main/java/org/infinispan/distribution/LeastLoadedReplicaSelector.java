@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.jmx.annotations.MeasurementType;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.CollectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link ReplicaSelector}, which sends each read to the least loaded owner.
+ * <p>
+ * The load of an owner is estimated as its smoothed response time multiplied by the number of reads from this node
+ * still waiting for its reply, plus one. Owners with the same load are asked in consistent hash order, so the primary
+ * owner is preferred until the response times of the owners are known. Owners that never replied are preferred over
+ * the others, so that their response time gets measured.
+ * <p>
+ * The delay before asking the next owner comes from a {@link ResponseTimeTracker}.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+@MBean(objectName = "ReplicaSelector", description = "Selects the owner that handles each remote read")
+public class LeastLoadedReplicaSelector implements ReplicaSelector {
+
+   private final ResponseTimeTracker responseTimes = new ResponseTimeTracker();
+   private final ConcurrentMap<Address, AtomicInteger> inFlight = CollectionFactory.makeConcurrentMap();
+   private final AtomicLong selections = new AtomicLong(0);
+   private final AtomicLong nonPrimarySelections = new AtomicLong(0);
+   private Configuration cfg;
+
+   @ManagedAttribute(description = "Enables or disables the gathering of statistics by this component", displayName = "Statistics enabled", writable = true)
+   private boolean statisticsEnabled = false;
+
+   @Inject
+   public void inject(Configuration cfg) {
+      this.cfg = cfg;
+   }
+
+   @Start
+   public void start() {
+      statisticsEnabled = cfg.jmxStatistics().enabled();
+   }
+
+   @Override
+   public List<Address> orderOwners(List<Address> owners) {
+      List<Address> ordered = new ArrayList<Address>(owners.size());
+      long[] loads = new long[owners.size()];
+      // insertion sort, stable so that owners with the same load stay in consistent hash order
+      for (Address owner : owners) {
+         long load = load(owner);
+         int i = ordered.size();
+         while (i > 0 && loads[i - 1] > load) {
+            loads[i] = loads[i - 1];
+            i--;
+         }
+         loads[i] = load;
+         ordered.add(i, owner);
+      }
+      if (statisticsEnabled && !ordered.isEmpty()) {
+         selections.incrementAndGet();
+         if (!ordered.get(0).equals(owners.get(0))) nonPrimarySelections.incrementAndGet();
+      }
+      return ordered;
+   }
+
+   private long load(Address owner) {
+      long responseTime = responseTimes.responseTime(owner);
+      if (responseTime < 0) return 0;
+      return (responseTime + 1) * (inFlight(owner).get() + 1);
+   }
+
+   @Override
+   public long responseDelay(Address owner) {
+      return responseTimes.delay(owner);
+   }
+
+   @Override
+   public void requestSent(Address owner) {
+      inFlight(owner).incrementAndGet();
+   }
+
+   @Override
+   public void requestCompleted(Address owner, long responseTimeNanos, boolean successful) {
+      inFlight(owner).decrementAndGet();
+      // failures say nothing about the usual response time
+      if (successful) responseTimes.record(owner, responseTimeNanos);
+   }
+
+   private AtomicInteger inFlight(Address owner) {
+      AtomicInteger count = inFlight.get(owner);
+      if (count == null) {
+         count = new AtomicInteger();
+         AtomicInteger existing = inFlight.putIfAbsent(owner, count);
+         if (existing != null) count = existing;
+      }
+      return count;
+   }
+
+   @ManagedAttribute(
+         description = "Number of remote reads for which an owner was selected",
+         displayName = "Number of selections",
+         measurementType = MeasurementType.TRENDSUP
+   )
+   public long getSelections() {
+      return selections.get();
+   }
+
+   @ManagedAttribute(
+         description = "Number of remote reads sent first to an owner other than the first live owner in consistent hash order",
+         displayName = "Number of non-primary selections",
+         measurementType = MeasurementType.TRENDSUP
+   )
+   public long getNonPrimarySelections() {
+      return nonPrimarySelections.get();
+   }
+
+   @ManagedAttribute(
+         description = "Smoothed response time and number of reads in flight of each owner this node has read from",
+         displayName = "Owner response times"
+   )
+   public String getOwnerResponseTimes() {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<Address, AtomicInteger> e : inFlight.entrySet()) {
+         if (sb.length() > 0) sb.append(", ");
+         long responseTime = responseTimes.responseTime(e.getKey());
+         sb.append(e.getKey()).append(": ");
+         if (responseTime < 0) {
+            sb.append("N/A");
+         } else {
+            sb.append(TimeUnit.NANOSECONDS.toMicros(responseTime)).append("us");
+         }
+         sb.append(" (").append(e.getValue().get()).append(" in flight)");
+      }
+      return sb.toString();
+   }
+
+   @ManagedOperation(
+         description = "Resets statistics gathered by this component",
+         displayName = "Reset statistics"
+   )
+   public void resetStatistics() {
+      selections.set(0);
+      nonPrimarySelections.set(0);
+   }
+}
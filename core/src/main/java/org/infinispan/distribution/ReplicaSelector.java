@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.remoting.transport.Address;
+
+import java.util.List;
+
+/**
+ * Decides which owner of a key is asked first when the entry must be read from a remote node, and how long to wait
+ * for its reply before asking another owner.
+ * <p>
+ * The remote reads that are sent to a single owner (staggered remote gets and the per-owner batches of
+ * {@link org.infinispan.AdvancedCache#getAll(java.util.Set)}) report every request they send and every reply they get,
+ * so an implementation can base its choice on the observed response times and load of each owner.
+ * <p>
+ * A replica selector is a per-cache component and it must be thread safe.
+ *
+ * @see org.infinispan.configuration.cache.HashConfigurationBuilder#replicaSelector(ReplicaSelector)
+ * @since 5.3
+ */
+@Scope(Scopes.NAMED_CACHE)
+public interface ReplicaSelector {
+
+   /**
+    * @param owners the live remote owners of a key, in consistent hash order
+    * @return the same owners, in the order they should be asked
+    */
+   List<Address> orderOwners(List<Address> owners);
+
+   /**
+    * @return the time, in nanoseconds, after which a reply from the owner should be considered late
+    */
+   long responseDelay(Address owner);
+
+   /**
+    * Invoked before a read request is sent to an owner.
+    */
+   void requestSent(Address owner);
+
+   /**
+    * Invoked once for every {@link #requestSent(Address) request sent}, when the owner replied or the request failed.
+    *
+    * @param responseTimeNanos the time elapsed since the request was sent
+    * @param successful false if the request failed, e.g. because the owner left the cluster or timed out
+    */
+   void requestCompleted(Address owner, long responseTimeNanos, boolean successful);
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.CollectionFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a running estimate of the response time of each cluster member, in order to decide how long to wait for a
+ * member's reply before asking another member for the same thing.
+ * <p>
+ * The estimate is computed the same way TCP computes its retransmission timeout (RFC 6298): a smoothed response time
+ * and a smoothed mean deviation are updated with every sample, and the {@link #delay(Address) delay} is the smoothed
+ * response time plus four mean deviations. That places the delay above the large majority of the observed response
+ * times, close to their 99th percentile, without having to keep the samples around.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+public final class ResponseTimeTracker {
+
+   /**
+    * The delay used for members that didn't reply to anything yet.
+    */
+   static final long INITIAL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+   /**
+    * The lowest delay ever returned, to avoid asking the next member for every request that is slightly slower than
+    * the previous ones.
+    */
+   static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final ConcurrentMap<Address, Estimate> estimates = CollectionFactory.makeConcurrentMap();
+
+   /**
+    * Records the time it took for a member to reply.
+    */
+   public void record(Address member, long responseTimeNanos) {
+      Estimate estimate = estimates.get(member);
+      if (estimate == null) {
+         estimate = new Estimate();
+         Estimate existing = estimates.putIfAbsent(member, estimate);
+         if (existing != null) estimate = existing;
+      }
+      estimate.update(responseTimeNanos);
+   }
+
+   /**
+    * @return the time, in nanoseconds, after which the member's reply should be considered late
+    */
+   public long delay(Address member) {
+      Estimate estimate = estimates.get(member);
+      return estimate == null ? INITIAL_DELAY_NANOS : Math.max(MIN_DELAY_NANOS, estimate.delay());
+   }
+
+   /**
+    * @return the smoothed response time of the member in nanoseconds, or -1 if it didn't reply to anything yet
+    */
+   public long responseTime(Address member) {
+      Estimate estimate = estimates.get(member);
+      return estimate == null ? -1 : estimate.smoothed();
+   }
+
+   private static final class Estimate {
+      private long smoothed = -1;
+      private long deviation;
+
+      synchronized void update(long sample) {
+         if (smoothed < 0) {
+            smoothed = sample;
+            deviation = sample / 2;
+         } else {
+            deviation += (Math.abs(smoothed - sample) - deviation) / 4;
+            smoothed += (sample - smoothed) / 8;
+         }
+      }
+
+      synchronized long smoothed() {
+         return smoothed;
+      }
+
+      synchronized long delay() {
+         return smoothed + 4 * deviation;
+      }
+   }
+}
@@ -107,7 +107,7 @@ public interface ConsistentHash {
     *
     *
     * @param keys keys to locate.
-    * @return set of nodes that own at least one of the keys.
+    * @return An unmodifiable set of nodes that own at least one of the keys.
     */
    Set<Address> locateAllOwners(Collection<Object> keys);
 
@@ -135,6 +135,17 @@ public interface ConsistentHash {
     */
    Address locatePrimaryOwnerForSegment(int segmentId);
 
+   /**
+    * Test to see whether a hash space segment is owned by a given node. This is equivalent to
+    * {@code locateOwnersForSegment(segmentId).contains(nodeAddress)} but is more efficient, and it doesn't throw an
+    * exception if the node is not a member.
+    *
+    * @param nodeAddress address of the node to test
+    * @param segmentId the segment to test
+    * @return {@code true} if the node owns the segment; {@code false} otherwise
+    */
+   boolean isSegmentLocalToNode(Address nodeAddress, int segmentId);
+
    /**
     * Returns the segments owned by a cache member.
     *
@@ -23,10 +23,13 @@
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.jcip.annotations.Immutable;
@@ -35,6 +38,7 @@
 import org.infinispan.marshall.Ids;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.Immutables;
+import org.infinispan.util.InfinispanCollections;
 
 /**
  * Default {@link ConsistentHash} implementation. This object is immutable.
@@ -61,6 +65,14 @@ public class DefaultConsistentHash implements ConsistentHash {
    private final List<Address>[] segmentOwners;
    private final int segmentSize;
 
+   /**
+    * Lookup tables computed from the routing table, so that routing a key doesn't allocate anything. Segments with the
+    * same owners share the same owner list and owner set instances.
+    */
+   private final Address[] primaryOwners;
+   private final Set<Address>[] segmentOwnerSets;
+   private final Map<Address, BitSet> ownedSegments;
+
    public DefaultConsistentHash(Hash hashFunction, int numOwners, int numSegments, List<Address> members,
                                 List<Address>[] segmentOwners) {
       if (numSegments < 1)
@@ -73,11 +85,31 @@ public DefaultConsistentHash(Hash hashFunction, int numOwners, int numSegments,
       this.hashFunction = hashFunction;
       this.members = new ArrayList<Address>(members);
       this.segmentOwners = new List[numSegments];
+      this.primaryOwners = new Address[numSegments];
+      this.segmentOwnerSets = new Set[numSegments];
+      this.ownedSegments = new HashMap<Address, BitSet>();
+      Map<List<Address>, Set<Address>> distinctOwners = new HashMap<List<Address>, Set<Address>>();
       for (int i = 0; i < numSegments; i++) {
          if (segmentOwners[i] == null || segmentOwners[i].isEmpty()) {
             throw new IllegalArgumentException("Segment owner list cannot be null or empty");
          }
-         this.segmentOwners[i] = Immutables.immutableListCopy(segmentOwners[i]);
+         List<Address> owners = Immutables.immutableListCopy(segmentOwners[i]);
+         Set<Address> ownerSet = distinctOwners.get(owners);
+         if (ownerSet == null) {
+            ownerSet = Immutables.immutableSetWrap(new HashSet<Address>(owners));
+            distinctOwners.put(owners, ownerSet);
+         }
+         this.segmentOwners[i] = owners;
+         this.segmentOwnerSets[i] = ownerSet;
+         this.primaryOwners[i] = owners.get(0);
+         for (Address owner : owners) {
+            BitSet segments = ownedSegments.get(owner);
+            if (segments == null) {
+               segments = new BitSet(numSegments);
+               ownedSegments.put(owner, segments);
+            }
+            segments.set(i);
+         }
       }
       this.segmentSize = (int)Math.ceil((double)Integer.MAX_VALUE / numSegments);
    }
@@ -102,8 +134,9 @@ public Set<Integer> getSegmentsForOwner(Address owner) {
       }
 
       Set<Integer> segments = new HashSet<Integer>();
-      for (int segment = 0; segment < segmentOwners.length; segment++) {
-         if (segmentOwners[segment].contains(owner)) {
+      BitSet owned = ownedSegments.get(owner);
+      if (owned != null) {
+         for (int segment = owned.nextSetBit(0); segment >= 0; segment = owned.nextSetBit(segment + 1)) {
             segments.add(segment);
          }
       }
@@ -135,7 +168,13 @@ public List<Address> locateOwnersForSegment(int segmentId) {
 
    @Override
    public Address locatePrimaryOwnerForSegment(int segmentId) {
-      return segmentOwners[segmentId].get(0);
+      return primaryOwners[segmentId];
+   }
+
+   @Override
+   public boolean isSegmentLocalToNode(Address nodeAddress, int segmentId) {
+      BitSet owned = ownedSegments.get(nodeAddress);
+      return owned != null && owned.get(segmentId);
    }
 
    @Override
@@ -160,26 +199,27 @@ public List<Address> locateOwners(Object key) {
 
    @Override
    public Set<Address> locateAllOwners(Collection<Object> keys) {
-      // Use a HashSet assuming most of the time the number of keys is small.
-      HashSet<Integer> segments = new HashSet<Integer>();
+      // Most of the time all the keys have the same owners, so the shared owner set of a segment is enough
+      Set<Address> owners = null;
+      Set<Address> ownersUnion = null;
       for (Object key : keys) {
-         segments.add(getSegment(key));
-      }
-      HashSet<Address> ownersUnion = new HashSet<Address>();
-      for (Integer segment : segments) {
-         ownersUnion.addAll(segmentOwners[segment]);
+         Set<Address> keyOwners = segmentOwnerSets[getSegment(key)];
+         if (owners == null) {
+            owners = keyOwners;
+         } else if (keyOwners != owners && !owners.containsAll(keyOwners)) {
+            if (ownersUnion == null) {
+               ownersUnion = new HashSet<Address>(owners);
+               owners = Immutables.immutableSetWrap(ownersUnion);
+            }
+            ownersUnion.addAll(keyOwners);
+         }
       }
-      return ownersUnion;
+      return owners != null ? owners : InfinispanCollections.<Address>emptySet();
    }
 
    @Override
    public boolean isKeyLocalToNode(Address nodeAddress, Object key) {
-      int segment = getSegment(key);
-      for (Address a : segmentOwners[segment]) {
-         if (a.equals(nodeAddress))
-            return true;
-      }
-      return false;
+      return isSegmentLocalToNode(nodeAddress, getSegment(key));
    }
 
    @Override
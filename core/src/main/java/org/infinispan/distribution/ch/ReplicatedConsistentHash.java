@@ -46,11 +46,28 @@ public class ReplicatedConsistentHash implements ConsistentHash {
    private final Set<Address> membersSet;
    private final Set<Integer> segments;
 
+   /**
+    * The owners of the segments of each primary owner, indexed like the members.
+    */
+   private final List<Address>[] ownersByPrimaryOwner;
+
    public ReplicatedConsistentHash(Hash hashFunction, List<Address> members, int[] primaryOwners) {
       this.hashFunction = hashFunction;
       this.members = Collections.unmodifiableList(new ArrayList<Address>(members));
       this.membersSet = Collections.unmodifiableSet(new HashSet<Address>(members));
       this.primaryOwners = primaryOwners;
+      this.ownersByPrimaryOwner = new List[members.size()];
+      for (int i = 0; i < ownersByPrimaryOwner.length; i++) {
+         Address primaryOwner = members.get(i);
+         List<Address> owners = new ArrayList<Address>(members.size());
+         owners.add(primaryOwner);
+         for (Address member : members) {
+            if (!member.equals(primaryOwner)) {
+               owners.add(member);
+            }
+         }
+         ownersByPrimaryOwner[i] = Collections.unmodifiableList(owners);
+      }
       Set<Integer> segmentIds = new HashSet<Integer>(primaryOwners.length);
       for (int i = 0; i < primaryOwners.length; i++) {
          segmentIds.add(i);
@@ -86,15 +103,7 @@ public int getSegment(Object key) {
 
    @Override
    public List<Address> locateOwnersForSegment(int segmentId) {
-      Address primaryOwner = locatePrimaryOwnerForSegment(segmentId);
-      List<Address> owners = new ArrayList<Address>(members.size());
-      owners.add(primaryOwner);
-      for (Address member : members) {
-         if (!member.equals(primaryOwner)) {
-            owners.add(member);
-         }
-      }
-      return owners;
+      return ownersByPrimaryOwner[primaryOwners[segmentId]];
    }
 
    @Override
@@ -102,6 +111,11 @@ public Address locatePrimaryOwnerForSegment(int segmentId) {
       return members.get(primaryOwners[segmentId]);
    }
 
+   @Override
+   public boolean isSegmentLocalToNode(Address nodeAddress, int segmentId) {
+      return membersSet.contains(nodeAddress);
+   }
+
    @Override
    public Set<Integer> getSegmentsForOwner(Address owner) {
       if (owner == null) {
@@ -81,6 +81,11 @@ public Address locatePrimaryOwnerForSegment(int segmentId) {
       return ch.locatePrimaryOwnerForSegment(segmentId);
    }
 
+   @Override
+   public boolean isSegmentLocalToNode(Address nodeAddress, int segmentId) {
+      return ch.isSegmentLocalToNode(nodeAddress, segmentId);
+   }
+
    @Override
    public Set<Integer> getSegmentsForOwner(Address owner) {
       return ch.getSegmentsForOwner(owner);
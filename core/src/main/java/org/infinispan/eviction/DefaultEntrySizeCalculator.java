@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.ByteArrayKey;
+
+/**
+ * Default {@link EntrySizeCalculator}, estimating the heap footprint of the types commonly
+ * stored in the data container: {@code byte[]}, {@link String}, boxed primitives,
+ * {@link MarshalledValue}, {@link ByteArrayKey} and the {@link InternalCacheEntry} and
+ * {@link InternalCacheValue} wrappers. Sizes assume a 64-bit JVM with compressed oops.
+ * <p/>
+ * Other types are assigned a fixed {@link #DEFAULT_OBJECT_SIZE}, so caches storing arbitrary
+ * objects should either use the storeAsBinary configuration, so values are held as
+ * {@link MarshalledValue}s, or plug in their own calculator.
+ *
+ * @since 5.3
+ */
+public class DefaultEntrySizeCalculator implements EntrySizeCalculator<Object, Object> {
+
+   /**
+    * Size assumed for objects whose footprint cannot be estimated.
+    */
+   public static final int DEFAULT_OBJECT_SIZE = 64;
+
+   private static final int OBJECT_HEADER = 12;
+   private static final int ARRAY_HEADER = 16;
+   private static final int REFERENCE = 4;
+
+   /**
+    * Segment hash entry plus the internal cache entry's fields (key, value, metadata and
+    * timestamps)
+    */
+   private static final int ENTRY_OVERHEAD = 96;
+
+   private static final DefaultEntrySizeCalculator INSTANCE = new DefaultEntrySizeCalculator();
+
+   public static DefaultEntrySizeCalculator getInstance() {
+      return INSTANCE;
+   }
+
+   @Override
+   public long calculateSize(Object key, Object value) {
+      return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+   }
+
+   protected long sizeOf(Object o) {
+      if (o == null) return 0;
+      if (o instanceof byte[]) return align(ARRAY_HEADER + ((byte[]) o).length);
+      if (o instanceof String) return align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2 * ((String) o).length());
+      if (o instanceof MarshalledValue) return align(OBJECT_HEADER + 3 * REFERENCE + 8) + align(ARRAY_HEADER + ((MarshalledValue) o).getSerialisedSize());
+      if (o instanceof ByteArrayKey) return align(OBJECT_HEADER + REFERENCE + 4) + sizeOf(((ByteArrayKey) o).getData());
+      // wrapper entries: only account for the wrapped value, the key is accounted for separately
+      if (o instanceof InternalCacheEntry) return sizeOf(((InternalCacheEntry) o).getValue());
+      if (o instanceof InternalCacheValue) return OBJECT_HEADER + sizeOf(((InternalCacheValue) o).getValue());
+      if (o instanceof Number || o instanceof Boolean || o instanceof Character) return 16;
+      return DEFAULT_OBJECT_SIZE;
+   }
+
+   private static long align(long size) {
+      return (size + 7) & ~7L;
+   }
+}
@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.eviction;
+
+/**
+ * Estimates the memory footprint of a cache entry, used when eviction is bounded by memory
+ * rather than by number of entries.
+ * <p/>
+ * Implementations are invoked while holding a segment lock in the data container, so they should
+ * be cheap and must not access the cache.
+ *
+ * @since 5.3
+ */
+public interface EntrySizeCalculator<K, V> {
+
+   /**
+    * Returns the estimated number of bytes occupied by the given key and value.
+    *
+    * @param key key of the entry
+    * @param value value of the entry
+    * @return estimated size in bytes, never negative
+    */
+   long calculateSize(K key, V value);
+}
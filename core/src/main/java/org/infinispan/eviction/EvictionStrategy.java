@@ -38,7 +38,12 @@ public enum EvictionStrategy {
    @Deprecated
    FIFO, 
    LRU, 
-   LIRS;
+   LIRS,
+   /**
+    * Window TinyLFU: admits an entry in the cache only if it is accessed more frequently than
+    * the entry it would replace, which protects the hot set from scans.
+    */
+   TINYLFU;
 
    public boolean isEnabled() {
       return this != NONE;
@@ -23,8 +23,11 @@
 package org.infinispan.factories;
 
 import org.infinispan.config.ConfigurationException;
+import org.infinispan.configuration.cache.HashConfiguration;
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.DefaultDataContainer;
+import org.infinispan.container.SegmentedDataContainer;
+import org.infinispan.container.offheap.OffHeapDataContainer;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionThreadPolicy;
 import org.infinispan.factories.annotations.DefaultFactoryFor;
@@ -47,6 +50,10 @@ public class DataContainerFactory extends AbstractNamedCacheComponentFactory imp
    public <T> T construct(Class<T> componentType) {
       if (configuration.dataContainer().dataContainer() != null) {
          return (T) configuration.dataContainer().dataContainer();
+      } else if (configuration.dataContainer().offHeap()) {
+         if (configuration.eviction().strategy().isEnabled())
+            throw new ConfigurationException("Eviction is not supported when storing entries off-heap");
+         return (T) new OffHeapDataContainer(configuration.locking().concurrencyLevel());
       } else {
          EvictionStrategy st = configuration.eviction().strategy();
          int level = configuration.locking().concurrencyLevel();
@@ -55,20 +62,26 @@ public <T> T construct(Class<T> componentType) {
 
          switch (st) {
             case NONE:
-               return (T) DefaultDataContainer.unBoundedDataContainer(
-                     level, keyEquivalence, valueEquivalence);
+               return (T) unBoundedDataContainer(level, keyEquivalence, valueEquivalence);
             case UNORDERED:
             case LRU:
             case FIFO:
             case LIRS:
+            case TINYLFU:
+               EvictionThreadPolicy policy = configuration.eviction().threadPolicy();
+               long maxMemory = configuration.eviction().maxMemory();
+               if (maxMemory > 0) {
+                  return (T) DefaultDataContainer.memoryBoundedDataContainer(
+                        level, maxMemory, st, policy, configuration.eviction().sizeCalculator(),
+                        keyEquivalence, valueEquivalence);
+               }
+
                int maxEntries = configuration.eviction().maxEntries();
                //handle case when < 0 value signifies unbounded container 
                if(maxEntries < 0) {
-                   return (T) DefaultDataContainer.unBoundedDataContainer(
-                         level, keyEquivalence, valueEquivalence);
+                   return (T) unBoundedDataContainer(level, keyEquivalence, valueEquivalence);
                }
 
-               EvictionThreadPolicy policy = configuration.eviction().threadPolicy();
 
                return (T) DefaultDataContainer.boundedDataContainer(
                   level, maxEntries, st, policy, keyEquivalence, valueEquivalence);
@@ -78,4 +91,16 @@ public <T> T construct(Class<T> componentType) {
          }
       }
    }
+
+   private DataContainer unBoundedDataContainer(int level, Equivalence keyEquivalence,
+         Equivalence valueEquivalence) {
+      // Distributed caches keep one map per segment, so that state transfer only has to visit
+      // the segments that are moving
+      if (configuration.clustering().cacheMode().isDistributed()) {
+         HashConfiguration hash = configuration.clustering().hash();
+         return SegmentedDataContainer.segmentedDataContainer(
+               level, hash.hash(), hash.numSegments(), keyEquivalence, valueEquivalence);
+      }
+      return DefaultDataContainer.unBoundedDataContainer(level, keyEquivalence, valueEquivalence);
+   }
 }
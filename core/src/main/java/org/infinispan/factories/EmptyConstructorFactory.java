@@ -32,6 +32,7 @@
 import org.infinispan.marshall.jboss.ExternalizerTable;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.InboundInvocationHandlerImpl;
+import org.infinispan.statetransfer.StateTransferThrottle;
 import org.infinispan.topology.ClusterTopologyManager;
 import org.infinispan.topology.ClusterTopologyManagerImpl;
 import org.infinispan.topology.DefaultRebalancePolicy;
@@ -53,7 +54,7 @@
 
 @DefaultFactoryFor(classes = {InboundInvocationHandler.class, RemoteCommandsFactory.class, ExternalizerTable.class,
                               RebalancePolicy.class, BackupReceiverRepository.class, CancellationService.class,
-                              TimeService.class})
+                              TimeService.class, StateTransferThrottle.class})
 @Scope(Scopes.GLOBAL)
 public class EmptyConstructorFactory extends AbstractComponentFactory implements AutoInstantiableFactory {
 
@@ -76,6 +77,8 @@ else if (componentType.equals(BackupReceiverRepository.class))
          return (T) new BackupReceiverRepositoryImpl();
       else if (componentType.equals(CancellationService.class))
          return (T) new CancellationServiceImpl();
+      else if (componentType.equals(StateTransferThrottle.class))
+         return (T) new StateTransferThrottle();
       else if (componentType.equals(TimeService.class)) {
          return (T) new DefaultTimeService();
       }
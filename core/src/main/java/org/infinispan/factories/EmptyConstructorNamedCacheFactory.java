@@ -33,6 +33,8 @@
 import org.infinispan.context.TransactionalInvocationContextContainer;
 import org.infinispan.distribution.L1Manager;
 import org.infinispan.distribution.L1ManagerImpl;
+import org.infinispan.distribution.LeastLoadedReplicaSelector;
+import org.infinispan.distribution.ReplicaSelector;
 import org.infinispan.eviction.ActivationManager;
 import org.infinispan.eviction.ActivationManagerImpl;
 import org.infinispan.eviction.EvictionManager;
@@ -47,10 +49,13 @@
 import org.infinispan.notifications.cachelistener.CacheNotifierImpl;
 import org.infinispan.statetransfer.StateTransferLock;
 import org.infinispan.statetransfer.StateTransferLockImpl;
+import org.infinispan.transaction.SnapshotReadManager;
 import org.infinispan.transaction.TransactionCoordinator;
+import org.infinispan.transaction.TxCompletionNotificationBatcher;
 import org.infinispan.transaction.totalorder.TotalOrderManager;
 import org.infinispan.transaction.xa.TransactionFactory;
 import org.infinispan.transaction.xa.recovery.RecoveryAdminOperations;
+import org.infinispan.util.concurrent.locks.RemoteCommandParker;
 import org.infinispan.util.concurrent.locks.containers.LockContainer;
 import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
 import org.infinispan.util.concurrent.locks.containers.OwnableReentrantStripedLockContainer;
@@ -75,7 +80,8 @@
                               TransactionCoordinator.class, RecoveryAdminOperations.class, StateTransferLock.class,
                               ClusteringDependentLogic.class, LockContainer.class,
                               L1Manager.class, TransactionFactory.class, BackupSender.class,
-                              TotalOrderManager.class})
+                              TotalOrderManager.class, ReplicaSelector.class, RemoteCommandParker.class,
+                              TxCompletionNotificationBatcher.class, SnapshotReadManager.class})
 public class EmptyConstructorNamedCacheFactory extends AbstractNamedCacheComponentFactory implements AutoInstantiableFactory {
 
    @Override
@@ -135,6 +141,15 @@ public <T> T construct(Class<T> componentType) {
             return (T) new BackupSenderImpl(globalConfiguration.sites().localSite());
          } else if (componentType.equals(TotalOrderManager.class)) {
             return (T) new TotalOrderManager();
+         } else if (componentType.equals(ReplicaSelector.class)) {
+            ReplicaSelector replicaSelector = configuration.clustering().hash().replicaSelector();
+            return (T) (replicaSelector != null ? replicaSelector : new LeastLoadedReplicaSelector());
+         } else if (componentType.equals(RemoteCommandParker.class)) {
+            return (T) new RemoteCommandParker();
+         } else if (componentType.equals(TxCompletionNotificationBatcher.class)) {
+            return (T) new TxCompletionNotificationBatcher();
+         } else if (componentType.equals(SnapshotReadManager.class)) {
+            return (T) new SnapshotReadManager();
          }
       }
 
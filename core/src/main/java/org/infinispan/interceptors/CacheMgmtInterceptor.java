@@ -22,12 +22,14 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.DefaultDataContainer;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
@@ -39,6 +41,8 @@
 import org.infinispan.jmx.annotations.MeasurementType;
 import org.infinispan.jmx.annotations.Units;
 import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TransformingNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -113,6 +117,24 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return retval;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long start = timeService.time();
+      Map<?, ?> retval = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      long intervalMilliseconds = timeService.timeDuration(start, TimeUnit.MILLISECONDS);
+      int requests = command.getKeys().size();
+      if (ctx.isOriginLocal() && requests > 0) {
+         // the time of the whole operation is shared between the hits and the misses
+         int hitCount = retval.size();
+         long hitIntervalMilliseconds = intervalMilliseconds * hitCount / requests;
+         hitTimes.getAndAdd(hitIntervalMilliseconds);
+         hits.getAndAdd(hitCount);
+         missTimes.getAndAdd(intervalMilliseconds - hitIntervalMilliseconds);
+         misses.getAndAdd(requests - hitCount);
+      }
+      return retval;
+   }
+
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       final Map<Object, Object> data = command.getMap();
@@ -128,30 +150,61 @@ public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) t
 
    @Override
    //Map.put(key,value) :: oldValue
-   public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
-      long start = timeService.time();
+   public Object visitPutKeyValueCommand(InvocationContext ctx, final PutKeyValueCommand command) throws Throwable {
+      final long start = timeService.time();
       Object retval = invokeNextInterceptor(ctx, command);
-      if (ctx.isOriginLocal() && command.isSuccessful()) {
-         long intervalMilliseconds = timeService.timeDuration(start, TimeUnit.MILLISECONDS);
-         storeTimes.getAndAdd(intervalMilliseconds);
-         stores.incrementAndGet();
-      }
-      return retval;
+      if (!ctx.isOriginLocal()) return retval;
+      return updateWhenDone(retval, ctx, new StatisticsUpdate() {
+         @Override
+         public void update(Object result) {
+            if (command.isSuccessful()) {
+               long intervalMilliseconds = timeService.timeDuration(start, TimeUnit.MILLISECONDS);
+               storeTimes.getAndAdd(intervalMilliseconds);
+               stores.incrementAndGet();
+            }
+         }
+      });
    }
 
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
       Object retval = invokeNextInterceptor(ctx, command);
-      if (ctx.isOriginLocal()) {
-         if (retval == null) {
-            removeMisses.incrementAndGet();
-         } else {
-            removeHits.incrementAndGet();
+      if (!ctx.isOriginLocal()) return retval;
+      return updateWhenDone(retval, ctx, new StatisticsUpdate() {
+         @Override
+         public void update(Object result) {
+            if (result == null) {
+               removeMisses.incrementAndGet();
+            } else {
+               removeHits.incrementAndGet();
+            }
          }
+      });
+   }
+
+   /**
+    * Applies the update with the return value of the command. If the return value is a future that is still to be
+    * completed by the primary owner's response, the update is applied when it completes.
+    */
+   @SuppressWarnings("unchecked")
+   private Object updateWhenDone(Object retval, InvocationContext ctx, final StatisticsUpdate update) {
+      if (retval instanceof NotifyingFuture && ctx.isUseFutureReturnType()) {
+         return new TransformingNotifyingFuture<Object, Object>() {
+            @Override
+            protected Object transform(Object result) {
+               update.update(result);
+               return result;
+            }
+         }.listenTo((NotifyingFuture<Object>) retval);
       }
+      update.update(retval);
       return retval;
    }
 
+   private interface StatisticsUpdate {
+      void update(Object retval);
+   }
+
    @ManagedAttribute(
          description = "Number of cache attribute hits",
          displayName = "Number of cache hits",
@@ -277,6 +330,18 @@ public int getNumberOfEntries() {
       return dataContainer.size();
    }
 
+   @ManagedAttribute(
+         description = "Estimated memory footprint in bytes of the entries in the data container, or -1 if eviction is not bounded by memory",
+         displayName = "Data container memory usage",
+         displayType = DisplayType.SUMMARY
+   )
+   public long getDataContainerMemoryUsage() {
+      if (dataContainer instanceof DefaultDataContainer) {
+         return ((DefaultDataContainer) dataContainer).memoryUsage();
+      }
+      return -1;
+   }
+
    @ManagedAttribute(
          description = "Number of seconds since cache started",
          displayName = "Seconds since cache started",
@@ -23,8 +23,10 @@
 package org.infinispan.interceptors;
 
 
+import org.infinispan.commands.FlagAffectedCommand;
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -38,6 +40,8 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.Map;
+
 /**
  * Always at the end of the chain, directly in front of the cache. Simply calls into the cache using reflection. If the
  * call resulted in a modification, add the Modification to the end of the modification list keyed by the current
@@ -101,8 +105,22 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return ret;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      if (trace) log.trace("Executing command: " + command + ".");
+      Map<Object, Object> ret = command.perform(ctx);
+      for (Map.Entry<Object, Object> e : ret.entrySet()) {
+         Object value = command.isReturnEntries() ? ((CacheEntry) e.getValue()).getValue() : e.getValue();
+         notifyCacheEntryVisit(ctx, command, e.getKey(), value);
+      }
+      return ret;
+   }
+
    private void notifyCacheEntryVisit(InvocationContext ctx, GetKeyValueCommand command, Object value) {
-      Object key = command.getKey();
+      notifyCacheEntryVisit(ctx, command, command.getKey(), value);
+   }
+
+   private void notifyCacheEntryVisit(InvocationContext ctx, FlagAffectedCommand command, Object key, Object value) {
       notifier.notifyCacheEntryVisited(key, value, true, ctx, command);
       notifier.notifyCacheEntryVisited(key, value, false, ctx, command);
    }
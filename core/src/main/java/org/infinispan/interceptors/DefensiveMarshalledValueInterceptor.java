@@ -52,6 +52,9 @@ protected Object processRetVal(Object retVal, InvocationContext ctx) {
          ret = super.processRetVal(ret, ctx);
          // Re-compact in case deserialization happened
          ((MarshalledValue) retVal).compact(true, true);
+      } else {
+         // a future is unwrapped once the return value arrives
+         ret = super.processRetVal(ret, ctx);
       }
       return ret;
    }
@@ -24,6 +24,7 @@
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -44,6 +45,8 @@
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.util.Immutables;
 import org.infinispan.util.InfinispanCollections;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TransformingNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -51,6 +54,7 @@
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -205,6 +209,33 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      Set<MarshalledValue> marshalledValues = null;
+      if (wrapKeys) {
+         marshalledValues = new HashSet<MarshalledValue>(command.getKeys().size());
+         List<Object> keys = new ArrayList<Object>(command.getKeys().size());
+         for (Object key : command.getKeys()) {
+            if (!isTypeExcluded(key.getClass())) {
+               MarshalledValue mv = createMarshalledValue(key, ctx);
+               marshalledValues.add(mv);
+               key = mv;
+            }
+            keys.add(key);
+         }
+         command.setKeys(keys);
+      }
+      Map<?, ?> retVal = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      if (marshalledValues != null) {
+         for (MarshalledValue mv : marshalledValues) compact(mv);
+      }
+      Map<Object, Object> copy = new HashMap<Object, Object>(retVal.size());
+      for (Map.Entry<?, ?> e : retVal.entrySet()) {
+         copy.put(processRetVal(e.getKey(), ctx), processRetVal(e.getValue(), ctx));
+      }
+      return copy;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
@@ -319,7 +350,17 @@ protected void compact(MarshalledValue mv) {
       mv.compact(false, false);
    }
 
-   protected Object processRetVal(Object retVal, InvocationContext ctx) {
+   @SuppressWarnings("unchecked")
+   protected Object processRetVal(Object retVal, final InvocationContext ctx) {
+      if (retVal instanceof NotifyingFuture && ctx.isUseFutureReturnType()) {
+         // the return value is not known yet, unwrap it once it arrives
+         return new TransformingNotifyingFuture<Object, Object>() {
+            @Override
+            protected Object transform(Object result) {
+               return processRetVal(result, ctx);
+            }
+         }.listenTo((NotifyingFuture<Object>) retVal);
+      }
       if (retVal instanceof MarshalledValue) {
          if (ctx.isOriginLocal()) {
             if (trace) log.tracef("Return is a marshall value, so extract instance from: %s", retVal);
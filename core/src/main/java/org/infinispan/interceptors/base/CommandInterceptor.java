@@ -37,6 +37,7 @@
 import org.infinispan.factories.scopes.Scopes;
 import org.infinispan.interceptors.InterceptorChain;
 import org.infinispan.remoting.InboundInvocationHandler;
+import org.infinispan.util.concurrent.locks.RemoteCommandParker;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -137,7 +138,7 @@ protected Object handleDefault(InvocationContext ctx, VisitableCommand command)
    protected final long getLockAcquisitionTimeout(FlagAffectedCommand command, boolean skipLocking) {
       if (!skipLocking)
          return command.hasFlag(Flag.ZERO_LOCK_ACQUISITION_TIMEOUT) ?
-               0 : cacheConfiguration.locking().lockAcquisitionTimeout();
+               0 : RemoteCommandParker.lockAcquisitionTimeout(cacheConfiguration.locking().lockAcquisitionTimeout());
 
       return -1;
    }
@@ -2,6 +2,7 @@
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.MetadataAwareCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.RemoveCommand;
@@ -17,6 +18,8 @@
 import org.infinispan.marshall.Marshaller;
 import org.infinispan.metadata.Metadata;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 
@@ -108,6 +111,33 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return null;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      TypeConverter<Object, Object, Object, Object> converter =
+            determineTypeConverter(command.getFlags());
+      // remember the original keys, so that they can be used in the returned map
+      Map<Object, Object> originalKeys = new HashMap<Object, Object>(command.getKeys().size());
+      for (Object key : command.getKeys())
+         originalKeys.put(converter.boxKey(key), key);
+      command.setKeys(originalKeys.keySet());
+      Map<?, ?> ret = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      Map<Object, Object> unboxed = new HashMap<Object, Object>(ret.size());
+      for (Map.Entry<?, ?> e : ret.entrySet()) {
+         Object key = originalKeys.get(e.getKey());
+         if (command.isReturnEntries()) {
+            InternalCacheEntry entry = (InternalCacheEntry) e.getValue();
+            Object returnValue = converter.unboxValue(entry.getValue());
+            // Create a copy of the entry to avoid modifying the internal entry
+            unboxed.put(key, entryFactory.create(
+                  entry.getKey(), returnValue, entry.getMetadata(),
+                  entry.getLifespan(), entry.getMaxIdle()));
+         } else {
+            unboxed.put(key, converter.unboxValue(e.getValue()));
+         }
+      }
+      return unboxed;
+   }
+
    @Override
    public Object visitReplaceCommand(InvocationContext ctx, ReplaceCommand command) throws Throwable {
       Object key = command.getKey();
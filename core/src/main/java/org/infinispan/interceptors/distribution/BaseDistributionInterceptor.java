@@ -24,6 +24,8 @@
 
 import org.infinispan.CacheException;
 import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.write.DataWriteCommand;
 import org.infinispan.commands.write.WriteCommand;
@@ -32,6 +34,9 @@
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ReplicaSelector;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.interceptors.ClusteringInterceptor;
 import org.infinispan.interceptors.locking.ClusteringDependentLogic;
@@ -43,11 +48,28 @@
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcOptions;
 import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.jgroups.SuspectException;
 import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.DeferredReturnFuture;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.concurrent.TransformingNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.infinispan.factories.KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR;
 
 /**
  * Base class for distribution of entries across a cluster.
@@ -64,6 +86,12 @@ public abstract class BaseDistributionInterceptor extends ClusteringInterceptor
 
    protected ClusteringDependentLogic cdl;
 
+   private ExecutorService asyncTransportExecutor;
+
+   private TimeService timeService;
+
+   private ReplicaSelector replicaSelector;
+
    private static final Log log = LogFactory.getLog(BaseDistributionInterceptor.class);
 
    @Override
@@ -72,9 +100,14 @@ protected Log getLog() {
    }
 
    @Inject
-   public void injectDependencies(DistributionManager distributionManager, ClusteringDependentLogic cdl) {
+   public void injectDependencies(DistributionManager distributionManager, ClusteringDependentLogic cdl,
+                                  @ComponentName(ASYNC_TRANSPORT_EXECUTOR) ExecutorService asyncTransportExecutor,
+                                  TimeService timeService, ReplicaSelector replicaSelector) {
       this.dm = distributionManager;
       this.cdl = cdl;
+      this.asyncTransportExecutor = asyncTransportExecutor;
+      this.timeService = timeService;
+      this.replicaSelector = replicaSelector;
    }
 
    @Override
@@ -85,6 +118,13 @@ protected final InternalCacheEntry retrieveFromRemoteSource(Object key, Invocati
       List<Address> targets = new ArrayList<Address>(stateTransferManager.getCacheTopology().getReadConsistentHash().locateOwners(key));
       // if any of the recipients has left the cluster since the command was issued, just don't wait for its response
       targets.retainAll(rpcManager.getTransport().getMembers());
+      // remote locks must be acquired on all the owners
+      if (!acquireRemoteLock && cacheConfiguration.clustering().hash().staggeredRemoteGets()) {
+         targets.remove(rpcManager.getAddress());
+         if (targets.size() > 1) {
+            return retrieveFromRemoteSourceStaggered(key, get, replicaSelector.orderOwners(targets));
+         }
+      }
       ResponseFilter filter = new ClusteredGetResponseValidityFilter(targets, rpcManager.getAddress());
       RpcOptions options = rpcManager.getRpcOptionsBuilder(ResponseMode.WAIT_FOR_VALID_RESPONSE, false)
             .responseFilter(filter).build();
@@ -105,6 +145,278 @@ protected final InternalCacheEntry retrieveFromRemoteSource(Object key, Invocati
       return null;
    }
 
+   /**
+    * Sends the get to the owners one at a time, in the order chosen by the {@link ReplicaSelector}. The next owner is
+    * asked when the previous one didn't reply within the delay it usually takes to reply, or as soon as an owner
+    * replies with something else than a {@link SuccessfulResponse}. The first successful response wins, the other requests still in flight are
+    * left to complete on their own.
+    */
+   private InternalCacheEntry retrieveFromRemoteSourceStaggered(Object key, ClusteredGetCommand get,
+                                                                List<Address> targets) throws Exception {
+      final BlockingQueue<OwnerResponse> replies = new LinkedBlockingQueue<OwnerResponse>();
+      RpcOptions options = rpcManager.getDefaultRpcOptions(true);
+      long timeoutNanos = options.timeUnit().toNanos(options.timeout());
+      int sent = 0;
+      int pending = 0;
+      Exception failure = null;
+      while (true) {
+         if (pending == 0 && sent < targets.size()) {
+            sendStaggeredGet(targets.get(sent++), get, options, replies);
+            pending++;
+         }
+         if (pending == 0) break;
+
+         OwnerResponse reply;
+         if (sent < targets.size()) {
+            reply = replies.poll(replicaSelector.responseDelay(targets.get(sent - 1)), TimeUnit.NANOSECONDS);
+            if (reply == null) {
+               log.tracef("Owner %s did not reply in time, asking %s too", targets.get(sent - 1), targets.get(sent));
+               sendStaggeredGet(targets.get(sent++), get, options, replies);
+               pending++;
+               continue;
+            }
+         } else {
+            // every request has its own timeout, this is just a safety net
+            reply = replies.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (reply == null) {
+               throw new TimeoutException("Timed out waiting for the owners of " + key + " to reply");
+            }
+         }
+         pending--;
+
+         try {
+            Response response = reply.future.get().get(reply.owner);
+            if (response instanceof SuccessfulResponse) {
+               InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) response).getResponseValue();
+               return cacheValue == null ? null : cacheValue.toInternalCacheEntry(key);
+            }
+            log.tracef("Owner %s could not answer the remote get for %s: %s", reply.owner, key, response);
+         } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof Exception)) throw e;
+            log.tracef(e.getCause(), "Remote get from owner %s failed", reply.owner);
+            failure = (Exception) e.getCause();
+         }
+      }
+      // nobody replied with a successful response, report the failure if there was one
+      if (failure != null && !(failure instanceof SuspectException)) throw failure;
+      return null;
+   }
+
+   @SuppressWarnings("unchecked")
+   private void sendStaggeredGet(final Address owner, ClusteredGetCommand get, RpcOptions options,
+                                 final BlockingQueue<OwnerResponse> replies) {
+      final long startNanos = timeService.time();
+      final DeferredReturnFuture<Map<Address, Response>> future = new DeferredReturnFuture<Map<Address, Response>>();
+      future.attachListener(new FutureListener<Map<Address, Response>>() {
+         @Override
+         public void futureDone(Future<Map<Address, Response>> ignored) {
+            // the listener's argument doesn't hold the result, the deferred future does
+            boolean successful = false;
+            try {
+               future.get();
+               successful = true;
+            } catch (Exception e) {
+               // the caller gets the failure from the future
+            }
+            replicaSelector.requestCompleted(owner, timeService.timeDuration(startNanos, TimeUnit.NANOSECONDS), successful);
+            replies.add(new OwnerResponse(owner, future));
+         }
+      });
+      replicaSelector.requestSent(owner);
+      try {
+         rpcManager.invokeRemotelyInFuture(Collections.singletonList(owner), get, options,
+               (NotifyingNotifiableFuture) future);
+      } catch (RuntimeException e) {
+         replicaSelector.requestCompleted(owner, timeService.timeDuration(startNanos, TimeUnit.NANOSECONDS), false);
+         throw e;
+      }
+   }
+
+   private static final class OwnerResponse {
+      final Address owner;
+      final Future<Map<Address, Response>> future;
+
+      OwnerResponse(Address owner, Future<Map<Address, Response>> future) {
+         this.owner = owner;
+         this.future = future;
+      }
+   }
+
+   /**
+    * Retrieves the entries of several keys from remote sources. The keys are grouped by the owner the
+    * {@link ReplicaSelector} picks among their owners in the read consistent hash and a single
+    * {@link ClusteredGetAllCommand} is sent to each owner, all the requests being in flight at the same time. The keys an owner could not answer for (e.g. because they are affected by a rehash)
+    * are then retrieved one by one with {@link #retrieveFromRemoteSource}.
+    *
+    * @return the entries that were found, keyed by their key
+    */
+   protected final Map<Object, InternalCacheEntry> retrieveAllFromRemoteSources(Collection<?> keys, InvocationContext ctx,
+                                                                               FlagAffectedCommand command) throws Exception {
+      ConsistentHash ch = stateTransferManager.getCacheTopology().getReadConsistentHash();
+      List<Address> members = rpcManager.getTransport().getMembers();
+      Address self = rpcManager.getAddress();
+      Map<Address, List<Object>> keysByOwner = new HashMap<Address, List<Object>>();
+      // keys without a live remote owner, or that their owner couldn't answer for, are retrieved one by one
+      List<Object> unresolved = new ArrayList<Object>();
+      for (Object key : keys) {
+         List<Address> owners = new ArrayList<Address>(ch.locateOwners(key));
+         // if an owner has left the cluster since the command was issued, don't ask it
+         owners.retainAll(members);
+         owners.remove(self);
+         if (owners.isEmpty()) {
+            unresolved.add(key);
+            continue;
+         }
+         Address owner = owners.size() == 1 ? owners.get(0) : replicaSelector.orderOwners(owners).get(0);
+         List<Object> ownerKeys = keysByOwner.get(owner);
+         if (ownerKeys == null) {
+            ownerKeys = new ArrayList<Object>();
+            keysByOwner.put(owner, ownerKeys);
+         }
+         ownerKeys.add(key);
+      }
+
+      Map<Address, Future<Map<Address, Response>>> futures = new HashMap<Address, Future<Map<Address, Response>>>();
+      Address inline = null;
+      for (Map.Entry<Address, List<Object>> e : keysByOwner.entrySet()) {
+         // one of the requests is sent from the calling thread
+         if (inline == null) {
+            inline = e.getKey();
+         } else {
+            futures.put(e.getKey(), asyncTransportExecutor.submit(getAllCallable(e.getKey(), e.getValue(), command)));
+         }
+      }
+
+      Map<Object, InternalCacheEntry> entries = new HashMap<Object, InternalCacheEntry>();
+      if (inline != null) {
+         List<Object> ownerKeys = keysByOwner.get(inline);
+         try {
+            Map<Address, Response> responses = getAllCallable(inline, ownerKeys, command).call();
+            addClusteredGetAllResults(inline, ownerKeys, responses, entries, unresolved);
+         } catch (SuspectException e) {
+            log.tracef("Owner %s left the cluster, retrieving its keys from other owners", inline);
+            unresolved.addAll(ownerKeys);
+         }
+      }
+      for (Map.Entry<Address, Future<Map<Address, Response>>> e : futures.entrySet()) {
+         List<Object> ownerKeys = keysByOwner.get(e.getKey());
+         try {
+            addClusteredGetAllResults(e.getKey(), ownerKeys, e.getValue().get(), entries, unresolved);
+         } catch (ExecutionException ee) {
+            if (!(ee.getCause() instanceof SuspectException)) {
+               throw ee.getCause() instanceof Exception ? (Exception) ee.getCause() : ee;
+            }
+            log.tracef("Owner %s left the cluster, retrieving its keys from other owners", e.getKey());
+            unresolved.addAll(ownerKeys);
+         }
+      }
+
+      for (Object key : unresolved) {
+         InternalCacheEntry ice = retrieveFromRemoteSource(key, ctx, false, command);
+         if (ice != null) entries.put(key, ice);
+      }
+      return entries;
+   }
+
+   private Callable<Map<Address, Response>> getAllCallable(final Address owner, List<Object> keys, FlagAffectedCommand command) {
+      ClusteredGetAllCommand getAll = cf.buildClusteredGetAllCommand(keys, command.getFlags());
+      RpcOptions options = rpcManager.getRpcOptionsBuilder(ResponseMode.SYNCHRONOUS, false).build();
+      final Callable<Map<Address, Response>> invocation = invokeRemotelyCallable(owner, getAll, options);
+      return new Callable<Map<Address, Response>>() {
+         @Override
+         public Map<Address, Response> call() throws Exception {
+            // let the replica selector know about the owner's load and response time
+            long startNanos = timeService.time();
+            boolean successful = false;
+            replicaSelector.requestSent(owner);
+            try {
+               Map<Address, Response> responses = invocation.call();
+               successful = true;
+               return responses;
+            } finally {
+               replicaSelector.requestCompleted(owner, timeService.timeDuration(startNanos, TimeUnit.NANOSECONDS), successful);
+            }
+         }
+      };
+   }
+
+   private void addClusteredGetAllResults(Address owner, List<Object> keys, Map<Address, Response> responses,
+                                          Map<Object, InternalCacheEntry> entries, List<Object> unresolved) {
+      Response r = responses.get(owner);
+      if (!(r instanceof SuccessfulResponse)) {
+         log.tracef("Unexpected response %s from %s, retrieving its keys from other owners", r, owner);
+         unresolved.addAll(keys);
+         return;
+      }
+      // the values are in the same order as the requested keys
+      Object[] values = (Object[]) ((SuccessfulResponse) r).getResponseValue();
+      for (int i = 0; i < values.length; i++) {
+         Object key = keys.get(i);
+         if (values[i] instanceof InternalCacheValue) {
+            entries.put(key, ((InternalCacheValue) values[i]).toInternalCacheEntry(key));
+         } else if (values[i] != null) {
+            // the owner is not sure about this key
+            unresolved.add(key);
+         }
+      }
+   }
+
+   /**
+    * Sends each of the given commands to its own recipient. When the invocation is synchronous all the commands are in
+    * flight at the same time.
+    *
+    * @return the responses of all the recipients
+    */
+   protected final Map<Address, Response> invokeRemotelyPerOwner(Map<Address, ? extends ReplicableCommand> commands,
+                                                                 RpcOptions options) {
+      Map<Address, Response> responses = new HashMap<Address, Response>(commands.size());
+      if (options.responseMode().isAsynchronous()) {
+         for (Map.Entry<Address, ? extends ReplicableCommand> e : commands.entrySet()) {
+            rpcManager.invokeRemotely(Collections.singleton(e.getKey()), e.getValue(), options);
+         }
+         return responses;
+      }
+
+      List<Future<Map<Address, Response>>> futures = new ArrayList<Future<Map<Address, Response>>>(commands.size());
+      Callable<Map<Address, Response>> inline = null;
+      for (Map.Entry<Address, ? extends ReplicableCommand> e : commands.entrySet()) {
+         Callable<Map<Address, Response>> callable = invokeRemotelyCallable(e.getKey(), e.getValue(), options);
+         // one of the commands is sent from the calling thread
+         if (inline == null) {
+            inline = callable;
+         } else {
+            futures.add(asyncTransportExecutor.submit(callable));
+         }
+      }
+      try {
+         if (inline != null) responses.putAll(inline.call());
+         for (Future<Map<Address, Response>> f : futures) {
+            responses.putAll(f.get());
+         }
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+         throw new CacheException(e.getCause());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new CacheException(e);
+      } catch (RuntimeException e) {
+         throw e;
+      } catch (Exception e) {
+         throw new CacheException(e);
+      }
+      return responses;
+   }
+
+   private Callable<Map<Address, Response>> invokeRemotelyCallable(final Address recipient, final ReplicableCommand command,
+                                                                   final RpcOptions options) {
+      return new Callable<Map<Address, Response>>() {
+         @Override
+         public Map<Address, Response> call() {
+            return rpcManager.invokeRemotely(Collections.singleton(recipient), command, options);
+         }
+      };
+   }
+
    protected final Object handleNonTxWriteCommand(InvocationContext ctx, DataWriteCommand command) throws Throwable {
       if (ctx.isInTxScope()) {
          throw new CacheException("Attempted execution of non-transactional write command in a transactional invocation context");
@@ -155,6 +467,9 @@ protected final Object handleNonTxWriteCommand(InvocationContext ctx, DataWriteC
             log.tracef("I'm not the primary owner, so sending the command to the primary owner(%s) in order to be forwarded", primaryOwner);
             Object localResult = invokeNextInterceptor(ctx, command);
             boolean isSyncForwarding = isSync || isNeedReliableReturnValues(command);
+            if (isSyncForwarding && ctx.isUseFutureReturnType()) {
+               return forwardToPrimaryOwnerInFuture(primaryOwner, command);
+            }
             Map<Address, Response> addressResponseMap = rpcManager.invokeRemotely(Collections.singletonList(primaryOwner), command,
                   rpcManager.getDefaultRpcOptions(isSyncForwarding));
             if (!isSyncForwarding) return localResult;
@@ -164,6 +479,23 @@ protected final Object handleNonTxWriteCommand(InvocationContext ctx, DataWriteC
       }
    }
 
+   /**
+    * Forwards the command to the primary owner without waiting for its response, the returned future is completed
+    * with the primary owner's return value by the thread receiving the response.
+    */
+   @SuppressWarnings("unchecked")
+   private NotifyingFuture<Object> forwardToPrimaryOwnerInFuture(final Address primaryOwner, DataWriteCommand command) {
+      DeferredReturnFuture<Map<Address, Response>> responses = new DeferredReturnFuture<Map<Address, Response>>();
+      rpcManager.invokeRemotelyInFuture(Collections.singletonList(primaryOwner), command,
+            rpcManager.getDefaultRpcOptions(true), (NotifyingNotifiableFuture) responses);
+      return new TransformingNotifyingFuture<Map<Address, Response>, Object>() {
+         @Override
+         protected Object transform(Map<Address, Response> addressResponseMap) {
+            return getResponseFromPrimaryOwner(primaryOwner, addressResponseMap);
+         }
+      }.listenTo(responses);
+   }
+
    private Object getResponseFromPrimaryOwner(Address primaryOwner, Map<Address, Response> addressResponseMap) {
       Response fromPrimaryOwner = addressResponseMap.get(primaryOwner);
       if (fromPrimaryOwner == null) {
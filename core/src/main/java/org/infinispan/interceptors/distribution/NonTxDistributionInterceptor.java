@@ -20,6 +20,7 @@
 package org.infinispan.interceptors.distribution;
 
 import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.ClearCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -79,6 +80,42 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       }
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         @SuppressWarnings("unchecked")
+         Map<Object, Object> result = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+         if (result.size() == command.getKeys().size()) return result;
+
+         List<Object> remoteKeys = new ArrayList<Object>();
+         for (Object key : command.getKeys()) {
+            if (!result.containsKey(key) && needsRemoteGet(ctx, key, command)) {
+               remoteKeys.add(key);
+            }
+         }
+         if (!remoteKeys.isEmpty()) {
+            if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+            Map<Object, InternalCacheEntry> remoteEntries = retrieveAllFromRemoteSources(remoteKeys, ctx, command);
+            for (Map.Entry<Object, InternalCacheEntry> e : remoteEntries.entrySet()) {
+               command.addRemotelyFetchedValue(e.getKey(), e.getValue());
+               result.put(e.getKey(), command.isReturnEntries() ? e.getValue() : e.getValue().getValue());
+            }
+         }
+         for (Object key : command.getKeys()) {
+            if (!result.containsKey(key)) {
+               InternalCacheEntry localEntry = localGetCacheEntry(ctx, key, false, command);
+               if (localEntry != null) {
+                  result.put(key, command.isReturnEntries() ? localEntry : localEntry.getValue());
+               }
+            }
+         }
+         return result;
+      } catch (SuspectException e) {
+         // retry
+         return visitGetAllCommand(ctx, command);
+      }
+   }
+
    private Object computeGetReturn(InternalCacheEntry entry, GetKeyValueCommand command) {
       if (!command.isReturnEntry() && entry != null)
          return entry.getValue();
@@ -93,37 +130,67 @@ public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand
 
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+      Address self = rpcManager.getAddress();
       if (ctx.isOriginLocal()) {
-         Set<Address> primaryOwners = new HashSet<Address>(command.getAffectedKeys().size());
-         for (Object k : command.getAffectedKeys()) {
-            primaryOwners.add(cdl.getPrimaryOwner(k));
+         // each primary owner only receives its own entries
+         Map<Address, Map<Object, Object>> entriesByPrimaryOwner = new HashMap<Address, Map<Object, Object>>();
+         for (Map.Entry<Object, Object> e : command.getMap().entrySet()) {
+            Address primaryOwner = cdl.getPrimaryOwner(e.getKey());
+            if (!primaryOwner.equals(self)) {
+               addEntry(entriesByPrimaryOwner, primaryOwner, e);
+            }
          }
-         primaryOwners.remove(rpcManager.getAddress());
-         if (!primaryOwners.isEmpty()) {
-            rpcManager.invokeRemotely(primaryOwners, command, rpcManager.getDefaultRpcOptions(isSynchronous(command)));
+         if (!entriesByPrimaryOwner.isEmpty()) {
+            invokeRemotelyPerOwner(buildPutMapCommands(command, entriesByPrimaryOwner),
+                                   rpcManager.getDefaultRpcOptions(isSynchronous(command)));
          }
       }
 
       if (!command.isForwarded()) {
-         //I need to forward this to all the nodes that are secondary owners
-         Set<Object> keysIOwn = new HashSet<Object>(command.getAffectedKeys().size());
-         for (Object k : command.getAffectedKeys()) {
-            if (cdl.localNodeIsPrimaryOwner(k)) {
-               keysIOwn.add(k);
+         //I need to forward the entries I'm the primary owner of to their secondary owners, each of them only
+         //receiving the entries it backs up
+         Map<Address, Map<Object, Object>> entriesByBackupOwner = new HashMap<Address, Map<Object, Object>>();
+         for (Map.Entry<Object, Object> e : command.getMap().entrySet()) {
+            if (cdl.localNodeIsPrimaryOwner(e.getKey())) {
+               for (Address owner : cdl.getOwners(e.getKey())) {
+                  if (!owner.equals(self)) {
+                     addEntry(entriesByBackupOwner, owner, e);
+                  }
+               }
             }
          }
-         Collection<Address> backupOwners = cdl.getOwners(keysIOwn);
-         if (backupOwners == null || !backupOwners.isEmpty()) {
+         if (!entriesByBackupOwner.isEmpty()) {
             command.setFlags(Flag.SKIP_LOCKING);
-            command.setForwarded(true);
-            rpcManager.invokeRemotely(backupOwners, command, rpcManager.getDefaultRpcOptions(isSynchronous(command)));
-            command.setForwarded(false);
+            Map<Address, PutMapCommand> forwarded = buildPutMapCommands(command, entriesByBackupOwner);
+            for (PutMapCommand c : forwarded.values()) {
+               c.setForwarded(true);
+            }
+            invokeRemotelyPerOwner(forwarded, rpcManager.getDefaultRpcOptions(isSynchronous(command)));
          }
       }
 
       return invokeNextInterceptor(ctx, command);
    }
 
+   private static void addEntry(Map<Address, Map<Object, Object>> entriesByOwner, Address owner, Map.Entry<Object, Object> entry) {
+      Map<Object, Object> entries = entriesByOwner.get(owner);
+      if (entries == null) {
+         entries = new HashMap<Object, Object>();
+         entriesByOwner.put(owner, entries);
+      }
+      entries.put(entry.getKey(), entry.getValue());
+   }
+
+   private Map<Address, PutMapCommand> buildPutMapCommands(PutMapCommand command, Map<Address, Map<Object, Object>> entriesByOwner) {
+      Map<Address, PutMapCommand> commands = new HashMap<Address, PutMapCommand>(entriesByOwner.size());
+      for (Map.Entry<Address, Map<Object, Object>> e : entriesByOwner.entrySet()) {
+         PutMapCommand ownerCommand = cf.buildPutMapCommand(e.getValue(), command.getMetadata(), command.getFlags());
+         ownerCommand.setTopologyId(command.getTopologyId());
+         commands.put(e.getKey(), ownerCommand);
+      }
+      return commands;
+   }
+
    @Override
    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
       return handleNonTxWriteCommand(ctx, command);
@@ -23,6 +23,7 @@
 import org.infinispan.metadata.Metadata;
 import org.infinispan.commands.FlagAffectedCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -41,6 +42,7 @@
 import org.infinispan.distribution.L1Manager;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
+import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcOptions;
 import org.infinispan.remoting.rpc.RpcOptionsBuilder;
@@ -54,7 +56,10 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
@@ -71,6 +76,7 @@ public class TxDistributionInterceptor extends BaseDistributionInterceptor {
 
    private boolean isPessimisticCache;
    private boolean useClusteredWriteSkewCheck;
+   private boolean deferRemotePrepareIfPrimaryOwner;
 
    private L1Manager l1Manager;
    private boolean isL1CacheEnabled;
@@ -132,6 +138,10 @@ public void start() {
       isL1CacheEnabled = cacheConfiguration.clustering().l1().enabled();
       useClusteredWriteSkewCheck = !isPessimisticCache &&
             cacheConfiguration.versioning().enabled() && cacheConfiguration.locking().writeSkewCheck();
+      // with recovery the other owners must keep the prepared transaction, in case this node crashes before the commit
+      deferRemotePrepareIfPrimaryOwner = !isPessimisticCache && defaultSynchronous &&
+            !cacheConfiguration.transaction().recovery().enabled() &&
+            !cacheConfiguration.transaction().transactionProtocol().isTotalOrder();
    }
 
    @Override
@@ -196,6 +206,47 @@ private Object visitGetCommand(InvocationContext ctx, GetKeyValueCommand command
       }
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         @SuppressWarnings("unchecked")
+         Map<Object, Object> result = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+         // If L1 caching is enabled, this is a remote command, and we found values in our cache
+         // we store them so that we can later invalidate them
+         if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+            for (Object key : result.keySet())
+               l1Manager.addRequestor(key, ctx.getOrigin());
+         }
+
+         if (ctx.isOriginLocal() && result.size() < command.getKeys().size()) {
+            List<Object> remoteKeys = new ArrayList<Object>();
+            for (Object key : command.getKeys()) {
+               if (!result.containsKey(key) && needsRemoteGet(ctx, key, command) && isRemoteGetNeeded(ctx, key)) {
+                  remoteKeys.add(key);
+               }
+            }
+            if (!remoteKeys.isEmpty()) {
+               if (trace) log.tracef("Doing a remote get for keys %s", remoteKeys);
+               Map<Object, InternalCacheEntry> remoteEntries = retrieveAllFromRemoteSources(remoteKeys, ctx, command);
+               for (Map.Entry<Object, InternalCacheEntry> e : remoteEntries.entrySet()) {
+                  Object value = storeRemoteEntry(ctx, e.getKey(), e.getValue(), false, command);
+                  result.put(e.getKey(), command.isReturnEntries() ? e.getValue() : value);
+               }
+            }
+            for (Object key : command.getKeys()) {
+               if (!result.containsKey(key) && !ctx.isEntryRemovedInContext(key)) {
+                  Object value = localGet(ctx, key, false, command, command.isReturnEntries());
+                  if (value != null) result.put(key, value);
+               }
+            }
+         }
+         return result;
+      } catch (SuspectException e) {
+         // retry
+         return visitGetAllCommand(ctx, command);
+      }
+   }
+
    protected void lockAndWrap(InvocationContext ctx, Object key, InternalCacheEntry ice, FlagAffectedCommand command) throws InterruptedException {
       boolean skipLocking = hasSkipLocking(command);
       long lockTimeout = getLockAcquisitionTimeout(command, skipLocking);
@@ -228,7 +279,11 @@ public Object visitLockControlCommand(TxInvocationContext ctx, LockControlComman
    public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command) throws Throwable {
       if (shouldInvokeRemoteTxCommand(ctx)) {
          Future<?> f = flushL1Caches(ctx);
-         sendCommitCommand(ctx, command);
+         if (((LocalTransaction) ctx.getCacheTransaction()).isRemotePrepareDeferred()) {
+            sendDeferredPrepare(ctx, command);
+         } else {
+            sendCommitCommand(ctx, command);
+         }
          blockOnL1FutureIfNeeded(f);
 
       } else if (isL1CacheEnabled && !ctx.isOriginLocal() && !ctx.getLockedKeys().isEmpty()) {
@@ -256,7 +311,12 @@ private void blockOnL1FutureIfNeeded(Future<?> f) {
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       Object retVal = invokeNextInterceptor(ctx, command);
 
-      if (shouldInvokeRemoteTxCommand(ctx)) {
+      if (shouldInvokeRemoteTxCommand(ctx) && canDeferRemotePrepare(ctx, command)) {
+         // the keys are locked and checked for write skew here, the other owners can't fail the prepare
+         if (trace) log.tracef("This node is the primary owner of all the keys of %s, the prepare will be sent with the commit",
+                               ctx.getGlobalTransaction());
+         ((LocalTransaction) ctx.getCacheTransaction()).markRemotePrepareDeferred();
+      } else if (shouldInvokeRemoteTxCommand(ctx)) {
          if (command.isOnePhaseCommit()) flushL1Caches(ctx); // if we are one-phase, don't block on this future.
 
          boolean affectsAllNodes = ctx.getCacheTransaction().hasModification(ClearCommand.class);
@@ -273,6 +333,36 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
       return retVal;
    }
 
+   /**
+    * A two-phase transaction doesn't need to send the prepare to the other owners if this node is the primary owner of
+    * all its keys: the locks and the write skew checks happen here, so the backup owners can apply the modifications
+    * with a one-phase prepare at commit time, saving a round trip.
+    */
+   private boolean canDeferRemotePrepare(TxInvocationContext ctx, PrepareCommand command) {
+      if (!deferRemotePrepareIfPrimaryOwner || command.isOnePhaseCommit())
+         return false;
+      LocalTransaction localTx = (LocalTransaction) ctx.getCacheTransaction();
+      // after a topology change the other owners may have to wait for this transaction's locks
+      if (localTx.isFromStateTransfer() || localTx.getTopologyId() != rpcManager.getTopologyId()
+            || localTx.hasModification(ClearCommand.class))
+         return false;
+      Set<Object> affectedKeys = ctx.getAffectedKeys();
+      if (affectedKeys.isEmpty())
+         return false;
+      for (Object key : affectedKeys) {
+         if (key instanceof DeltaCompositeKey || !cdl.localNodeIsPrimaryOwner(key))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Builds the prepare command sent to the other owners.
+    */
+   protected PrepareCommand buildRemotePrepareCommand(TxInvocationContext ctx, boolean onePhaseCommit) {
+      return cf.buildPrepareCommand(ctx.getGlobalTransaction(), ctx.getModifications(), onePhaseCommit);
+   }
+
    protected void prepareOnAffectedNodes(TxInvocationContext ctx, PrepareCommand command, Collection<Address> recipients, boolean sync) {
       try {
          // this method will return immediately if we're the only member (because exclude_self=true)
@@ -282,15 +372,77 @@ protected void prepareOnAffectedNodes(TxInvocationContext ctx, PrepareCommand co
          } else {
             rpcOptions = rpcManager.getDefaultRpcOptions(sync);
          }
-         rpcManager.invokeRemotely(recipients, command, rpcOptions);
+         invokePrepareRemotely(recipients, command, rpcOptions);
       } finally {
          transactionRemotelyPrepared(ctx);
       }
    }
 
+   /**
+    * Sends the prepare command to the given recipients. If the transaction contains putAll operations, each recipient
+    * only receives the entries of their maps that it owns.
+    */
+   protected final Map<Address, Response> invokePrepareRemotely(Collection<Address> recipients, PrepareCommand command,
+                                                              RpcOptions rpcOptions) {
+      WriteCommand[] modifications = command.getModifications();
+      boolean hasPutMap = false;
+      if (recipients != null && modifications != null) {
+         for (WriteCommand mod : modifications) {
+            if (mod instanceof PutMapCommand) {
+               hasPutMap = true;
+               break;
+            }
+         }
+      }
+      if (!hasPutMap) {
+         return rpcManager.invokeRemotely(recipients, command, rpcOptions);
+      }
+
+      // the entries of each putAll, grouped by owner
+      List<Map<Address, Map<Object, Object>>> putMapEntriesByOwner = new ArrayList<Map<Address, Map<Object, Object>>>(modifications.length);
+      for (WriteCommand mod : modifications) {
+         putMapEntriesByOwner.add(mod instanceof PutMapCommand ? groupByOwner(((PutMapCommand) mod).getMap()) : null);
+      }
+
+      Address self = rpcManager.getAddress();
+      Map<Address, PrepareCommand> prepares = new HashMap<Address, PrepareCommand>(recipients.size());
+      for (Address recipient : recipients) {
+         if (recipient.equals(self)) continue;
+         List<WriteCommand> recipientModifications = new ArrayList<WriteCommand>(modifications.length);
+         for (int i = 0; i < modifications.length; i++) {
+            if (modifications[i] instanceof PutMapCommand) {
+               Map<Object, Object> entries = putMapEntriesByOwner.get(i).get(recipient);
+               if (entries != null) {
+                  PutMapCommand putMap = (PutMapCommand) modifications[i];
+                  recipientModifications.add(cf.buildPutMapCommand(entries, putMap.getMetadata(), putMap.getFlags()));
+               }
+            } else {
+               recipientModifications.add(modifications[i]);
+            }
+         }
+         prepares.put(recipient, command.copy(recipientModifications));
+      }
+      return invokeRemotelyPerOwner(prepares, rpcOptions);
+   }
+
+   private Map<Address, Map<Object, Object>> groupByOwner(Map<Object, Object> map) {
+      Map<Address, Map<Object, Object>> entriesByOwner = new HashMap<Address, Map<Object, Object>>();
+      for (Map.Entry<Object, Object> e : map.entrySet()) {
+         for (Address owner : cdl.getOwners(e.getKey())) {
+            Map<Object, Object> entries = entriesByOwner.get(owner);
+            if (entries == null) {
+               entries = new HashMap<Object, Object>();
+               entriesByOwner.put(owner, entries);
+            }
+            entries.put(e.getKey(), e.getValue());
+         }
+      }
+      return entriesByOwner;
+   }
+
    @Override
    public Object visitRollbackCommand(TxInvocationContext ctx, RollbackCommand command) throws Throwable {
-      if (shouldInvokeRemoteTxCommand(ctx)) {
+      if (shouldInvokeRemoteTxCommand(ctx) && !isRemotePrepareDeferred(ctx)) {
          rpcManager.invokeRemotely(getCommitNodes(ctx), command, rpcManager.getDefaultRpcOptions(
                cacheConfiguration.transaction().syncRollbackPhase(), false));
       }
@@ -298,6 +450,12 @@ public Object visitRollbackCommand(TxInvocationContext ctx, RollbackCommand comm
       return invokeNextInterceptor(ctx, command);
    }
 
+   private boolean isRemotePrepareDeferred(TxInvocationContext ctx) {
+      // nothing was sent to the other owners, unless the topology changed and state transfer sent them the transaction
+      LocalTransaction localTx = (LocalTransaction) ctx.getCacheTransaction();
+      return localTx.isRemotePrepareDeferred() && localTx.getTopologyId() == rpcManager.getTopologyId();
+   }
+
    private Collection<Address> getCommitNodes(TxInvocationContext ctx) {
       LocalTransaction localTx = (LocalTransaction) ctx.getCacheTransaction();
       Collection<Address> affectedNodes = cdl.getOwners(ctx.getAffectedKeys());
@@ -307,14 +465,34 @@ private Collection<Address> getCommitNodes(TxInvocationContext ctx) {
 
    private void sendCommitCommand(TxInvocationContext ctx, CommitCommand command) throws TimeoutException, InterruptedException {
       Collection<Address> recipients = getCommitNodes(ctx);
+      rpcManager.invokeRemotely(recipients, command, getCommitRpcOptions());
+   }
+
+   /**
+    * Commits a transaction whose prepare was not sent to the other owners.
+    */
+   private void sendDeferredPrepare(TxInvocationContext ctx, CommitCommand command) throws TimeoutException, InterruptedException {
+      LocalTransaction localTx = (LocalTransaction) ctx.getCacheTransaction();
+      Collection<Address> recipients = cdl.getOwners(ctx.getAffectedKeys());
+      if (localTx.getTopologyId() == rpcManager.getTopologyId()) {
+         if (trace) log.tracef("Committing %s with a one-phase prepare", ctx.getGlobalTransaction());
+         invokePrepareRemotely(recipients, buildRemotePrepareCommand(ctx, true), getCommitRpcOptions());
+      } else {
+         // the owners changed since the prepare, so this node might not be the primary owner any more
+         if (trace) log.tracef("The topology changed, sending the prepare of %s before the commit", ctx.getGlobalTransaction());
+         prepareOnAffectedNodes(ctx, buildRemotePrepareCommand(ctx, false), recipients, defaultSynchronous);
+         ((LocalTxInvocationContext) ctx).remoteLocksAcquired(recipients);
+         sendCommitCommand(ctx, command);
+      }
+   }
+
+   private RpcOptions getCommitRpcOptions() {
       boolean syncCommitPhase = cacheConfiguration.transaction().syncCommitPhase();
-      RpcOptions rpcOptions;
       if (syncCommitPhase) {
-         rpcOptions = rpcManager.getRpcOptionsBuilder(ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS, false  ).build();
+         return rpcManager.getRpcOptionsBuilder(ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS, false  ).build();
       } else {
-         rpcOptions = rpcManager.getDefaultRpcOptions(false, false);
+         return rpcManager.getDefaultRpcOptions(false, false);
       }
-      rpcManager.invokeRemotely(recipients, command, rpcOptions);
    }
 
    private boolean shouldFetchRemoteValuesForWriteSkewCheck(InvocationContext ctx, WriteCommand cmd) {
@@ -375,10 +553,13 @@ private boolean isNotInL1(Object key) {
       return !isL1CacheEnabled || !dataContainer.containsKey(key);
    }
 
-   private Object remoteGetAndStoreInL1(InvocationContext ctx, Object key, boolean isWrite, FlagAffectedCommand command) throws Throwable {
+   private boolean isRemoteGetNeeded(InvocationContext ctx, Object key) {
       boolean isKeyLocalToNode = dm.getReadConsistentHash().isKeyLocalToNode(rpcManager.getAddress(), key);
+      return ctx.isOriginLocal() && !isKeyLocalToNode && isNotInL1(key) || dm.isAffectedByRehash(key) && !dataContainer.containsKey(key);
+   }
 
-      if (ctx.isOriginLocal() && !isKeyLocalToNode && isNotInL1(key) || dm.isAffectedByRehash(key) && !dataContainer.containsKey(key)) {
+   private Object remoteGetAndStoreInL1(InvocationContext ctx, Object key, boolean isWrite, FlagAffectedCommand command) throws Throwable {
+      if (isRemoteGetNeeded(ctx, key)) {
          if (trace) log.tracef("Doing a remote get for key %s", key);
 
          boolean acquireRemoteLock = false;
@@ -394,51 +575,61 @@ private Object remoteGetAndStoreInL1(InvocationContext ctx, Object key, boolean
          }
 
          if (ice != null) {
-            if (useClusteredWriteSkewCheck && ctx.isInTxScope()) {
-               ((TxInvocationContext)ctx).getCacheTransaction().putLookedUpRemoteVersion(key, ice.getMetadata().version());
-            }
+            return storeRemoteEntry(ctx, key, ice, isWrite, command);
+         }
+      } else {
+         if (trace) log.tracef("Not doing a remote get for key %s since entry is mapped to current node (%s), or is in L1.  Owners are %s", key, rpcManager.getAddress(), dm.locate(key));
+      }
+      return null;
+   }
 
-            if (isL1CacheEnabled) {
-               // We've requested the key only from the owners current (read) CH.
-               // If the intersection of owners in the current and pending CHs is empty,
-               // the requestor information might be lost, so we shouldn't store the entry in L1.
-               if (dm.isAffectedByRehash(key)) {
-                  if (trace) log.tracef("State transfer in progress for key %s, not storing to L1");
-                  return ice.getValue();
-               }
+   /**
+    * Stores an entry retrieved from a remote node in the context, and in L1 if enabled.
+    *
+    * @return the value of the entry
+    */
+   private Object storeRemoteEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean isWrite,
+                                   FlagAffectedCommand command) throws Throwable {
+      if (useClusteredWriteSkewCheck && ctx.isInTxScope()) {
+         ((TxInvocationContext)ctx).getCacheTransaction().putLookedUpRemoteVersion(key, ice.getMetadata().version());
+      }
 
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               // This should be fail-safe
-               try {
-                  long l1Lifespan = cacheConfiguration.clustering().l1().lifespan();
-                  long lifespan = ice.getLifespan() < 0 ? l1Lifespan : Math.min(ice.getLifespan(), l1Lifespan);
-                  // Make a copy of the metadata stored internally, adjust
-                  // lifespan/maxIdle settings and send them a modification
-                  Metadata newMetadata = ice.getMetadata().builder()
-                        .lifespan(lifespan).maxIdle(-1).build();
-                  PutKeyValueCommand put = cf.buildPutKeyValueCommand(
-                        ice.getKey(), ice.getValue(), newMetadata, command.getFlags());
-                  lockAndWrap(ctx, key, ice, command);
-                  invokeNextInterceptor(ctx, put);
-               } catch (Exception e) {
-                  // Couldn't store in L1 for some reason.  But don't fail the transaction!
-                  log.infof("Unable to store entry %s in L1 cache", key);
-                  log.debug("Inability to store in L1 caused by", e);
-               }
-            } else {
-               if (!ctx.replaceValue(key, ice)) {
-                  if (isWrite)
-                     lockAndWrap(ctx, key, ice, command);
-                  else
-                     ctx.putLookedUpEntry(key, ice);
-               }
-            }
+      if (isL1CacheEnabled) {
+         // We've requested the key only from the owners current (read) CH.
+         // If the intersection of owners in the current and pending CHs is empty,
+         // the requestor information might be lost, so we shouldn't store the entry in L1.
+         if (dm.isAffectedByRehash(key)) {
+            if (trace) log.tracef("State transfer in progress for key %s, not storing to L1");
             return ice.getValue();
          }
+
+         if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+         // This should be fail-safe
+         try {
+            long l1Lifespan = cacheConfiguration.clustering().l1().lifespan();
+            long lifespan = ice.getLifespan() < 0 ? l1Lifespan : Math.min(ice.getLifespan(), l1Lifespan);
+            // Make a copy of the metadata stored internally, adjust
+            // lifespan/maxIdle settings and send them a modification
+            Metadata newMetadata = ice.getMetadata().builder()
+                  .lifespan(lifespan).maxIdle(-1).build();
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(
+                  ice.getKey(), ice.getValue(), newMetadata, command.getFlags());
+            lockAndWrap(ctx, key, ice, command);
+            invokeNextInterceptor(ctx, put);
+         } catch (Exception e) {
+            // Couldn't store in L1 for some reason.  But don't fail the transaction!
+            log.infof("Unable to store entry %s in L1 cache", key);
+            log.debug("Inability to store in L1 caused by", e);
+         }
       } else {
-         if (trace) log.tracef("Not doing a remote get for key %s since entry is mapped to current node (%s), or is in L1.  Owners are %s", key, rpcManager.getAddress(), dm.locate(key));
+         if (!ctx.replaceValue(key, ice)) {
+            if (isWrite)
+               lockAndWrap(ctx, key, ice, command);
+            else
+               ctx.putLookedUpEntry(key, ice);
+         }
       }
-      return null;
+      return ice.getValue();
    }
 
    private Future<?> flushL1Caches(InvocationContext ctx) {
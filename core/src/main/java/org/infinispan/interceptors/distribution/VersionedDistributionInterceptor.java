@@ -49,13 +49,24 @@ protected Log getLog() {
       return log;
    }
 
+   @Override
+   protected PrepareCommand buildRemotePrepareCommand(TxInvocationContext ctx, boolean onePhaseCommit) {
+      VersionedPrepareCommand command = cf.buildVersionedPrepareCommand(ctx.getGlobalTransaction(),
+                                                                       ctx.getModifications(), onePhaseCommit);
+      if (onePhaseCommit) {
+         // the other owners commit with the versions generated here, by the primary owner of all the keys
+         command.setVersionsSeen(ctx.getCacheTransaction().getUpdatedEntryVersions());
+      }
+      return command;
+   }
+
    @Override
    protected void prepareOnAffectedNodes(TxInvocationContext ctx, PrepareCommand command, Collection<Address> recipients, boolean ignored) {
       setVersionsSeenOnPrepareCommand((VersionedPrepareCommand) command, ctx);
 
       // Perform the RPC
       try {
-         Map<Address, Response> resps = rpcManager.invokeRemotely(recipients, command, rpcManager.getDefaultRpcOptions(true, false));
+         Map<Address, Response> resps = invokePrepareRemotely(recipients, command, rpcManager.getDefaultRpcOptions(true, false));
 
          // Now store newly generated versions from lock owners for use during the commit phase.
          CacheTransaction ct = ctx.getCacheTransaction();
@@ -24,6 +24,7 @@
 package org.infinispan.interceptors.locking;
 
 import org.infinispan.atomic.DeltaCompositeKey;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -41,9 +42,12 @@
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.util.TimeService;
 import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.concurrent.locks.RemoteCommandParker;
 import org.infinispan.util.logging.Log;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.infinispan.util.Util.toStr;
@@ -103,6 +107,16 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       }
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         return super.visitGetAllCommand(ctx, command);
+      } finally {
+         //same as for visitGetKeyValueCommand
+         if (!ctx.isInTxScope()) lockManager.unlockAll(ctx);
+      }
+   }
+
    @Override
    public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command) throws Throwable {
       try {
@@ -161,19 +175,8 @@ protected final void lockAndRegisterBackupLock(TxInvocationContext ctx, Object k
     */
    protected final void lockKeyAndCheckOwnership(InvocationContext ctx, Object key, long lockTimeout, boolean skipLocking) throws InterruptedException {
       TxInvocationContext txContext = (TxInvocationContext) ctx;
-      int transactionTopologyId = -1;
-      boolean checkForPendingLocks = false;
-      if (clustered) {
-         CacheTransaction tx = txContext.getCacheTransaction();
-         boolean isFromStateTransfer = txContext.isOriginLocal() && ((LocalTransaction)tx).isFromStateTransfer();
-         // if the transaction is from state transfer it should not wait for the backup locks of other transactions
-         if (!isFromStateTransfer) {
-            transactionTopologyId = tx.getTopologyId();
-            if (transactionTopologyId != TransactionTable.CACHE_STOPPED_TOPOLOGY_ID) {
-               checkForPendingLocks = txTable.getMinTopologyId() < transactionTopologyId;
-            }
-         }
-      }
+      int transactionTopologyId = pendingLocksTopologyId(txContext);
+      boolean checkForPendingLocks = transactionTopologyId >= 0;
 
       Log log = getLog();
       boolean trace = log.isTraceEnabled();
@@ -181,8 +184,9 @@ protected final void lockKeyAndCheckOwnership(InvocationContext ctx, Object key,
          if (trace)
             log.tracef("Checking for pending locks and then locking key %s", toStr(key));
 
-         final long expectedEndTime = timeService.expectedEndTime(cacheConfiguration.locking().lockAcquisitionTimeout(),
-                                                                  TimeUnit.MILLISECONDS);
+         final long expectedEndTime = timeService.expectedEndTime(
+               RemoteCommandParker.lockAcquisitionTimeout(cacheConfiguration.locking().lockAcquisitionTimeout()),
+               TimeUnit.MILLISECONDS);
 
          // Check local transactions first
          waitForTransactionsToComplete(txContext, txTable.getLocalTransactions(), key, transactionTopologyId, expectedEndTime);
@@ -208,6 +212,64 @@ protected final void lockKeyAndCheckOwnership(InvocationContext ctx, Object key,
       }
    }
 
+   /**
+    * Same as {@link #lockAndRegisterBackupLock(TxInvocationContext, Object, long, boolean)} for many keys, but the
+    * locks of the keys for which this node is the primary owner are acquired with a single
+    * {@link org.infinispan.util.concurrent.locks.LockManager#lockAll(InvocationContext, Collection, long, boolean)}
+    * call, so the keys are locked in a deterministic order and the timeout applies to all of them.
+    */
+   protected final void lockAllAndRegisterBackupLocks(TxInvocationContext ctx, Collection<Object> keys, long lockTimeout, boolean skipLocking) throws InterruptedException {
+      List<Object> keysToLock = new ArrayList<Object>(keys.size());
+      for (Object key : keys) {
+         Object keyToCheck = key instanceof DeltaCompositeKey ?
+               ((DeltaCompositeKey) key).getDeltaAwareValueKey() :
+               key;
+         if (cdl.localNodeIsPrimaryOwner(keyToCheck)) {
+            keysToLock.add(key);
+         } else if (cdl.localNodeIsOwner(keyToCheck)) {
+            ctx.getCacheTransaction().addBackupLockForKey(key);
+         }
+      }
+      if (keysToLock.isEmpty())
+         return;
+
+      int transactionTopologyId = pendingLocksTopologyId(ctx);
+      if (transactionTopologyId >= 0) {
+         // see lockKeyAndCheckOwnership: wait for the transactions of previous topologies, with the same deadline
+         final long expectedEndTime = timeService.expectedEndTime(lockTimeout, TimeUnit.MILLISECONDS);
+         for (Object key : keysToLock) {
+            waitForTransactionsToComplete(ctx, txTable.getLocalTransactions(), key, transactionTopologyId, expectedEndTime);
+            waitForTransactionsToComplete(ctx, txTable.getRemoteTransactions(), key, transactionTopologyId, expectedEndTime);
+         }
+         final long remaining = timeService.remainingTime(expectedEndTime, TimeUnit.MILLISECONDS);
+         if (remaining <= 0) {
+            throw newTimeoutException(keysToLock.get(0), ctx);
+         }
+         lockTimeout = remaining;
+      }
+      lockManager.lockAll(ctx, keysToLock, lockTimeout, skipLocking);
+   }
+
+   /**
+    * @return the topology id of the transaction if it has to wait for the pending locks of transactions started in
+    *         previous topologies before acquiring a lock, or -1 otherwise
+    */
+   private int pendingLocksTopologyId(TxInvocationContext txContext) {
+      if (!clustered)
+         return -1;
+      CacheTransaction tx = txContext.getCacheTransaction();
+      boolean isFromStateTransfer = txContext.isOriginLocal() && ((LocalTransaction)tx).isFromStateTransfer();
+      // if the transaction is from state transfer it should not wait for the backup locks of other transactions
+      if (isFromStateTransfer)
+         return -1;
+      int transactionTopologyId = tx.getTopologyId();
+      if (transactionTopologyId != TransactionTable.CACHE_STOPPED_TOPOLOGY_ID
+            && txTable.getMinTopologyId() < transactionTopologyId) {
+         return transactionTopologyId;
+      }
+      return -1;
+   }
+
    private void waitForTransactionsToComplete(TxInvocationContext txContext, Collection<? extends CacheTransaction> transactions,
                                               Object key, int transactionTopologyId, long expectedEndTime) throws InterruptedException {
       GlobalTransaction thisTransaction = txContext.getGlobalTransaction();
@@ -461,12 +461,16 @@ public List<Address> getOwners(Collection<Object> affectedKeys) {
          if (affectedKeys.isEmpty()) {
             return InfinispanCollections.emptyList();
          }
+         if (affectedKeys.size() == 1) {
+            return dm.locate(affectedKeys.iterator().next());
+         }
          return Immutables.immutableListConvert(dm.locateAll(affectedKeys));
       }
 
       @Override
       public List<Address> getOwners(Object key) {
-         return Immutables.immutableListConvert(dm.locate(key));
+         // the consistent hash already returns an unmodifiable list
+         return dm.locate(key);
       }
 
       @Override
@@ -28,6 +28,7 @@
 import org.infinispan.commands.FlagAffectedCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.AbstractDataCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.write.ApplyDeltaCommand;
@@ -48,6 +49,7 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -88,6 +90,15 @@ private void markKeyAsRead(InvocationContext ctx, AbstractDataCommand command) {
          tctx.getCacheTransaction().addReadKey(command.getKey());
       }
    }
+
+   private void markKeysAsRead(InvocationContext ctx, GetAllCommand command) {
+      if (needToMarkReads && !command.hasFlag(Flag.IGNORE_RETURN_VALUES) && ctx.isInTxScope()) {
+         TxInvocationContext tctx = (TxInvocationContext) ctx;
+         for (Object key : command.getKeys()) {
+            tctx.getCacheTransaction().addReadKey(key);
+         }
+      }
+   }
    
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
@@ -96,14 +107,15 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
          log.trace("Not using lock reordering as we have a single key.");
          acquireLocksVisitingCommands(ctx, command);
       } else {
-         Object[] orderedKeys = command.getAffectedKeysToLock(true);
-         boolean hasClear = orderedKeys == null;
+         // the lock manager sorts the keys in lock order
+         Object[] keys = command.getAffectedKeysToLock(false);
+         boolean hasClear = keys == null;
          if (hasClear) {
             log.trace("Not using lock reordering as the prepare contains a clear command.");
             acquireLocksVisitingCommands(ctx, command);
          } else {
-            log.tracef("Using lock reordering, order is: %s", orderedKeys);
-            acquireAllLocks(ctx, orderedKeys);
+            log.tracef("Using lock reordering, locking keys: %s", keys);
+            acquireAllLocks(ctx, keys);
          }
       }
       return invokeNextAndCommitIf1Pc(ctx, command);
@@ -129,6 +141,12 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       markKeyAsRead(ctx, command);
       return super.visitGetKeyValueCommand(ctx, command);
    }
+
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      markKeysAsRead(ctx, command);
+      return super.visitGetAllCommand(ctx, command);
+   }
    
    @Override
    public Object visitApplyDeltaCommand(InvocationContext ctx, ApplyDeltaCommand command) throws Throwable {
@@ -271,10 +289,10 @@ private void performLocalWriteSkewCheck(TxInvocationContext ctx, Object key) {
       }
    }
 
-   private void acquireAllLocks(TxInvocationContext ctx, Object[] orderedKeys) throws InterruptedException {
+   private void acquireAllLocks(TxInvocationContext ctx, Object[] keys) throws InterruptedException {
       long lockTimeout = cacheConfiguration.locking().lockAcquisitionTimeout();
-      for (Object key: orderedKeys) {
-         lockAndRegisterBackupLock(ctx, key, lockTimeout, false);
+      lockAllAndRegisterBackupLocks(ctx, Arrays.asList(keys), lockTimeout, false);
+      for (Object key: keys) {
          performLocalWriteSkewCheck(ctx, key);
          ctx.addAffectedKey(key);
       }
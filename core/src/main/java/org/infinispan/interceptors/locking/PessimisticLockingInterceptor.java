@@ -27,6 +27,7 @@
 import org.infinispan.commands.FlagAffectedCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.AbstractDataCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.remote.recovery.TxCompletionNotificationCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -98,6 +99,25 @@ public final Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCo
       }
    }
 
+   @Override
+   public final Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         if (command.hasFlag(Flag.FORCE_WRITE_LOCK)) {
+            boolean skipLocking = hasSkipLocking(command);
+            long lockTimeout = getLockAcquisitionTimeout(command, skipLocking);
+            for (Object key : command.getKeys()) {
+               lockKeyAndCheckOwnership(ctx, key, lockTimeout, skipLocking);
+            }
+         }
+         return invokeNextInterceptor(ctx, command);
+      } catch (Throwable t) {
+         releaseLocksOnFailureBeforePrepare(ctx);
+         throw t;
+      } finally {
+         if (!ctx.isInTxScope()) lockManager.unlockAll(ctx);
+      }
+   }
+
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       return invokeNextAndCommitIf1Pc(ctx, command);
@@ -142,9 +162,7 @@ public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) t
          final TxInvocationContext txContext = (TxInvocationContext) ctx;
          boolean skipLocking = hasSkipLocking(command);
          long lockTimeout = getLockAcquisitionTimeout(command, skipLocking);
-         for (Object key : command.getMap().keySet()) {
-            lockAndRegisterBackupLock(txContext, key, lockTimeout, skipLocking);
-         }
+         lockAllAndRegisterBackupLocks(txContext, command.getMap().keySet(), lockTimeout, skipLocking);
          return invokeNextInterceptor(ctx, command);
       } catch (Throwable te) {
          releaseLocksOnFailureBeforePrepare(ctx);
@@ -251,9 +269,7 @@ public Object visitLockControlCommand(TxInvocationContext ctx, LockControlComman
 
          boolean skipLocking = hasSkipLocking(command);
          long lockTimeout = getLockAcquisitionTimeout(command, skipLocking);
-         for (Object key : command.getKeys()) {
-            lockAndRegisterBackupLock(ctx, key, lockTimeout, skipLocking);
-         }
+         lockAllAndRegisterBackupLocks(ctx, command.getKeys(), lockTimeout, skipLocking);
          return Boolean.TRUE;
       } catch (Throwable te) {
          releaseLocksOnFailureBeforePrepare(ctx);
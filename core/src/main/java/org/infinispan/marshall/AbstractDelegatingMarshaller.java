@@ -20,12 +20,17 @@
 package org.infinispan.marshall;
 
 import org.infinispan.io.ByteBuffer;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.jmx.annotations.MeasurementType;
+import org.infinispan.jmx.annotations.Units;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * With the introduction of global and cache marshallers, there's a need to
@@ -119,4 +124,64 @@ public BufferSizePredictor getBufferSizePredictor(Object o) {
       return marshaller.getBufferSizePredictor(o);
    }
 
+   private PayloadCompressor compressor() {
+      return marshaller instanceof VersionAwareMarshaller ? ((VersionAwareMarshaller) marshaller).getCompressor() : null;
+   }
+
+   @ManagedAttribute(description = "Number of payloads compressed", displayName = "Compressed payloads",
+                     measurementType = MeasurementType.TRENDSUP)
+   public long getCompressedPayloads() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : compressor.getCompressedPayloads();
+   }
+
+   @ManagedAttribute(description = "Size of the compressed payloads before compression, in bytes",
+                     displayName = "Bytes before compression", measurementType = MeasurementType.TRENDSUP)
+   public long getUncompressedBytes() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : compressor.getUncompressedBytes();
+   }
+
+   @ManagedAttribute(description = "Size of the compressed payloads after compression, in bytes",
+                     displayName = "Bytes after compression", measurementType = MeasurementType.TRENDSUP)
+   public long getCompressedBytes() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : compressor.getCompressedBytes();
+   }
+
+   @ManagedAttribute(description = "Size of the compressed payloads before compression divided by their size after compression",
+                     displayName = "Compression ratio")
+   public double getCompressionRatio() {
+      PayloadCompressor compressor = compressor();
+      if (compressor == null || compressor.getCompressedBytes() == 0) return 0;
+      return (double) compressor.getUncompressedBytes() / compressor.getCompressedBytes();
+   }
+
+   @ManagedAttribute(description = "Total time spent compressing payloads", displayName = "Compression time",
+                     units = Units.MILLISECONDS, measurementType = MeasurementType.TRENDSUP)
+   public long getCompressionTime() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : TimeUnit.NANOSECONDS.toMillis(compressor.getCompressionNanos());
+   }
+
+   @ManagedAttribute(description = "Number of payloads decompressed", displayName = "Decompressed payloads",
+                     measurementType = MeasurementType.TRENDSUP)
+   public long getDecompressedPayloads() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : compressor.getDecompressedPayloads();
+   }
+
+   @ManagedAttribute(description = "Total time spent decompressing payloads", displayName = "Decompression time",
+                     units = Units.MILLISECONDS, measurementType = MeasurementType.TRENDSUP)
+   public long getDecompressionTime() {
+      PayloadCompressor compressor = compressor();
+      return compressor == null ? 0 : TimeUnit.NANOSECONDS.toMillis(compressor.getDecompressionNanos());
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component", displayName = "Reset statistics")
+   public void resetStatistics() {
+      PayloadCompressor compressor = compressor();
+      if (compressor != null) compressor.resetStatistics();
+   }
+
 }
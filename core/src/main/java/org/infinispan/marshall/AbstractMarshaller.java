@@ -63,8 +63,8 @@ public ByteBuffer objectToBuffer(Object obj) throws IOException, InterruptedExce
          int estimatedSize = sizePredictor.nextSize(obj);
          ByteBuffer byteBuffer = objectToBuffer(obj, estimatedSize);
          int length = byteBuffer.getLength();
-         // If the prediction is way off, then trim it
-         if (estimatedSize > (length * 4)) {
+         // If the buffer is way bigger than the data, then trim it
+         if (byteBuffer.getBuf().length > (length * 4)) {
             byte[] buffer = trimBuffer(byteBuffer);
             byteBuffer = new ByteBuffer(buffer, 0, buffer.length);
          }
@@ -96,6 +96,7 @@ public byte[] objectToByteBuffer(Object obj, int estimatedSize) throws IOExcepti
    }
 
    private byte[] trimBuffer(ByteBuffer b) {
+      if (b.getOffset() == 0 && b.getLength() == b.getBuf().length) return b.getBuf();
       byte[] bytes = new byte[b.getLength()];
       System.arraycopy(b.getBuf(), b.getOffset(), bytes, 0, b.getLength());
       return bytes;
@@ -9,6 +9,7 @@
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.marshall.jboss.ExternalizerTable;
 
 /**
@@ -18,6 +19,7 @@
  * @since 5.0
  */
 @Scope(Scopes.NAMED_CACHE)
+@MBean(objectName = "Marshaller", description = "Marshaller of the cache's commands and cache store entries")
 public class CacheMarshaller extends AbstractDelegatingMarshaller {
 
    public CacheMarshaller(VersionAwareMarshaller marshaller) {
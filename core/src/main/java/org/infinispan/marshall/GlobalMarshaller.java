@@ -6,6 +6,7 @@
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.marshall.jboss.ExternalizerTable;
 
 /**
@@ -17,6 +18,7 @@
  * @since 5.0
  */
 @Scope(Scopes.GLOBAL)
+@MBean(objectName = "GlobalMarshaller", description = "Marshaller of the messages exchanged with other nodes")
 public class GlobalMarshaller extends AbstractDelegatingMarshaller {
 
    public GlobalMarshaller(VersionAwareMarshaller marshaller) {
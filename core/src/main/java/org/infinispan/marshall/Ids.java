@@ -130,4 +130,6 @@ public interface Ids {
 
    int NUMERIC_VERSION = 99;
 
+   int CACHE_TOPOLOGY_DELTA = 100;
+
 }
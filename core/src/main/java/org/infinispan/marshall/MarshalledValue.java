@@ -55,6 +55,11 @@
  * Note also that this will affect the way keys stored in the cache will work, if <tt>storeAsBinary</tt> is used, since
  * comparisons happen on the key which will be wrapped by a {@link MarshalledValue}.  Implementers of <tt>equals()</tt>
  * methods of their keys need to be aware of this.
+ * <p/>
+ * The binary representation compared is always the uncompressed one: it is produced by
+ * {@link StreamingMarshaller#startObjectOutput}, which never compresses, and it is decompressed when read if needed.
+ * This way nodes configured with different {@link org.infinispan.configuration.global.SerializationConfiguration#compressionThreshold()
+ * compression thresholds} still see the same keys as equal.
  * <p />
  *
  * This class can be marshalled either via its externalizer or via the JVM
@@ -206,6 +211,14 @@ public MarshalledValueByteStream getRaw() {
       return rawValue;
    }
 
+   /**
+    * Returns the size of the serialized representation of this value. If the value has not been
+    * serialized yet, this is an estimate.
+    */
+   public int getSerialisedSize() {
+      return serialisedSize;
+   }
+
    /**
     * Returns the 'cached' instance
     */
@@ -331,6 +344,8 @@ public MarshalledValue readObject(ObjectInput input) throws IOException {
          int length = UnsignedNumeric.readUnsignedInt(input);
          byte[] raw = new byte[length];
          input.readFully(raw);
+         // equality is based on the uncompressed bytes, whatever the compression threshold of the writer
+         raw = PayloadCompressor.uncompressed(raw);
          int hc = input.readInt();
 
          // A better way of sending down context information is needed in the future
@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.io.ByteBuffer;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the payloads produced by the {@link VersionAwareMarshaller} and keeps statistics about it.
+ * <p/>
+ * A compressed payload starts with {@link #COMPRESSED}, followed by the length of the uncompressed payload and the
+ * payload compressed with the fastest deflate level. An uncompressed payload starts with the JBoss Marshalling
+ * protocol version, which is never equal to {@link #COMPRESSED}, so the two kinds of payloads can be told apart and
+ * every node can read both, whatever its own threshold.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+final class PayloadCompressor {
+
+   /**
+    * The first byte of a compressed payload.
+    */
+   static final byte COMPRESSED = (byte) 0xFE;
+
+   private static final int HEADER_LENGTH = 5;
+
+   /**
+    * Compressing and decompressing happen in the threads marshalling the payloads, so each thread keeps its own
+    * (de)compressor instead of allocating native zlib state for every payload.
+    */
+   private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+      @Override
+      protected Deflater initialValue() {
+         return new Deflater(Deflater.BEST_SPEED, true);
+      }
+   };
+
+   private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+      @Override
+      protected Inflater initialValue() {
+         return new Inflater(true);
+      }
+   };
+
+   /**
+    * Decompresses the payloads found outside of a marshaller, e.g. by {@link #uncompressed(byte[])}.
+    */
+   private static final PayloadCompressor UNTRACKED = new PayloadCompressor(-1);
+
+   private final int threshold;
+   private final AtomicLong compressedPayloads = new AtomicLong(0);
+   private final AtomicLong uncompressedBytes = new AtomicLong(0);
+   private final AtomicLong compressedBytes = new AtomicLong(0);
+   private final AtomicLong compressionNanos = new AtomicLong(0);
+   private final AtomicLong decompressedPayloads = new AtomicLong(0);
+   private final AtomicLong decompressionNanos = new AtomicLong(0);
+
+   /**
+    * @param threshold the size from which payloads are compressed, or a negative value to never compress them
+    */
+   PayloadCompressor(int threshold) {
+      this.threshold = threshold;
+   }
+
+   boolean shouldCompress(int length) {
+      return threshold >= 0 && length >= threshold;
+   }
+
+   /**
+    * @return the compressed payload, or null if compressing it doesn't make it smaller
+    */
+   ByteBuffer compress(byte[] payload, int length) {
+      long start = System.nanoTime();
+      Deflater deflater = deflaters.get();
+      // anything that doesn't save at least the header is not worth decompressing on the other side
+      byte[] compressed = new byte[length];
+      int compressedLength = HEADER_LENGTH;
+      try {
+         deflater.setInput(payload, 0, length);
+         deflater.finish();
+         while (!deflater.finished() && compressedLength < compressed.length) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+         }
+         if (!deflater.finished() || compressedLength >= length) return null;
+      } finally {
+         deflater.reset();
+      }
+      compressed[0] = COMPRESSED;
+      writeInt(compressed, 1, length);
+
+      compressedPayloads.incrementAndGet();
+      uncompressedBytes.addAndGet(length);
+      compressedBytes.addAndGet(compressedLength);
+      compressionNanos.addAndGet(System.nanoTime() - start);
+      return new ByteBuffer(compressed, 0, compressedLength);
+   }
+
+   static boolean isCompressed(byte[] payload, int offset, int length) {
+      return length > 0 && payload[offset] == COMPRESSED;
+   }
+
+   /**
+    * @return {@code payload} decompressed if it is compressed, {@code payload} itself otherwise
+    */
+   static byte[] uncompressed(byte[] payload) throws IOException {
+      return isCompressed(payload, 0, payload.length) ? UNTRACKED.decompress(payload, 0, payload.length) : payload;
+   }
+
+   /**
+    * @return the uncompressed payload
+    */
+   byte[] decompress(byte[] payload, int offset, int length) throws IOException {
+      long start = System.nanoTime();
+      if (length < HEADER_LENGTH || payload[offset] != COMPRESSED)
+         throw new IOException("Not a compressed payload");
+      byte[] uncompressed = new byte[readInt(payload, offset + 1)];
+      Inflater inflater = inflaters.get();
+      try {
+         inflater.setInput(payload, offset + HEADER_LENGTH, length - HEADER_LENGTH);
+         int uncompressedLength = 0;
+         while (uncompressedLength < uncompressed.length) {
+            int inflated = inflater.inflate(uncompressed, uncompressedLength, uncompressed.length - uncompressedLength);
+            if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+               throw new IOException("Compressed payload ended after " + uncompressedLength + " of " + uncompressed.length + " bytes");
+            uncompressedLength += inflated;
+         }
+      } catch (DataFormatException e) {
+         throw new IOException("Corrupted compressed payload", e);
+      } finally {
+         inflater.reset();
+      }
+
+      decompressedPayloads.incrementAndGet();
+      decompressionNanos.addAndGet(System.nanoTime() - start);
+      return uncompressed;
+   }
+
+   /**
+    * Reads the rest of a compressed payload whose first byte was already consumed from the stream.
+    */
+   byte[] decompress(InputStream is) throws IOException {
+      ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream(Math.max(is.available() + 1, 512));
+      bytes.write(COMPRESSED);
+      byte[] buf = new byte[1024];
+      int bytesRead;
+      while ((bytesRead = is.read(buf, 0, buf.length)) != -1) bytes.write(buf, 0, bytesRead);
+      return decompress(bytes.getRawBuffer(), 0, bytes.size());
+   }
+
+   private static void writeInt(byte[] buf, int offset, int value) {
+      buf[offset] = (byte) (value >>> 24);
+      buf[offset + 1] = (byte) (value >>> 16);
+      buf[offset + 2] = (byte) (value >>> 8);
+      buf[offset + 3] = (byte) value;
+   }
+
+   private static int readInt(byte[] buf, int offset) {
+      return ((buf[offset] & 0xFF) << 24) | ((buf[offset + 1] & 0xFF) << 16)
+            | ((buf[offset + 2] & 0xFF) << 8) | (buf[offset + 3] & 0xFF);
+   }
+
+   long getCompressedPayloads() {
+      return compressedPayloads.get();
+   }
+
+   long getUncompressedBytes() {
+      return uncompressedBytes.get();
+   }
+
+   long getCompressedBytes() {
+      return compressedBytes.get();
+   }
+
+   long getCompressionNanos() {
+      return compressionNanos.get();
+   }
+
+   long getDecompressedPayloads() {
+      return decompressedPayloads.get();
+   }
+
+   long getDecompressionNanos() {
+      return decompressionNanos.get();
+   }
+
+   void resetStatistics() {
+      compressedPayloads.set(0);
+      uncompressedBytes.set(0);
+      compressedBytes.set(0);
+      compressionNanos.set(0);
+      decompressedPayloads.set(0);
+      decompressionNanos.set(0);
+   }
+}
@@ -56,8 +56,23 @@ public class VersionAwareMarshaller extends AbstractMarshaller implements Stream
 
    private static final int VERSION_510 = 510;
 
+   /**
+    * Output buffers bigger than this are not kept for reuse, so that the buffers of all the threads don't pin too
+    * much memory.
+    */
+   static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+   /**
+    * An output buffer for each thread, reused across {@link #objectToBuffer(Object, int)} calls. A thread takes it
+    * out while marshalling, so nested calls (e.g. from an externalizer marshalling part of its object into a byte
+    * array) use buffers of their own.
+    */
+   private static final ThreadLocal<ExposedByteArrayOutputStream> reusableOutput =
+         new ThreadLocal<ExposedByteArrayOutputStream>();
+
    private final JBossMarshaller defaultMarshaller;
    private String cacheName;
+   private PayloadCompressor compressor = new PayloadCompressor(-1);
 
    public VersionAwareMarshaller() {
       defaultMarshaller = new JBossMarshaller();
@@ -72,6 +87,7 @@ public void inject(Cache cache, Configuration cfg, InvocationContextContainer ic
       }
 
       this.defaultMarshaller.inject(extTable, cfg, icc, globalCfg);
+      this.compressor = new PayloadCompressor(globalCfg.serialization().compressionThreshold());
    }
 
    @Override
@@ -86,7 +102,16 @@ public void stop() {
 
    @Override
    protected ByteBuffer objectToBuffer(Object obj, int estimatedSize) throws IOException, InterruptedException {
-      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(estimatedSize);
+      // Marshal into a buffer that is reused by this thread and copy the result into an array of the exact size.
+      // The callers keep the returned buffer around, e.g. JGroups keeps the messages until they are acknowledged,
+      // so an array sized by prediction (and grown as needed) would waste more than the cost of the copy.
+      ExposedByteArrayOutputStream baos = reusableOutput.get();
+      if (baos != null) {
+         reusableOutput.remove();
+         baos.reset();
+      } else {
+         baos = new ExposedByteArrayOutputStream(estimatedSize);
+      }
       ObjectOutput out = startObjectOutput(baos, false, estimatedSize);
       try {
          defaultMarshaller.objectToObjectStream(obj, out);
@@ -104,11 +129,28 @@ protected ByteBuffer objectToBuffer(Object obj, int estimatedSize) throws IOExce
       } finally {
          finishObjectOutput(out);
       }
-      return new ByteBuffer(baos.getRawBuffer(), 0, baos.size());
+      ByteBuffer buffer = null;
+      if (compressor.shouldCompress(baos.size())) {
+         buffer = compressor.compress(baos.getRawBuffer(), baos.size());
+      }
+      if (buffer == null) {
+         byte[] bytes = new byte[baos.size()];
+         System.arraycopy(baos.getRawBuffer(), 0, bytes, 0, bytes.length);
+         buffer = new ByteBuffer(bytes, 0, bytes.length);
+      }
+      if (baos.getRawBuffer().length <= MAX_REUSED_BUFFER_SIZE) {
+         reusableOutput.set(baos);
+      }
+      return buffer;
    }
 
    @Override
    public Object objectFromByteBuffer(byte[] bytes, int offset, int len) throws IOException, ClassNotFoundException {
+      if (PayloadCompressor.isCompressed(bytes, offset, len)) {
+         bytes = compressor.decompress(bytes, offset, len);
+         offset = 0;
+         len = bytes.length;
+      }
       ByteArrayInputStream is = new ByteArrayInputStream(bytes, offset, len);
       ObjectInput in = startObjectInput(is, false);
       Object o = null;
@@ -159,6 +201,15 @@ public void objectToObjectStream(Object obj, ObjectOutput out) throws IOExceptio
 
    @Override   
    public ObjectInput startObjectInput(InputStream is, boolean isReentrant) throws IOException {
+      // payloads produced by objectToBuffer() may be compressed, but only streams that can be rewound can be checked
+      if (is.markSupported()) {
+         is.mark(1);
+         if (is.read() == (PayloadCompressor.COMPRESSED & 0xFF)) {
+            is = new ByteArrayInputStream(compressor.decompress(is));
+         } else {
+            is.reset();
+         }
+      }
       ObjectInput in = defaultMarshaller.startObjectInput(is, isReentrant);
       int versionId;
       try {
@@ -212,4 +263,8 @@ public boolean isMarshallable(Object o) throws Exception {
    public String getCacheName() {
       return cacheName;
    }
+
+   PayloadCompressor getCompressor() {
+      return compressor;
+   }
 }
@@ -28,7 +28,9 @@
 import org.infinispan.commands.read.MapCombineCommand;
 import org.infinispan.commands.read.ReduceCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.CoalescedRpcCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
 import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
@@ -91,8 +93,8 @@ public CacheRpcCommandExternalizer(GlobalComponentRegistry gcr, ReplicableComman
    public Set<Class<? extends CacheRpcCommand>> getTypeClasses() {
       Set<Class<? extends CacheRpcCommand>> coreCommands = Util.asSet(MapCombineCommand.class,
                ReduceCommand.class, DistributedExecuteCommand.class, LockControlCommand.class,
-               StateRequestCommand.class, StateResponseCommand.class, ClusteredGetCommand.class,
-               MultipleRpcCommand.class, SingleRpcCommand.class, CommitCommand.class,
+               StateRequestCommand.class, StateResponseCommand.class, ClusteredGetCommand.class, ClusteredGetAllCommand.class,
+               MultipleRpcCommand.class, SingleRpcCommand.class, CoalescedRpcCommand.class, CommitCommand.class,
                PrepareCommand.class, RollbackCommand.class, RemoveCacheCommand.class,
                TxCompletionNotificationCommand.class, GetInDoubtTransactionsCommand.class,
                GetInDoubtTxInfoCommand.class, CompleteTransactionCommand.class,
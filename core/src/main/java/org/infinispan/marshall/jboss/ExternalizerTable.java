@@ -93,6 +93,7 @@
 import org.infinispan.remoting.transport.jgroups.JGroupsTopologyAwareAddress;
 import org.infinispan.topology.CacheJoinInfo;
 import org.infinispan.topology.CacheTopology;
+import org.infinispan.topology.CacheTopologyDelta;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.transaction.xa.recovery.InDoubtTxInfoImpl;
@@ -305,6 +306,7 @@ private void loadInternalMarshallables() {
       addInternalExternalizer(new TopologyAwareConsistentHashFactory.Externalizer());
       addInternalExternalizer(new TopologyAwareSyncConsistentHashFactory.Externalizer());
       addInternalExternalizer(new CacheTopology.Externalizer());
+      addInternalExternalizer(new CacheTopologyDelta.Externalizer());
       addInternalExternalizer(new CacheJoinInfo.Externalizer());
       addInternalExternalizer(new TransactionInfo.Externalizer());
       addInternalExternalizer(new StateChunk.Externalizer());
@@ -27,6 +27,7 @@
 import org.infinispan.commands.CancellationService;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.CoalescedRpcCommand;
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.tx.totalorder.TotalOrderCommitCommand;
 import org.infinispan.commands.tx.totalorder.TotalOrderPrepareCommand;
@@ -46,6 +47,7 @@
 import org.infinispan.remoting.responses.ExceptionResponse;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.responses.ResponseGenerator;
+import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.transaction.TotalOrderRemoteTransactionState;
@@ -53,10 +55,14 @@
 import org.infinispan.transaction.totalorder.TotalOrderManager;
 import org.infinispan.util.concurrent.BlockingRunnable;
 import org.infinispan.util.concurrent.BlockingTaskAwareExecutorService;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.concurrent.locks.RemoteCommandParker;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Sets the cache interceptor chain on an RPCCommand before calling it to perform
@@ -108,7 +114,33 @@ public void handle(final CacheRpcCommand cmd, Address origin, org.jgroups.blocks
          return;
       }
 
-      handleWithWaitForBlocks(cmd, cr, response, preserveOrder);
+      if (cmd instanceof CoalescedRpcCommand) {
+         handleCoalesced((CoalescedRpcCommand) cmd, origin, cr, response, preserveOrder);
+      } else {
+         handleWithWaitForBlocks(cmd, cr, response, preserveOrder);
+      }
+   }
+
+   /**
+    * Handles each of the coalesced commands as if it had been received on its own, and sends back the responses of
+    * all the commands once the last one is done.
+    */
+   private void handleCoalesced(CoalescedRpcCommand cmd, Address origin, ComponentRegistry cr,
+                                org.jgroups.blocks.Response response, boolean preserveOrder) {
+      CacheRpcCommand[] commands = cmd.getCommands();
+      if (trace) log.tracef("Handling %d coalesced commands from %s", commands.length, origin);
+      CoalescedResponses responses = response == null ? null : new CoalescedResponses(response, commands.length);
+      for (int i = 0; i < commands.length; i++) {
+         CacheRpcCommand command = commands[i];
+         org.jgroups.blocks.Response commandResponse = responses == null ? null : responses.forCommand(i);
+         try {
+            command.setOrigin(origin);
+            handleWithWaitForBlocks(command, cr, commandResponse, preserveOrder);
+         } catch (Throwable throwable) {
+            log.exceptionHandlingCommand(command, throwable);
+            reply(commandResponse, new ExceptionResponse(new CacheException("Problems invoking command.", throwable)));
+         }
+      }
    }
 
 
@@ -186,7 +218,7 @@ public void run() {
          });
          return;
       } else if (!preserveOrder && cmd.canBlock()) {
-         remoteCommandsExecutor.execute(new Runnable() {
+         RemoteCommandParker.ParkableTask task = new RemoteCommandParker.ParkableTask() {
             @Override
             public void run() {
                Response resp;
@@ -199,7 +231,19 @@ public void run() {
                reply(response, resp);
                afterResponseSent(cmd, resp);
             }
-         });
+
+            @Override
+            public void lockTimedOut(TimeoutException e) {
+               reply(response, new ExceptionResponse(e));
+            }
+         };
+         RemoteCommandParker parker = cr.getComponent(RemoteCommandParker.class);
+         if (parker != null && parker.isEnabled()) {
+            // don't let a command waiting for a lock take a remote thread
+            parker.execute(cmd, task);
+         } else {
+            remoteCommandsExecutor.execute(task);
+         }
          return;
       }
       Response resp = handleInternal(cmd, cr);
@@ -219,6 +263,42 @@ private void reply(org.jgroups.blocks.Response response, Object retVal) {
       }
    }
 
+   /**
+    * Collects the responses of coalesced commands, which may be handled by different threads, and sends them back
+    * together when the last one arrives.
+    */
+   private static final class CoalescedResponses {
+      private final org.jgroups.blocks.Response response;
+      private final Response[] responses;
+      private final AtomicInteger missing;
+
+      CoalescedResponses(org.jgroups.blocks.Response response, int numCommands) {
+         this.response = response;
+         this.responses = new Response[numCommands];
+         this.missing = new AtomicInteger(numCommands);
+      }
+
+      org.jgroups.blocks.Response forCommand(final int index) {
+         return new org.jgroups.blocks.Response() {
+            private final AtomicBoolean sent = new AtomicBoolean(false);
+
+            @Override
+            public void send(Object reply, boolean isException) {
+               // a command that fails after replying must not be counted twice
+               if (!sent.compareAndSet(false, true)) {
+                  if (trace) log.tracef("Ignoring second response %s for coalesced command %d", reply, index);
+                  return;
+               }
+               responses[index] = (Response) reply;
+               // the decrement publishes the response to the thread sending them all
+               if (missing.decrementAndGet() == 0) {
+                  response.send(SuccessfulResponse.create(responses), false);
+               }
+            }
+         };
+      }
+   }
+
    /**
     * invoked after the {@link Response} is sent back to the originator.
     *
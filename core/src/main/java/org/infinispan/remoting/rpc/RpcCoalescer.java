@@ -0,0 +1,291 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.rpc;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.remoting.responses.ExceptionResponse;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.remoting.transport.jgroups.SuspectException;
+import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the synchronous commands of a cache that are bound for the same node.
+ * <p/>
+ * Every destination has at most one message in flight. A command for a destination with nothing in flight is sent
+ * right away, from the caller's thread. Commands for a destination that is waiting for a response are queued, and
+ * when that response arrives all of them are sent together in a
+ * {@link org.infinispan.commands.remote.CoalescedRpcCommand}. This is Nagle's algorithm without the timer: a lone
+ * writer sees the same latency as without coalescing, and the more writers compete for a destination, the more
+ * commands share each message.
+ * <p/>
+ * The receiver replies with the response of every command, which is handed back to the thread that invoked it, so
+ * each caller gets the same responses and exceptions it would have got by sending its command on its own.
+ * <p/>
+ * Since the queued commands wait for the whole in-flight message to be handled, {@link RpcManagerImpl} never hands
+ * over commands that may wait for a lock on the destination.
+ *
+ * @see org.infinispan.configuration.cache.SyncConfigurationBuilder#coalesceRpcs(boolean)
+ * @since 5.3
+ */
+@ThreadSafe
+final class RpcCoalescer {
+
+   private static final Log log = LogFactory.getLog(RpcCoalescer.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   /**
+    * The maximum number of commands sent in a single message, to keep the size of the messages reasonable.
+    */
+   static final int MAX_COALESCED_COMMANDS = 128;
+
+   private final Transport transport;
+   private final CommandsFactory commandsFactory;
+   private final ExecutorService executor;
+   private final TimeService timeService;
+   private final ConcurrentMap<Address, Destination> destinations = CollectionFactory.makeConcurrentMap();
+
+   RpcCoalescer(Transport transport, CommandsFactory commandsFactory, ExecutorService executor, TimeService timeService) {
+      this.transport = transport;
+      this.commandsFactory = commandsFactory;
+      this.executor = executor;
+      this.timeService = timeService;
+   }
+
+   /**
+    * Sends a command to each of the recipients and waits for their responses, with the same semantics as
+    * {@link Transport#invokeRemotely} in the {@link ResponseMode#SYNCHRONOUS} and
+    * {@link ResponseMode#SYNCHRONOUS_IGNORE_LEAVERS} modes.
+    */
+   Map<Address, Response> invokeRemotely(Collection<Address> recipients, CacheRpcCommand command,
+                                         boolean ignoreLeavers, long timeoutMillis) throws Exception {
+      List<Address> members = transport.getMembers();
+      if (!ignoreLeavers && !members.containsAll(recipients)) {
+         throw new SuspectException("One or more nodes have left the cluster while replicating command " + command);
+      }
+      long endTime = timeService.expectedEndTime(timeoutMillis, TimeUnit.MILLISECONDS);
+      Address self = transport.getAddress();
+      Map<Address, SettableNotifyingFuture<Response>> futures =
+            new HashMap<Address, SettableNotifyingFuture<Response>>(recipients.size());
+      for (Address recipient : recipients) {
+         if (recipient.equals(self) || !members.contains(recipient) || futures.containsKey(recipient)) continue;
+         SettableNotifyingFuture<Response> future = new SettableNotifyingFuture<Response>();
+         futures.put(recipient, future);
+         destination(recipient).add(new PendingCommand(command, timeoutMillis, future));
+      }
+
+      Map<Address, Response> responses = new HashMap<Address, Response>(futures.size());
+      for (Map.Entry<Address, SettableNotifyingFuture<Response>> e : futures.entrySet()) {
+         Address recipient = e.getKey();
+         Response response;
+         try {
+            response = e.getValue().get(timeService.remainingTime(endTime, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+         } catch (java.util.concurrent.TimeoutException te) {
+            throw new TimeoutException("Replication timeout for " + recipient);
+         } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (ignoreLeavers && cause instanceof SuspectException) {
+               log.tracef("Target node %s left during remote call, ignoring", recipient);
+               continue;
+            }
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw new CacheException(cause);
+         }
+         // null responses are ignored, like in the transport
+         if (response != null) responses.put(recipient, response);
+      }
+      return responses;
+   }
+
+   private Destination destination(Address address) {
+      Destination destination = destinations.get(address);
+      if (destination == null) {
+         destination = new Destination(address);
+         Destination existing = destinations.putIfAbsent(address, destination);
+         if (existing != null) destination = existing;
+      }
+      return destination;
+   }
+
+   private static final class PendingCommand {
+      final CacheRpcCommand command;
+      final long timeoutMillis;
+      final SettableNotifyingFuture<Response> future;
+
+      PendingCommand(CacheRpcCommand command, long timeoutMillis, SettableNotifyingFuture<Response> future) {
+         this.command = command;
+         this.timeoutMillis = timeoutMillis;
+         this.future = future;
+      }
+   }
+
+   private final class Destination {
+      private final Address address;
+      @GuardedBy("this")
+      private final List<PendingCommand> queue = new ArrayList<PendingCommand>();
+      @GuardedBy("this")
+      private boolean inFlight;
+
+      Destination(Address address) {
+         this.address = address;
+      }
+
+      void add(PendingCommand command) {
+         List<PendingCommand> batch;
+         synchronized (this) {
+            queue.add(command);
+            if (inFlight) return;
+            inFlight = true;
+            batch = nextBatch();
+         }
+         send(batch);
+      }
+
+      @GuardedBy("this")
+      private List<PendingCommand> nextBatch() {
+         List<PendingCommand> head = queue.subList(0, Math.min(queue.size(), MAX_COALESCED_COMMANDS));
+         List<PendingCommand> batch = new ArrayList<PendingCommand>(head);
+         head.clear();
+         return batch;
+      }
+
+      private void send(final List<PendingCommand> batch) {
+         try {
+            ReplicableCommand rpc;
+            long timeout = 0;
+            for (PendingCommand pending : batch) {
+               timeout = Math.max(timeout, pending.timeoutMillis);
+            }
+            if (batch.size() == 1) {
+               rpc = batch.get(0).command;
+            } else {
+               List<CacheRpcCommand> commands = new ArrayList<CacheRpcCommand>(batch.size());
+               for (PendingCommand pending : batch) {
+                  commands.add(pending.command);
+               }
+               rpc = commandsFactory.buildCoalescedRpcCommand(commands);
+            }
+            if (trace) log.tracef("Sending %d command(s) to %s", batch.size(), address);
+            transport.invokeRemotelyInFuture(Collections.singletonList(address), rpc,
+                                             ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS, timeout, true)
+                  .attachListener(new FutureListener<Map<Address, Response>>() {
+                     @Override
+                     public void futureDone(Future<Map<Address, Response>> future) {
+                        try {
+                           deliver(batch, future.get());
+                        } catch (ExecutionException e) {
+                           fail(batch, e.getCause());
+                        } catch (Throwable t) {
+                           fail(batch, t);
+                        }
+                        sendNext();
+                     }
+                  });
+         } catch (Throwable t) {
+            fail(batch, t);
+            sendNext();
+         }
+      }
+
+      private void deliver(List<PendingCommand> batch, Map<Address, Response> responses) {
+         Response response = responses.get(address);
+         if (response == null && !transport.getMembers().contains(address)) {
+            fail(batch, new SuspectException("Suspected member: " + address, address));
+         } else if (batch.size() == 1) {
+            batch.get(0).future.set(response);
+         } else if (!(response instanceof SuccessfulResponse)) {
+            // the receiver didn't handle the commands at all, e.g. because it hasn't joined the cache yet
+            for (PendingCommand pending : batch) {
+               pending.future.set(response);
+            }
+         } else {
+            Response[] commandResponses = (Response[]) ((SuccessfulResponse) response).getResponseValue();
+            for (int i = 0; i < batch.size(); i++) {
+               Response commandResponse = commandResponses[i];
+               if (commandResponse instanceof ExceptionResponse) {
+                  Exception e = ((ExceptionResponse) commandResponse).getException();
+                  batch.get(i).future.setException(log.remoteException(address, e));
+               } else {
+                  batch.get(i).future.set(commandResponse);
+               }
+            }
+         }
+      }
+
+      private void fail(List<PendingCommand> batch, Throwable t) {
+         for (PendingCommand pending : batch) {
+            pending.future.setException(t);
+         }
+      }
+
+      private void sendNext() {
+         final List<PendingCommand> batch;
+         synchronized (this) {
+            if (queue.isEmpty()) {
+               inFlight = false;
+               if (!transport.getMembers().contains(address)) destinations.remove(address, this);
+               return;
+            }
+            batch = nextBatch();
+         }
+         // don't send from the thread that delivered the response
+         try {
+            executor.execute(new Runnable() {
+               @Override
+               public void run() {
+                  send(batch);
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            fail(batch, e);
+            sendNext();
+         }
+      }
+   }
+}
@@ -28,7 +28,12 @@
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.TopologyAffectedCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.write.DataWriteCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
@@ -49,6 +54,8 @@
 import org.infinispan.topology.CacheTopology;
 import org.infinispan.topology.LocalTopologyManager;
 import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -60,6 +67,7 @@
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -96,6 +104,7 @@ public class RpcManagerImpl implements RpcManager {
    private StateTransferManager stateTransferManager;
    private String cacheName;
    private TimeService timeService;
+   private RpcCoalescer coalescer;
 
    @Inject
    public void injectDependencies(Transport t, Cache cache, Configuration cfg,
@@ -117,6 +126,9 @@ public void injectDependencies(Transport t, Cache cache, Configuration cfg,
    private void start() {
       statisticsEnabled = configuration.jmxStatistics().enabled();
 
+      if (configuration.clustering().sync().coalesceRpcs() && configuration.clustering().cacheMode().isSynchronous())
+         coalescer = new RpcCoalescer(t, cf, asyncExecutor, timeService);
+
       if (configuration.transaction().transactionProtocol().isTotalOrder())
          t.checkTotalOrderSupported(configuration.clustering().cacheMode().isDistributed()
                || configuration.clustering().cacheMode().isReplicated());
@@ -300,9 +312,16 @@ public Map<Address, Response> invokeRemotely(Collection<Address> recipients, Rep
                topologyAffectedCommand.setTopologyId(stateTransferManager.getCacheTopology().getTopologyId());
             }
          }
-         Map<Address, Response> result = t.invokeRemotely(recipients, rpc, options.responseMode(), options.timeUnit().toMillis(options.timeout()),
-                                                          !options.fifoOrder(), options.responseFilter(), options.totalOrder(),
-                                                          configuration.clustering().cacheMode().isDistributed());
+         Map<Address, Response> result;
+         if (canCoalesce(recipients, rpc, options)) {
+            result = coalescer.invokeRemotely(recipients, (CacheRpcCommand) rpc,
+                                              options.responseMode() == ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS,
+                                              options.timeUnit().toMillis(options.timeout()));
+         } else {
+            result = t.invokeRemotely(recipients, rpc, options.responseMode(), options.timeUnit().toMillis(options.timeout()),
+                                      !options.fifoOrder(), options.responseFilter(), options.totalOrder(),
+                                      configuration.clustering().cacheMode().isDistributed());
+         }
          if (statisticsEnabled) replicationCount.incrementAndGet();
          if (trace) log.tracef("Response(s) to %s is %s", rpc, result);
          if (options.responseMode().isSynchronous()) {
@@ -331,6 +350,11 @@ public void invokeRemotelyInFuture(final Collection<Address> recipients, final R
       if (trace) log.tracef("%s invoking in future call %s to recipient list %s with options &s", t.getAddress(),
                             rpc, recipients, options);
 
+      if (canInvokeWithoutThread(options)) {
+         invokeRemotelyWithoutThread(recipients, rpc, options, future);
+         return;
+      }
+
       final CountDownLatch futureSet = new CountDownLatch(1);
       Callable<Object> c = new Callable<Object>() {
          @Override
@@ -354,6 +378,86 @@ public Object call() throws Exception {
       futureSet.countDown();
    }
 
+   /**
+    * Only synchronous calls to explicit recipients that wait for all the responses are coalesced. Synchronous calls
+    * are always sent out of band, so coalescing them doesn't change the order in which they are delivered.
+    * <p/>
+    * The commands queued for a destination are only sent once the response to the previous message arrives, so a
+    * command that may wait for a lock on the destination is never coalesced: the command releasing that lock could be
+    * queued behind it until the lock acquisition timeout expires. That excludes all the transactional commands, and
+    * the writes sent to the primary owner, which is the only owner locking the key in a non-transactional cache.
+    */
+   private boolean canCoalesce(Collection<Address> recipients, ReplicableCommand rpc, RpcOptions options) {
+      ResponseMode mode = options.responseMode();
+      return coalescer != null && recipients != null && options.responseFilter() == null && !options.totalOrder()
+            && (mode == ResponseMode.SYNCHRONOUS || mode == ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS)
+            && rpc instanceof CacheRpcCommand && (!rpc.canBlock() || isSentToBackupOwners(rpc));
+   }
+
+   /**
+    * @return {@code true} if {@code rpc} is a non-transactional write of keys for which this node is the primary owner,
+    *         so the recipients apply it without locking
+    */
+   private boolean isSentToBackupOwners(ReplicableCommand rpc) {
+      if (configuration.transaction().transactionMode().isTransactional() || !(rpc instanceof SingleRpcCommand)) {
+         return false;
+      }
+      ReplicableCommand command = ((SingleRpcCommand) rpc).getCommand();
+      if (!(command instanceof DataWriteCommand || command instanceof PutMapCommand)) {
+         return false;
+      }
+      CacheTopology cacheTopology = stateTransferManager.getCacheTopology();
+      ConsistentHash ch = cacheTopology == null ? null : cacheTopology.getWriteConsistentHash();
+      if (ch == null) return false;
+      Address self = t.getAddress();
+      for (Object key : ((WriteCommand) command).getAffectedKeys()) {
+         if (!self.equals(ch.locatePrimaryOwner(key))) return false;
+      }
+      return true;
+   }
+
+   /**
+    * Synchronous calls without a response filter can wait for their responses in the transport, instead of blocking
+    * a thread of the async transport executor until they arrive.
+    */
+   private boolean canInvokeWithoutThread(RpcOptions options) {
+      return options.responseMode().isSynchronous() && options.responseFilter() == null && !options.totalOrder()
+            && configuration.clustering().cacheMode().isClustered();
+   }
+
+   @SuppressWarnings("unchecked")
+   private void invokeRemotelyWithoutThread(Collection<Address> recipients, ReplicableCommand rpc, RpcOptions options,
+                                            final NotifyingNotifiableFuture<Object> future) {
+      if (!(rpc instanceof CacheRpcCommand)) {
+         rpc = cf.buildSingleRpcCommand(rpc);
+      }
+      if (rpc instanceof TopologyAffectedCommand) {
+         TopologyAffectedCommand topologyAffectedCommand = (TopologyAffectedCommand) rpc;
+         if (topologyAffectedCommand.getTopologyId() == -1) {
+            topologyAffectedCommand.setTopologyId(stateTransferManager.getCacheTopology().getTopologyId());
+         }
+      }
+      final long startTimeNanos = statisticsEnabled ? timeService.time() : 0;
+      NotifyingFuture<Map<Address, Response>> responses = t.invokeRemotelyInFuture(recipients, rpc,
+            options.responseMode(), options.timeUnit().toMillis(options.timeout()), !options.fifoOrder());
+      future.setNetworkFuture((Future<Object>) (Future<?>) responses);
+      responses.attachListener(new FutureListener<Map<Address, Response>>() {
+         @Override
+         public void futureDone(Future<Map<Address, Response>> done) {
+            if (statisticsEnabled) {
+               try {
+                  done.get();
+                  replicationCount.incrementAndGet();
+               } catch (Exception e) {
+                  replicationFailures.incrementAndGet();
+               }
+               totalReplicationTime.getAndAdd(timeService.timeDuration(startTimeNanos, TimeUnit.MILLISECONDS));
+            }
+            future.notifyDone();
+         }
+      });
+   }
+
    @Override
    public Transport getTransport() {
       return t;
@@ -450,6 +554,7 @@ public long getAverageReplicationTime() {
    // mainly for unit testing
    public void setTransport(Transport t) {
       this.t = t;
+      if (coalescer != null) coalescer = new RpcCoalescer(t, cf, asyncExecutor, timeService);
    }
 
    @Override
@@ -31,6 +31,7 @@
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.xsite.XSiteBackup;
 
@@ -72,6 +73,26 @@ Map<Address, Response> invokeRemotely(Collection<Address> recipients, Replicable
                                  boolean anycast) throws Exception;
 
 
+   /**
+    * Same as {@link #invokeRemotely(Collection, ReplicableCommand, ResponseMode, long, boolean, ResponseFilter, boolean, boolean)},
+    * except that it doesn't wait for the responses. The returned future is completed with the map of responses, or
+    * with the exception {@code invokeRemotely} would have thrown, by the thread that receives the last response. No
+    * thread is blocked while the responses are in flight.
+    *
+    * @param recipients       a list of Addresses to invoke the call on.  If this is null, the call is broadcast to the
+    *                         entire cluster.
+    * @param rpcCommand       the cache command to invoke
+    * @param mode             the response mode to use, either {@link ResponseMode#SYNCHRONOUS} or
+    *                         {@link ResponseMode#SYNCHRONOUS_IGNORE_LEAVERS}
+    * @param timeout          a timeout after which the future fails with a replication exception.
+    * @param usePriorityQueue if true, a priority queue is used to deliver messages.  May not be supported by all
+    *                         implementations.
+    * @return a future completed with the responses from each member contacted.
+    * @since 5.3
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                 ResponseMode mode, long timeout, boolean usePriorityQueue);
+
    BackupResponse backupRemotely(Collection<XSiteBackup> backups, ReplicableCommand rpcCommand) throws Exception;
 
    /**
@@ -33,6 +33,7 @@
 import org.infinispan.remoting.responses.SuccessfulResponse;
 import org.infinispan.statetransfer.StateRequestCommand;
 import org.infinispan.statetransfer.StateResponseCommand;
+import org.infinispan.statetransfer.StateTransferThrottle;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.RpcException;
 import org.infinispan.remoting.responses.ExceptionResponse;
@@ -40,6 +41,7 @@
 import org.infinispan.topology.CacheTopologyControlCommand;
 import org.infinispan.util.TimeService;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -61,6 +63,7 @@
 import org.jgroups.util.NotifyingFuture;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
+import org.jgroups.util.TimeScheduler;
 
 import java.io.NotSerializableException;
 import java.util.Collections;
@@ -95,13 +98,15 @@ public class CommandAwareRpcDispatcher extends RpcDispatcher {
    private final JGroupsTransport transport;
    private final GlobalComponentRegistry gcr;
    private final BackupReceiverRepository backupReceiverRepository;
+   private final StateTransferThrottle stateTransferThrottle;
 
    public CommandAwareRpcDispatcher(Channel channel,
                                     JGroupsTransport transport,
                                     ExecutorService asyncExecutor,
                                     ExecutorService remoteCommandsExecutor,
                                     InboundInvocationHandler inboundInvocationHandler,
-                                    GlobalComponentRegistry gcr, BackupReceiverRepository backupReceiverRepository) {
+                                    GlobalComponentRegistry gcr, BackupReceiverRepository backupReceiverRepository,
+                                    StateTransferThrottle stateTransferThrottle) {
       this.server_obj = transport;
       this.asyncExecutor = asyncExecutor;
       this.remoteCommandsExecutor = remoteCommandsExecutor;
@@ -109,6 +114,7 @@ public CommandAwareRpcDispatcher(Channel channel,
       this.transport = transport;
       this.gcr = gcr;
       this.backupReceiverRepository = backupReceiverRepository;
+      this.stateTransferThrottle = stateTransferThrottle;
 
       // MessageDispatcher superclass constructors will call start() so perform all init here
       this.setMembershipListener(transport);
@@ -202,6 +208,39 @@ public Response call() throws Exception {
       }
    }
 
+   /**
+    * Sends the command to each of the recipients and returns without waiting for the responses. The returned future is
+    * completed by the thread delivering the last response, or by the JGroups timer if the timeout expires first, in
+    * which case the members that did not reply are present in the response list as not received.
+    *
+    * @param recipients Guaranteed not to be null or empty.  Must <b>not</b> contain self.
+    */
+   public org.infinispan.util.concurrent.NotifyingFuture<RspList<Object>> invokeRemoteCommandsInFuture(
+         List<Address> recipients, ReplicableCommand command, long timeout, boolean oob) {
+      if (trace) log.tracef("Replication task sending %s to addresses %s without waiting for the responses", command, recipients);
+
+      /// HACK ALERT!  Used for ISPN-1789.  Enable RSVP if the command is a cache topology control command.
+      boolean rsvp = command instanceof CacheTopologyControlCommand
+            || isRsvpCommand(command);
+
+      ResponseCollator collator = new ResponseCollator(recipients.size());
+      try {
+         Buffer buf = marshallCall(req_marshaller, command);
+         if (command instanceof StateResponseCommand) {
+            oob = throttleState(buf, recipients.size(), oob);
+         }
+         RequestOptions opts = new RequestOptions(ResponseMode.GET_ALL, timeout);
+         for (Address dest : recipients) {
+            NotifyingFuture<Object> f = sendMessageWithFuture(constructMessage(buf, dest, oob, rsvp, false), opts);
+            collator.watchFuture(f, dest);
+         }
+         collator.scheduleTimeout(channel.getProtocolStack().getTransport().getTimer(), timeout);
+      } catch (Exception e) {
+         collator.fail(rewrapAsCacheException(e));
+      }
+      return collator.result;
+   }
+
    public RspList<Object> broadcastRemoteCommands(ReplicableCommand command, ResponseMode mode, long timeout,
                                                   boolean oob, RspFilter filter,
                                                   boolean asyncMarshalling, boolean ignoreLeavers, boolean totalOrder, boolean distribution)
@@ -345,6 +384,22 @@ protected static Message constructMessage(Buffer buf, Address recipient, boolean
       return msg;
    }
 
+   /**
+    * Waits until the {@link StateTransferThrottle} allows this node to send a state chunk to its recipients.
+    * <p/>
+    * When the bandwidth is limited, state chunks are also sent as regular messages, even when the caller asked for OOB:
+    * they are then applied in order by the thread delivering the messages of their sender, instead of taking the remote
+    * commands threads away from the synchronous user commands. Otherwise the caller's choice is kept, so that an
+    * unthrottled state transfer is not serialized behind the regular messages of its sender.
+    *
+    * @return whether the chunk should be sent as an OOB message
+    */
+   private boolean throttleState(Buffer buf, int recipients, boolean oob) throws InterruptedException {
+      if (stateTransferThrottle == null) return oob;
+      stateTransferThrottle.acquire(buf.getLength() * recipients);
+      return oob && !stateTransferThrottle.isEnabled();
+   }
+
    static Buffer marshallCall(Marshaller marshaller, ReplicableCommand command) {
       Buffer buf;
       try {
@@ -370,6 +425,9 @@ private static Response processSingleCall(ReplicableCommand command, long timeou
       Response retval;
       Buffer buf;
       buf = marshallCall(marshaller, command);
+      if (command instanceof StateResponseCommand) {
+         oob = card.throttleState(buf, 1, oob);
+      }
       retval = card.sendMessage(constructMessage(buf, destination, oob, rsvp, false),
                                 new RequestOptions(mode, timeout));
 
@@ -508,6 +566,95 @@ public String toString() {
       }
    }
 
+   /**
+    * Collects the responses of the futures returned by {@link #invokeRemoteCommandsInFuture} and completes the result
+    * once all of them are done or the timeout expires.
+    */
+   final static class ResponseCollator implements FutureListener<Object>, Runnable {
+      final SettableNotifyingFuture<RspList<Object>> result = new SettableNotifyingFuture<RspList<Object>>();
+      @GuardedBy("this")
+      private final Map<Future<Object>, Address> futures = new HashMap<Future<Object>, Address>(4);
+      @GuardedBy("this")
+      private final RspList<Object> responses = new RspList<Object>();
+      @GuardedBy("this")
+      private int expectedResponses;
+      private volatile Future<?> timeoutTask;
+
+      ResponseCollator(int expectedResponses) {
+         this.expectedResponses = expectedResponses;
+      }
+
+      public synchronized void watchFuture(NotifyingFuture<Object> f, Address address) {
+         futures.put(f, address);
+         f.setListener(this);
+      }
+
+      void scheduleTimeout(TimeScheduler timer, long timeout) {
+         timeoutTask = timer.schedule(this, timeout, MILLISECONDS);
+         // the responses might have all been received in the meantime
+         if (result.isDone()) timeoutTask.cancel(false);
+      }
+
+      void fail(Exception e) {
+         synchronized (this) {
+            expectedResponses = 0;
+            for (Future<Object> f : futures.keySet()) f.cancel(true);
+         }
+         result.setException(e);
+      }
+
+      @Override
+      public void futureDone(Future<Object> future) {
+         synchronized (this) {
+            Address sender = futures.get(future);
+            // the listener could be notified twice, see FutureCollator
+            if (sender == null || expectedResponses == 0 || responses.containsKey(sender)) return;
+            try {
+               responses.addRsp(sender, future.get());
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof SuspectedException) {
+                  Rsp<Object> rsp = new Rsp<Object>(sender);
+                  rsp.setSuspected();
+                  responses.put(sender, rsp);
+               } else {
+                  responses.put(sender, new Rsp<Object>(sender, e.getCause()));
+               }
+            } catch (InterruptedException e) {
+               // the future is done, so it cannot happen
+               Thread.currentThread().interrupt();
+            }
+            if (--expectedResponses > 0) return;
+         }
+         complete();
+      }
+
+      /**
+       * Invoked by the timer if the responses are not all received in time.
+       */
+      @Override
+      public void run() {
+         synchronized (this) {
+            if (expectedResponses == 0) return;
+            expectedResponses = 0;
+            for (Map.Entry<Future<Object>, Address> e : futures.entrySet()) {
+               if (!responses.containsKey(e.getValue())) {
+                  // not received, the transport will report a timeout
+                  responses.put(e.getValue(), new Rsp<Object>(e.getValue()));
+                  e.getKey().cancel(true);
+               }
+            }
+         }
+         complete();
+      }
+
+      private void complete() {
+         Future<?> task = timeoutTask;
+         if (task != null) task.cancel(false);
+         if (trace) log.tracef("Responses: %s", responses);
+         result.set(responses);
+      }
+   }
+
    final static class FutureCollator implements FutureListener<Object> {
       final RspFilter filter;
       final Map<Future<Object>, SenderContainer> futures = new HashMap<Future<Object>, SenderContainer>(4);
@@ -47,6 +47,9 @@
 import org.infinispan.util.TimeService;
 import org.infinispan.util.TypedProperties;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -82,6 +85,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -128,6 +132,7 @@ public class JGroupsTransport extends AbstractTransport implements MembershipLis
    private GlobalComponentRegistry gcr;
    private BackupReceiverRepository backupReceiverRepository;
    private TimeService timeService;
+   private StateTransferThrottle stateTransferThrottle;
 
    private boolean globalStatsEnabled;
    private MBeanServer mbeanServer;
@@ -186,7 +191,7 @@ public void initialize(@ComponentName(GLOBAL_MARSHALLER) StreamingMarshaller mar
                           @ComponentName(REMOTE_COMMAND_EXECUTOR) ExecutorService remoteCommandsExecutor,
                           InboundInvocationHandler inboundInvocationHandler, CacheManagerNotifier notifier,
                           GlobalComponentRegistry gcr, BackupReceiverRepository backupReceiverRepository,
-                          TimeService timeService) {
+                          TimeService timeService, StateTransferThrottle stateTransferThrottle) {
       this.marshaller = marshaller;
       this.asyncExecutor = asyncExecutor;
       this.remoteCommandsExecutor = remoteCommandsExecutor;
@@ -195,6 +200,7 @@ public void initialize(@ComponentName(GLOBAL_MARSHALLER) StreamingMarshaller mar
       this.gcr = gcr;
       this.backupReceiverRepository = backupReceiverRepository;
       this.timeService = timeService;
+      this.stateTransferThrottle = stateTransferThrottle;
    }
 
    @Override
@@ -332,7 +338,8 @@ public org.jgroups.Address generateAddress() {
 
    private void initChannelAndRPCDispatcher() throws CacheException {
       initChannel();
-      dispatcher = new CommandAwareRpcDispatcher(channel, this, asyncExecutor, remoteCommandsExecutor, inboundInvocationHandler, gcr, backupReceiverRepository);
+      dispatcher = new CommandAwareRpcDispatcher(channel, this, asyncExecutor, remoteCommandsExecutor, inboundInvocationHandler, gcr, backupReceiverRepository,
+                                                 stateTransferThrottle);
       MarshallerAdapter adapter = new MarshallerAdapter(marshaller);
       dispatcher.setRequestMarshaller(adapter);
       dispatcher.setResponseMarshaller(adapter);
@@ -565,6 +572,51 @@ usePriorityQueue, toJGroupsFilter(responseFilter),
       return responses;
    }
 
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                        ResponseMode mode, long timeout, boolean usePriorityQueue) {
+      if (trace)
+         log.tracef("dests=%s, command=%s, mode=%s, timeout=%s, in future", recipients, rpcCommand, mode, timeout);
+      final SettableNotifyingFuture<Map<Address, Response>> result = new SettableNotifyingFuture<Map<Address, Response>>();
+      final boolean ignoreLeavers = mode == ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS;
+      if (recipients != null && !getMembers().containsAll(recipients)) {
+         if (ignoreLeavers) {
+            recipients = new HashSet<Address>(recipients);
+            recipients.retainAll(getMembers());
+         } else {
+            result.setException(new SuspectException("One or more nodes have left the cluster while replicating command " + rpcCommand));
+            return result;
+         }
+      }
+
+      List<org.jgroups.Address> jgAddressList = toJGroupsAddressListExcludingSelf(recipients == null ? members : recipients, false);
+      if (jgAddressList.isEmpty()) {
+         result.set(InfinispanCollections.<Address, Response>emptyMap());
+         return result;
+      }
+
+      dispatcher.invokeRemoteCommandsInFuture(jgAddressList, rpcCommand, timeout, usePriorityQueue || mode.isSynchronous())
+            .attachListener(new FutureListener<RspList<Object>>() {
+               @Override
+               public void futureDone(Future<RspList<Object>> future) {
+                  try {
+                     RspList<Object> rsps = future.get();
+                     Map<Address, Response> responses = new HashMap<Address, Response>(rsps.size());
+                     for (Rsp<Object> rsp : rsps.values()) {
+                        parseResponseAndAddToResponseList(rsp.getValue(), rsp.getException(), responses, rsp.wasSuspected(),
+                                                          rsp.wasReceived(), fromJGroupsAddress(rsp.getSender()), false, ignoreLeavers);
+                     }
+                     result.set(responses);
+                  } catch (ExecutionException e) {
+                     result.setException(e.getCause());
+                  } catch (Throwable t) {
+                     result.setException(t);
+                  }
+               }
+            });
+      return result;
+   }
+
    @Override
    public BackupResponse backupRemotely(Collection<XSiteBackup> backups, ReplicableCommand rpcCommand) throws Exception {
       log.tracef("About to send to backups %s, command %s", backups, rpcCommand);
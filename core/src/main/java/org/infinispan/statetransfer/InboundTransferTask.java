@@ -97,9 +97,15 @@ public class InboundTransferTask {
 
    private final String cacheName;
 
+   /**
+    * The number of chunks the source may send before waiting for this node to apply the first of them.
+    */
+   private final int maxInFlightChunks;
+
    private final RpcOptions rpcOptions;
 
-   public InboundTransferTask(Set<Integer> segments, Address source, int topologyId, StateConsumerImpl stateConsumer, RpcManager rpcManager, CommandsFactory commandsFactory, long timeout, String cacheName) {
+   public InboundTransferTask(Set<Integer> segments, Address source, int topologyId, StateConsumerImpl stateConsumer, RpcManager rpcManager, CommandsFactory commandsFactory, long timeout, String cacheName,
+                              int maxInFlightChunks) {
       if (segments == null || segments.isEmpty()) {
          throw new IllegalArgumentException("segments must not be null or empty");
       }
@@ -115,6 +121,7 @@ public InboundTransferTask(Set<Integer> segments, Address source, int topologyId
       this.commandsFactory = commandsFactory;
       this.timeout = timeout;
       this.cacheName = cacheName;
+      this.maxInFlightChunks = maxInFlightChunks;
       //the rpc options does not changed in runtime and they are the same in all the remote invocations. re-use the
       //same instance
       this.rpcOptions = rpcManager.getRpcOptionsBuilder(ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS)
@@ -146,6 +153,7 @@ public boolean requestSegments() {
          // start transfer of cache entries
          try {
             StateRequestCommand cmd = commandsFactory.buildStateRequestCommand(StateRequestCommand.Type.START_STATE_TRANSFER, rpcManager.getAddress(), topologyId, segments);
+            cmd.setMaxInFlightChunks(maxInFlightChunks);
             Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(source), cmd, rpcOptions);
             Response response = responses.get(source);
             if (response instanceof SuccessfulResponse) {
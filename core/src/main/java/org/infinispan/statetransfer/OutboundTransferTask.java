@@ -25,6 +25,7 @@
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.SegmentedDataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.loaders.CacheLoaderException;
@@ -38,19 +39,27 @@
 import org.infinispan.util.InfinispanCollections;
 import org.infinispan.util.ReadOnlyDataContainerBackedKeySet;
 import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Outbound state transfer task. Pushes data segments to another cluster member on request. Instances of
  * OutboundTransferTask are created and managed by StateTransferManagerImpl. There should be at most
  * one such task per destination at any time.
+ * <p/>
+ * The chunks are sent without waiting for the destination to apply the previous ones, but at most
+ * {@code maxInFlightChunks} of them can wait to be applied at any time. The destination grants this window when it
+ * requests the segments, which bounds the amount of state it has to keep in memory.
  *
  * @author anistor@redhat.com
  * @since 5.2
@@ -71,6 +80,8 @@ public class OutboundTransferTask implements Runnable {
 
    private final int stateTransferChunkSize;
 
+   private final int maxInFlightChunks;
+
    private final ConsistentHash readCh;
 
    private final DataContainer dataContainer;
@@ -92,6 +103,11 @@ public class OutboundTransferTask implements Runnable {
     */
    private int accumulatedEntries;
 
+   /**
+    * The chunks sent but not yet applied by the destination, oldest first. Only accessed by the thread running the task.
+    */
+   private final Deque<NotifyingNotifiableFuture<Object>> chunksInFlight = new ArrayDeque<NotifyingNotifiableFuture<Object>>();
+
    /**
     * The Future obtained from submitting this task to an executor service. This is used for cancellation.
     */
@@ -99,7 +115,7 @@ public class OutboundTransferTask implements Runnable {
 
    private final RpcOptions rpcOptions;
 
-   public OutboundTransferTask(Address destination, Set<Integer> segments, int stateTransferChunkSize,
+   public OutboundTransferTask(Address destination, Set<Integer> segments, int stateTransferChunkSize, int maxInFlightChunks,
                                int topologyId, ConsistentHash readCh, StateProviderImpl stateProvider, DataContainer dataContainer,
                                CacheLoaderManager cacheLoaderManager, RpcManager rpcManager,
                                CommandsFactory commandsFactory, long timeout, String cacheName) {
@@ -112,10 +128,14 @@ public OutboundTransferTask(Address destination, Set<Integer> segments, int stat
       if (stateTransferChunkSize <= 0) {
          throw new IllegalArgumentException("stateTransferChunkSize must be greater than 0");
       }
+      if (maxInFlightChunks <= 0) {
+         throw new IllegalArgumentException("maxInFlightChunks must be greater than 0");
+      }
       this.stateProvider = stateProvider;
       this.destination = destination;
       this.segments.addAll(segments);
       this.stateTransferChunkSize = stateTransferChunkSize;
+      this.maxInFlightChunks = maxInFlightChunks;
       this.topologyId = topologyId;
       this.readCh = readCh;
       this.dataContainer = dataContainer;
@@ -154,7 +174,8 @@ public Set<Integer> getSegments() {
    public void run() {
       try {
          // send data container entries
-         for (InternalCacheEntry ice : dataContainer) {
+         for (Iterator<InternalCacheEntry> it = dataContainerIterator(); it.hasNext(); ) {
+            InternalCacheEntry ice = it.next();
             Object key = ice.getKey();  //todo [anistor] should we check for expired entries?
             int segmentId = readCh.getSegment(key);
             if (segments.contains(segmentId)) {
@@ -192,6 +213,8 @@ public void run() {
 
          // send the last chunk of all segments
          sendEntries(true);
+         // the transfer is only complete when the destination has applied everything
+         awaitChunksInFlight(0);
       } catch (Throwable t) {
          // ignore eventual exceptions caused by cancellation (have InterruptedException as the root cause)
          if (!runnableFuture.isCancelled()) {
@@ -214,7 +237,21 @@ private CacheStore getCacheStore() {
       return null;
    }
 
-   private void sendEntry(InternalCacheEntry ice, int segmentId) {
+   /**
+    * Iterates only the requested segments if the data container is partitioned by segment,
+    * otherwise the whole data container.
+    */
+   private Iterator<InternalCacheEntry> dataContainerIterator() {
+      if (dataContainer instanceof SegmentedDataContainer) {
+         SegmentedDataContainer segmentedDataContainer = (SegmentedDataContainer) dataContainer;
+         if (segmentedDataContainer.isSegmentedBy(readCh)) {
+            return segmentedDataContainer.iterator(segments);
+         }
+      }
+      return dataContainer.iterator();
+   }
+
+   private void sendEntry(InternalCacheEntry ice, int segmentId) throws InterruptedException {
       // send if we have a full chunk
       if (accumulatedEntries >= stateTransferChunkSize) {
          sendEntries(false);
@@ -230,7 +267,7 @@ private void sendEntry(InternalCacheEntry ice, int segmentId) {
       accumulatedEntries++;
    }
 
-   private void sendEntries(boolean isLast) {
+   private void sendEntries(boolean isLast) throws InterruptedException {
       List<StateChunk> chunks = new ArrayList<StateChunk>();
       for (Map.Entry<Integer, List<InternalCacheEntry>> e : entriesBySegment.entrySet()) {
          List<InternalCacheEntry> entries = e.getValue();
@@ -259,14 +296,33 @@ private void sendEntries(boolean isLast) {
          }
 
          StateResponseCommand cmd = commandsFactory.buildStateResponseCommand(rpcManager.getAddress(), topologyId, chunks);
-         // send synchronously, in order. it is important that the last chunk is received last in order to correctly detect completion of the stream of chunks
+         // the chunks in flight may be applied in any order, but it is important that the last chunk is received last
+         // in order to correctly detect completion of the stream of chunks, so it waits for all the others
+         awaitChunksInFlight(isLast ? 0 : maxInFlightChunks - 1);
+         NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl<Object>(null, 1);
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(destination), cmd, rpcOptions, future);
+         chunksInFlight.add(future);
+      }
+   }
+
+   /**
+    * Waits for the destination to apply the oldest chunks, until at most {@code maxChunks} chunks are in flight.
+    */
+   private void awaitChunksInFlight(int maxChunks) throws InterruptedException {
+      while (chunksInFlight.size() > maxChunks) {
+         NotifyingNotifiableFuture<Object> future = chunksInFlight.poll();
          try {
-            rpcManager.invokeRemotely(Collections.singleton(destination), cmd, rpcOptions);
-         } catch (SuspectException e) {
-            log.errorf(e, "Node %s left cache %s: %s", destination, cacheName, e.getMessage());
-            cancel();
-         } catch (Exception e) {
-            log.errorf(e, "Failed to send entries to node %s : %s", destination, e.getMessage());
+            future.get(timeout, TimeUnit.MILLISECONDS);
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SuspectException) {
+               log.errorf(cause, "Node %s left cache %s: %s", destination, cacheName, cause.getMessage());
+               cancel();
+            } else {
+               log.errorf(cause, "Failed to send entries to node %s : %s", destination, cause.getMessage());
+            }
+         } catch (TimeoutException e) {
+            log.errorf(e, "Timed out waiting for node %s to apply the entries sent to it", destination);
          }
       }
    }
@@ -308,6 +364,7 @@ public String toString() {
             ", destination=" + destination +
             ", segments=" + segments +
             ", stateTransferChunkSize=" + stateTransferChunkSize +
+            ", maxInFlightChunks=" + maxInFlightChunks +
             ", timeout=" + timeout +
             ", cacheName='" + cacheName + '\'' +
             '}';
@@ -29,6 +29,7 @@
 import org.infinispan.topology.CacheTopology;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles inbound state transfers.
@@ -87,4 +88,21 @@ public interface StateConsumer {
     * @return  true if this node has already received the first rebalance command
     */
    boolean ownsData();
+
+   /**
+    * @return the number of received cache entries that were applied
+    */
+   long getAppliedEntries();
+
+   /**
+    * @return the maximum number of received cache entries that were waiting to be applied at the same time
+    */
+   int getPendingEntriesHighWaterMark();
+
+   /**
+    * @return the time spent receiving state, from the start of each rebalance until all the segments were received
+    */
+   long getStateTransferTime(TimeUnit unit);
+
+   void resetStatistics();
 }
@@ -30,6 +30,7 @@
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.SegmentedDataContainer;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
@@ -68,6 +69,8 @@
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.context.Flag.*;
 import static org.infinispan.factories.KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR;
@@ -99,6 +102,8 @@ public class StateConsumerImpl implements StateConsumer {
    private CacheNotifier cacheNotifier;
    private TotalOrderManager totalOrderManager;
    private long timeout;
+   private int maxInFlightChunks;
+   private int maxConcurrentSources;
    private boolean isFetchEnabled;
    private boolean isTransactional;
    private boolean isInvalidationMode;
@@ -151,6 +156,19 @@ public class StateConsumerImpl implements StateConsumer {
 
    private RpcOptions rpcOptions;
 
+   /**
+    * The number of received cache entries that were applied, and those that are waiting to be applied.
+    */
+   private final AtomicLong appliedEntries = new AtomicLong(0);
+   private final AtomicInteger pendingEntries = new AtomicInteger(0);
+   private final AtomicInteger pendingEntriesHighWaterMark = new AtomicInteger(0);
+
+   /**
+    * The time spent receiving state, from the start of each rebalance until all its segments were received.
+    */
+   private final AtomicLong stateTransferNanos = new AtomicLong(0);
+   private volatile long rebalanceStartNanos;
+
    public StateConsumerImpl() {
    }
 
@@ -232,6 +250,8 @@ public void init(Cache cache,
       isTotalOrder = configuration.transaction().transactionProtocol().isTotalOrder();
 
       timeout = configuration.clustering().stateTransfer().timeout();
+      maxInFlightChunks = configuration.clustering().stateTransfer().maxInFlightChunks();
+      maxConcurrentSources = configuration.clustering().stateTransfer().maxConcurrentSources();
    }
 
    public boolean hasActiveTransfers() {
@@ -275,11 +295,18 @@ public void onTopologyUpdate(final CacheTopology cacheTopology, final boolean is
       final boolean isMember = cacheTopology.getMembers().contains(rpcManager.getAddress());
       if (trace) log.tracef("Received new topology for cache %s, isRebalance = %b, isMember = %b, topology = %s", cacheName, isRebalance, isMember, cacheTopology);
 
+      if (dataContainer instanceof SegmentedDataContainer && cacheTopology.getWriteConsistentHash() != null) {
+         // only binds the container on the initial topology, keys never change segment afterwards
+         ((SegmentedDataContainer) dataContainer).segmentBy(cacheTopology.getWriteConsistentHash());
+      }
+
       if (isRebalance) {
          if (!ownsData && cacheTopology.getMembers().contains(rpcManager.getAddress())) {
             ownsData = true;
          }
-         rebalanceInProgress.set(true);
+         if (!rebalanceInProgress.getAndSet(true)) {
+            rebalanceStartNanos = System.nanoTime();
+         }
          cacheNotifier.notifyDataRehashed(cacheTopology.getCurrentCH(), cacheTopology.getPendingCH(),
                cacheTopology.getTopologyId(), true);
 
@@ -420,6 +447,7 @@ public void onTopologyUpdate(final CacheTopology cacheTopology, final boolean is
    private void notifyEndOfRebalanceIfNeeded(int topologyId) {
       if (waitingForState.get() && !hasActiveTransfers()) {
          if (waitingForState.compareAndSet(true, false)) {
+            stateTransferNanos.addAndGet(System.nanoTime() - rebalanceStartNanos);
             log.debugf("Finished receiving of segments for cache %s for topology %d.", cacheName, topologyId);
             stopApplyingState();
             stateTransferManager.notifyEndOfRebalance(topologyId);
@@ -448,10 +476,39 @@ public void applyState(Address sender, int topologyId, Collection<StateChunk> st
          log.tracef("Before applying the received state the data container of cache %s has %d keys", cacheName, dataContainer.size());
       }
 
+      int receivedEntries = 0;
+      for (StateChunk stateChunk : stateChunks) {
+         if (stateChunk.getCacheEntries() != null) {
+            receivedEntries += stateChunk.getCacheEntries().size();
+         }
+      }
+      updatePendingEntriesHighWaterMark(pendingEntries.addAndGet(receivedEntries));
+      try {
+         applyStateChunks(sender, wCh, stateChunks);
+      } finally {
+         pendingEntries.addAndGet(-receivedEntries);
+      }
+
+      if (trace) {
+         log.tracef("After applying the received state the data container of cache %s has %d keys", cacheName, dataContainer.size());
+         synchronized (this) {
+            log.tracef("Segments not received yet for cache %s: %s", cacheName, transfersBySource);
+         }
+      }
+   }
+
+   private void updatePendingEntriesHighWaterMark(int pending) {
+      int highWaterMark;
+      do {
+         highWaterMark = pendingEntriesHighWaterMark.get();
+      } while (pending > highWaterMark && !pendingEntriesHighWaterMark.compareAndSet(highWaterMark, pending));
+   }
+
+   private void applyStateChunks(Address sender, ConsistentHash wCh, Collection<StateChunk> stateChunks) {
       for (StateChunk stateChunk : stateChunks) {
          // it's possible to receive a late message so we must be prepared to ignore segments we no longer own
          //todo [anistor] this check should be based on topologyId
-         if (!wCh.getSegmentsForOwner(rpcManager.getAddress()).contains(stateChunk.getSegmentId())) {
+         if (!wCh.isSegmentLocalToNode(rpcManager.getAddress(), stateChunk.getSegmentId())) {
             log.warnf("Discarding received cache entries for segment %d of cache %s because they do not belong to this node.", stateChunk.getSegmentId(), cacheName);
             continue;
          }
@@ -471,13 +528,6 @@ public void applyState(Address sender, int topologyId, Collection<StateChunk> st
             log.warnf("Received unsolicited state from node %s for segment %d of cache %s", sender, stateChunk.getSegmentId(), cacheName);
          }
       }
-
-      if (trace) {
-         log.tracef("After applying the received state the data container of cache %s has %d keys", cacheName, dataContainer.size());
-         synchronized (this) {
-            log.tracef("Segments not received yet for cache %s: %s", cacheName, transfersBySource);
-         }
-      }
    }
 
    private void doApplyState(Address sender, int segmentId, Collection<InternalCacheEntry> cacheEntries) {
@@ -533,6 +583,7 @@ private void doApplyState(Address sender, int segmentId, Collection<InternalCach
             log.problemApplyingStateForKey(ex.getMessage(), e.getKey(), ex);
          }
       }
+      appliedEntries.addAndGet(cacheEntries.size());
       log.debugf("Finished applying state for segment %d of cache %s", segmentId, cacheName);
    }
 
@@ -726,31 +777,36 @@ public void run() {
             try {
                while (true) {
                   List<InboundTransferTask> failedTasks = new ArrayList<InboundTransferTask>();
+                  // the transfers receiving state right now, oldest first
+                  Queue<InboundTransferTask> activeTasks = new LinkedList<InboundTransferTask>();
                   while (true) {
-                     InboundTransferTask task;
                      try {
-                        task = taskQueue.pollFirst(200, TimeUnit.MILLISECONDS);
-                        if (task == null) {
+                        // request segments from up to maxConcurrentSources sources, so that they send state in parallel
+                        while (activeTasks.size() < maxConcurrentSources) {
+                           InboundTransferTask task = activeTasks.isEmpty() ? taskQueue.pollFirst(200, TimeUnit.MILLISECONDS)
+                                 : taskQueue.pollFirst();
+                           if (task == null) {
+                              break;
+                           }
+                           if (task.requestSegments()) {
+                              activeTasks.add(task);
+                           } else {
+                              // if requesting the segments failed we'll take care of it later
+                              failedTasks.add(task);
+                           }
+                        }
+                        if (activeTasks.isEmpty()) {
                            break;
                         }
+
+                        InboundTransferTask task = activeTasks.poll();
+                        if (!task.awaitCompletion()) {
+                           failedTasks.add(task);
+                        }
                      } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         return;
                      }
-
-                     if (!task.requestSegments()) {
-                        // if requesting the segments failed we'll take care of it later
-                        failedTasks.add(task);
-                     } else {
-                        try {
-                           if (!task.awaitCompletion()) {
-                              failedTasks.add(task);
-                           }
-                        } catch (InterruptedException e) {
-                           Thread.currentThread().interrupt();
-                           return;
-                        }
-                     }
                   }
 
                   if (failedTasks.isEmpty() && taskQueue.isEmpty()) {
@@ -828,7 +884,8 @@ private void invalidateSegments(Set<Integer> newSegments, Set<Integer> segmentsT
       Set<Object> keysToRemove = new HashSet<Object>();
 
       // gather all keys from data container that belong to the segments that are being removed/moved to L1
-      for (InternalCacheEntry ice : dataContainer) {
+      for (Iterator<InternalCacheEntry> it = nonOwnedEntriesIterator(newSegments); it.hasNext(); ) {
+         InternalCacheEntry ice = it.next();
          Object key = ice.getKey();
          int keySegment = getSegment(key);
          if (segmentsToL1.contains(keySegment)) {
@@ -877,6 +934,8 @@ private void invalidateSegments(Set<Integer> newSegments, Set<Integer> segmentsT
       }
 
       log.debugf("Removing state for segments not in %s or %s for cache %s", newSegments, segmentsToL1, cacheName);
+      // the keys are invalidated one by one, even when the data container is segmented, so that listeners are
+      // notified and the keys found only in the cache store are handled the same way
       if (!keysToRemove.isEmpty()) {
          try {
             InvalidateCommand invalidateCmd = commandsFactory.buildInvalidateCommand(EnumSet.of(CACHE_MODE_LOCAL, SKIP_LOCKING), keysToRemove.toArray());
@@ -891,6 +950,24 @@ private void invalidateSegments(Set<Integer> newSegments, Set<Integer> segmentsT
       }
    }
 
+   /**
+    * Iterates the entries that do not belong to the given segments. If the data container is
+    * partitioned by segment only the other segments are visited, otherwise the whole container.
+    */
+   private Iterator<InternalCacheEntry> nonOwnedEntriesIterator(Set<Integer> ownedSegments) {
+      if (dataContainer instanceof SegmentedDataContainer) {
+         SegmentedDataContainer segmentedDataContainer = (SegmentedDataContainer) dataContainer;
+         if (segmentedDataContainer.isSegmentedBy(cacheTopology.getReadConsistentHash())) {
+            Set<Integer> otherSegments = new HashSet<Integer>();
+            for (int segment = 0; segment < segmentedDataContainer.getNumSegments(); segment++) {
+               if (!ownedSegments.contains(segment)) otherSegments.add(segment);
+            }
+            return segmentedDataContainer.iterator(otherSegments);
+         }
+      }
+      return dataContainer.iterator();
+   }
+
    /**
     * Check if any of the existing transfers should be restarted from a different source because the initial source is no longer a member.
     *
@@ -948,7 +1025,7 @@ private InboundTransferTask addTransfer(Address source, Set<Integer> segmentsFro
          segmentsFromSource.removeAll(transfersBySegment.keySet());  // already in progress segments are excluded
          if (!segmentsFromSource.isEmpty()) {
             InboundTransferTask inboundTransfer = new InboundTransferTask(segmentsFromSource, source,
-                  cacheTopology.getTopologyId(), this, rpcManager, commandsFactory, timeout, cacheName);
+                  cacheTopology.getTopologyId(), this, rpcManager, commandsFactory, timeout, cacheName, maxInFlightChunks);
             for (int segmentId : segmentsFromSource) {
                transfersBySegment.put(segmentId, inboundTransfer);
             }
@@ -985,6 +1062,28 @@ private boolean removeTransfer(InboundTransferTask inboundTransfer) {
       return false;
    }
 
+   @Override
+   public long getAppliedEntries() {
+      return appliedEntries.get();
+   }
+
+   @Override
+   public int getPendingEntriesHighWaterMark() {
+      return pendingEntriesHighWaterMark.get();
+   }
+
+   @Override
+   public long getStateTransferTime(TimeUnit unit) {
+      return unit.convert(stateTransferNanos.get(), TimeUnit.NANOSECONDS);
+   }
+
+   @Override
+   public void resetStatistics() {
+      appliedEntries.set(0);
+      pendingEntriesHighWaterMark.set(pendingEntries.get());
+      stateTransferNanos.set(0);
+   }
+
    void onTaskCompletion(InboundTransferTask inboundTransfer) {
       log.tracef("Completion of inbound transfer task: %s ", inboundTransfer);
       removeTransfer(inboundTransfer);
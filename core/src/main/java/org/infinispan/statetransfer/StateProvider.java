@@ -69,8 +69,9 @@ public interface StateProvider {
     * @param destination the address of the requester
     * @param topologyId
     * @param segments
+    * @param maxInFlightChunks the number of chunks that can be sent before waiting for the requester to apply the first of them
     */
-   void startOutboundTransfer(Address destination, int topologyId, Set<Integer> segments) throws InterruptedException;
+   void startOutboundTransfer(Address destination, int topologyId, Set<Integer> segments, int maxInFlightChunks) throws InterruptedException;
 
    /**
     * Cancel sending of cache entries that belong to the given set of segments. This is invoked in response to a
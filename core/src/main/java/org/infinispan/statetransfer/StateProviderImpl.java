@@ -273,18 +273,19 @@ private void collectTransactionsToTransfer(List<TransactionInfo> transactionsToT
    }
 
    @Override
-   public void startOutboundTransfer(Address destination, int requestTopologyId, Set<Integer> segments)
+   public void startOutboundTransfer(Address destination, int requestTopologyId, Set<Integer> segments, int maxInFlightChunks)
          throws InterruptedException {
       if (trace) {
-         log.tracef("Starting outbound transfer of segments %s to node %s with topology id %d for cache %s", segments,
-               destination, requestTopologyId, cacheName);
+         log.tracef("Starting outbound transfer of segments %s to node %s with topology id %d and %d chunks in flight for cache %s",
+               segments, destination, requestTopologyId, maxInFlightChunks, cacheName);
       }
 
       final CacheTopology cacheTopology = getCacheTopology(requestTopologyId, destination, false);
 
       // the destination node must already have an InboundTransferTask waiting for these segments
-      OutboundTransferTask outboundTransfer = new OutboundTransferTask(destination, segments, chunkSize, cacheTopology.getTopologyId(),
-            cacheTopology.getReadConsistentHash(), this, dataContainer, cacheLoaderManager, rpcManager, commandsFactory, timeout, cacheName);
+      OutboundTransferTask outboundTransfer = new OutboundTransferTask(destination, segments, chunkSize, maxInFlightChunks,
+            cacheTopology.getTopologyId(), cacheTopology.getReadConsistentHash(), this, dataContainer, cacheLoaderManager,
+            rpcManager, commandsFactory, timeout, cacheName);
       addTransfer(outboundTransfer);
       outboundTransfer.execute(executorService);
    }
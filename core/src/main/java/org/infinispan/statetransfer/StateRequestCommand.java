@@ -56,6 +56,12 @@ public enum Type {
 
    private Set<Integer> segments;
 
+   /**
+    * The number of state chunks the provider may send before it has to wait for the requester to apply the first
+    * of them. Only used by {@link Type#START_STATE_TRANSFER} requests.
+    */
+   private int maxInFlightChunks = 1;
+
    private StateProvider stateProvider;
 
    private StateRequestCommand() {
@@ -88,7 +94,7 @@ public Object perform(InvocationContext ctx) throws Throwable {
                return stateProvider.getTransactionsForSegments(getOrigin(), topologyId, segments);
 
             case START_STATE_TRANSFER:
-               stateProvider.startOutboundTransfer(getOrigin(), topologyId, segments);
+               stateProvider.startOutboundTransfer(getOrigin(), topologyId, segments, maxInFlightChunks);
                // return a non-null value to ensure it will reach back to originator wrapped in a SuccessfulResponse (a null would not be sent back)
                return true;
 
@@ -119,6 +125,14 @@ public Type getType() {
       return type;
    }
 
+   public int getMaxInFlightChunks() {
+      return maxInFlightChunks;
+   }
+
+   public void setMaxInFlightChunks(int maxInFlightChunks) {
+      this.maxInFlightChunks = maxInFlightChunks;
+   }
+
    @Override
    public byte getCommandId() {
       return COMMAND_ID;
@@ -126,7 +140,7 @@ public byte getCommandId() {
 
    @Override
    public Object[] getParameters() {
-      return new Object[]{(byte) type.ordinal(), getOrigin(), topologyId, segments};
+      return new Object[]{(byte) type.ordinal(), getOrigin(), topologyId, segments, maxInFlightChunks};
    }
 
    @Override
@@ -136,7 +150,8 @@ public void setParameters(int commandId, Object[] parameters) {
       type = Type.values()[(Byte) parameters[i++]];
       setOrigin((Address) parameters[i++]);
       topologyId = (Integer) parameters[i++];
-      segments = (Set<Integer>) parameters[i];
+      segments = (Set<Integer>) parameters[i++];
+      maxInFlightChunks = (Integer) parameters[i];
    }
 
    @Override
@@ -147,6 +162,7 @@ public String toString() {
             ", type=" + type +
             ", topologyId=" + topologyId +
             ", segments=" + segments +
+            ", maxInFlightChunks=" + maxInFlightChunks +
             '}';
    }
 }
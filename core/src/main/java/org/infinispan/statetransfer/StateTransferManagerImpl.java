@@ -41,6 +41,10 @@
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.jmx.annotations.MeasurementType;
+import org.infinispan.jmx.annotations.Units;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
@@ -293,4 +297,49 @@ public void notifyEndOfRebalance(int topologyId) {
    public boolean ownsData() {
       return stateConsumer.ownsData();
    }
+
+   @ManagedAttribute(
+         description = "Number of cache entries received from other nodes and applied by state transfer",
+         displayName = "Number of received state entries",
+         measurementType = MeasurementType.TRENDSUP
+   )
+   public long getReceivedStateEntries() {
+      return stateConsumer.getAppliedEntries();
+   }
+
+   @ManagedAttribute(
+         description = "Time spent receiving state, from the start of each rebalance until all its segments were received",
+         displayName = "State transfer time",
+         units = Units.MILLISECONDS,
+         measurementType = MeasurementType.TRENDSUP
+   )
+   public long getStateTransferTime() {
+      return stateConsumer.getStateTransferTime(TimeUnit.MILLISECONDS);
+   }
+
+   @ManagedAttribute(
+         description = "Average number of cache entries received per second while receiving state",
+         displayName = "State transfer throughput"
+   )
+   public double getStateTransferThroughput() {
+      long time = stateConsumer.getStateTransferTime(TimeUnit.MILLISECONDS);
+      if (time == 0) return 0;
+      return stateConsumer.getAppliedEntries() * 1000d / time;
+   }
+
+   @ManagedAttribute(
+         description = "Maximum number of received cache entries waiting to be applied at the same time",
+         displayName = "Pending state entries high-water mark"
+   )
+   public int getPendingStateEntriesHighWaterMark() {
+      return stateConsumer.getPendingEntriesHighWaterMark();
+   }
+
+   @ManagedOperation(
+         description = "Resets statistics gathered by this component",
+         displayName = "Reset statistics"
+   )
+   public void resetStatistics() {
+      stateConsumer.resetStatistics();
+   }
 }
@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.configuration.global.GlobalConfiguration;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.DataType;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.jmx.annotations.MeasurementType;
+import org.infinispan.jmx.annotations.Units;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the bandwidth a node uses to send state to the other nodes, so that a rebalance doesn't take all the network
+ * from the user traffic.
+ * <p/>
+ * This is a token bucket shared by all the caches of the node: it fills up with
+ * {@link #getMaxBytesPerSecond() maxBytesPerSecond} bytes every second, up to one second's worth of bytes, and every
+ * state chunk takes its marshalled size out of it. A sender that finds the bucket in debt waits until it is paid back,
+ * so bursts up to the size of the bucket go out right away and the average rate never exceeds the limit.
+ *
+ * @see org.infinispan.configuration.global.TransportConfigurationBuilder#stateTransferBandwidth(long)
+ * @since 5.3
+ */
+@ThreadSafe
+@Scope(Scopes.GLOBAL)
+@MBean(objectName = "StateTransferThrottle", description = "Limits the bandwidth used to send state to other nodes")
+public class StateTransferThrottle {
+
+   private static final Log log = LogFactory.getLog(StateTransferThrottle.class);
+
+   private GlobalConfiguration globalConfiguration;
+   private TimeService timeService;
+
+   private volatile long maxBytesPerSecond;
+   @GuardedBy("this")
+   private long availableBytes;
+   @GuardedBy("this")
+   private long lastRefill;
+
+   private final AtomicLong sentBytes = new AtomicLong(0);
+   private final AtomicLong throttledNanos = new AtomicLong(0);
+
+   @Inject
+   public void inject(GlobalConfiguration globalConfiguration, TimeService timeService) {
+      this.globalConfiguration = globalConfiguration;
+      this.timeService = timeService;
+   }
+
+   @Start
+   public void start() {
+      setMaxBytesPerSecond(globalConfiguration.transport().stateTransferBandwidth());
+   }
+
+   /**
+    * Takes {@code bytes} out of the bucket, waiting until the bucket is no longer in debt if needed.
+    */
+   public void acquire(int bytes) throws InterruptedException {
+      sentBytes.addAndGet(bytes);
+      long rate = maxBytesPerSecond;
+      if (rate <= 0) return;
+
+      long debt;
+      synchronized (this) {
+         refill(rate);
+         availableBytes -= bytes;
+         debt = -availableBytes;
+      }
+      if (debt <= 0) return;
+
+      long waitNanos = TimeUnit.SECONDS.toNanos(debt) / rate;
+      log.tracef("Sending state is %d bytes over the limit, waiting %d ms", debt, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+      long start = timeService.time();
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+      throttledNanos.addAndGet(timeService.timeDuration(start, TimeUnit.NANOSECONDS));
+   }
+
+   /**
+    * @return true if the state transfer bandwidth is limited
+    */
+   public boolean isEnabled() {
+      return maxBytesPerSecond > 0;
+   }
+
+   @GuardedBy("this")
+   private void refill(long rate) {
+      long now = timeService.time();
+      // after an idle second the bucket is full, no need to compute how much it would have overflowed
+      long elapsedNanos = Math.min(now - lastRefill, TimeUnit.SECONDS.toNanos(1));
+      lastRefill = now;
+      availableBytes = Math.min(availableBytes + rate * elapsedNanos / TimeUnit.SECONDS.toNanos(1), rate);
+   }
+
+   @ManagedAttribute(description = "The maximum number of bytes per second sent to other nodes during state transfer, 0 if not limited",
+         displayName = "Maximum state transfer bandwidth", dataType = DataType.TRAIT, writable = true)
+   public long getMaxBytesPerSecond() {
+      return maxBytesPerSecond;
+   }
+
+   public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+      if (maxBytesPerSecond < 0)
+         throw new IllegalArgumentException("The maximum state transfer bandwidth cannot be negative");
+      synchronized (this) {
+         // start with a full bucket, but don't let a higher limit pay back a debt made under a lower one
+         availableBytes = Math.min(availableBytes, maxBytesPerSecond);
+         if (this.maxBytesPerSecond == 0) availableBytes = maxBytesPerSecond;
+         lastRefill = timeService.time();
+         this.maxBytesPerSecond = maxBytesPerSecond;
+      }
+   }
+
+   @ManagedAttribute(description = "Number of bytes of state sent to other nodes",
+         displayName = "State bytes sent", measurementType = MeasurementType.TRENDSUP)
+   public long getSentBytes() {
+      return sentBytes.get();
+   }
+
+   @ManagedAttribute(description = "Time spent waiting before sending state because of the bandwidth limit",
+         displayName = "State transfer throttled time", measurementType = MeasurementType.TRENDSUP,
+         units = Units.MILLISECONDS)
+   public long getThrottledTime() {
+      return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component", displayName = "Reset statistics")
+   public void resetStatistics() {
+      sentBytes.set(0);
+      throttledNanos.set(0);
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.topology;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the {@link CacheTopologyControlCommand}s of many caches together, as a single
+ * {@link CacheTopologyControlCommand.Type#BATCH} command.
+ * <p/>
+ * Commands are queued and sent from the executor, so every command queued while the previous message was being sent
+ * goes out in the next one. A thread that is about to produce commands for many caches (e.g. for a view change) can
+ * also {@link #hold()} the queue, so that all its commands are sent in the same message once it {@link #release()}s
+ * it.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+abstract class CacheTopologyCommandBatcher {
+
+   private static final Log log = LogFactory.getLog(CacheTopologyCommandBatcher.class);
+
+   private final ExecutorService executor;
+   private final Queue<CacheTopologyControlCommand> queue = new ConcurrentLinkedQueue<CacheTopologyControlCommand>();
+   private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+   private final AtomicInteger holds = new AtomicInteger(0);
+
+   private final Runnable flushTask = new Runnable() {
+      @Override
+      public void run() {
+         flush();
+      }
+   };
+
+   CacheTopologyCommandBatcher(ExecutorService executor) {
+      this.executor = executor;
+   }
+
+   /**
+    * Sends the commands, in the order they were queued.
+    */
+   protected abstract void send(List<CacheTopologyControlCommand> commands) throws Exception;
+
+   void add(CacheTopologyControlCommand command) {
+      queue.add(command);
+      scheduleFlush();
+   }
+
+   /**
+    * Keeps the queued commands from being sent until {@link #release()} is called.
+    */
+   void hold() {
+      holds.incrementAndGet();
+   }
+
+   void release() {
+      if (holds.decrementAndGet() == 0) {
+         scheduleFlush();
+      }
+   }
+
+   private void scheduleFlush() {
+      if (holds.get() > 0 || queue.isEmpty())
+         return;
+      if (flushScheduled.compareAndSet(false, true)) {
+         try {
+            executor.execute(flushTask);
+         } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+            log.debugf("Could not send the queued cache topology commands, the executor is shutting down");
+         }
+      }
+   }
+
+   private void flush() {
+      flushScheduled.set(false);
+      // a thread that took the hold after we were scheduled will schedule another flush when it releases it
+      if (holds.get() > 0)
+         return;
+
+      List<CacheTopologyControlCommand> commands = new ArrayList<CacheTopologyControlCommand>();
+      CacheTopologyControlCommand command;
+      while ((command = queue.poll()) != null) {
+         commands.add(command);
+      }
+      if (commands.isEmpty())
+         return;
+
+      log.tracef("Sending %d cache topology commands together", commands.size());
+      try {
+         send(commands);
+      } catch (Exception e) {
+         log.debugf(e, "Error sending cache topology commands %s", commands);
+      }
+   }
+}
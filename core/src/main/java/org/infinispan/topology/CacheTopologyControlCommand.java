@@ -34,6 +34,8 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.List;
+
 /**
  * A control command for all cache membership/rebalance operations.
  * It is not a {@code CacheRpcCommand} because it needs to run on the coordinator even when
@@ -67,6 +69,14 @@ public enum Type {
       POLICY_DISABLE,
       POLICY_ENABLE,
       POLICY_GET_STATUS,
+
+      // Member to coordinator:
+      // A member received a topology update it couldn't apply and is asking for the full topology.
+      GET_CACHE_TOPOLOGY,
+
+      // Both directions:
+      // Several commands, possibly for different caches, sent in a single message.
+      BATCH,
    }
 
    private static final Log log = LogFactory.getLog(CacheTopologyControlCommand.class);
@@ -86,10 +96,14 @@ public enum Type {
    private int topologyId;
    private ConsistentHash currentCH;
    private ConsistentHash pendingCH;
+   // When set, the consistent hashes are only sent as differences from an earlier topology
+   private CacheTopologyDelta topologyDelta;
 
    private Throwable throwable;
    private int viewId;
 
+   private List<CacheTopologyControlCommand> commands;
+
    // For CommandIdUniquenessTest only
    public CacheTopologyControlCommand() {
       this.cacheName = null;
@@ -130,6 +144,24 @@ public CacheTopologyControlCommand(String cacheName, Type type, Address sender,
       this.pendingCH = cacheTopology.getPendingCH();
    }
 
+   public CacheTopologyControlCommand(Address sender, List<CacheTopologyControlCommand> commands, int viewId) {
+      this.type = Type.BATCH;
+      this.sender = sender;
+      this.commands = commands;
+      this.viewId = viewId;
+   }
+
+   /**
+    * Creates a topology update that only sends the differences between {@code cacheTopology} and
+    * {@code baseTopology}, if possible. The members that don't have {@code baseTopology} will ask the coordinator for
+    * the full topology.
+    */
+   public CacheTopologyControlCommand(String cacheName, Type type, Address sender, CacheTopology cacheTopology,
+                                      CacheTopology baseTopology, int viewId) {
+      this(cacheName, type, sender, cacheTopology, viewId);
+      this.topologyDelta = CacheTopologyDelta.create(baseTopology, cacheTopology);
+   }
+
    @Inject
    public void init(LocalTopologyManager localTopologyManager, ClusterTopologyManager clusterTopologyManager,
          RebalancePolicy rebalancePolicy) {
@@ -168,17 +200,39 @@ private Object doPerform() throws Exception {
          case REBALANCE_CONFIRM:
             clusterTopologyManager.handleRebalanceCompleted(cacheName, sender, topologyId, throwable, viewId);
             return null;
+         case GET_CACHE_TOPOLOGY:
+            return clusterTopologyManager.getCacheTopology(cacheName);
 
          // coordinator to member
          case CH_UPDATE:
-            localTopologyManager.handleConsistentHashUpdate(cacheName, new CacheTopology(topologyId, currentCH, pendingCH), viewId);
+            if (isDeltaOnly()) {
+               localTopologyManager.handleTopologyDelta(cacheName, topologyDelta, false, viewId);
+            } else {
+               localTopologyManager.handleConsistentHashUpdate(cacheName, new CacheTopology(topologyId, currentCH, pendingCH), viewId);
+            }
             return null;
          case REBALANCE_START:
-            localTopologyManager.handleRebalance(cacheName, new CacheTopology(topologyId, currentCH, pendingCH), viewId);
+            if (isDeltaOnly()) {
+               localTopologyManager.handleTopologyDelta(cacheName, topologyDelta, true, viewId);
+            } else {
+               localTopologyManager.handleRebalance(cacheName, new CacheTopology(topologyId, currentCH, pendingCH), viewId);
+            }
             return null;
          case GET_STATUS:
             return localTopologyManager.handleStatusRequest(viewId);
 
+         case BATCH:
+            for (CacheTopologyControlCommand command : commands) {
+               // the commands log their own errors, and one cache failing must not affect the others
+               command.init(localTopologyManager, clusterTopologyManager, rebalancePolicy);
+               try {
+                  command.perform(null);
+               } catch (Throwable t) {
+                  throw new CacheException(t);
+               }
+            }
+            return null;
+
          // rebalance policy control
          case POLICY_GET_STATUS:
             return rebalancePolicy.isRebalancingEnabled();
@@ -221,6 +275,22 @@ public Throwable getThrowable() {
       return throwable;
    }
 
+   public List<CacheTopologyControlCommand> getCommands() {
+      return commands;
+   }
+
+   public CacheTopologyDelta getTopologyDelta() {
+      return topologyDelta;
+   }
+
+   /**
+    * The command executed on the coordinator itself still has the full consistent hashes, only the unmarshalled
+    * command is limited to the delta.
+    */
+   private boolean isDeltaOnly() {
+      return topologyDelta != null && currentCH == null;
+   }
+
    @Override
    public byte getCommandId() {
       return COMMAND_ID;
@@ -228,8 +298,12 @@ public byte getCommandId() {
 
    @Override
    public Object[] getParameters() {
+      if (topologyDelta != null) {
+         return new Object[]{cacheName, (byte) type.ordinal(), sender, joinInfo, topologyId, null,
+               null, topologyDelta, throwable, viewId, commands};
+      }
       return new Object[]{cacheName, (byte) type.ordinal(), sender, joinInfo, topologyId, currentCH,
-            pendingCH, throwable, viewId};
+            pendingCH, null, throwable, viewId, commands};
    }
 
    @Override
@@ -243,8 +317,10 @@ public void setParameters(int commandId, Object[] parameters) {
       topologyId = (Integer) parameters[i++];
       currentCH = (ConsistentHash) parameters[i++];
       pendingCH = (ConsistentHash) parameters[i++];
+      topologyDelta = (CacheTopologyDelta) parameters[i++];
       throwable = (Throwable) parameters[i++];
       viewId = (Integer) parameters[i++];
+      commands = (List<CacheTopologyControlCommand>) parameters[i++];
    }
 
    @Override
@@ -257,8 +333,10 @@ public String toString() {
             ", topologyId=" + topologyId +
             ", currentCH=" + currentCH +
             ", pendingCH=" + pendingCH +
+            ", topologyDelta=" + topologyDelta +
             ", throwable=" + throwable +
             ", viewId=" + viewId +
+            ", commands=" + commands +
             '}';
    }
 
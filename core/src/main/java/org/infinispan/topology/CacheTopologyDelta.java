@@ -0,0 +1,286 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.topology;
+
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link CacheTopology} encoded as the changes from an earlier topology of the same cache, so that a topology update
+ * only carries the segments whose owners have changed instead of the full consistent hashes.
+ * <p/>
+ * Each consistent hash of the new topology is encoded as the differences from either the current or the pending
+ * consistent hash of the base topology, whichever is closer. E.g. at the end of a rebalance the new current consistent
+ * hash is the same as the old pending consistent hash, and the update doesn't contain any segment at all.
+ * <p/>
+ * Only {@link DefaultConsistentHash} instances can be encoded like this. A node that doesn't have the base topology
+ * can't rebuild the new topology from the delta, and has to ask the coordinator for the full topology instead.
+ *
+ * @since 5.3
+ */
+public class CacheTopologyDelta {
+
+   private final int topologyId;
+   private final int baseTopologyId;
+   private final ConsistentHashDelta currentCH;
+   private final ConsistentHashDelta pendingCH;
+
+   CacheTopologyDelta(int topologyId, int baseTopologyId, ConsistentHashDelta currentCH, ConsistentHashDelta pendingCH) {
+      this.topologyId = topologyId;
+      this.baseTopologyId = baseTopologyId;
+      this.currentCH = currentCH;
+      this.pendingCH = pendingCH;
+   }
+
+   /**
+    * @return the delta between the two topologies, or {@code null} if {@code topology} can't be encoded as a delta
+    *         from {@code baseTopology}
+    */
+   public static CacheTopologyDelta create(CacheTopology baseTopology, CacheTopology topology) {
+      if (baseTopology == null || topology.getCurrentCH() == null)
+         return null;
+      ConsistentHashDelta currentCH = ConsistentHashDelta.create(baseTopology, topology.getCurrentCH());
+      if (currentCH == null)
+         return null;
+      ConsistentHashDelta pendingCH = null;
+      if (topology.getPendingCH() != null) {
+         pendingCH = ConsistentHashDelta.create(baseTopology, topology.getPendingCH());
+         if (pendingCH == null)
+            return null;
+      }
+      return new CacheTopologyDelta(topology.getTopologyId(), baseTopology.getTopologyId(), currentCH, pendingCH);
+   }
+
+   public int getTopologyId() {
+      return topologyId;
+   }
+
+   public int getBaseTopologyId() {
+      return baseTopologyId;
+   }
+
+   /**
+    * @return the new topology, or {@code null} if {@code baseTopology} is not the topology this delta was created from
+    */
+   public CacheTopology apply(CacheTopology baseTopology) {
+      if (baseTopology == null || baseTopology.getTopologyId() != baseTopologyId)
+         return null;
+      ConsistentHash newCurrentCH = currentCH.apply(baseTopology);
+      ConsistentHash newPendingCH = pendingCH != null ? pendingCH.apply(baseTopology) : null;
+      if (newCurrentCH == null || (pendingCH != null && newPendingCH == null))
+         return null;
+      return new CacheTopology(topologyId, newCurrentCH, newPendingCH);
+   }
+
+   @Override
+   public String toString() {
+      return "CacheTopologyDelta{" +
+            "id=" + topologyId +
+            ", baseId=" + baseTopologyId +
+            ", currentCH=" + currentCH +
+            ", pendingCH=" + pendingCH +
+            '}';
+   }
+
+   /**
+    * The differences between a consistent hash and one of the consistent hashes of the base topology.
+    */
+   static class ConsistentHashDelta {
+      // whether the differences are from the pending or from the current consistent hash of the base topology
+      final boolean fromPendingCH;
+      // null if the members are the same as the members of the base consistent hash
+      final List<Address> members;
+      final int[] segments;
+      // the new owners of each segment, as indexes in the members list
+      final int[][] owners;
+
+      ConsistentHashDelta(boolean fromPendingCH, List<Address> members, int[] segments, int[][] owners) {
+         this.fromPendingCH = fromPendingCH;
+         this.members = members;
+         this.segments = segments;
+         this.owners = owners;
+      }
+
+      static ConsistentHashDelta create(CacheTopology baseTopology, ConsistentHash ch) {
+         if (!(ch instanceof DefaultConsistentHash))
+            return null;
+         DefaultConsistentHash dch = (DefaultConsistentHash) ch;
+         List<Integer> changedFromCurrent = changedSegments(baseTopology.getCurrentCH(), dch);
+         List<Integer> changedFromPending = changedSegments(baseTopology.getPendingCH(), dch);
+         boolean fromPendingCH = changedFromPending != null
+               && (changedFromCurrent == null || changedFromPending.size() < changedFromCurrent.size());
+         List<Integer> changedSegments = fromPendingCH ? changedFromPending : changedFromCurrent;
+         if (changedSegments == null)
+            return null;
+
+         List<Address> members = dch.getMembers();
+         Map<Address, Integer> memberIndexes = new HashMap<Address, Integer>(members.size());
+         for (int i = 0; i < members.size(); i++) {
+            memberIndexes.put(members.get(i), i);
+         }
+         int[] segments = new int[changedSegments.size()];
+         int[][] owners = new int[changedSegments.size()][];
+         for (int i = 0; i < segments.length; i++) {
+            segments[i] = changedSegments.get(i);
+            List<Address> segmentOwners = dch.locateOwnersForSegment(segments[i]);
+            owners[i] = new int[segmentOwners.size()];
+            for (int j = 0; j < owners[i].length; j++) {
+               Integer index = memberIndexes.get(segmentOwners.get(j));
+               if (index == null)
+                  return null;
+               owners[i][j] = index;
+            }
+         }
+         ConsistentHash baseCH = fromPendingCH ? baseTopology.getPendingCH() : baseTopology.getCurrentCH();
+         boolean sameMembers = members.equals(baseCH.getMembers());
+         return new ConsistentHashDelta(fromPendingCH, sameMembers ? null : members, segments, owners);
+      }
+
+      /**
+       * @return the segments with different owners, or {@code null} if {@code ch} can't be encoded as a delta from
+       *         {@code baseCH}
+       */
+      private static List<Integer> changedSegments(ConsistentHash baseCH, DefaultConsistentHash ch) {
+         if (!(baseCH instanceof DefaultConsistentHash) || baseCH.getNumSegments() != ch.getNumSegments()
+               || baseCH.getNumOwners() != ch.getNumOwners() || !baseCH.getHashFunction().equals(ch.getHashFunction()))
+            return null;
+         List<Integer> changedSegments = new ArrayList<Integer>();
+         for (int i = 0; i < ch.getNumSegments(); i++) {
+            if (!baseCH.locateOwnersForSegment(i).equals(ch.locateOwnersForSegment(i))) {
+               changedSegments.add(i);
+            }
+         }
+         return changedSegments;
+      }
+
+      @SuppressWarnings("unchecked")
+      ConsistentHash apply(CacheTopology baseTopology) {
+         ConsistentHash baseCH = fromPendingCH ? baseTopology.getPendingCH() : baseTopology.getCurrentCH();
+         if (!(baseCH instanceof DefaultConsistentHash))
+            return null;
+         if (members == null && segments.length == 0)
+            return baseCH;
+
+         List<Address> newMembers = members != null ? members : baseCH.getMembers();
+         int numSegments = baseCH.getNumSegments();
+         List<Address>[] segmentOwners = new List[numSegments];
+         for (int i = 0; i < numSegments; i++) {
+            segmentOwners[i] = baseCH.locateOwnersForSegment(i);
+         }
+         for (int i = 0; i < segments.length; i++) {
+            List<Address> owners = new ArrayList<Address>(this.owners[i].length);
+            for (int index : this.owners[i]) {
+               owners.add(newMembers.get(index));
+            }
+            segmentOwners[segments[i]] = owners;
+         }
+         return new DefaultConsistentHash(baseCH.getHashFunction(), baseCH.getNumOwners(), numSegments, newMembers,
+                                          segmentOwners);
+      }
+
+      @Override
+      public String toString() {
+         return "ConsistentHashDelta{" +
+               "from=" + (fromPendingCH ? "pendingCH" : "currentCH") +
+               ", members=" + members +
+               ", changedSegments=" + segments.length +
+               '}';
+      }
+
+      void writeTo(ObjectOutput output) throws IOException {
+         output.writeBoolean(fromPendingCH);
+         output.writeObject(members);
+         UnsignedNumeric.writeUnsignedInt(output, segments.length);
+         for (int i = 0; i < segments.length; i++) {
+            UnsignedNumeric.writeUnsignedInt(output, segments[i]);
+            UnsignedNumeric.writeUnsignedInt(output, owners[i].length);
+            for (int owner : owners[i]) {
+               UnsignedNumeric.writeUnsignedInt(output, owner);
+            }
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      static ConsistentHashDelta readFrom(ObjectInput input) throws IOException, ClassNotFoundException {
+         boolean fromPendingCH = input.readBoolean();
+         List<Address> members = (List<Address>) input.readObject();
+         int numChangedSegments = UnsignedNumeric.readUnsignedInt(input);
+         int[] segments = new int[numChangedSegments];
+         int[][] owners = new int[numChangedSegments][];
+         for (int i = 0; i < numChangedSegments; i++) {
+            segments[i] = UnsignedNumeric.readUnsignedInt(input);
+            owners[i] = new int[UnsignedNumeric.readUnsignedInt(input)];
+            for (int j = 0; j < owners[i].length; j++) {
+               owners[i][j] = UnsignedNumeric.readUnsignedInt(input);
+            }
+         }
+         return new ConsistentHashDelta(fromPendingCH, members, segments, owners);
+      }
+   }
+
+   public static class Externalizer extends AbstractExternalizer<CacheTopologyDelta> {
+      @Override
+      public void writeObject(ObjectOutput output, CacheTopologyDelta delta) throws IOException {
+         output.writeInt(delta.topologyId);
+         output.writeInt(delta.baseTopologyId);
+         delta.currentCH.writeTo(output);
+         output.writeBoolean(delta.pendingCH != null);
+         if (delta.pendingCH != null) {
+            delta.pendingCH.writeTo(output);
+         }
+      }
+
+      @Override
+      public CacheTopologyDelta readObject(ObjectInput unmarshaller) throws IOException, ClassNotFoundException {
+         int topologyId = unmarshaller.readInt();
+         int baseTopologyId = unmarshaller.readInt();
+         ConsistentHashDelta currentCH = ConsistentHashDelta.readFrom(unmarshaller);
+         ConsistentHashDelta pendingCH = unmarshaller.readBoolean() ? ConsistentHashDelta.readFrom(unmarshaller) : null;
+         return new CacheTopologyDelta(topologyId, baseTopologyId, currentCH, pendingCH);
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.CACHE_TOPOLOGY_DELTA;
+      }
+
+      @Override
+      public Set<Class<? extends CacheTopologyDelta>> getTypeClasses() {
+         return Collections.<Class<? extends CacheTopologyDelta>>singleton(CacheTopologyDelta.class);
+      }
+   }
+}
@@ -51,6 +51,8 @@ public class ClusterCacheStatus {
    private volatile CacheTopology cacheTopology;
 
    private volatile RebalanceConfirmationCollector rebalanceStatus;
+   // The last topology sent to all the members, topology updates are sent as differences from it
+   private CacheTopology broadcastTopology;
 
    public ClusterCacheStatus(String cacheName, CacheJoinInfo joinInfo) {
       this.cacheName = cacheName;
@@ -183,6 +185,20 @@ public void updateCacheTopology(CacheTopology newTopology) {
       }
    }
 
+   /**
+    * Records the topology that is being sent to all the cache members.
+    *
+    * @return the previous topology sent to all the members, or {@code null} if the members don't share a topology
+    *    the new one can be encoded against
+    */
+   public CacheTopology updateBroadcastTopology(CacheTopology newTopology, boolean allowDelta) {
+      synchronized (this) {
+         CacheTopology previousTopology = broadcastTopology;
+         broadcastTopology = newTopology;
+         return allowDelta ? previousTopology : null;
+      }
+   }
+
    public boolean needConsistentHashUpdate() {
       // The list of current members is always included in the list of pending members,
       // so we only need to check one list.
@@ -45,6 +45,11 @@ public interface ClusterTopologyManager {
     */
    CacheTopology handleJoin(String cacheName, Address joiner, CacheJoinInfo joinInfo, int viewId) throws Exception;
 
+   /**
+    * @return the current topology of the cache, or {@code null} if the cache has no members.
+    */
+   CacheTopology getCacheTopology(String cacheName);
+
    /**
     * Updates the members list and notifies the {@link RebalancePolicy}
     */
@@ -22,8 +22,10 @@
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -83,6 +85,11 @@ public class ClusterTopologyManagerImpl implements ClusterTopologyManager {
    private final ConcurrentMap<String, ClusterCacheStatus> cacheStatusMap = CollectionFactory.makeConcurrentMap();
    private ClusterViewListener viewListener;
 
+   // Caches whose rebalance was triggered, but not started yet. All of them are started together.
+   private final Set<String> cachesPendingRebalance = new LinkedHashSet<String>();
+   private boolean rebalanceScheduled;
+   private CacheTopologyCommandBatcher broadcastBatcher;
+
    @Inject
    public void inject(Transport transport, RebalancePolicy rebalancePolicy,
                       @ComponentName(ASYNC_TRANSPORT_EXECUTOR) ExecutorService asyncTransportExecutor,
@@ -94,6 +101,14 @@ public void inject(Transport transport, RebalancePolicy rebalancePolicy,
       this.globalConfiguration = globalConfiguration;
       this.gcr = gcr;
       this.cacheManagerNotifier = cacheManagerNotifier;
+      this.broadcastBatcher = new CacheTopologyCommandBatcher(asyncTransportExecutor) {
+         @Override
+         protected void send(List<CacheTopologyControlCommand> commands) throws Exception {
+            CacheTopologyControlCommand command = commands.size() == 1 ? commands.get(0)
+                  : new CacheTopologyControlCommand(transport.getAddress(), commands, transport.getViewId());
+            executeOnClusterAsync(command, getGlobalTimeout(), false, false);
+         }
+      };
    }
 
    @Start(priority = 100)
@@ -123,18 +138,45 @@ public void stop() {
 
    @Override
    public void triggerRebalance(final String cacheName) {
+      synchronized (cachesPendingRebalance) {
+         cachesPendingRebalance.add(cacheName);
+         if (rebalanceScheduled)
+            return;
+         rebalanceScheduled = true;
+      }
       asyncTransportExecutor.submit(new Callable<Object>() {
          @Override
          public Object call() throws Exception {
+            startPendingRebalances();
+            return null;
+         }
+      });
+   }
+
+   /**
+    * Starts the rebalance of all the caches triggered since the last call, and broadcasts all the new topologies
+    * in a single message.
+    */
+   private void startPendingRebalances() {
+      List<String> cacheNames;
+      synchronized (cachesPendingRebalance) {
+         cacheNames = new ArrayList<String>(cachesPendingRebalance);
+         cachesPendingRebalance.clear();
+         rebalanceScheduled = false;
+      }
+      log.tracef("Starting rebalance for caches %s", cacheNames);
+      broadcastBatcher.hold();
+      try {
+         for (String cacheName : cacheNames) {
             try {
                startRebalance(cacheName);
-               return null;
             } catch (Throwable t) {
                log.rebalanceStartError(cacheName, t);
-               throw new Exception(t);
             }
          }
-      });
+      } finally {
+         broadcastBatcher.release();
+      }
    }
 
    @Override
@@ -173,6 +215,12 @@ public CacheTopology handleJoin(String cacheName, Address joiner, CacheJoinInfo
       return cacheStatus.getCacheTopology();
    }
 
+   @Override
+   public CacheTopology getCacheTopology(String cacheName) {
+      ClusterCacheStatus cacheStatus = cacheStatusMap.get(cacheName);
+      return cacheStatus != null ? cacheStatus.getCacheTopology() : null;
+   }
+
    @Override
    public void handleLeave(String cacheName, Address leaver, int viewId) throws Exception {
       if (isShuttingDown) {
@@ -212,12 +260,22 @@ public void handleRebalanceCompleted(String cacheName, Address node, int topolog
       boolean rebalanceCompleted = cacheStatus.confirmRebalanceOnNode(node, topologyId);
       if (rebalanceCompleted) {
          endRebalance(cacheName, cacheStatus);
-         broadcastConsistentHashUpdate(cacheName, cacheStatus);
+         broadcastConsistentHashUpdate(cacheName, cacheStatus, true);
          rebalancePolicy.updateCacheStatus(cacheName, cacheStatus);
       }
    }
 
    protected void handleNewView(List<Address> ignored, boolean mergeView, int newViewId) {
+      // Send the topology updates of all the caches in a single message
+      broadcastBatcher.hold();
+      try {
+         doHandleNewView(mergeView, newViewId);
+      } finally {
+         broadcastBatcher.release();
+      }
+   }
+
+   private void doHandleNewView(boolean mergeView, int newViewId) {
       synchronized (viewHandlingLock) {
          // check to ensure this is not an older view
          if (newViewId <= viewId) {
@@ -330,20 +388,23 @@ public void updateCacheStatusAfterMerge(String cacheName, List<Address> clusterM
       }
 
       // End any rebalance that was running in the other partitions
-      broadcastConsistentHashUpdate(cacheName, cacheStatus);
+      // The partitions may have had different topologies with the same id, so this update can't be a delta
+      broadcastConsistentHashUpdate(cacheName, cacheStatus, false);
 
       // Trigger another rebalance in case the CH is not balanced
       rebalancePolicy.updateCacheStatus(cacheName, cacheStatus);
    }
 
-   private void broadcastConsistentHashUpdate(String cacheName, ClusterCacheStatus cacheStatus) throws Exception {
+   private void broadcastConsistentHashUpdate(String cacheName, ClusterCacheStatus cacheStatus,
+                                              boolean allowDelta) throws Exception {
       CacheTopology cacheTopology = cacheStatus.getCacheTopology();
+      CacheTopology baseTopology = cacheStatus.updateBroadcastTopology(cacheTopology, allowDelta);
       log.debugf("Updating cluster-wide consistent hash for cache %s, topology = %s",
             cacheName, cacheTopology);
-      ReplicableCommand command = new CacheTopologyControlCommand(cacheName,
-            CacheTopologyControlCommand.Type.CH_UPDATE, transport.getAddress(), cacheTopology,
+      CacheTopologyControlCommand command = new CacheTopologyControlCommand(cacheName,
+            CacheTopologyControlCommand.Type.CH_UPDATE, transport.getAddress(), cacheTopology, baseTopology,
             transport.getViewId());
-      executeOnClusterAsync(command, getGlobalTimeout(), cacheStatus.isTotalOrder(), cacheStatus.isDistributed());
+      broadcast(command, cacheStatus);
    }
 
    private void startRebalance(String cacheName) throws Exception {
@@ -398,12 +459,22 @@ private void startRebalance(String cacheName) throws Exception {
 
    private void broadcastRebalanceStart(String cacheName, ClusterCacheStatus cacheStatus) throws Exception {
       CacheTopology cacheTopology = cacheStatus.getCacheTopology();
+      CacheTopology baseTopology = cacheStatus.updateBroadcastTopology(cacheTopology, true);
       log.debugf("Starting cluster-wide rebalance for cache %s, topology = %s",
             cacheName, cacheTopology);
-      ReplicableCommand command = new CacheTopologyControlCommand(cacheName,
-            CacheTopologyControlCommand.Type.REBALANCE_START, transport.getAddress(), cacheTopology,
+      CacheTopologyControlCommand command = new CacheTopologyControlCommand(cacheName,
+            CacheTopologyControlCommand.Type.REBALANCE_START, transport.getAddress(), cacheTopology, baseTopology,
             transport.getViewId());
-      executeOnClusterAsync(command, getGlobalTimeout(), cacheStatus.isTotalOrder(), cacheStatus.isDistributed());
+      broadcast(command, cacheStatus);
+   }
+
+   private void broadcast(CacheTopologyControlCommand command, ClusterCacheStatus cacheStatus) throws Exception {
+      if (cacheStatus.isTotalOrder()) {
+         // total order caches need their updates delivered in total order, they can't share a message
+         executeOnClusterAsync(command, getGlobalTimeout(), true, cacheStatus.isDistributed());
+      } else {
+         broadcastBatcher.add(command);
+      }
    }
 
    private void endRebalance(String cacheName, ClusterCacheStatus cacheStatus) {
@@ -490,7 +561,7 @@ private boolean onCacheMembershipChange(String cacheName, ClusterCacheStatus cac
       }
 
       // We need a consistent hash update even when rebalancing did end
-      broadcastConsistentHashUpdate(cacheName, cacheStatus);
+      broadcastConsistentHashUpdate(cacheName, cacheStatus, true);
 
       rebalancePolicy.updateCacheStatus(cacheName, cacheStatus);
       return false;
@@ -73,6 +73,14 @@ public interface LocalTopologyManager {
     */
    void handleRebalance(String cacheName, CacheTopology cacheTopology, int viewId) throws InterruptedException;
 
+   /**
+    * Rebuilds the topology from a topology update that only contains the differences from an earlier topology,
+    * and then handles it like {@link #handleConsistentHashUpdate} or, if {@code rebalance} is {@code true},
+    * like {@link #handleRebalance}. If the local node doesn't have the topology the delta was created from, it asks
+    * the coordinator for the full topology instead.
+    */
+   void handleTopologyDelta(String cacheName, CacheTopologyDelta topologyDelta, boolean rebalance, int viewId) throws Exception;
+
    /**
     * @return the current topology for a cache.
     */
@@ -21,6 +21,7 @@
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
@@ -70,6 +71,8 @@ public class LocalTopologyManagerImpl implements LocalTopologyManager {
 
    private final ConcurrentMap<String, LocalCacheStatus> runningCaches = CollectionFactory.makeConcurrentMap();
    private volatile boolean running;
+   // Rebalance confirmations of caches that finished at the same time go to the coordinator in one message
+   private CacheTopologyCommandBatcher confirmationBatcher;
 
    @Inject
    public void inject(Transport transport,
@@ -79,6 +82,14 @@ public void inject(Transport transport,
       this.asyncTransportExecutor = asyncTransportExecutor;
       this.gcr = gcr;
       this.timeService = timeService;
+      this.confirmationBatcher = new CacheTopologyCommandBatcher(asyncTransportExecutor) {
+         @Override
+         protected void send(List<CacheTopologyControlCommand> commands) throws Exception {
+            CacheTopologyControlCommand command = commands.size() == 1 ? commands.get(0)
+                  : new CacheTopologyControlCommand(transport.getAddress(), commands, transport.getViewId());
+            executeOnCoordinatorAsync(command);
+         }
+      };
    }
 
    // Arbitrary value, only need to start after JGroupsTransport
@@ -142,15 +153,10 @@ public void leave(String cacheName) {
    public void confirmRebalance(String cacheName, int topologyId, Throwable throwable) {
       // Note that if the coordinator changes again after we sent the command, we will get another
       // query for the status of our running caches. So we don't need to retry if the command failed.
-      ReplicableCommand command = new CacheTopologyControlCommand(cacheName,
+      CacheTopologyControlCommand command = new CacheTopologyControlCommand(cacheName,
             CacheTopologyControlCommand.Type.REBALANCE_CONFIRM, transport.getAddress(),
             topologyId, throwable, transport.getViewId());
-      try {
-         executeOnCoordinatorAsync(command);
-      } catch (Exception e) {
-         log.debugf(e, "Error sending the rebalance completed notification for cache %s to the coordinator",
-               cacheName);
-      }
+      confirmationBatcher.add(command);
    }
 
    // called by the coordinator
@@ -248,6 +254,54 @@ public void handleRebalance(String cacheName, CacheTopology cacheTopology, int v
       }
    }
 
+   @Override
+   public void handleTopologyDelta(String cacheName, CacheTopologyDelta topologyDelta, boolean rebalance,
+                                   int viewId) throws Exception {
+      if (!running) {
+         log.debugf("Ignoring topology update %s for cache %s, the local cache manager is not running",
+               topologyDelta.getTopologyId(), cacheName);
+         return;
+      }
+      waitForView(viewId);
+
+      LocalCacheStatus cacheStatus = runningCaches.get(cacheName);
+      if (cacheStatus == null) {
+         log.tracef("Ignoring topology update %s for cache %s that doesn't exist locally",
+               topologyDelta.getTopologyId(), cacheName);
+         return;
+      }
+
+      CacheTopology existingTopology = cacheStatus.getTopology();
+      if (existingTopology != null && topologyDelta.getTopologyId() <= existingTopology.getTopologyId()) {
+         log.tracef("Ignoring topology update %s for cache %s, we have already received topology %s",
+               topologyDelta.getTopologyId(), cacheName, existingTopology.getTopologyId());
+         return;
+      }
+
+      CacheTopology cacheTopology = topologyDelta.apply(existingTopology);
+      if (cacheTopology == null) {
+         // We missed an update (e.g. we joined after it was sent), so we can't apply the delta
+         log.debugf("Received topology update %s for cache %s based on topology %s, but our topology is %s. " +
+               "Requesting the full topology from the coordinator", topologyDelta.getTopologyId(), cacheName,
+               topologyDelta.getBaseTopologyId(), existingTopology != null ? existingTopology.getTopologyId() : null);
+         ReplicableCommand command = new CacheTopologyControlCommand(cacheName,
+               CacheTopologyControlCommand.Type.GET_CACHE_TOPOLOGY, transport.getAddress(), transport.getViewId());
+         cacheTopology = (CacheTopology) executeOnCoordinator(command, cacheStatus.getJoinInfo().getTimeout());
+         if (cacheTopology == null) {
+            log.debugf("The coordinator doesn't have a topology for cache %s, ignoring topology update %s",
+                  cacheName, topologyDelta.getTopologyId());
+            return;
+         }
+      }
+
+      // the coordinator may have sent us a newer topology, which can't be the rebalance start anymore
+      if (rebalance && cacheTopology.getTopologyId() == topologyDelta.getTopologyId()) {
+         handleRebalance(cacheName, cacheTopology, viewId);
+      } else {
+         handleConsistentHashUpdate(cacheName, cacheTopology, viewId);
+      }
+   }
+
    @Override
    public CacheTopology getCacheTopology(String cacheName) {
       LocalCacheStatus cacheStatus = runningCaches.get(cacheName);
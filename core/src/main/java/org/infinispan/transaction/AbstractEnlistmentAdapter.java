@@ -89,9 +89,15 @@ protected final void releaseLocksForCompletedTransaction(LocalTransaction localT
 
    private void removeTransactionInfoRemotely(LocalTransaction localTransaction, GlobalTransaction gtx) {
       if (mayHaveRemoteLocks(localTransaction) && !isSecondPhaseAsync) {
-         final TxCompletionNotificationCommand command = commandsFactory.buildTxCompletionNotificationCommand(null, gtx);
          final Collection<Address> owners = clusteringLogic.getOwners(localTransaction.getAffectedKeys());
          Collection<Address> commitNodes = localTransaction.getCommitNodes(owners, rpcManager.getTopologyId(), rpcManager.getMembers());
+         TxCompletionNotificationBatcher batcher = txTable.getTxCompletionNotificationBatcher();
+         if (batcher != null) {
+            log.tracef("Queueing tx completion notification for commitNodes: %s", commitNodes);
+            batcher.notifyCompleted(gtx, commitNodes);
+            return;
+         }
+         final TxCompletionNotificationCommand command = commandsFactory.buildTxCompletionNotificationCommand(null, gtx);
          log.tracef("About to invoke tx completion notification on commitNodes: %s", commitNodes);
          rpcManager.invokeRemotely(commitNodes, command, rpcManager.getDefaultRpcOptions(false, false));
       }
@@ -69,6 +69,7 @@ public abstract class LocalTransaction extends AbstractCacheTransaction {
    private volatile boolean isFromStateTransfer;
 
    private boolean prepareSent;
+   private boolean remotePrepareDeferred;
    private boolean commitOrRollbackSent;
 
    public LocalTransaction(Transaction transaction, GlobalTransaction tx,
@@ -251,6 +252,21 @@ public final boolean isPrepareSent() {
       return prepareSent;
    }
 
+   /**
+    * Records that the prepare was not sent to the other owners, because this node is the primary owner of all the keys
+    * of the transaction: the other owners will receive a one-phase prepare instead of the commit.
+    */
+   public final void markRemotePrepareDeferred() {
+      remotePrepareDeferred = true;
+   }
+
+   /**
+    * @return true if the prepare was not sent to the other owners and has to be sent with the commit
+    */
+   public final boolean isRemotePrepareDeferred() {
+      return remotePrepareDeferred;
+   }
+
    /**
     * Sets the commit or rollback sent for this transaction
     */
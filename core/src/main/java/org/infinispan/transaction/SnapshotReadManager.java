@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.CacheException;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.metadata.MetadataImmortalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.InequalVersionComparisonResult;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.interceptors.locking.ClusteringDependentLogic;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.Equivalence;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the snapshots of the transactions reading with {@link org.infinispan.context.Flag#SNAPSHOT_READ}.
+ * <p/>
+ * Snapshot reads are executed outside of the transaction: the transaction is not registered in the
+ * {@link TransactionTable}, no lock is acquired and no prepare or commit is sent when it completes. Instead, the first
+ * read of a key is recorded in the transaction's snapshot, and the following reads of the key in the same transaction
+ * return the recorded entry. Once the transaction writes to the cache, its reads go through the transaction instead.
+ * <p/>
+ * The data container only keeps the latest version of an entry, so the snapshot is validated before the transaction
+ * completes: if a key read by the transaction was modified after it was read, the values read may not have existed
+ * together, and the transaction is rolled back. The keys stored on this node are checked against the data container,
+ * the others with a single {@link ClusteredGetAllCommand} per primary owner. When versioning is enabled the versions
+ * are compared, otherwise the values are, so a key modified and then set back to the value read is not detected.
+ * A key whose owner cannot answer, e.g. because it is being rehashed, fails the validation.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+@Scope(Scopes.NAMED_CACHE)
+@MBean(objectName = "SnapshotReadManager", description = "Keeps the snapshots of the read-only transactions")
+public class SnapshotReadManager {
+
+   private static final Log log = LogFactory.getLog(SnapshotReadManager.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private Configuration configuration;
+   private DataContainer dataContainer;
+   private ClusteringDependentLogic clusteringLogic;
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+
+   private boolean compareVersions;
+   private Equivalence<Object> valueEquivalence;
+   private final ConcurrentMap<Transaction, Snapshot> snapshots = CollectionFactory.makeConcurrentMap();
+
+   @Inject
+   public void inject(Configuration configuration, DataContainer dataContainer, ClusteringDependentLogic clusteringLogic,
+                      RpcManager rpcManager, CommandsFactory commandsFactory) {
+      this.configuration = configuration;
+      this.dataContainer = dataContainer;
+      this.clusteringLogic = clusteringLogic;
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+   }
+
+   @Start
+   @SuppressWarnings("unchecked")
+   public void start() {
+      compareVersions = configuration.versioning().enabled();
+      valueEquivalence = configuration.dataContainer().valueEquivalence();
+   }
+
+   @Stop
+   public void stop() {
+      snapshots.clear();
+   }
+
+   /**
+    * @return the snapshot of {@code tx}, created the first time {@code tx} reads from this cache
+    */
+   public Snapshot getSnapshot(final Transaction tx) {
+      Snapshot snapshot = snapshots.get(tx);
+      if (snapshot != null) return snapshot;
+
+      snapshot = new Snapshot(configuration.dataContainer().keyEquivalence());
+      Snapshot existing = snapshots.putIfAbsent(tx, snapshot);
+      if (existing != null) return existing;
+
+      final Snapshot newSnapshot = snapshot;
+      try {
+         tx.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+               if (!isValid(newSnapshot)) {
+                  try {
+                     tx.setRollbackOnly();
+                  } catch (SystemException e) {
+                     log.debugf(e, "Could not mark transaction %s for rollback", tx);
+                  }
+                  // an exception in beforeCompletion rolls the transaction back with any transaction manager
+                  throw new CacheException("The snapshot read by transaction " + tx + " is not consistent, a key was modified after it was read");
+               }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+               snapshots.remove(tx);
+            }
+         });
+      } catch (Exception e) {
+         snapshots.remove(tx);
+         throw new CacheException("Could not register the snapshot of transaction " + tx, e);
+      }
+      if (trace) log.tracef("Created the snapshot of transaction %s", tx);
+      return snapshot;
+   }
+
+   private boolean isValid(Snapshot snapshot) {
+      Map<Address, List<Object>> remoteKeysByOwner = null;
+      for (Map.Entry<Object, Object> e : snapshot.entries.entrySet()) {
+         Object key = e.getKey();
+         if (!clusteringLogic.localNodeIsOwner(key)) {
+            if (remoteKeysByOwner == null) remoteKeysByOwner = new HashMap<Address, List<Object>>();
+            Address owner = clusteringLogic.getPrimaryOwner(key);
+            List<Object> ownerKeys = remoteKeysByOwner.get(owner);
+            if (ownerKeys == null) {
+               ownerKeys = new ArrayList<Object>();
+               remoteKeysByOwner.put(owner, ownerKeys);
+            }
+            ownerKeys.add(key);
+         } else if (isModified(key, e.getValue(), dataContainer.peek(key))) {
+            return false;
+         }
+      }
+      if (remoteKeysByOwner != null) {
+         for (Map.Entry<Address, List<Object>> e : remoteKeysByOwner.entrySet()) {
+            if (!isValidRemotely(snapshot, e.getKey(), e.getValue())) return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Reads the current entries of {@code keys} from their primary owner with a single remote call.
+    */
+   private boolean isValidRemotely(Snapshot snapshot, Address owner, List<Object> keys) {
+      ClusteredGetAllCommand getAll = commandsFactory.buildClusteredGetAllCommand(keys, null);
+      Map<Address, Response> responses = rpcManager.invokeRemotely(Collections.singleton(owner), getAll,
+            rpcManager.getRpcOptionsBuilder(ResponseMode.SYNCHRONOUS, false).build());
+      Response response = responses.get(owner);
+      if (!(response instanceof SuccessfulResponse)) {
+         log.debugf("Could not validate the keys %s read by a snapshot read, %s answered %s", keys, owner, response);
+         return false;
+      }
+      // the values are in the same order as the requested keys
+      Object[] values = (Object[]) ((SuccessfulResponse) response).getResponseValue();
+      for (int i = 0; i < values.length; i++) {
+         Object key = keys.get(i);
+         if (values[i] != null && !(values[i] instanceof InternalCacheValue)) {
+            log.debugf("Could not validate the key %s read by a snapshot read, %s is not sure about it", key, owner);
+            return false;
+         }
+         InternalCacheEntry current = values[i] == null ? null : ((InternalCacheValue) values[i]).toInternalCacheEntry(key);
+         if (isModified(key, snapshot.entries.get(key), current)) return false;
+      }
+      return true;
+   }
+
+   private boolean isModified(Object key, Object read, CacheEntry current) {
+      boolean modified;
+      if (read == Snapshot.NULL_ENTRY) {
+         modified = current != null;
+      } else if (current == null) {
+         modified = true;
+      } else if (compareVersions) {
+         EntryVersion readVersion = versionOf((CacheEntry) read);
+         EntryVersion currentVersion = versionOf(current);
+         modified = readVersion != null &&
+               (currentVersion == null || readVersion.compareTo(currentVersion) != InequalVersionComparisonResult.EQUAL);
+      } else {
+         modified = !valueEquivalence.equals(((CacheEntry) read).getValue(), current.getValue());
+      }
+      if (modified) {
+         log.debugf("Key %s was modified after it was read by a snapshot read, the snapshot is not consistent", key);
+      }
+      return modified;
+   }
+
+   private static EntryVersion versionOf(CacheEntry entry) {
+      Metadata metadata = entry.getMetadata();
+      return metadata == null ? null : metadata.version();
+   }
+
+   @ManagedAttribute(description = "Number of transactions currently reading from a snapshot",
+         displayName = "Snapshot read transactions")
+   public int getSnapshotCount() {
+      return snapshots.size();
+   }
+
+   /**
+    * The entries read by a transaction.
+    */
+   public static class Snapshot {
+      private static final Object NULL_ENTRY = new Object();
+
+      private final ConcurrentMap<Object, Object> entries;
+
+      Snapshot(Equivalence<Object> keyEquivalence) {
+         entries = CollectionFactory.makeConcurrentMap(keyEquivalence, AnyEquivalence.getInstance());
+      }
+
+      public boolean contains(Object key) {
+         return entries.containsKey(key);
+      }
+
+      /**
+       * @return the entry recorded for {@code key}, or {@code null} if the key didn't exist when it was read
+       */
+      public CacheEntry get(Object key) {
+         Object entry = entries.get(key);
+         return entry == NULL_ENTRY ? null : (CacheEntry) entry;
+      }
+
+      /**
+       * Records the entry read for {@code key}, unless an entry was already recorded.
+       *
+       * @return the entry recorded for {@code key}
+       */
+      public CacheEntry record(Object key, CacheEntry read) {
+         // copy the entry, the data container may update it in place
+         Object entry = read == null ? NULL_ENTRY : new MetadataImmortalCacheEntry(read.getKey(), read.getValue(), read.getMetadata());
+         Object existing = entries.putIfAbsent(key, entry);
+         if (existing != null) entry = existing;
+         return entry == NULL_ENTRY ? null : (CacheEntry) entry;
+      }
+   }
+}
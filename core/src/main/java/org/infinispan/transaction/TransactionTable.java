@@ -109,6 +109,7 @@ public class TransactionTable {
    private volatile int currentTopologyId = CACHE_STOPPED_TOPOLOGY_ID;
    private String cacheName;
    private TimeService timeService;
+   private TxCompletionNotificationBatcher txCompletionNotificationBatcher;
 
    @Inject
    public void initialize(RpcManager rpcManager, Configuration configuration,
@@ -131,6 +132,19 @@ public void initialize(RpcManager rpcManager, Configuration configuration,
       this.timeService = timeService;
    }
 
+   @Inject
+   public void injectTxCompletionNotificationBatcher(TxCompletionNotificationBatcher txCompletionNotificationBatcher) {
+      this.txCompletionNotificationBatcher = txCompletionNotificationBatcher;
+   }
+
+   /**
+    * @return the component sending the completion notifications of the local transactions, or {@code null} if the
+    *         notifications are sent right away
+    */
+   public TxCompletionNotificationBatcher getTxCompletionNotificationBatcher() {
+      return txCompletionNotificationBatcher;
+   }
+
    @Start(priority = 9) // Start before cache loader manager
    @SuppressWarnings("unused")
    private void start() {
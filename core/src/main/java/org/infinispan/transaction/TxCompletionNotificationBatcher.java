@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.recovery.TxCompletionNotificationCommand;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the {@link TxCompletionNotificationCommand}s of the transactions completed on this node, so that each
+ * destination receives a single notification for all the transactions completed since the previous one.
+ * <p/>
+ * The remote nodes keep the locks of a transaction until they receive its completion notification, so notifications are
+ * never held back on purpose: the first notification queued schedules a flush in the async transport executor, and all
+ * the notifications queued until the flush runs are sent together. Under a light load every notification is still sent
+ * on its own, almost as soon as before, and the more transactions complete concurrently, the more notifications share a
+ * message.
+ * <p/>
+ * The notifications for all the members of the cluster are sent as one broadcast, the others are grouped per
+ * destination.
+ *
+ * @since 5.3
+ */
+@ThreadSafe
+@Scope(Scopes.NAMED_CACHE)
+@MBean(objectName = "TxCompletionNotificationBatcher", description = "Aggregates transaction completion notifications")
+public class TxCompletionNotificationBatcher {
+
+   private static final Log log = LogFactory.getLog(TxCompletionNotificationBatcher.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+   private ExecutorService executor;
+
+   private final Queue<PendingNotification> pending = new ConcurrentLinkedQueue<PendingNotification>();
+   private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+   private final AtomicLong notificationsQueued = new AtomicLong(0);
+   private final AtomicLong messagesSent = new AtomicLong(0);
+   private volatile boolean running;
+
+   private final Runnable flushTask = new Runnable() {
+      @Override
+      public void run() {
+         flushScheduled.set(false);
+         flush();
+      }
+   };
+
+   @Inject
+   public void inject(RpcManager rpcManager, CommandsFactory commandsFactory,
+                      @ComponentName(KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR) ExecutorService executor) {
+      this.rpcManager = rpcManager;
+      this.commandsFactory = commandsFactory;
+      this.executor = executor;
+   }
+
+   @Start
+   public void start() {
+      running = true;
+   }
+
+   @Stop(priority = 9)
+   // Stop before transport
+   public void stop() {
+      running = false;
+      try {
+         flush();
+      } catch (Exception e) {
+         log.debug("Unable to send the pending transaction completion notifications before shutting down", e);
+      }
+   }
+
+   /**
+    * Queues the completion notification of {@code gtx} for {@code targets}, {@code null} meaning all the members of the
+    * cluster.
+    */
+   public void notifyCompleted(GlobalTransaction gtx, Collection<Address> targets) {
+      pending.add(new PendingNotification(gtx, targets));
+      notificationsQueued.incrementAndGet();
+      if (!running) {
+         flush();
+      } else if (flushScheduled.compareAndSet(false, true)) {
+         try {
+            executor.execute(flushTask);
+         } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+            flush();
+         }
+      }
+   }
+
+   /**
+    * Sends all the queued notifications, one message per destination.
+    */
+   public void flush() {
+      List<GlobalTransaction> broadcast = new ArrayList<GlobalTransaction>();
+      Map<Address, List<GlobalTransaction>> perDestination = new HashMap<Address, List<GlobalTransaction>>();
+      PendingNotification notification;
+      while ((notification = pending.poll()) != null) {
+         if (notification.targets == null) {
+            broadcast.add(notification.gtx);
+            continue;
+         }
+         for (Address target : notification.targets) {
+            List<GlobalTransaction> gtxs = perDestination.get(target);
+            if (gtxs == null) {
+               gtxs = new ArrayList<GlobalTransaction>();
+               perDestination.put(target, gtxs);
+            }
+            gtxs.add(notification.gtx);
+         }
+      }
+
+      if (!broadcast.isEmpty()) {
+         send(null, broadcast);
+      }
+      for (Map.Entry<Address, List<GlobalTransaction>> e : perDestination.entrySet()) {
+         send(Collections.singleton(e.getKey()), e.getValue());
+      }
+   }
+
+   private void send(Collection<Address> targets, List<GlobalTransaction> gtxs) {
+      TxCompletionNotificationCommand command = gtxs.size() == 1 ?
+            commandsFactory.buildTxCompletionNotificationCommand(null, gtxs.get(0)) :
+            commandsFactory.buildTxCompletionNotificationCommand(gtxs);
+      if (trace) log.tracef("Sending the completion notification of transactions %s to %s", gtxs, targets == null ? "all" : targets);
+      try {
+         rpcManager.invokeRemotely(targets, command, rpcManager.getDefaultRpcOptions(false, false));
+         messagesSent.incrementAndGet();
+      } catch (Throwable t) {
+         log.debugf(t, "Unable to send the completion notification of transactions %s", gtxs);
+      }
+   }
+
+   @ManagedAttribute(description = "Number of transaction completion notifications sent to other nodes",
+         displayName = "Completion notifications")
+   public long getNotifications() {
+      return notificationsQueued.get();
+   }
+
+   @ManagedAttribute(description = "Number of messages used to send the transaction completion notifications",
+         displayName = "Completion notification messages")
+   public long getNotificationMessages() {
+      return messagesSent.get();
+   }
+
+   private static class PendingNotification {
+      final GlobalTransaction gtx;
+      final Collection<Address> targets;
+
+      PendingNotification(GlobalTransaction gtx, Collection<Address> targets) {
+         this.gtx = gtx;
+         this.targets = targets;
+      }
+   }
+}
@@ -32,6 +32,7 @@
 
 package org.infinispan.util.concurrent;
 import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.eviction.EntrySizeCalculator;
 import org.infinispan.util.Equivalence;
 import org.infinispan.util.InfinispanCollections;
 import org.infinispan.util.Util;
@@ -192,7 +193,9 @@
    private transient final Equivalence<K> keyEquivalence;
    private transient final Equivalence<V> valueEquivalence;
    private transient final EvictionListener<K, V> evictionListener;
+   private transient final EntrySizeCalculator<? super K, ? super V> sizeCalculator;
    private final int evictCap;
+   private final long evictMemoryCap;
 
    /* ---------------- Small Utilities -------------- */
 
@@ -241,7 +244,16 @@ final Segment<K,V> segmentFor(int hash) {
       final K key;
       final int hash;
       volatile V value;
-      final HashEntry<K, V> next;
+      /**
+       * Not final, unlike in ConcurrentHashMap, so that remove() can unlink an entry in place
+       * instead of cloning the entries preceding it in the bucket.
+       */
+      volatile HashEntry<K, V> next;
+      /**
+       * Estimated memory footprint, only maintained when the map is bounded by memory. Guarded by
+       * the segment lock. Fits in the padding of the object on 64-bit JVMs with compressed oops.
+       */
+      int size;
 
       HashEntry(K key, int hash, HashEntry<K, V> next, V value) {
          this.key = key;
@@ -304,6 +316,12 @@ public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf)
          public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
             return new LIRS<K,V>(s,capacity,capacity*10,lf);
          }
+      },
+      TINYLFU {
+         @Override
+         public <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf) {
+            return new TinyLFU<K, V>(s, capacity, lf, capacity * 10, lf);
+         }
       };
 
       abstract <K, V> EvictionPolicy<K, V> make(Segment<K, V> s, int capacity, float lf);
@@ -388,6 +406,16 @@ public void onEntryRemoved(Object key) {
        */
       void onEntryRemove(HashEntry<K, V> e);
 
+      /**
+       * Invoked to notify EvictionPolicy implementation that Segment entries have been replaced
+       * by copies when the Segment was rehashed. Each copy takes the place of its original in the
+       * eviction order, so that the rehash does not count as an access.
+       *
+       * @param copies
+       *            the copies, keyed by the entries they replace
+       */
+      void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies);
+
       /**
        * Invoked to notify EvictionPolicy implementation that all Segment entries have been
        * cleared.
@@ -412,6 +440,46 @@ public void onEntryRemoved(Object key) {
       boolean thresholdExpired();
    }
 
+   /**
+    * Replaces the relinked entries by their copies in an access ordered map, keeping its order.
+    * The map is rebuilt, as putting an equal key would neither replace the key nor keep its place.
+    */
+   private static <K, V> void relinkKeys(LinkedHashMap<HashEntry<K, V>, V> area, Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+      if (area.isEmpty()) {
+         return;
+      }
+      List<HashEntry<K, V>> entries = new ArrayList<HashEntry<K, V>>(area.keySet());
+      List<V> values = new ArrayList<V>(area.values());
+      // not clear(), an LRU also clears its access queue there
+      for (Iterator<HashEntry<K, V>> it = area.keySet().iterator(); it.hasNext(); ) {
+         it.next();
+         it.remove();
+      }
+      for (int i = 0; i < entries.size(); i++) {
+         HashEntry<K, V> copy = copies.get(entries.get(i));
+         area.put(copy != null ? copy : entries.get(i), values.get(i));
+      }
+   }
+
+   /**
+    * Replaces the relinked entries queued for a batched access by their copies.
+    */
+   private static <E> void relinkQueued(Queue<E> accessQueue, Map<E, E> copies) {
+      if (accessQueue.isEmpty()) {
+         return;
+      }
+      for (Map.Entry<E, E> relinked : copies.entrySet()) {
+         // equal entries, so count the removed originals before queueing as many copies
+         int queued = 0;
+         while (accessQueue.remove(relinked.getKey())) {
+            queued++;
+         }
+         for (int i = 0; i < queued; i++) {
+            accessQueue.offer(relinked.getValue());
+         }
+      }
+   }
+
    static class NullEvictionPolicy<K, V> implements EvictionPolicy<K, V> {
 
       @Override
@@ -439,6 +507,11 @@ public void onEntryRemove(HashEntry<K, V> e) {
          // Do nothing.
       }
 
+      @Override
+      public void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+         // Do nothing.
+      }
+
       @Override
       public boolean thresholdExpired() {
          return false;
@@ -484,6 +557,7 @@ public Set<HashEntry<K, V>> execute() {
          for (HashEntry<K, V> e : accessQueue) {
             put(e, e.value);
          }
+         evictWhileAboveThreshold();
          evictedCopy.addAll(evicted);
          accessQueue.clear();
          accessQueueSize.set(0);
@@ -494,6 +568,7 @@ public Set<HashEntry<K, V>> execute() {
       @Override
       public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
          put(e, e.value);
+         evictWhileAboveThreshold();
          if (!evicted.isEmpty()) {
             Set<HashEntry<K, V>> evictedCopy = new HashSet<HashEntry<K, V>>();
             evictedCopy.addAll(evicted);
@@ -531,6 +606,12 @@ public void onEntryRemove(HashEntry<K, V> e) {
          }
       }
 
+      @Override
+      public void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+         relinkKeys(this, copies);
+         relinkQueued(accessQueue, copies);
+      }
+
       @Override
       public void clear() {
          super.clear();
@@ -544,7 +625,24 @@ public Eviction strategy() {
       }
 
       protected boolean isAboveThreshold(){
-         return size() > trimDownSize;
+         if (segment.relinking) {
+            return false;
+         }
+         return segment.isMemoryBounded() ? size() > 1 && segment.isAboveMemoryThreshold(0) : size() > trimDownSize;
+      }
+
+      /**
+       * {@link #removeEldestEntry(java.util.Map.Entry)} evicts at most one entry per insertion,
+       * which is not enough when bounded by memory: a single large entry can displace many small
+       * ones, and updating an entry can grow it beyond the budget.
+       */
+      private void evictWhileAboveThreshold() {
+         while (isAboveThreshold()) {
+            HashEntry<K, V> evictedEntry = keySet().iterator().next();
+            remove(evictedEntry);
+            segment.remove(evictedEntry.key, evictedEntry.hash, null, true);
+            evicted.add(evictedEntry);
+         }
       }
 
       @Override
@@ -597,9 +695,21 @@ public IBMLRU(Segment<K,V> s, int capacity, float lf, int maxBatchSize, float ba
       @Override
       public Set<HashEntry<K, V>> execute() {
          Set<HashEntry<K, V>> evictedCopy = new HashSet<HashEntry<K, V>>();
-         for (HashEntry<K, V> e : accessQueue) {
-            put(e, e.value);
-            addAndRemoveEldest(e);
+         for (LRUHashEntry<K, V> e : accessQueue) {
+            // skip entries removed or replaced by a rehash since they were accessed
+            if (e.isLinked()) {
+               // move to the most recently used end of the list
+               e.remove();
+               put(e, e.value);
+               addAndRemoveEldest(e);
+            }
+         }
+         while (isAboveThreshold() && head.nextEntry != head) {
+            LRUHashEntry<K, V> evictedEntry = head.nextEntry;
+            remove(evictedEntry);
+            evictedEntry.remove();
+            segment.remove(evictedEntry.key, evictedEntry.hash, null, true);
+            evicted.add(evictedEntry);
          }
          evictedCopy.addAll(evicted);
          accessQueue.clear();
@@ -624,7 +734,7 @@ public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
 
       public void addAndRemoveEldest(HashEntry<K, V> entry) {
          ((LRUHashEntry<K, V>)entry).addBefore(head);
-         if (isAboveThreshold()) {
+         while (isAboveThreshold() && head.nextEntry != head) {
             remove(head.nextEntry);
             LRUHashEntry<K, V> evictedEntry = head.nextEntry;
             //remove eldest entry from doubly-linked list
@@ -663,9 +773,30 @@ public void onEntryRemove(HashEntry<K, V> e) {
          }
       }
 
+      @Override
+      @SuppressWarnings("unchecked")
+      public void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+         for (Map.Entry<HashEntry<K, V>, HashEntry<K, V>> relinked : copies.entrySet()) {
+            LRUHashEntry<K, V> original = (LRUHashEntry<K, V>) relinked.getKey();
+            LRUHashEntry<K, V> copy = (LRUHashEntry<K, V>) relinked.getValue();
+            if (original.isLinked()) {
+               // the equal copy does not replace the key of the existing mapping
+               remove(original);
+               put(copy, copy.value);
+               copy.replace(original);
+            }
+         }
+         relinkQueued(accessQueue, (Map) copies);
+      }
+
       @Override
       public void clear() {
          super.clear();
+         for (LRUHashEntry<K, V> e = head.nextEntry; e != head; ) {
+            LRUHashEntry<K, V> next = e.nextEntry;
+            e.previousEntry = e.nextEntry = null;
+            e = next;
+         }
          head.previousEntry = head.nextEntry = head;
          accessQueue.clear();
          accessQueueSize.set(0);
@@ -677,7 +808,7 @@ public Eviction strategy() {
       }
 
       protected boolean isAboveThreshold(){
-         return size() > trimDownSize;
+         return segment.isMemoryBounded() ? size() > 1 && segment.isAboveMemoryThreshold(0) : size() > trimDownSize;
       }
 
       public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V value) {
@@ -698,9 +829,16 @@ public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V v
          super(key, hash, next, value);
       }
 
+      private boolean isLinked() {
+         return previousEntry != null;
+      }
+
       private void remove() {
-         previousEntry.nextEntry = nextEntry;
-         nextEntry.previousEntry = previousEntry;
+         if (isLinked()) {
+            previousEntry.nextEntry = nextEntry;
+            nextEntry.previousEntry = previousEntry;
+            previousEntry = nextEntry = null;
+         }
       }
 
       private void addBefore(LRUHashEntry<K,V> entry) {
@@ -710,6 +848,17 @@ private void addBefore(LRUHashEntry<K,V> entry) {
          nextEntry.previousEntry = this;
       }
 
+      /**
+       * Takes the place of the given entry in the doubly-linked list.
+       */
+      private void replace(LRUHashEntry<K,V> entry) {
+         previousEntry = entry.previousEntry;
+         nextEntry = entry.nextEntry;
+         previousEntry.nextEntry = this;
+         nextEntry.previousEntry = this;
+         entry.previousEntry = entry.nextEntry = null;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) {
@@ -867,7 +1016,7 @@ private void coldHit(Set<HashEntry<K, V>> evicted) {
        */
       private Set<HashEntry<K, V>> miss() {
          Set<HashEntry<K, V>> evicted = InfinispanCollections.emptySet();
-        if (owner.hotSize < owner.maximumHotSize) {
+        if (!owner.isHotSetFull()) {
           warmupMiss();
         } else {
           evicted = new HashSet<HashEntry<K,V>>(); 
@@ -900,7 +1049,7 @@ private void fullMiss(Set<HashEntry<K, V>> evicted) {
 
         // This condition is unspecified in the paper, but appears to be
         // necessary.
-        if (owner.size >= owner.maximumSize) {
+        if (owner.isFull()) {
           // "We remove the HIR resident block at the front of list Q (it then
           // becomes a non-resident block), and replace it out of the cache."
           LIRSHashEntry<K, V> evictedNode = owner.queueFront();          
@@ -1060,6 +1209,36 @@ private void moveToQueueEnd() {
       }
 
 
+      /**
+       * Gives the status of this entry and its places in the stack and in the queue to a copy of
+       * it, leaving this entry out of both.
+       */
+      private void relinkTo(LIRSHashEntry<K,V> copy) {
+        copy.state = state;
+        copy.owner = owner;
+        if (inStack()) {
+          copy.previousInStack = previousInStack;
+          copy.nextInStack = nextInStack;
+          previousInStack.nextInStack = copy;
+          nextInStack.previousInStack = copy;
+        } else {
+          copy.previousInStack = copy.nextInStack = null;
+        }
+        if (inQueue()) {
+          copy.previousInQueue = previousInQueue;
+          copy.nextInQueue = nextInQueue;
+          previousInQueue.nextInQueue = copy;
+          nextInQueue.previousInQueue = copy;
+        } else {
+          copy.previousInQueue = copy.nextInQueue = null;
+        }
+        previousInStack = nextInStack = null;
+        previousInQueue = nextInQueue = null;
+        // a hit on this entry by a reader of the old table must not bring it back
+        state = Recency.HIR_NONRESIDENT;
+        owner = null;
+      }
+
       /**
        * Moves this entry from the stack to the queue, marking it cold
        * (as hot entries must remain in the stack). This should only be called
@@ -1183,6 +1362,13 @@ private V remove() {
       /** The actual number of hot entries. */
       private int hotSize = 0;
 
+      /**
+       * The memory usage of the segment up to which new entries are made hot, when bounded by
+       * memory. Since the hot set is not sized individually, this is only an approximation of
+       * L_lirs which governs the warm-up phase.
+       */
+      private final long maximumHotMemory;
+
             
 
       public LIRS(Segment<K,V> s, int capacity, int maxBatchSize, float batchThresholdFactor) {
@@ -1192,6 +1378,53 @@ public LIRS(Segment<K,V> s, int capacity, int maxBatchSize, float batchThreshold
          this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
          this.batchQueueSizeThreshold = batchThresholdFactor * this.maxBatchQueueSize;
          this.accessQueue = new ConcurrentLinkedQueue<LIRSHashEntry<K, V>>();                         
+         this.maximumHotMemory = (long) (L_LIRS * s.map.evictMemoryCap);
+      }
+
+      private boolean isHotSetFull() {
+         return segment.isMemoryBounded() ? segment.memoryUsage >= maximumHotMemory : hotSize >= maximumHotSize;
+      }
+
+      private boolean isFull() {
+         // when bounded by memory, trimToMemoryBudget evicts once the new entry has been added
+         return !segment.isMemoryBounded() && size >= maximumSize;
+      }
+
+      /**
+       * Evicts cold entries from the front of the queue until the segment is within its memory
+       * budget, demoting hot entries from the bottom of the stack if the queue runs out. The
+       * entries already chosen for eviction are accounted for as released memory.
+       *
+       * @param evicted entries already chosen for eviction
+       * @param keep entry which must not be evicted, i.e. the one just added, or null
+       * @return all the entries to remove from the segment
+       */
+      private Set<HashEntry<K, V>> trimToMemoryBudget(Set<HashEntry<K, V>> evicted, LIRSHashEntry<K, V> keep) {
+         Set<HashEntry<K, V>> result = new HashSet<HashEntry<K, V>>(evicted);
+         long released = 0;
+         for (HashEntry<K, V> e : evicted) {
+            LIRSHashEntry<K, V> le = (LIRSHashEntry<K, V>) e;
+            if (le.isResident()) {
+               released += le.size;
+               le.evict();
+            }
+         }
+         while (segment.isAboveMemoryThreshold(released)) {
+            LIRSHashEntry<K, V> victim = queueFront();
+            if (victim != null && victim == keep) {
+               victim = keep.nextInQueue == header ? null : keep.nextInQueue;
+            }
+            if (victim == null) {
+               LIRSHashEntry<K, V> bottom = stackBottom();
+               if (bottom == null || bottom == keep) break;
+               bottom.migrateToQueue();
+               continue;
+            }
+            released += victim.size;
+            victim.evict();
+            result.add(victim);
+         }
+         return result;
       }
       
       private static int calculateLIRSize(int maximumSize) {
@@ -1208,6 +1441,9 @@ public Set<HashEntry<K, V>> execute() {
                   e.hit(evicted);
                }
             }
+            if (segment.isMemoryBounded()) {
+               evicted = trimToMemoryBudget(evicted, null);
+            }
             removeFromSegment(evicted);
          } finally {
             accessQueue.clear();
@@ -1247,6 +1483,9 @@ private void pruneStack(Set<HashEntry<K,V>> evicted) {
       public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> en) {
          LIRSHashEntry<K, V> e = (LIRSHashEntry<K, V>) en;
          Set<HashEntry<K, V>> evicted = e.miss();
+         if (segment.isMemoryBounded()) {
+            evicted = trimToMemoryBudget(evicted, e);
+         }
          removeFromSegment(evicted);
          return evicted;
       }
@@ -1286,6 +1525,15 @@ public void onEntryRemove(HashEntry<K, V> e) {
          }
       }
 
+      @Override
+      @SuppressWarnings("unchecked")
+      public void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+         for (Map.Entry<HashEntry<K, V>, HashEntry<K, V>> relinked : copies.entrySet()) {
+            ((LIRSHashEntry<K, V>) relinked.getKey()).relinkTo((LIRSHashEntry<K, V>) relinked.getValue());
+         }
+         relinkQueued(accessQueue, (Map) copies);
+      }
+
       @Override
       public void clear() {
          accessQueue.clear();
@@ -1328,6 +1576,269 @@ public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V v
       }
    }
 
+   /**
+    * Window TinyLFU eviction policy. New entries go to a small LRU admission window. Entries
+    * leaving the window compete with the eviction candidate of the main space, a segmented LRU
+    * made of a probation and a protected area, and are only admitted if they have been accessed
+    * more often. Access frequencies are estimated by a {@link FrequencySketch}, so entries accessed
+    * only once (e.g. by a scan) cannot displace the hot set.
+    */
+   static final class TinyLFU<K, V> implements EvictionPolicy<K, V> {
+
+      private static final int WINDOW_PERCENTAGE = 1;
+      private static final int PROTECTED_PERCENTAGE = 80;
+
+      private final Segment<K, V> segment;
+      private final ConcurrentLinkedQueue<HashEntry<K, V>> accessQueue;
+      private final AtomicInteger accessQueueSize = new AtomicInteger(0);
+      private final int maxBatchQueueSize;
+      private final float batchQueueSizeThreshold;
+      private final Set<HashEntry<K, V>> evicted;
+      private final FrequencySketch sketch;
+
+      private final LinkedHashMap<HashEntry<K, V>, V> window;
+      private final LinkedHashMap<HashEntry<K, V>, V> probation;
+      private final LinkedHashMap<HashEntry<K, V>, V> protectedArea;
+      private final int maxWindow;
+      private final int maxMain;
+      private final int maxProtected;
+
+      public TinyLFU(Segment<K, V> s, int capacity, float lf, int maxBatchSize, float batchThresholdFactor) {
+         this.segment = s;
+         this.maxBatchQueueSize = maxBatchSize > MAX_BATCH_SIZE ? MAX_BATCH_SIZE : maxBatchSize;
+         this.batchQueueSizeThreshold = batchThresholdFactor * this.maxBatchQueueSize;
+         this.accessQueue = new ConcurrentLinkedQueue<HashEntry<K, V>>();
+         this.evicted = new HashSet<HashEntry<K, V>>();
+         this.sketch = new FrequencySketch(capacity);
+         this.maxWindow = Math.max(1, capacity * WINDOW_PERCENTAGE / 100);
+         this.maxMain = Math.max(0, capacity - maxWindow);
+         this.maxProtected = maxMain * PROTECTED_PERCENTAGE / 100;
+         this.window = new LinkedHashMap<HashEntry<K, V>, V>(maxWindow, lf, true);
+         this.probation = new LinkedHashMap<HashEntry<K, V>, V>(maxMain - maxProtected, lf, true);
+         this.protectedArea = new LinkedHashMap<HashEntry<K, V>, V>(maxProtected, lf, true);
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> execute() {
+         for (HashEntry<K, V> e : accessQueue) {
+            onAccess(e);
+         }
+         accessQueue.clear();
+         accessQueueSize.set(0);
+         // callers may add to the returned set
+         Set<HashEntry<K, V>> evictedCopy = new HashSet<HashEntry<K, V>>(evicted);
+         evicted.clear();
+         return evictedCopy;
+      }
+
+      @Override
+      public Set<HashEntry<K, V>> onEntryMiss(HashEntry<K, V> e) {
+         sketch.increment(e.hash);
+         window.put(e, e.value);
+         if (window.size() > maxWindow) {
+            HashEntry<K, V> candidate = eldest(window);
+            window.remove(candidate);
+            admit(candidate);
+         }
+         return drainEvicted();
+      }
+
+      /**
+       * Moves an entry leaving the admission window to the main space, if there is room for it or
+       * if it is accessed more frequently than the main space's eviction victim. The loser of the
+       * comparison is evicted.
+       */
+      private void admit(HashEntry<K, V> candidate) {
+         if (probation.size() + protectedArea.size() < maxMain) {
+            probation.put(candidate, candidate.value);
+            return;
+         }
+         LinkedHashMap<HashEntry<K, V>, V> victimArea = probation.isEmpty() ? protectedArea : probation;
+         HashEntry<K, V> victim = victimArea.isEmpty() ? null : eldest(victimArea);
+         if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+            victimArea.remove(victim);
+            evict(victim);
+            probation.put(candidate, candidate.value);
+         } else {
+            evict(candidate);
+         }
+      }
+
+      private void onAccess(HashEntry<K, V> e) {
+         if (window.containsKey(e)) {
+            sketch.increment(e.hash);
+            window.get(e);
+         } else if (probation.remove(e) != null) {
+            sketch.increment(e.hash);
+            // promote to the protected area, demoting its least recently used entry if full
+            protectedArea.put(e, e.value);
+            if (protectedArea.size() > maxProtected) {
+               HashEntry<K, V> demoted = eldest(protectedArea);
+               protectedArea.remove(demoted);
+               probation.put(demoted, demoted.value);
+            }
+         } else if (protectedArea.containsKey(e)) {
+            sketch.increment(e.hash);
+            protectedArea.get(e);
+         }
+         // else the entry was removed after it was accessed
+      }
+
+      private void evict(HashEntry<K, V> e) {
+         segment.remove(e.key, e.hash, null, true);
+         evicted.add(e);
+      }
+
+      private Set<HashEntry<K, V>> drainEvicted() {
+         if (evicted.isEmpty()) {
+            return InfinispanCollections.emptySet();
+         }
+         Set<HashEntry<K, V>> evictedCopy = new HashSet<HashEntry<K, V>>(evicted);
+         evicted.clear();
+         return evictedCopy;
+      }
+
+      private static <K, V> HashEntry<K, V> eldest(LinkedHashMap<HashEntry<K, V>, V> area) {
+         return area.keySet().iterator().next();
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean onEntryHit(HashEntry<K, V> e) {
+         accessQueue.add(e);
+         int sz = accessQueueSize.incrementAndGet();
+         return sz >= batchQueueSizeThreshold;
+      }
+
+      /*
+       * Invoked without holding a lock on Segment
+       */
+      @Override
+      public boolean thresholdExpired() {
+         return accessQueueSize.get() >= maxBatchQueueSize;
+      }
+
+      @Override
+      public void onEntryRemove(HashEntry<K, V> e) {
+         if (window.remove(e) == null && probation.remove(e) == null) {
+            protectedArea.remove(e);
+         }
+         // we could have multiple instances of e in accessQueue; remove them all
+         while (accessQueue.remove(e)) {
+            accessQueueSize.decrementAndGet();
+         }
+      }
+
+      @Override
+      public void onEntriesRelinked(Map<HashEntry<K, V>, HashEntry<K, V>> copies) {
+         relinkKeys(window, copies);
+         relinkKeys(probation, copies);
+         relinkKeys(protectedArea, copies);
+         relinkQueued(accessQueue, copies);
+      }
+
+      @Override
+      public void clear() {
+         window.clear();
+         probation.clear();
+         protectedArea.clear();
+         accessQueue.clear();
+         accessQueueSize.set(0);
+      }
+
+      @Override
+      public Eviction strategy() {
+         return Eviction.TINYLFU;
+      }
+
+      @Override
+      public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V value) {
+         return new HashEntry<K, V>(key, hash, next, value);
+      }
+   }
+
+   /**
+    * A count-min sketch estimating how often each hash was seen, with four 4-bit counters per
+    * hash. When the number of increments reaches ten times the capacity all counters are halved,
+    * so that the frequencies reflect recent history. Not thread safe, only accessed while holding
+    * the segment lock.
+    */
+   static final class FrequencySketch {
+
+      private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+      private static final long RESET_MASK = 0x7777777777777777L;
+      private static final long ONE_MASK = 0x1111111111111111L;
+
+      private final long[] table;
+      private final int tableMask;
+      private final int sampleSize;
+      private int size;
+
+      FrequencySketch(int capacity) {
+         int length = 1;
+         while (length < Math.max(capacity, 4)) {
+            length <<= 1;
+         }
+         table = new long[length];
+         tableMask = length - 1;
+         sampleSize = 10 * Math.max(capacity, 1);
+      }
+
+      int frequency(int hash) {
+         int start = (hash & 3) << 2;
+         int frequency = 15;
+         for (int i = 0; i < 4; i++) {
+            int offset = (start + i) << 2;
+            int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+         }
+         return frequency;
+      }
+
+      void increment(int hash) {
+         int start = (hash & 3) << 2;
+         boolean added = false;
+         for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+         }
+         if (added && ++size == sampleSize) {
+            reset();
+         }
+      }
+
+      private boolean incrementAt(int index, int counter) {
+         int offset = counter << 2;
+         long mask = 0xfL << offset;
+         if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+         }
+         return false;
+      }
+
+      private int indexOf(int hash, int i) {
+         long h = (hash + SEEDS[i]) * SEEDS[i];
+         h += h >>> 32;
+         return (int) h & tableMask;
+      }
+
+      /**
+       * Halves every counter. Counters that were odd lose half a unit, which is compensated in
+       * the sample size.
+       */
+      private void reset() {
+         int odd = 0;
+         for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+         }
+         size = (size >>> 1) - (odd >>> 2);
+      }
+   }
+
    /**
     * Segments are specialized versions of hash tables.  This
     * subclasses from ReentrantLock opportunistically, just to
@@ -1378,6 +1889,19 @@ public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V v
        */
       transient volatile int count;
 
+      /**
+       * The estimated memory footprint of this segment's entries, only maintained when the map
+       * is bounded by memory. Written while holding the lock.
+       */
+      transient volatile long memoryUsage;
+
+      /**
+       * Set while rehash() relinks the cloned entries in the eviction policy, so that the policy
+       * does not start evicting (and modifying the table) in the middle of it.
+       * Only accessed while holding the lock.
+       */
+      transient boolean relinking;
+
       /**
        * Number of updates that alter the size of the table. This is
        * used during bulk-read methods to make sure they see a
@@ -1415,7 +1939,7 @@ public HashEntry<K, V> createNewEntry(K key, int hash, HashEntry<K, V> next, V v
       Segment(int cap, float lf, Eviction es, BoundedConcurrentHashMap map) {
          this.map = map;
          loadFactor = lf;
-         eviction = es.make(this, map.evictCap, lf);
+         eviction = es.make(this, map.isMemoryBounded() ? cap : map.evictCap, lf);
          setTable(HashEntry.<K, V> newArray(cap));
       }
 
@@ -1428,6 +1952,40 @@ EvictionListener<K, V> getEvictionListener() {
          return map.evictionListener;
       }
 
+      boolean isMemoryBounded() {
+         return map.sizeCalculator != null;
+      }
+
+      /**
+       * Returns true if the memory used by this segment, minus the given amount about to be
+       * released, exceeds the segment's share of the memory budget.
+       */
+      boolean isAboveMemoryThreshold(long pendingRelease) {
+         return !relinking && memoryUsage - pendingRelease > map.evictMemoryCap;
+      }
+
+      @SuppressWarnings("unchecked")
+      int sizeOf(K key, V value) {
+         long size = map.sizeCalculator.calculateSize(key, value);
+         return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+      }
+
+      /**
+       * Accounts for the value of an existing entry being replaced and, if that pushes the segment
+       * over its memory budget, runs the eviction policy. Call only while holding lock.
+       *
+       * @return the evicted entries, or null if nothing was evicted
+       */
+      private Set<HashEntry<K, V>> updateMemoryUsage(HashEntry<K, V> e, V newValue) {
+         if (!isMemoryBounded()) {
+            return null;
+         }
+         int newSize = sizeOf(e.key, newValue);
+         memoryUsage += newSize - e.size;
+         e.size = newSize;
+         return isAboveMemoryThreshold(0) ? eviction.execute() : null;
+      }
+
       /**
        * Sets table to new HashEntry array.
        * Call only while holding lock or in constructor.
@@ -1538,8 +2096,9 @@ boolean replace(K key, int hash, V oldValue, V newValue) {
             if (e != null && map.valueEquivalence.equals(oldValue, e.value)) {
                replaced = true;
                e.value = newValue;
+               evicted = updateMemoryUsage(e, newValue);
                if (eviction.onEntryHit(e)) {
-                  evicted = attemptEviction(true);
+                  evicted = merge(evicted, attemptEviction(true));
                }
             }
             return replaced;
@@ -1562,8 +2121,9 @@ V replace(K key, int hash, V newValue) {
             if (e != null) {
                oldValue = e.value;
                e.value = newValue;
+               evicted = updateMemoryUsage(e, newValue);
                if (eviction.onEntryHit(e)) {
-                  evicted = attemptEviction(true);
+                  evicted = merge(evicted, attemptEviction(true));
                }
             }
             return oldValue;
@@ -1578,7 +2138,8 @@ V put(K key, int hash, V value, boolean onlyIfAbsent) {
          Set<HashEntry<K, V>> evicted = null;
          try {
             int c = count;
-            if (c++ > threshold && eviction.strategy() == Eviction.NONE) {
+            // when bounded by memory the number of entries is not known upfront, so tables grow
+            if (c++ > threshold && (eviction.strategy() == Eviction.NONE || isMemoryBounded())) {
                rehash();
             }
             HashEntry<K, V>[] tab = table;
@@ -1595,6 +2156,7 @@ V put(K key, int hash, V value, boolean onlyIfAbsent) {
                if (!onlyIfAbsent) {
                   e.value = value;
                   eviction.onEntryHit(e);
+                  evicted = updateMemoryUsage(e, value);
                }
             } else {
                oldValue = null;
@@ -1609,6 +2171,10 @@ V put(K key, int hash, V value, boolean onlyIfAbsent) {
                   }
                   // add a new entry
                   tab[index] = eviction.createNewEntry(key, hash, first, value);
+                  if (isMemoryBounded()) {
+                     tab[index].size = sizeOf(key, value);
+                     memoryUsage += tab[index].size;
+                  }
                   // notify a miss
                   Set<HashEntry<K, V>> newlyEvicted = eviction.onEntryMiss(tab[index]);
                   if (!newlyEvicted.isEmpty()) {
@@ -1655,6 +2221,7 @@ void rehash() {
          HashEntry<K,V>[] newTable = HashEntry.newArray(oldCapacity<<1);
          threshold = (int)(newTable.length * loadFactor);
          int sizeMask = newTable.length - 1;
+         Map<HashEntry<K,V>, HashEntry<K,V>> copies = null;
          for (int i = 0; i < oldCapacity ; i++) {
             // We need to guarantee that any existing reads of old Map can
             //  proceed. So we cannot yet null out each bin.
@@ -1686,12 +2253,29 @@ void rehash() {
                   for (HashEntry<K,V> p = e; p != lastRun; p = p.next) {
                      int k = p.hash & sizeMask;
                      HashEntry<K,V> n = newTable[k];
-                     newTable[k] = eviction.createNewEntry(p.key, p.hash, n, p.value);
+                     HashEntry<K,V> clone = eviction.createNewEntry(p.key, p.hash, n, p.value);
+                     clone.size = p.size;
+                     if (eviction.strategy() != Eviction.NONE) {
+                        if (copies == null) {
+                           copies = new HashMap<HashEntry<K,V>, HashEntry<K,V>>();
+                        }
+                        copies.put(p, clone);
+                     }
+                     newTable[k] = clone;
                   }
                }
             }
          }
          table = newTable;
+         if (copies != null) {
+            // the clones take the place of the nodes they replace in the eviction policy
+            relinking = true;
+            try {
+               eviction.onEntriesRelinked(copies);
+            } finally {
+               relinking = false;
+            }
+         }
       }
 
       /**
@@ -1703,9 +2287,10 @@ V remove(Object key, int hash, Object value, boolean isEvict) {
             int c = count - 1;
             HashEntry<K, V>[] tab = table;
             int index = hash & tab.length - 1;
-            HashEntry<K, V> first = tab[index];
-            HashEntry<K, V> e = first;
+            HashEntry<K, V> e = tab[index];
+            HashEntry<K, V> previous = null;
             while (e != null && (e.hash != hash || !map.keyEquivalence.equals(key, e.key))) {
+               previous = e;
                e = e.next;
             }
 
@@ -1720,25 +2305,21 @@ V remove(Object key, int hash, Object value, boolean isEvict) {
                }
                if (value == null || map.valueEquivalence.equals(value, v)) {
                   oldValue = v;
-                  // All entries following removed node can stay
-                  // in list, but all preceding ones need to be
-                  // cloned.
                   ++modCount;
 
                   // e was removed
                   eviction.onEntryRemove(e);
-
-                  HashEntry<K, V> newFirst = e.next;
-                  for (HashEntry<K, V> p = first; p != e; p = p.next) {
-                     // TODO A remove operation makes the map behave like all the other keys in the bucket were just added???
-                     // allow p to be GC-ed
-                     eviction.onEntryRemove(p);
-                     newFirst = eviction.createNewEntry(p.key, p.hash, newFirst, p.value);
-                     // and notify eviction algorithm about new hash entries
-                     eviction.onEntryMiss(newFirst);
+                  if (isMemoryBounded()) {
+                     memoryUsage -= e.size;
                   }
 
-                  tab[index] = newFirst;
+                  // Unlink e in place: a concurrent reader either still sees it or skips it,
+                  // and the other entries of the bucket keep their place in the eviction policy
+                  if (previous == null) {
+                     tab[index] = e.next;
+                  } else {
+                     previous.next = e.next;
+                  }
                   count = c; // write-volatile
                }
             }
@@ -1772,6 +2353,7 @@ void clear() {
                }
                ++modCount;
                eviction.clear();
+               memoryUsage = 0;
                count = 0; // write-volatile
             } finally {
                unlock();
@@ -1807,6 +2389,16 @@ private Set<HashEntry<K, V>> attemptEviction(boolean lockedAlready) {
          return evicted;
       }
 
+      private static <K, V> Set<HashEntry<K, V>> merge(Set<HashEntry<K, V>> evicted, Set<HashEntry<K, V>> newlyEvicted) {
+         if (evicted == null || evicted.isEmpty()) {
+            return newlyEvicted;
+         }
+         if (newlyEvicted != null) {
+            evicted.addAll(newlyEvicted);
+         }
+         return evicted;
+      }
+
       private void notifyEvictionListener(Set<HashEntry<K, V>> evicted) {
          // piggyback listener invocation on callers thread outside lock
          if (evicted != null) {
@@ -1854,13 +2446,65 @@ private void notifyEvictionListener(Set<HashEntry<K, V>> evicted) {
    public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
          Equivalence<K> keyEquivalence, Equivalence<V> valueEquivalence) {
+      this(capacity, -1, concurrencyLevel, evictionStrategy, evictionListener, null,
+            keyEquivalence, valueEquivalence);
+   }
+
+   /**
+    * Creates a new, empty map bounded by the estimated memory footprint of its entries rather
+    * than by their number. The footprint of each entry is estimated with the given size
+    * calculator, and the eviction strategy evicts entries until the map is back within its
+    * memory budget. The budget is split evenly among segments, and a single entry larger than
+    * its segment's share is kept until it is replaced.
+    *
+    * @param maxMemory
+    *            is the upper bound, in bytes, for the estimated footprint of the elements in this map
+    *
+    * @param concurrencyLevel
+    *            the estimated number of concurrently updating threads. The implementation performs
+    *            internal sizing to try to accommodate this many threads.
+    *
+    * @param evictionStrategy
+    *            the algorithm used to evict elements from this map
+    *
+    * @param evictionListener
+    *            the evicton listener callback to be notified about evicted elements
+    *
+    * @param sizeCalculator
+    *            estimates the footprint of each element
+    *
+    * @throws IllegalArgumentException
+    *             if the memory bound or concurrencyLevel are nonpositive, or no eviction
+    *             strategy is given
+    */
+   public BoundedConcurrentHashMap(long maxMemory, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         EntrySizeCalculator<? super K, ? super V> sizeCalculator,
+         Equivalence<K> keyEquivalence, Equivalence<V> valueEquivalence) {
+      this(DEFAULT_MAXIMUM_CAPACITY, maxMemory, concurrencyLevel, evictionStrategy, evictionListener,
+            sizeCalculator, keyEquivalence, valueEquivalence);
+   }
+
+   private BoundedConcurrentHashMap(int capacity, long maxMemory, int concurrencyLevel,
+         Eviction evictionStrategy, EvictionListener<K, V> evictionListener,
+         EntrySizeCalculator<? super K, ? super V> sizeCalculator,
+         Equivalence<K> keyEquivalence, Equivalence<V> valueEquivalence) {
       this.keyEquivalence = keyEquivalence;
       this.valueEquivalence = valueEquivalence;
+      this.sizeCalculator = sizeCalculator;
 
       if (capacity < 0 || concurrencyLevel <= 0) {
          throw new IllegalArgumentException();
       }
 
+      if (sizeCalculator != null && (maxMemory <= 0 || evictionStrategy == Eviction.NONE)) {
+         throw new IllegalArgumentException("Bounding by memory requires a positive memory limit and an eviction strategy");
+      }
+
+      if (sizeCalculator != null && evictionStrategy == Eviction.TINYLFU) {
+         throw new IllegalArgumentException("The TINYLFU eviction strategy can only bound the number of entries");
+      }
+
       concurrencyLevel = Math.min(capacity / 2, concurrencyLevel); // concurrencyLevel cannot be > capacity/2
       concurrencyLevel = Math.max(concurrencyLevel, 1); // concurrencyLevel cannot be less than 1
 
@@ -1899,7 +2543,14 @@ public BoundedConcurrentHashMap(int capacity, int concurrencyLevel,
          cap <<= 1;
       }
 
-      this.evictCap = c;
+      if (sizeCalculator != null) {
+         // entries are only evicted based on their footprint
+         this.evictCap = Integer.MAX_VALUE;
+         this.evictMemoryCap = Math.max(maxMemory / ssize, 1);
+      } else {
+         this.evictCap = c;
+         this.evictMemoryCap = -1;
+      }
 
       for (int i = 0; i < this.segments.length; ++i) {
          this.segments[i] = new Segment<K, V>(cap, DEFAULT_LOAD_FACTOR, evictionStrategy, this);
@@ -1973,6 +2624,29 @@ public BoundedConcurrentHashMap(Equivalence<K> keyEquivalence, Equivalence<V> va
       this(DEFAULT_MAXIMUM_CAPACITY, DEFAULT_CONCURRENCY_LEVEL, keyEquivalence, valueEquivalence);
    }
 
+   /**
+    * Returns true if this map is bounded by the estimated memory footprint of its entries, rather
+    * than by their number.
+    */
+   public boolean isMemoryBounded() {
+      return sizeCalculator != null;
+   }
+
+   /**
+    * Returns the estimated memory footprint of the entries in this map, in bytes, as computed by
+    * the configured size calculator, or -1 if this map is not bounded by memory.
+    */
+   public long memoryUsage() {
+      if (sizeCalculator == null) {
+         return -1;
+      }
+      long usage = 0;
+      for (Segment<K, V> segment : segments) {
+         usage += segment.memoryUsage;
+      }
+      return usage;
+   }
+
    /**
     * Returns <tt>true</tt> if this map contains no key-value mappings.
     *
@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link NotifyingFuture} that is not backed by a task, but completed explicitly by calling {@link #set(Object)} or
+ * {@link #setException(Throwable)}, e.g. from the thread receiving a remote response. The listeners are notified from
+ * the thread completing the future.
+ *
+ * @since 5.3
+ */
+public class SettableNotifyingFuture<T> extends BaseNotifyingFuture<T> {
+
+   private final CountDownLatch latch = new CountDownLatch(1);
+   private final AtomicBoolean completed = new AtomicBoolean();
+   private volatile T value;
+   private volatile Throwable exception;
+   private volatile boolean cancelled;
+
+   /**
+    * Completes the future with the given value.
+    *
+    * @return false if the future was already completed
+    */
+   public boolean set(T value) {
+      if (!completed.compareAndSet(false, true)) return false;
+      this.value = value;
+      done();
+      return true;
+   }
+
+   /**
+    * Completes the future with the given exception, which {@link #get()} will throw wrapped in an
+    * {@link ExecutionException}.
+    *
+    * @return false if the future was already completed
+    */
+   public boolean setException(Throwable exception) {
+      if (!completed.compareAndSet(false, true)) return false;
+      this.exception = exception;
+      done();
+      return true;
+   }
+
+   private void done() {
+      latch.countDown();
+      notifyDone();
+   }
+
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      if (!completed.compareAndSet(false, true)) return false;
+      cancelled = true;
+      done();
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return latch.getCount() == 0;
+   }
+
+   @Override
+   public T get() throws InterruptedException, ExecutionException {
+      latch.await();
+      return result();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      if (!latch.await(timeout, unit)) {
+         throw new TimeoutException();
+      }
+      return result();
+   }
+
+   private T result() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (exception != null) throw new ExecutionException(exception);
+      return value;
+   }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link NotifyingFuture} completed with the transformed result of another {@link NotifyingFuture}, once that one
+ * is done. Failures of the source future are propagated as they are.
+ *
+ * @since 5.3
+ */
+public abstract class TransformingNotifyingFuture<S, T> extends SettableNotifyingFuture<T> implements FutureListener<S> {
+
+   private volatile NotifyingFuture<S> source;
+
+   /**
+    * Starts listening to the given future.
+    *
+    * @return this future
+    */
+   public final TransformingNotifyingFuture<S, T> listenTo(NotifyingFuture<S> source) {
+      this.source = source;
+      source.attachListener(this);
+      return this;
+   }
+
+   /**
+    * Computes the result of this future from the result of the source future.
+    */
+   protected abstract T transform(S result) throws Throwable;
+
+   @Override
+   public final void futureDone(Future<S> done) {
+      // some futures, e.g. DeferredReturnFuture, notify their listeners with a delegate, so read the result from
+      // the future we listen to
+      try {
+         set(transform(source.get()));
+      } catch (ExecutionException e) {
+         setException(e.getCause());
+      } catch (InterruptedException e) {
+         // the source is done, so it cannot happen
+         Thread.currentThread().interrupt();
+         setException(e);
+      } catch (Throwable t) {
+         setException(t);
+      }
+   }
+}
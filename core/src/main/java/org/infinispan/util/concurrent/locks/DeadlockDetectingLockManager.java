@@ -23,14 +23,12 @@
 package org.infinispan.util.concurrent.locks;
 
 import org.infinispan.context.InvocationContext;
-import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.jmx.annotations.MeasurementType;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
-import org.infinispan.util.TimeService;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
@@ -68,19 +66,12 @@ public class DeadlockDetectingLockManager extends LockManagerImpl {
 
    private AtomicLong cannotRunDld = new AtomicLong(0);
 
-   private TimeService timeService;
-
    @Start
    public void init() {
       spinDuration = configuration.deadlockDetection().spinDuration();
       exposeJmxStats = configuration.jmxStatistics().enabled();
    }
 
-   @Inject
-   public void injectTimeService(TimeService timeService) {
-      this.timeService = timeService;
-   }
-
    @Override
    public boolean lockAndRecord(Object key, InvocationContext ctx, long lockTimeout) throws InterruptedException {
       if (trace) log.tracef("Attempting to lock %s with acquisition timeout of %s millis", key, lockTimeout);
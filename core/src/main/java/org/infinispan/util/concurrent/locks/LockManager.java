@@ -150,4 +150,19 @@ public interface LockManager {
     */
    boolean acquireLockNoCheck(InvocationContext ctx, Object key, long timeoutMillis, boolean skipLocking) throws InterruptedException, TimeoutException;
 
+   /**
+    * Locks all the keys that are not already locked in the current scope, and records the locks in the context.
+    * <p/>
+    * The keys are locked in the order defined by the lock container, so that owners locking overlapping sets of keys
+    * with this method don't deadlock each other, and the timeout applies to the acquisition of all the locks. If any of
+    * the locks can't be acquired, the locks acquired by this call are released before the exception is thrown.
+    *
+    * @param ctx context
+    * @param keys keys to lock
+    * @throws InterruptedException if interrupted
+    * @throws org.infinispan.util.concurrent.TimeoutException
+    *                              if we are unable to acquire all the locks before the timeout expires.
+    */
+   void lockAll(InvocationContext ctx, Collection<Object> keys, long timeoutMillis, boolean skipLocking) throws InterruptedException, TimeoutException;
+
 }
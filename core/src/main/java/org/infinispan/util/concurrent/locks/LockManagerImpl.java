@@ -30,6 +30,7 @@
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.TimeService;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.concurrent.locks.containers.*;
@@ -37,6 +38,7 @@
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +59,8 @@
 public class LockManagerImpl implements LockManager {
    protected Configuration configuration;
    protected volatile LockContainer<?> lockContainer;
+   protected TimeService timeService;
+   private RemoteCommandParker remoteCommandParker;
    private static final Log log = LogFactory.getLog(LockManagerImpl.class);
    protected static final boolean trace = log.isTraceEnabled();
    private static final String ANOTHER_THREAD = "(another thread)";
@@ -67,6 +71,16 @@ public void injectDependencies(Configuration configuration, LockContainer<?> loc
       this.lockContainer = lockContainer;
    }
 
+   @Inject
+   public void injectTimeService(TimeService timeService) {
+      this.timeService = timeService;
+   }
+
+   @Inject
+   public void injectRemoteCommandParker(RemoteCommandParker remoteCommandParker) {
+      this.remoteCommandParker = remoteCommandParker;
+   }
+
    @Override
    public boolean lockAndRecord(Object key, InvocationContext ctx, long timeoutMillis) throws InterruptedException {
       if (trace) log.tracef("Attempting to lock %s with acquisition timeout of %s millis", toStr(key), timeoutMillis);
@@ -96,6 +110,7 @@ public boolean lockAndRecord(Object key, InvocationContext ctx, long timeoutMill
    public void unlock(Collection<Object> lockedKeys, Object lockOwner) {
       log.tracef("Attempting to unlock keys %s", lockedKeys);
       for (Object k : lockedKeys) lockContainer.releaseLock(lockOwner, k);
+      notifyLocksReleased();
    }
 
    @Override
@@ -106,6 +121,13 @@ public void unlockAll(InvocationContext ctx) {
          lockContainer.releaseLock(ctx.getLockOwner(), k);
       }
       ctx.clearLockedKeys();
+      notifyLocksReleased();
+   }
+
+   private void notifyLocksReleased() {
+      if (remoteCommandParker != null && remoteCommandParker.isEnabled()) {
+         remoteCommandParker.onLocksReleased();
+      }
    }
 
    @Override
@@ -201,19 +223,59 @@ public final boolean acquireLockNoCheck(InvocationContext ctx, Object key, long
       return false;
    }
 
+   @Override
+   public void lockAll(InvocationContext ctx, Collection<Object> keys, long timeoutMillis, boolean skipLocking) throws InterruptedException, TimeoutException {
+      if (skipLocking) {
+         logLockNotAcquired(true);
+         return;
+      }
+      Object[] toLock = new Object[keys.size()];
+      int count = 0;
+      for (Object key : keys) {
+         if (!ctx.hasLockedKey(key)) toLock[count++] = key;
+      }
+      if (count == 0) return;
+      if (count < toLock.length) toLock = Arrays.copyOf(toLock, count);
+      lockContainer.sortInLockOrder(toLock);
+      if (trace) log.tracef("Locking keys %s in a single pass, with acquisition timeout of %s millis", toStr(Arrays.asList(toLock)), timeoutMillis);
+
+      long endTime = timeService.expectedEndTime(timeoutMillis, MILLISECONDS);
+      int locked = 0;
+      try {
+         for (; locked < count; locked++) {
+            long remaining = Math.max(0, timeService.remainingTime(endTime, MILLISECONDS));
+            if (!lockAndRecord(toLock[locked], ctx, remaining)) break;
+         }
+      } finally {
+         if (locked < count) {
+            // release the locks acquired by this call, the owner keeps the locks it had before
+            for (int i = 0; i < locked; i++) lockContainer.releaseLock(ctx.getLockOwner(), toLock[i]);
+            notifyLocksReleased();
+         }
+      }
+      if (locked < count) {
+         throw newTimeoutException(ctx, toLock[locked], timeoutMillis);
+      }
+      for (Object key : toLock) ctx.addLockedKey(key);
+   }
+
    private boolean lock(InvocationContext ctx, Object key, long timeoutMillis) throws InterruptedException {
       if (lockAndRecord(key, ctx, timeoutMillis)) {
          ctx.addLockedKey(key);
          return true;
       } else {
-         Object owner = getOwner(key);
-         // if lock cannot be acquired, expose the key itself, not the marshalled value
-         if (key instanceof MarshalledValue) {
-            key = ((MarshalledValue) key).get();
-         }
-         throw new TimeoutException("Unable to acquire lock after [" + Util.prettyPrintTime(timeoutMillis) + "] on key [" + key + "] for requestor [" +
-               ctx.getLockOwner() + "]! Lock held by [" + owner + "]");
+         throw newTimeoutException(ctx, key, timeoutMillis);
+      }
+   }
+
+   private TimeoutException newTimeoutException(InvocationContext ctx, Object key, long timeoutMillis) {
+      Object owner = getOwner(key);
+      // if lock cannot be acquired, expose the key itself, not the marshalled value
+      if (key instanceof MarshalledValue) {
+         key = ((MarshalledValue) key).get();
       }
+      return new TimeoutException("Unable to acquire lock after [" + Util.prettyPrintTime(timeoutMillis) + "] on key [" + key + "] for requestor [" +
+            ctx.getLockOwner() + "]! Lock held by [" + owner + "]");
    }
 
    private void logLockNotAcquired(boolean skipLocking) {
@@ -0,0 +1,321 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks;
+
+import net.jcip.annotations.ThreadSafe;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.BlockingRunnable;
+import org.infinispan.util.concurrent.BlockingTaskAwareExecutorService;
+import org.infinispan.util.concurrent.BlockingTaskAwareExecutorServiceImpl;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps remote commands that would block waiting for a lock from taking a remote command thread.
+ * <p/>
+ * A remote command is only handed to the remote command executor when none of the keys it needs to lock is locked by
+ * another owner. Otherwise it is parked in a {@link BlockingTaskAwareExecutorService}, and it is checked again every
+ * time the {@link LockManager} releases a lock. Parked commands don't use any thread, so the number of threads stays
+ * the same no matter how many commands are waiting for a hot key.
+ * <p/>
+ * A parked command found ready reserves its keys until it is done running, so a released lock only wakes up one of the
+ * commands waiting for it, and commands arriving in the meantime are parked behind it. Commands that are not parked
+ * don't reserve anything, so one of them can still take the lock before the woken up command runs: the latter is then
+ * parked again instead of waiting for the lock in its thread.
+ * <p/>
+ * A command that is still parked after the lock acquisition timeout fails with a {@link TimeoutException}, just like it
+ * would have failed waiting for the lock in a remote thread. When it runs, the time it spent parked is taken out of its
+ * lock acquisition timeout, see {@link #lockAcquisitionTimeout(long)}.
+ *
+ * @see org.infinispan.configuration.cache.LockingConfigurationBuilder#parkRemoteCommands(boolean)
+ * @since 5.3
+ */
+@ThreadSafe
+@Scope(Scopes.NAMED_CACHE)
+@MBean(objectName = "RemoteCommandParker", description = "Queues remote commands waiting for locks")
+public class RemoteCommandParker {
+
+   private static final Log log = LogFactory.getLog(RemoteCommandParker.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   /**
+    * The lock acquisition timeout left to the parked command running in the current thread, if any.
+    */
+   private static final ThreadLocal<Long> remainingLockTimeout = new ThreadLocal<Long>();
+
+   /**
+    * How often the parked commands are checked for expired timeouts, in case no lock is released in the meantime.
+    */
+   private static final long EXPIRATION_CHECK_INTERVAL_MILLIS = 100;
+
+   private Configuration configuration;
+   private LockManager lockManager;
+   private ExecutorService remoteCommandsExecutor;
+   private ScheduledExecutorService scheduledExecutor;
+   private TimeService timeService;
+
+   private boolean enabled;
+   private BlockingTaskAwareExecutorService parkedCommands;
+   private ScheduledFuture<?> expirationTask;
+   private volatile boolean stopped;
+   private final AtomicInteger parkedCount = new AtomicInteger(0);
+   /**
+    * The keys reserved by the parked commands that were found ready, until they are done running.
+    */
+   private final ConcurrentMap<Object, ParkedCommand> reservedKeys = CollectionFactory.makeConcurrentMap();
+
+   /**
+    * A remote command that can be parked.
+    */
+   public interface ParkableTask extends Runnable {
+      /**
+       * Invoked instead of {@link #run()} if the locks are not released before the lock acquisition timeout expires.
+       */
+      void lockTimedOut(TimeoutException e);
+   }
+
+   @Inject
+   public void inject(Configuration configuration, LockManager lockManager,
+                      @ComponentName(KnownComponentNames.REMOTE_COMMAND_EXECUTOR) ExecutorService remoteCommandsExecutor,
+                      @ComponentName(KnownComponentNames.EVICTION_SCHEDULED_EXECUTOR) ScheduledExecutorService scheduledExecutor,
+                      TimeService timeService) {
+      this.configuration = configuration;
+      this.lockManager = lockManager;
+      this.remoteCommandsExecutor = remoteCommandsExecutor;
+      this.scheduledExecutor = scheduledExecutor;
+      this.timeService = timeService;
+   }
+
+   @Start
+   public void start() {
+      enabled = configuration.locking().parkRemoteCommands() && configuration.clustering().cacheMode().isClustered();
+      if (!enabled) return;
+
+      stopped = false;
+      parkedCommands = new BlockingTaskAwareExecutorServiceImpl(remoteCommandsExecutor, timeService);
+      expirationTask = scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+         @Override
+         public void run() {
+            onLocksReleased();
+         }
+      }, EXPIRATION_CHECK_INTERVAL_MILLIS, EXPIRATION_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+   }
+
+   @Stop
+   public void stop() {
+      if (!enabled) return;
+
+      if (expirationTask != null) expirationTask.cancel(false);
+      // let the parked commands run, the stopping cache will give them a proper response
+      stopped = true;
+      onLocksReleased();
+   }
+
+   public boolean isEnabled() {
+      return enabled;
+   }
+
+   /**
+    * Executes {@code task} in the remote command executor right away if {@code command} doesn't need any lock held by
+    * another owner, or later, when those locks are released.
+    */
+   public void execute(CacheRpcCommand command, ParkableTask task) {
+      Collection<Object> keys = keysToLock(command);
+      Object lockOwner = lockOwner(command);
+      if (keys == null || keys.isEmpty() || canLock(keys, lockOwner, null)) {
+         remoteCommandsExecutor.execute(task);
+         return;
+      }
+
+      long timeoutMillis = configuration.locking().lockAcquisitionTimeout();
+      long endTime = timeService.expectedEndTime(timeoutMillis, TimeUnit.MILLISECONDS);
+      if (trace) log.tracef("Parking command %s until the locks on %s are released", command, keys);
+      park(new ParkedCommand(task, keys, lockOwner, timeoutMillis, endTime));
+   }
+
+   /**
+    * Called by the {@link LockManager} after releasing locks.
+    */
+   public void onLocksReleased() {
+      if (parkedCount.get() > 0) {
+         parkedCommands.checkForReadyTasks();
+      }
+   }
+
+   /**
+    * Returns the lock acquisition timeout to use in the current thread: the time left to the parked command running in
+    * it, if it is shorter than {@code timeoutMillis}, so that parking doesn't extend the time a command waits for its
+    * locks.
+    */
+   public static long lockAcquisitionTimeout(long timeoutMillis) {
+      Long remaining = remainingLockTimeout.get();
+      return remaining == null ? timeoutMillis : Math.min(timeoutMillis, remaining);
+   }
+
+   private void park(ParkedCommand parked) {
+      parkedCount.incrementAndGet();
+      parkedCommands.execute(parked);
+   }
+
+   /**
+    * @param reserver the parked command checking its own keys, or {@code null}
+    */
+   private boolean canLock(Collection<Object> keys, Object lockOwner, ParkedCommand reserver) {
+      for (Object key : keys) {
+         Object owner = lockManager.getOwner(key);
+         if (owner != null && !owner.equals(lockOwner)) {
+            return false;
+         }
+         ParkedCommand reservedBy = reservedKeys.get(key);
+         if (reservedBy != null && reservedBy != reserver) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private boolean reserve(ParkedCommand parked) {
+      for (Object key : parked.keys) {
+         ParkedCommand reservedBy = reservedKeys.putIfAbsent(key, parked);
+         if (reservedBy != null && reservedBy != parked) {
+            release(parked);
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void release(ParkedCommand parked) {
+      for (Object key : parked.keys) {
+         reservedKeys.remove(key, parked);
+      }
+   }
+
+   private final class ParkedCommand implements BlockingRunnable {
+      private final ParkableTask task;
+      private final Collection<Object> keys;
+      private final Object lockOwner;
+      private final long timeoutMillis;
+      private final long endTime;
+
+      ParkedCommand(ParkableTask task, Collection<Object> keys, Object lockOwner, long timeoutMillis, long endTime) {
+         this.task = task;
+         this.keys = keys;
+         this.lockOwner = lockOwner;
+         this.timeoutMillis = timeoutMillis;
+         this.endTime = endTime;
+      }
+
+      @Override
+      public boolean isReady() {
+         return stopped || timeService.isTimeExpired(endTime) || (canLock(keys, lockOwner, this) && reserve(this));
+      }
+
+      @Override
+      public void run() {
+         parkedCount.decrementAndGet();
+         if (stopped) {
+            task.run();
+            return;
+         }
+         if (!canLock(keys, lockOwner, this)) {
+            release(this);
+            if (timeService.isTimeExpired(endTime)) {
+               task.lockTimedOut(new TimeoutException("Unable to acquire lock after [" + timeoutMillis +
+                     " milliseconds] on keys " + keys + " for requestor " + lockOwner));
+            } else {
+               // a command that was not parked took the lock first
+               if (trace) log.tracef("Parking again command waiting for the locks on %s", keys);
+               park(this);
+            }
+            return;
+         }
+         remainingLockTimeout.set(Math.max(0, timeService.remainingTime(endTime, TimeUnit.MILLISECONDS)));
+         try {
+            task.run();
+         } finally {
+            remainingLockTimeout.remove();
+            release(this);
+            // the commands parked behind the reservation might be able to run now
+            onLocksReleased();
+         }
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Collection<Object> keysToLock(CacheRpcCommand command) {
+      if (command instanceof PrepareCommand) {
+         return ((PrepareCommand) command).getAffectedKeys();
+      } else if (command instanceof LockControlCommand) {
+         return ((LockControlCommand) command).getKeys();
+      } else if (command instanceof SingleRpcCommand) {
+         ReplicableCommand wrapped = ((SingleRpcCommand) command).getCommand();
+         if (wrapped instanceof WriteCommand) {
+            return (Collection<Object>) ((WriteCommand) wrapped).getAffectedKeys();
+         }
+      }
+      return null;
+   }
+
+   private static Object lockOwner(CacheRpcCommand command) {
+      if (command instanceof PrepareCommand) {
+         return ((PrepareCommand) command).getGlobalTransaction();
+      } else if (command instanceof LockControlCommand) {
+         return ((LockControlCommand) command).getGlobalTransaction();
+      }
+      // non-transactional commands lock on behalf of the thread executing them, any existing owner is another one
+      return null;
+   }
+
+   @ManagedAttribute(description = "Number of remote commands waiting for locks without using a thread",
+         displayName = "Parked remote commands")
+   public int getParkedCommands() {
+      return parkedCount.get();
+   }
+}
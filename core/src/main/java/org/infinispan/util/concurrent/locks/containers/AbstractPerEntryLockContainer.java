@@ -22,6 +22,8 @@
  */
 package org.infinispan.util.concurrent.locks.containers;
 
+import org.infinispan.commons.hash.Hash;
+import org.infinispan.commons.hash.MurmurHash3;
 import org.infinispan.util.AnyEquivalence;
 import org.infinispan.util.ByRef;
 import org.infinispan.util.Util;
@@ -29,6 +31,7 @@
 import org.infinispan.util.concurrent.locks.RefCountingLock;
 import org.infinispan.util.logging.Log;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import static org.infinispan.util.Util.toStr;
@@ -41,6 +44,8 @@
  */
 public abstract class AbstractPerEntryLockContainer<L extends RefCountingLock> extends AbstractLockContainer<L> {
 
+   private static final Hash LOCK_ORDER_HASH = new MurmurHash3();
+
    // We specifically need a CHMV8, to be able to use methods like computeIfAbsent, computeIfPresent and compute
    protected final EquivalentConcurrentHashMapV8<Object, L> locks;
 
@@ -152,6 +157,24 @@ public int getLockId(Object key) {
       return lock == null ? -1 : System.identityHashCode(lock);
    }
 
+   /**
+    * Keys are sorted by their normalized MurmurHash3 hash, which is the same on all the nodes and, with the default
+    * consistent hash, keeps the keys of a segment together. The hash of each key is only computed once.
+    */
+   @Override
+   public void sortInLockOrder(Object[] keys) {
+      // the normalized hash in the high bits, the position of the key in the low bits
+      long[] order = new long[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+         order[i] = ((long) (LOCK_ORDER_HASH.hash(keys[i]) & Integer.MAX_VALUE) << 32) | i;
+      }
+      Arrays.sort(order);
+      Object[] unsorted = keys.clone();
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = unsorted[(int) order[i]];
+      }
+   }
+
    @Override
    public String toString() {
       return "AbstractPerEntryLockContainer{" +
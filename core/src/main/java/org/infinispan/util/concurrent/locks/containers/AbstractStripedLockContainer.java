@@ -24,6 +24,8 @@
 
 import net.jcip.annotations.ThreadSafe;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -38,6 +40,15 @@
    private int lockSegmentMask;
    private int lockSegmentShift;
 
+   private final Comparator<Object> lockOrder = new Comparator<Object>() {
+      @Override
+      public int compare(Object o1, Object o2) {
+         int i1 = hashToIndex(o1);
+         int i2 = hashToIndex(o2);
+         return i1 < i2 ? -1 : (i1 == i2 ? 0 : 1);
+      }
+   };
+
 
    final int calculateNumberOfSegments(int concurrencyLevel) {
       int tempLockSegShift = 0;
@@ -100,4 +111,12 @@ public void releaseLock(Object lockOwner, Object key) {
    public int getLockId(Object key) {
       return hashToIndex(key);
    }
+
+   /**
+    * Keys are sorted by the index of their shared lock, as keys with different hashes may share a lock.
+    */
+   @Override
+   public void sortInLockOrder(Object[] keys) {
+      Arrays.sort(keys, lockOrder);
+   }
 }
@@ -76,6 +76,14 @@
     */
    L acquireLock(Object lockOwner, Object key, long timeout, TimeUnit unit) throws InterruptedException;
 
+   /**
+    * Sorts the keys in the order in which their locks should be acquired. Owners that lock several keys at once in this
+    * order can't deadlock each other, since every owner waits for the keys' locks in the same order.
+    *
+    * @param keys keys to sort, in place
+    */
+   void sortInLockOrder(Object[] keys);
+
    /**
     * Release lock on the given key.
     *
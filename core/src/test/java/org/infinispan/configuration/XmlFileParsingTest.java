@@ -261,6 +261,24 @@ public void call() {
       });
    }
 
+   public void testEvictionBoundedByMemory() throws Exception {
+      String config = INFINISPAN_START_TAG_NO_SCHEMA +
+            "<default>\n" +
+            "<eviction strategy=\"LRU\" maxMemory=\"1048576\" />\n" +
+            "</default>\n" +
+            INFINISPAN_END_TAG;
+      InputStream is = new ByteArrayInputStream(config.getBytes());
+      withCacheManager(new CacheManagerCallable(TestCacheManagerFactory.fromStream(is)) {
+         @Override
+         public void call() {
+            Configuration cfg = cm.getDefaultCacheConfiguration();
+            assertEquals(EvictionStrategy.LRU, cfg.eviction().strategy());
+            assertEquals(1048576, cfg.eviction().maxMemory());
+            assertEquals(-1, cfg.eviction().maxEntries());
+         }
+      });
+   }
+
    public void testDefensive() throws IOException {
       String config = INFINISPAN_START_TAG_NO_SCHEMA +
             "<default>\n" +
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.CollectionFactory;
+import org.infinispan.util.DefaultTimeService;
+import org.infinispan.util.Equivalence;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Compares the heap used by the entries of a data container storing them in a regular concurrent map with the heap
+ * used by the default container, in which the entries are their own map nodes. The keys and values are shared by
+ * both containers, so only the per-entry overhead is measured.
+ */
+@Test(groups = "profiling", testName = "container.DataContainerFootprintTest")
+public class DataContainerFootprintTest extends AbstractInfinispanTest {
+
+   private static final Log log = LogFactory.getLog(DataContainerFootprintTest.class);
+   private static final int NUM_ENTRIES = 200000;
+
+   private final TimeService timeService = new DefaultTimeService();
+   private final Object[] keys = new Object[NUM_ENTRIES];
+   private final Object[] values = new Object[NUM_ENTRIES];
+
+   public void testImmortalEntryFootprint() {
+      compareFootprint(new EmbeddedMetadata.Builder().build());
+   }
+
+   public void testMortalEntryFootprint() {
+      compareFootprint(new EmbeddedMetadata.Builder().lifespan(1, TimeUnit.HOURS).build());
+   }
+
+   private void compareFootprint(Metadata metadata) {
+      for (int i = 0; i < NUM_ENTRIES; i++) {
+         keys[i] = "key-" + i;
+         values[i] = "value-" + i;
+      }
+      long mapNodes = footprint(new MapNodeDataContainer(), metadata);
+      long compact = footprint(new DefaultDataContainer(16), metadata);
+      log.infof("Bytes per entry with map nodes: %d, with compact entries: %d",
+            mapNodes / NUM_ENTRIES, compact / NUM_ENTRIES);
+      assertTrue("Expected less than " + mapNodes + " bytes, was " + compact, compact < mapNodes);
+   }
+
+   private long footprint(DefaultDataContainer dc, Metadata metadata) {
+      InternalEntryFactoryImpl entryFactory = new InternalEntryFactoryImpl();
+      entryFactory.injectTimeService(timeService);
+      dc.initialize(null, null, entryFactory, null, null, timeService);
+      long before = usedHeap();
+      for (int i = 0; i < NUM_ENTRIES; i++) dc.put(keys[i], values[i], metadata);
+      long after = usedHeap();
+      assertTrue(dc.size() == NUM_ENTRIES);
+      return after - before;
+   }
+
+   private static long usedHeap() {
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      for (int i = 0; i < 5; i++) {
+         System.gc();
+         Thread.yield();
+      }
+      return memory.getHeapMemoryUsage().getUsed();
+   }
+
+   /**
+    * The data container as it was before the entries became their own map nodes.
+    */
+   private static class MapNodeDataContainer extends DefaultDataContainer {
+      @SuppressWarnings("unchecked")
+      MapNodeDataContainer() {
+         super(CollectionFactory.<Object, InternalCacheEntry>makeConcurrentMap(128, 16,
+               (Equivalence) AnyEquivalence.getInstance(), (Equivalence) AnyEquivalence.getInstance()), AnyEquivalence.getInstance());
+      }
+   }
+}
@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container;
+
+import org.infinispan.commons.hash.MurmurHash3;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHashFactory;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.AnyEquivalence;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Test(groups = "unit", testName = "container.SegmentedDataContainerTest")
+public class SegmentedDataContainerTest extends SimpleDataContainerTest {
+
+   private static final int NUM_SEGMENTS = 20;
+
+   @Override
+   protected DataContainer createContainer() {
+      DefaultDataContainer dc = SegmentedDataContainer.segmentedDataContainer(16, new MurmurHash3(),
+            NUM_SEGMENTS, AnyEquivalence.getInstance(), AnyEquivalence.getInstance());
+      InternalEntryFactoryImpl internalEntryFactory = new InternalEntryFactoryImpl();
+      internalEntryFactory.injectTimeService(TIME_SERVICE);
+      dc.initialize(null, null, internalEntryFactory, null, null, TIME_SERVICE);
+      return dc;
+   }
+
+   public void testSegmentOperations() {
+      List<Address> members = Collections.<Address>singletonList(new TestAddress(0));
+      DefaultConsistentHash ch = new DefaultConsistentHashFactory().create(new MurmurHash3(), 1, NUM_SEGMENTS, members);
+      SegmentedDataContainer sdc = (SegmentedDataContainer) dc;
+      assertFalse(sdc.isSegmentedBy(ch));
+      sdc.segmentBy(ch);
+      assertTrue(sdc.isSegmentedBy(ch));
+      assertFalse(sdc.isSegmentedBy(new DefaultConsistentHashFactory().create(new MurmurHash3(), 1, NUM_SEGMENTS + 1, members)));
+
+      for (int i = 0; i < 1000; i++) {
+         dc.put(i, "v" + i, new EmbeddedMetadata.Builder().build());
+      }
+      Set<Integer> segments = new HashSet<Integer>();
+      for (int i = 0; i < NUM_SEGMENTS; i += 3) {
+         segments.add(i);
+      }
+
+      int expected = 0;
+      for (int i = 0; i < 1000; i++) {
+         if (segments.contains(ch.getSegment(i))) expected++;
+      }
+      assertEquals(expected, sdc.size(segments));
+
+      int iterated = 0;
+      for (Iterator<InternalCacheEntry> it = sdc.iterator(segments); it.hasNext(); ) {
+         assertTrue(segments.contains(ch.getSegment(it.next().getKey())));
+         iterated++;
+      }
+      assertEquals(expected, iterated);
+   }
+
+   public void testSegmentByMovesExistingEntries() {
+      ConsistentHash ch = mock(ConsistentHash.class);
+      when(ch.getNumSegments()).thenReturn(NUM_SEGMENTS);
+      when(ch.getSegment(any())).thenAnswer(new Answer<Integer>() {
+         @Override
+         public Integer answer(InvocationOnMock invocation) {
+            return (Integer) invocation.getArguments()[0] % NUM_SEGMENTS;
+         }
+      });
+      // enough entries for the moved ones to share buckets in the maps of their old and new segments
+      int numEntries = 2000;
+      for (int i = 0; i < numEntries; i++) {
+         dc.put(i, "v" + i, new EmbeddedMetadata.Builder().build());
+      }
+
+      SegmentedDataContainer sdc = (SegmentedDataContainer) dc;
+      sdc.segmentBy(ch);
+      assertTrue(sdc.isSegmentedBy(ch));
+      assertEquals(numEntries, dc.size());
+      for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+         Set<Integer> expected = new HashSet<Integer>();
+         for (int i = segment; i < numEntries; i += NUM_SEGMENTS) {
+            expected.add(i);
+         }
+         Set<Integer> keys = new HashSet<Integer>();
+         for (Iterator<InternalCacheEntry> it = sdc.iterator(Collections.singleton(segment)); it.hasNext(); ) {
+            keys.add((Integer) it.next().getKey());
+         }
+         assertEquals(expected.size(), sdc.size(Collections.singleton(segment)));
+         assertEquals(expected, keys);
+      }
+      for (int i = 0; i < numEntries; i++) {
+         assertEquals("v" + i, dc.get(i).getValue());
+      }
+   }
+}
@@ -44,7 +44,7 @@
 
 @Test(groups = "unit", testName = "container.SimpleDataContainerTest")
 public class SimpleDataContainerTest extends AbstractInfinispanTest {
-   DataContainer dc;
+   protected DataContainer dc;
 
    @BeforeMethod
    public void setUp() {
@@ -99,6 +99,47 @@ public void testExpiredData() throws InterruptedException {
       assert dc.size() == 0;
    }
    
+   public void testPurgeExpiredAfterExpiryChange() throws InterruptedException {
+      dc.put("k1", "v", new EmbeddedMetadata.Builder().lifespan(100, TimeUnit.MINUTES).build());
+      dc.put("k1", "v", new EmbeddedMetadata.Builder().lifespan(0, TimeUnit.MINUTES).build());
+      dc.put("k2", "v", new EmbeddedMetadata.Builder().lifespan(0, TimeUnit.MINUTES).build());
+      dc.put("k2", "v", new EmbeddedMetadata.Builder().lifespan(100, TimeUnit.MINUTES).build());
+      dc.put("k3", "v", new EmbeddedMetadata.Builder().maxIdle(0, TimeUnit.MINUTES).build());
+      dc.put("k3", "v", new EmbeddedMetadata.Builder().build());
+      dc.put("k4", "v", new EmbeddedMetadata.Builder().maxIdle(0, TimeUnit.MINUTES).build());
+      Thread.sleep(10);
+      assertEquals(4, dc.size());
+
+      dc.purgeExpired();
+      assertEquals(2, dc.size());
+      assert dc.containsKey("k2");
+      assert dc.containsKey("k3");
+   }
+
+   public void testExpirationIndexFollowsRemovals() throws InterruptedException {
+      ExpirationIndex index = ((DefaultDataContainer) dc).expirationIndex;
+      dc.put("k1", "v", new EmbeddedMetadata.Builder().lifespan(100, TimeUnit.MINUTES).build());
+      dc.put("k2", "v", new EmbeddedMetadata.Builder().lifespan(100, TimeUnit.MINUTES).build());
+      dc.put("k3", "v", new EmbeddedMetadata.Builder().maxIdle(100, TimeUnit.MINUTES).build());
+      dc.put("k4", "v", new EmbeddedMetadata.Builder().lifespan(0, TimeUnit.MINUTES).build());
+      assertEquals(4, index.size());
+
+      // a later expiry moves the key instead of indexing it twice
+      dc.put("k1", "v", new EmbeddedMetadata.Builder().lifespan(200, TimeUnit.MINUTES).build());
+      assertEquals(4, index.size());
+
+      dc.remove("k1");
+      dc.put("k2", "v", new EmbeddedMetadata.Builder().build());
+      assertEquals(2, index.size());
+
+      Thread.sleep(10);
+      assert !dc.containsKey("k4");
+      assertEquals(1, index.size());
+
+      dc.clear();
+      assertEquals(0, index.size());
+   }
+
    public void testResetOfCreationTime() throws Exception {
       long now = System.currentTimeMillis();
       dc.put("k", "v", new EmbeddedMetadata.Builder().lifespan(1000, TimeUnit.SECONDS).build());
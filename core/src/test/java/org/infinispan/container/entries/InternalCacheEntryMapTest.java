@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.ByteArrayEquivalence;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+@Test(groups = "unit", testName = "container.entries.InternalCacheEntryMapTest")
+public class InternalCacheEntryMapTest extends AbstractInfinispanTest {
+
+   public void testPutGetRemove() {
+      InternalCacheEntryMap map = new InternalCacheEntryMap(16, 4, AnyEquivalence.getInstance());
+      ImmortalCacheEntry e1 = new ImmortalCacheEntry("k", "v1");
+      assertNull(map.put("k", e1));
+      assertSame(e1, map.get("k"));
+      assertEquals(1, map.size());
+
+      // updating the entry in place keeps it in the map
+      e1.setValue("v2");
+      assertSame(e1, map.put("k", e1));
+      assertSame(e1, map.get("k"));
+
+      ImmortalCacheEntry e2 = new ImmortalCacheEntry("k", "v3");
+      assertSame(e1, map.put("k", e2));
+      assertSame(e2, map.get("k"));
+      assertEquals(1, map.size());
+
+      assertFalse(map.remove("k", e1));
+      assertTrue(map.remove("k", e2));
+      assertNull(map.get("k"));
+      assertTrue(map.isEmpty());
+   }
+
+   public void testConditionalOperations() {
+      InternalCacheEntryMap map = new InternalCacheEntryMap(16, 4, AnyEquivalence.getInstance());
+      ImmortalCacheEntry e1 = new ImmortalCacheEntry("k", "v1");
+      ImmortalCacheEntry e2 = new ImmortalCacheEntry("k", "v2");
+      assertNull(map.replace("k", e1));
+      assertNull(map.putIfAbsent("k", e1));
+      assertSame(e1, map.putIfAbsent("k", e2));
+      assertFalse(map.replace("k", e2, e2));
+      assertTrue(map.replace("k", e1, e2));
+      assertSame(e2, map.get("k"));
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testEntryMustBeStoredUnderItsKey() {
+      InternalCacheEntryMap map = new InternalCacheEntryMap(16, 4, AnyEquivalence.getInstance());
+      map.put("k1", new ImmortalCacheEntry("k2", "v"));
+   }
+
+   public void testKeyEquivalence() {
+      InternalCacheEntryMap map = new InternalCacheEntryMap(16, 4, ByteArrayEquivalence.INSTANCE);
+      map.put(new byte[]{1, 2, 3}, new ImmortalCacheEntry(new byte[]{1, 2, 3}, "v"));
+      assertEquals("v", map.get(new byte[]{1, 2, 3}).getValue());
+      assertTrue(map.containsKey(new byte[]{1, 2, 3}));
+      assertEquals("v", map.remove(new byte[]{1, 2, 3}).getValue());
+   }
+
+   public void testLinkedEntryIsCopiedIntoAnotherMap() {
+      InternalCacheEntryMap source = new InternalCacheEntryMap(16, 1, AnyEquivalence.getInstance());
+      int count = 1000;
+      for (int i = 0; i < count; i++) source.put(i, new ImmortalCacheEntry(i, "v" + i));
+      AbstractInternalCacheEntry linked = null;
+      for (InternalCacheEntry e : source.values()) {
+         if (((AbstractInternalCacheEntry) e).next != null) {
+            linked = (AbstractInternalCacheEntry) e;
+            break;
+         }
+      }
+      assertNotNull(linked);
+
+      InternalCacheEntryMap target = new InternalCacheEntryMap(16, 1, AnyEquivalence.getInstance());
+      for (int i = count; i < 2 * count; i++) target.put(i, new ImmortalCacheEntry(i, "v" + i));
+      assertNull(target.put(linked.getKey(), linked));
+      InternalCacheEntry copy = target.get(linked.getKey());
+      assertNotSame(linked, copy);
+      assertEquals(linked.getValue(), copy.getValue());
+
+      // neither map lost entries to the other one's chains
+      assertEquals(count, source.size());
+      assertEquals(count + 1, target.size());
+      for (int i = 0; i < count; i++) assertEquals("v" + i, source.get(i).getValue());
+      for (int i = count; i < 2 * count; i++) assertEquals("v" + i, target.get(i).getValue());
+      assertTrue(source.remove(linked.getKey(), linked));
+      assertEquals(count - 1, source.size());
+      int iterated = 0;
+      for (InternalCacheEntry e : target.values()) iterated++;
+      assertEquals(count + 1, iterated);
+   }
+
+   public void testResizeAndIteration() {
+      InternalCacheEntryMap map = new InternalCacheEntryMap(1, 2, AnyEquivalence.getInstance());
+      int count = 10000;
+      for (int i = 0; i < count; i++) map.put(i, new ImmortalCacheEntry(i, "v" + i));
+      assertEquals(count, map.size());
+      for (int i = 0; i < count; i++) assertEquals("v" + i, map.get(i).getValue());
+
+      Set<Object> keys = new HashSet<Object>();
+      for (Iterator<InternalCacheEntry> it = map.values().iterator(); it.hasNext(); ) {
+         InternalCacheEntry e = it.next();
+         assertTrue(keys.add(e.getKey()));
+         if ((Integer) e.getKey() % 2 == 0) it.remove();
+      }
+      assertEquals(count, keys.size());
+      assertEquals(count / 2, map.size());
+      assertEquals(count / 2, map.keySet().size());
+
+      map.clear();
+      assertTrue(map.isEmpty());
+      assertNull(map.get(1));
+   }
+
+   public void testReadsDuringResize() throws Exception {
+      final InternalCacheEntryMap map = new InternalCacheEntryMap(1, 1, AnyEquivalence.getInstance());
+      final int stable = 100;
+      for (int i = 0; i < stable; i++) map.put(i, new ImmortalCacheEntry(i, "v"));
+
+      final AtomicBoolean done = new AtomicBoolean();
+      Future<Integer> reader = fork(new Callable<Integer>() {
+         @Override
+         public Integer call() {
+            int misses = 0;
+            while (!done.get()) {
+               for (int i = 0; i < stable; i++) {
+                  if (map.get(i) == null) misses++;
+               }
+            }
+            return misses;
+         }
+      });
+      // every insert past the threshold re-links the entries of the segment
+      for (int i = stable; i < 200000; i++) map.put(i, new ImmortalCacheEntry(i, "v"));
+      done.set(true);
+      assertEquals(0, (int) reader.get());
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.offheap;
+
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.container.SimpleDataContainerTest;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.marshall.TestObjectStreamMarshaller;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+@Test(groups = "unit", testName = "container.offheap.OffHeapDataContainerTest")
+public class OffHeapDataContainerTest extends SimpleDataContainerTest {
+
+   @Override
+   protected DataContainer createContainer() {
+      OffHeapDataContainer dc = new OffHeapDataContainer(16, 16);
+      InternalEntryFactoryImpl internalEntryFactory = new InternalEntryFactoryImpl();
+      internalEntryFactory.injectTimeService(TIME_SERVICE);
+      dc.initialize(new TestObjectStreamMarshaller(), internalEntryFactory, TIME_SERVICE);
+      return dc;
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void releaseMemory() {
+      if (dc != null) ((OffHeapDataContainer) dc).stop();
+   }
+
+   /**
+    * Entries read from an off-heap container are copies, so the access time update performed
+    * by get() is only visible on entries read afterwards.
+    */
+   @Override
+   public void testUpdatingLastUsed() throws Exception {
+      long idle = 600000;
+      dc.put("k", "v", new EmbeddedMetadata.Builder().maxIdle(idle, TimeUnit.MILLISECONDS).build());
+      long lastUsed = dc.get("k").getLastUsed();
+      Thread.sleep(100); // for time calc granularity
+      dc.get("k");
+      InternalCacheEntry ice = dc.peek("k");
+      assertTrue(ice.getLastUsed() > lastUsed);
+      assertEquals(idle, ice.getMaxIdle());
+      assertEquals(-1, ice.getLifespan());
+   }
+
+   public void testResize() {
+      for (int i = 0; i < 1000; i++)
+         dc.put(i, "v" + i, new EmbeddedMetadata.Builder().build());
+
+      assertEquals(1000, dc.size());
+      for (int i = 0; i < 1000; i++)
+         assertEquals("v" + i, dc.get(i).getValue());
+
+      int iterated = 0;
+      for (InternalCacheEntry ignored : dc) iterated++;
+      assertEquals(1000, iterated);
+   }
+
+   public void testRemoveAndClear() {
+      dc.put("k1", "v1", new EmbeddedMetadata.Builder().build());
+      dc.put("k2", "v2", new EmbeddedMetadata.Builder().build());
+      assertEquals("v1", dc.remove("k1").getValue());
+      assertNull(dc.get("k1"));
+      assertEquals(1, dc.size());
+      dc.clear();
+      assertEquals(0, dc.size());
+      assertNull(dc.get("k2"));
+   }
+
+   public void testVersionedMetadataIsPreserved() {
+      dc.put("k", "v", new EmbeddedMetadata.Builder().version(new NumericVersion(5)).build());
+      InternalCacheEntry ice = dc.get("k");
+      assertNotNull(ice.getMetadata().version());
+      assertEquals(new NumericVersion(5), ice.getMetadata().version());
+   }
+}
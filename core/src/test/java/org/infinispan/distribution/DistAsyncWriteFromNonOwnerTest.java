@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.interceptors.CacheMgmtInterceptor;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Async writes to keys owned by other nodes are forwarded to the primary owner from the caller thread and their
+ * futures are completed when the response arrives.
+ */
+@Test(groups = "functional", testName = "distribution.DistAsyncWriteFromNonOwnerTest")
+public class DistAsyncWriteFromNonOwnerTest extends BaseDistFunctionalTest {
+
+   public DistAsyncWriteFromNonOwnerTest() {
+      sync = true;
+      tx = false;
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected ConfigurationBuilder buildConfiguration() {
+      ConfigurationBuilder builder = super.buildConfiguration();
+      builder.jmxStatistics().enable();
+      return builder;
+   }
+
+   public void testWritesReturnPrimaryOwnerValues() throws Exception {
+      MagicKey k = new MagicKey("k", c1, c2);
+
+      assertNull(c4.putAsync(k, "v1").get(10, TimeUnit.SECONDS));
+      assertEquals("v1", c1.get(k));
+      assertEquals("v1", c2.get(k));
+
+      assertEquals("v1", c4.putAsync(k, "v2").get(10, TimeUnit.SECONDS));
+      assertEquals("v2", c4.putIfAbsentAsync(k, "v3").get(10, TimeUnit.SECONDS));
+      assertEquals("v2", c4.replaceAsync(k, "v4").get(10, TimeUnit.SECONDS));
+      assertEquals("v4", c1.get(k));
+
+      assertEquals("v4", c4.removeAsync(k).get(10, TimeUnit.SECONDS));
+      assertNull(c1.get(k));
+      assertNull(c2.get(k));
+   }
+
+   public void testListenerNotifiedWithResult() throws Exception {
+      MagicKey k = new MagicKey("k", c2, c3);
+      c1.put(k, "v1");
+
+      final CountDownLatch notified = new CountDownLatch(1);
+      final Object[] result = new Object[1];
+      NotifyingFuture<String> future = c4.putAsync(k, "v2");
+      future.attachListener(new FutureListener<String>() {
+         @Override
+         public void futureDone(Future<String> done) {
+            try {
+               result[0] = done.get();
+            } catch (Exception e) {
+               result[0] = e;
+            }
+            notified.countDown();
+         }
+      });
+
+      assertTrue(notified.await(10, TimeUnit.SECONDS));
+      assertEquals("v1", result[0]);
+      assertEquals("v2", c2.get(k));
+   }
+
+   public void testRemoveStatisticsUseThePrimaryOwnerValue() throws Exception {
+      MagicKey k = new MagicKey("k", c1, c2);
+      c1.put(k, "v1");
+      CacheMgmtInterceptor stats = TestingUtil.findInterceptor(c4, CacheMgmtInterceptor.class);
+      stats.resetStatistics();
+
+      assertEquals("v1", c4.removeAsync(k).get(10, TimeUnit.SECONDS));
+      assertEquals(1, stats.getRemoveHits());
+      assertEquals(0, stats.getRemoveMisses());
+
+      assertNull(c4.removeAsync(k).get(10, TimeUnit.SECONDS));
+      assertEquals(1, stats.getRemoveHits());
+      assertEquals(1, stats.getRemoveMisses());
+
+      assertNull(c4.putAsync(k, "v2").get(10, TimeUnit.SECONDS));
+      assertEquals(1, stats.getStores());
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Checks that the entries written with putAll are only sent to their owners.
+ */
+@Test(groups = "functional", testName = "distribution.DistPutMapPerOwnerTest")
+public class DistPutMapPerOwnerTest extends BaseDistFunctionalTest {
+
+   public DistPutMapPerOwnerTest() {
+      sync = true;
+      tx = false;
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   public void testEntriesOnlySentToOwners() throws Exception {
+      List<String> misdirected = new CopyOnWriteArrayList<String>();
+      for (Cache<Object, String> c : caches) {
+         c.getAdvancedCache().addInterceptor(new OwnershipCheckInterceptor(c, misdirected), 0);
+      }
+
+      Map<Object, String> entries = new HashMap<Object, String>();
+      for (int i = 0; i < 100; i++) {
+         entries.put("k" + i, "v" + i);
+      }
+      c1.putAll(entries);
+
+      assertTrue("Entries received by non-owners: " + misdirected, misdirected.isEmpty());
+      for (Map.Entry<Object, String> e : entries.entrySet()) {
+         for (Cache<Object, String> owner : getOwners(e.getKey())) {
+            assertEquals(e.getValue(), owner.getAdvancedCache().getDataContainer().get(e.getKey()).getValue());
+         }
+      }
+   }
+
+   static class OwnershipCheckInterceptor extends CommandInterceptor {
+      private final Cache<?, ?> cache;
+      private final List<String> misdirected;
+
+      OwnershipCheckInterceptor(Cache<?, ?> cache, List<String> misdirected) {
+         this.cache = cache;
+         this.misdirected = misdirected;
+      }
+
+      @Override
+      public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) checkOwnership(command);
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            for (WriteCommand mod : command.getModifications()) {
+               if (mod instanceof PutMapCommand) checkOwnership((PutMapCommand) mod);
+            }
+         }
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      private void checkOwnership(PutMapCommand command) {
+         for (Object key : command.getMap().keySet()) {
+            if (!DistributionTestHelper.isOwner(cache, key)) {
+               misdirected.add(key + " on " + cache.getAdvancedCache().getRpcManager().getAddress());
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.util.CountingRpcManager;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * With staggered remote gets, the owners are asked one at a time and the next owner is only asked when the previous
+ * one is slow to reply or can't answer.
+ */
+@Test(groups = "functional", testName = "distribution.DistStaggeredRemoteGetTest")
+public class DistStaggeredRemoteGetTest extends BaseDistFunctionalTest {
+
+   public DistStaggeredRemoteGetTest() {
+      sync = true;
+      tx = false;
+      numOwners = 3;
+      l1CacheEnabled = false;
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected ConfigurationBuilder buildConfiguration() {
+      ConfigurationBuilder builder = super.buildConfiguration();
+      builder.clustering().hash().staggeredRemoteGets(true);
+      return builder;
+   }
+
+   public void testOnlyPrimaryOwnerIsAsked() {
+      MagicKey k = new MagicKey("k", c2, c3, c4);
+      c2.put(k, "v");
+
+      CountingRpcManager rpcManager = CountingRpcManager.replaceRpcManager(c1);
+      // let c1 learn how long c2 takes to reply
+      for (int i = 0; i < 10; i++) {
+         assertEquals("v", c1.get(k));
+      }
+      rpcManager.resetStats();
+      for (int i = 0; i < 10; i++) {
+         assertEquals("v", c1.get(k));
+      }
+      assertEquals(10, rpcManager.clusterGet);
+   }
+
+   public void testNextOwnerIsAskedWhenPrimaryOwnerIsSlow() throws Exception {
+      MagicKey k = new MagicKey("k", c2, c3, c4);
+      c2.put(k, "v");
+
+      CountDownLatch release = new CountDownLatch(1);
+      c2.getAdvancedCache().addInterceptor(new BlockRemoteGetsInterceptor(release), 0);
+      try {
+         CountingRpcManager rpcManager = CountingRpcManager.replaceRpcManager(c1);
+         assertEquals("v", c1.get(k));
+         // c3 should reply in time, but c4 may be asked too if it doesn't
+         assertTrue(rpcManager.clusterGet > 1);
+      } finally {
+         release.countDown();
+      }
+   }
+
+   public void testAllOwnersAreAskedForMissingKey() {
+      MagicKey k = new MagicKey("k", c2, c3, c4);
+
+      CountingRpcManager rpcManager = CountingRpcManager.replaceRpcManager(c1);
+      assertNull(c1.get(k));
+      assertEquals(3, rpcManager.clusterGet);
+   }
+
+   static class BlockRemoteGetsInterceptor extends CommandInterceptor {
+      private final CountDownLatch release;
+
+      BlockRemoteGetsInterceptor(CountDownLatch release) {
+         this.release = release;
+      }
+
+      @Override
+      public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            release.await(30, TimeUnit.SECONDS);
+         }
+         return super.visitGetKeyValueCommand(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,266 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.CacheException;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.CoalescedRpcCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.rpc.RpcManagerImpl;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.xsite.offline.DelegatingTransport;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * With RPC coalescing, the writes sent by the primary owner to a backup owner while an earlier write to the same backup
+ * owner is in flight are sent together, and each writer still gets its own result. Commands that may wait for a lock
+ * are never coalesced.
+ */
+@Test(groups = "functional", testName = "distribution.DistSyncCoalescedRpcTest")
+public class DistSyncCoalescedRpcTest extends BaseDistFunctionalTest {
+
+   private static final int NUM_WRITERS = 10;
+   private static final String TX_CACHE = "txCoalesced";
+   private static final long LOCK_TIMEOUT_MILLIS = 20000;
+
+   public DistSyncCoalescedRpcTest() {
+      sync = true;
+      tx = false;
+      numOwners = 2;
+      l1CacheEnabled = false;
+      cleanup = CleanupPhase.AFTER_METHOD;
+   }
+
+   @Override
+   protected ConfigurationBuilder buildConfiguration() {
+      ConfigurationBuilder builder = super.buildConfiguration();
+      builder.clustering().sync().coalesceRpcs(true);
+      return builder;
+   }
+
+   public void testConcurrentWritesAreApplied() throws Exception {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(NUM_WRITERS);
+      for (int i = 0; i < NUM_WRITERS; i++) {
+         final int writer = i;
+         futures.add(fork(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               for (int j = 0; j < 50; j++) {
+                  c1.put("k-" + writer + "-" + j, "v-" + writer + "-" + j);
+               }
+               return null;
+            }
+         }));
+      }
+      for (Future<Void> future : futures) {
+         future.get(30, TimeUnit.SECONDS);
+      }
+
+      for (int i = 0; i < NUM_WRITERS; i++) {
+         for (int j = 0; j < 50; j++) {
+            assertOnAllCachesAndOwnership("k-" + i + "-" + j, "v-" + i + "-" + j);
+         }
+      }
+   }
+
+   public void testWritesQueuedBehindSlowWriteAreCoalesced() throws Exception {
+      CountingTransport transport = replaceTransport(c2);
+      BlockingInterceptor blocker = new BlockingInterceptor("blocked");
+      c3.getAdvancedCache().addInterceptor(blocker, 0);
+
+      MagicKey blockedKey = new MagicKey("blocked", c2, c3);
+      List<MagicKey> keys = new ArrayList<MagicKey>(NUM_WRITERS);
+      for (int i = 0; i < NUM_WRITERS; i++) {
+         keys.add(new MagicKey("k" + i, c2, c3));
+      }
+
+      List<Future<Object>> futures = new ArrayList<Future<Object>>(NUM_WRITERS + 1);
+      futures.add(forkPut(blockedKey, "v"));
+      assertTrue(blocker.arrived.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < NUM_WRITERS; i++) {
+         futures.add(forkPut(keys.get(i), "v" + i));
+      }
+      // let the writers queue their commands behind the blocked one
+      Thread.sleep(500);
+      blocker.release.countDown();
+
+      for (Future<Object> future : futures) {
+         future.get(30, TimeUnit.SECONDS);
+      }
+      assertTrue(transport.coalescedMessages.get() > 0);
+      assertEquals("v", c3.get(blockedKey));
+      for (int i = 0; i < NUM_WRITERS; i++) {
+         assertEquals("v" + i, c3.get(keys.get(i)));
+      }
+   }
+
+   public void testFailureOnlyAffectsItsOwnWrite() throws Exception {
+      BlockingInterceptor blocker = new BlockingInterceptor("blocked");
+      c3.getAdvancedCache().addInterceptor(blocker, 0);
+
+      MagicKey succeedingKey = new MagicKey("succeeding", c2, c3);
+      Future<Object> blocked = forkPut(new MagicKey("blocked", c2, c3), "v");
+      assertTrue(blocker.arrived.await(10, TimeUnit.SECONDS));
+      Future<Object> failing = forkPut(new MagicKey("failing", c2, c3), BlockingInterceptor.FAIL);
+      Future<Object> succeeding = forkPut(succeedingKey, "v");
+      Thread.sleep(500);
+      blocker.release.countDown();
+
+      blocked.get(30, TimeUnit.SECONDS);
+      succeeding.get(30, TimeUnit.SECONDS);
+      try {
+         failing.get(30, TimeUnit.SECONDS);
+         fail("The write should have failed");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof CacheException);
+      }
+      assertEquals("v", c3.get(succeedingKey));
+   }
+
+   public void testTransactionCommitIsNotQueuedBehindLockRequest() throws Exception {
+      ConfigurationBuilder builder = getDefaultClusteredCacheConfig(CacheMode.DIST_SYNC, true);
+      builder.transaction().lockingMode(LockingMode.PESSIMISTIC)
+            .locking().lockAcquisitionTimeout(LOCK_TIMEOUT_MILLIS)
+            .clustering().hash().numOwners(2).l1().disable()
+            .sync().coalesceRpcs(true);
+      for (int i = 0; i < INIT_CLUSTER_SIZE; i++) {
+         manager(i).defineConfiguration(TX_CACHE, builder.build());
+      }
+      waitForClusterToForm(TX_CACHE);
+      final Cache<Object, String> txCache = cache(0, TX_CACHE);
+      final MagicKey key = new MagicKey("tx", cache(1, TX_CACHE), cache(2, TX_CACHE));
+
+      // the first transaction holds the lock on the primary owner
+      tm(0, TX_CACHE).begin();
+      txCache.put(key, "v1");
+      Transaction tx1 = tm(0, TX_CACHE).suspend();
+
+      // the second transaction waits for the lock on the primary owner
+      Future<Void> tx2 = fork(new Callable<Void>() {
+         @Override
+         public Void call() throws Exception {
+            tm(0, TX_CACHE).begin();
+            txCache.put(key, "v2");
+            tm(0, TX_CACHE).commit();
+            return null;
+         }
+      });
+      Thread.sleep(500);
+      assertFalse(tx2.isDone());
+
+      // the commit of the lock owner must not wait behind the lock request
+      long start = System.currentTimeMillis();
+      tm(0, TX_CACHE).resume(tx1);
+      tm(0, TX_CACHE).commit();
+      tx2.get(LOCK_TIMEOUT_MILLIS / 2, TimeUnit.MILLISECONDS);
+      assertTrue(System.currentTimeMillis() - start < LOCK_TIMEOUT_MILLIS / 2);
+      assertEquals("v2", cache(1, TX_CACHE).get(key));
+      assertEquals("v2", cache(2, TX_CACHE).get(key));
+   }
+
+   private Future<Object> forkPut(final Object key, final String value) {
+      return fork(new Callable<Object>() {
+         @Override
+         public Object call() throws Exception {
+            return c2.put(key, value);
+         }
+      });
+   }
+
+   private CountingTransport replaceTransport(Cache<?, ?> cache) {
+      RpcManagerImpl rpcManager = (RpcManagerImpl) TestingUtil.extractComponent(cache, RpcManager.class);
+      CountingTransport transport = new CountingTransport(rpcManager.getTransport());
+      rpcManager.setTransport(transport);
+      return transport;
+   }
+
+   static class CountingTransport extends DelegatingTransport {
+      final AtomicInteger coalescedMessages = new AtomicInteger();
+
+      CountingTransport(Transport actual) {
+         super(actual);
+      }
+
+      @Override
+      public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                           ResponseMode mode, long timeout, boolean usePriorityQueue) {
+         if (rpcCommand instanceof CoalescedRpcCommand) coalescedMessages.incrementAndGet();
+         return super.invokeRemotelyInFuture(recipients, rpcCommand, mode, timeout, usePriorityQueue);
+      }
+   }
+
+   static class BlockingInterceptor extends CommandInterceptor {
+      static final String FAIL = "fail";
+
+      final CountDownLatch arrived = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      private final String blockedKey;
+
+      BlockingInterceptor(String blockedKey) {
+         this.blockedKey = blockedKey;
+      }
+
+      @Override
+      public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            if (command.getKey().toString().contains(blockedKey)) {
+               arrived.countDown();
+               release.await(30, TimeUnit.SECONDS);
+            }
+            if (FAIL.equals(command.getValue())) {
+               throw new IllegalStateException("Failing on purpose");
+            }
+         }
+         return super.visitPutKeyValueCommand(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+@Test(groups = "unit", testName = "distribution.LeastLoadedReplicaSelectorTest")
+public class LeastLoadedReplicaSelectorTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(0, "A");
+   private final Address b = new TestAddress(1, "B");
+   private final Address c = new TestAddress(2, "C");
+
+   private LeastLoadedReplicaSelector selector;
+
+   @BeforeMethod
+   public void setUp() {
+      selector = new LeastLoadedReplicaSelector();
+   }
+
+   public void testConsistentHashOrderWithoutResponseTimes() {
+      assertEquals(Arrays.asList(a, b, c), selector.orderOwners(Arrays.asList(a, b, c)));
+   }
+
+   public void testFastestOwnerFirst() {
+      reply(a, 5);
+      reply(b, 1);
+      reply(c, 3);
+      assertEquals(Arrays.asList(b, c, a), selector.orderOwners(Arrays.asList(a, b, c)));
+   }
+
+   public void testOwnerWithoutResponseTimeFirst() {
+      reply(a, 1);
+      reply(b, 1);
+      List<Address> ordered = selector.orderOwners(Arrays.asList(a, b, c));
+      assertEquals(c, ordered.get(0));
+   }
+
+   public void testReadsInFlightSpreadTheLoad() {
+      reply(a, 1);
+      reply(b, 1);
+      assertEquals(a, selector.orderOwners(Arrays.asList(a, b)).get(0));
+
+      selector.requestSent(a);
+      assertEquals(b, selector.orderOwners(Arrays.asList(a, b)).get(0));
+
+      selector.requestSent(b);
+      assertEquals(a, selector.orderOwners(Arrays.asList(a, b)).get(0));
+   }
+
+   public void testFailuresDoNotChangeResponseTime() {
+      reply(a, 1);
+      reply(b, 2);
+      selector.requestSent(a);
+      selector.requestCompleted(a, TimeUnit.SECONDS.toNanos(10), false);
+      assertEquals(a, selector.orderOwners(Arrays.asList(a, b)).get(0));
+   }
+
+   private void reply(Address owner, long millis) {
+      selector.requestSent(owner);
+      selector.requestCompleted(owner, TimeUnit.MILLISECONDS.toNanos(millis), true);
+   }
+}
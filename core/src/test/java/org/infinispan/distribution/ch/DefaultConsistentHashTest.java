@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.infinispan.commons.hash.MurmurHash3;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Test that the lookup tables of {@link DefaultConsistentHash} agree with its routing table.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "distribution.ch.DefaultConsistentHashTest")
+public class DefaultConsistentHashTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(0, "A");
+   private final Address b = new TestAddress(1, "B");
+   private final Address c = new TestAddress(2, "C");
+   private final Address d = new TestAddress(3, "D");
+
+   public void testLookupTablesMatchRoutingTable() {
+      DefaultConsistentHash ch = new DefaultConsistentHashFactory().create(new MurmurHash3(), 2, 16, Arrays.asList(a, b, c, d));
+      for (int segment = 0; segment < ch.getNumSegments(); segment++) {
+         List<Address> owners = ch.locateOwnersForSegment(segment);
+         assertEquals(ch.locatePrimaryOwnerForSegment(segment), owners.get(0));
+         for (Address member : ch.getMembers()) {
+            assertEquals(ch.isSegmentLocalToNode(member, segment), owners.contains(member));
+            assertEquals(ch.getSegmentsForOwner(member).contains(segment), owners.contains(member));
+         }
+      }
+      assertFalse(ch.isSegmentLocalToNode(new TestAddress(4, "E"), 0));
+   }
+
+   public void testLocateAllOwners() {
+      DefaultConsistentHash ch = createConsistentHash(Arrays.asList(a, b), Arrays.asList(a, b), Arrays.asList(c, d));
+      Object key0 = keyForSegment(ch, 0);
+      Object key1 = keyForSegment(ch, 1);
+      Object key2 = keyForSegment(ch, 2);
+
+      Set<Address> owners0 = ch.locateAllOwners(Collections.singleton(key0));
+      assertEquals(owners0, new HashSet<Address>(Arrays.asList(a, b)));
+      // segments with the same owners share the same set
+      assertSame(ch.locateAllOwners(Arrays.asList(key0, key1)), owners0);
+      assertEquals(ch.locateAllOwners(Arrays.asList(key0, key1, key2)), new HashSet<Address>(Arrays.asList(a, b, c, d)));
+      // the shared set must not be modified by the union
+      assertEquals(owners0, new HashSet<Address>(Arrays.asList(a, b)));
+      assertTrue(ch.locateAllOwners(Collections.emptyList()).isEmpty());
+   }
+
+   @Test(expectedExceptions = UnsupportedOperationException.class)
+   public void testOwnersAreUnmodifiable() {
+      DefaultConsistentHash ch = createConsistentHash(Arrays.asList(a, b), Arrays.asList(a, b), Arrays.asList(c, d));
+      ch.locateAllOwners(Collections.singleton(keyForSegment(ch, 0))).add(c);
+   }
+
+   private DefaultConsistentHash createConsistentHash(List<Address>... segmentOwners) {
+      return new DefaultConsistentHash(new MurmurHash3(), 2, segmentOwners.length, Arrays.asList(a, b, c, d),
+                                       segmentOwners);
+   }
+
+   private Object keyForSegment(ConsistentHash ch, int segment) {
+      for (int i = 0; ; i++) {
+         String key = "k" + i;
+         if (ch.getSegment(key) == segment) return key;
+      }
+   }
+}
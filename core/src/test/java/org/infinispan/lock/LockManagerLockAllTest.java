@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.concurrent.locks.LockManagerImpl;
+import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantStripedLockContainer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests {@link LockManagerImpl#lockAll(InvocationContext, java.util.Collection, long, boolean)} and the lock order of
+ * the lock containers.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "lock.LockManagerLockAllTest")
+public class LockManagerLockAllTest extends AbstractInfinispanTest {
+
+   private OwnableReentrantPerEntryLockContainer lockContainer;
+   private LockManagerImpl lockManager;
+   private InvocationContext ctx;
+
+   @BeforeMethod
+   public void setUp() {
+      lockContainer = new OwnableReentrantPerEntryLockContainer(32);
+      lockManager = new LockManagerImpl();
+      lockManager.injectDependencies(new ConfigurationBuilder().build(), lockContainer);
+      lockManager.injectTimeService(TIME_SERVICE);
+      ctx = new NonTxInvocationContext(AnyEquivalence.getInstance());
+   }
+
+   public void testAllKeysAreLockedAndRecorded() throws Exception {
+      List<Object> keys = keys(100);
+      lockManager.lockAll(ctx, keys, 0, false);
+      for (Object key : keys) {
+         assertTrue(lockContainer.ownsLock(key, ctx.getLockOwner()));
+         assertTrue(ctx.hasLockedKey(key));
+      }
+
+      lockManager.unlockAll(ctx);
+      assertEquals(lockContainer.getNumLocksHeld(), 0);
+   }
+
+   public void testLocksAreReleasedOnTimeout() throws Exception {
+      List<Object> keys = keys(100);
+      Object otherOwner = new Object();
+      Object lockedKey = keys.get(50);
+      assertNotNull(lockContainer.acquireLock(otherOwner, lockedKey, 0, TimeUnit.MILLISECONDS));
+
+      try {
+         lockManager.lockAll(ctx, keys, 10, false);
+         fail("Expected a TimeoutException");
+      } catch (TimeoutException e) {
+         // expected
+      }
+      assertTrue(ctx.getLockedKeys().isEmpty());
+      assertEquals(lockContainer.getNumLocksHeld(), 1);
+      assertTrue(lockContainer.ownsLock(lockedKey, otherOwner));
+   }
+
+   public void testLocksHeldBeforeAreKept() throws Exception {
+      List<Object> keys = keys(10);
+      lockManager.acquireLock(ctx, keys.get(0), 0, false);
+      Object otherOwner = new Object();
+      assertNotNull(lockContainer.acquireLock(otherOwner, keys.get(5), 0, TimeUnit.MILLISECONDS));
+
+      try {
+         lockManager.lockAll(ctx, keys, 10, false);
+         fail("Expected a TimeoutException");
+      } catch (TimeoutException e) {
+         // expected
+      }
+      assertEquals(ctx.getLockedKeys(), Collections.singleton(keys.get(0)));
+      assertTrue(lockContainer.ownsLock(keys.get(0), ctx.getLockOwner()));
+   }
+
+   public void testPerEntryLockOrderDoesNotDependOnTheKeysOrder() {
+      List<Object> keys = keys(100);
+      assertEquals(Arrays.asList(sortInLockOrder(lockContainer, keys)),
+                   Arrays.asList(sortInLockOrder(lockContainer, reversed(keys))));
+   }
+
+   public void testStripedLockOrderDoesNotDependOnTheKeysOrder() {
+      ReentrantStripedLockContainer stripedContainer = new ReentrantStripedLockContainer(32);
+      List<Object> keys = keys(100);
+      Object[] sorted = sortInLockOrder(stripedContainer, keys);
+      Object[] sortedReversed = sortInLockOrder(stripedContainer, reversed(keys));
+
+      // keys sharing a lock may come in any order, but the locks must be in the same order
+      for (int i = 0; i < sorted.length; i++) {
+         assertEquals(stripedContainer.getLockId(sortedReversed[i]), stripedContainer.getLockId(sorted[i]));
+         if (i > 0) assertTrue(stripedContainer.getLockId(sorted[i - 1]) <= stripedContainer.getLockId(sorted[i]));
+      }
+   }
+
+   private Object[] sortInLockOrder(LockContainer<?> container, List<Object> keys) {
+      Object[] sorted = keys.toArray();
+      container.sortInLockOrder(sorted);
+      return sorted;
+   }
+
+   private List<Object> reversed(List<Object> keys) {
+      List<Object> reversed = new ArrayList<Object>(keys);
+      Collections.reverse(reversed);
+      return reversed;
+   }
+
+   private List<Object> keys(int count) {
+      List<Object> keys = new ArrayList<Object>(count);
+      for (int i = 0; i < count; i++) {
+         keys.add("k" + i);
+      }
+      return keys;
+   }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.io.ByteBuffer;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInput;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the compression of the payloads above the configured threshold.
+ */
+@Test(groups = "functional", testName = "marshall.CompressedPayloadTest")
+public class CompressedPayloadTest extends AbstractInfinispanTest {
+
+   private static final int THRESHOLD = 256;
+
+   private EmbeddedCacheManager compressingCm;
+   private EmbeddedCacheManager plainCm;
+   private AbstractDelegatingMarshaller compressing;
+   private AbstractDelegatingMarshaller plain;
+
+   @BeforeClass
+   public void setUp() {
+      GlobalConfigurationBuilder gcb = new GlobalConfigurationBuilder();
+      gcb.serialization().compressionThreshold(THRESHOLD);
+      compressingCm = TestCacheManagerFactory.createCacheManager(gcb, new ConfigurationBuilder());
+      plainCm = TestCacheManagerFactory.createCacheManager(new GlobalConfigurationBuilder(), new ConfigurationBuilder());
+      compressing = TestingUtil.extractCacheMarshaller(compressingCm.getCache());
+      plain = TestingUtil.extractCacheMarshaller(plainCm.getCache());
+   }
+
+   @AfterClass
+   public void tearDown() {
+      TestingUtil.killCacheManagers(compressingCm, plainCm);
+   }
+
+   public void testLargePayloadIsCompressed() throws Exception {
+      String value = repeat("compressible ", 1000);
+      ByteBuffer compressed = compressing.objectToBuffer(value);
+      ByteBuffer uncompressed = plain.objectToBuffer(value);
+
+      assertEquals(PayloadCompressor.COMPRESSED, compressed.getBuf()[compressed.getOffset()]);
+      assertTrue(compressed.getLength() < uncompressed.getLength());
+      assertEquals(value, compressing.objectFromByteBuffer(compressed.getBuf(), compressed.getOffset(), compressed.getLength()));
+      assertTrue(compressing.getCompressedPayloads() > 0);
+      assertTrue(compressing.getCompressionRatio() > 1);
+   }
+
+   public void testSmallPayloadIsNotCompressed() throws Exception {
+      ByteBuffer buffer = compressing.objectToBuffer("small");
+      assertTrue(buffer.getBuf()[buffer.getOffset()] != PayloadCompressor.COMPRESSED);
+      assertEquals("small", compressing.objectFromByteBuffer(buffer.getBuf(), buffer.getOffset(), buffer.getLength()));
+   }
+
+   public void testIncompressiblePayloadIsNotCompressed() throws Exception {
+      byte[] random = new byte[THRESHOLD * 4];
+      new Random(42).nextBytes(random);
+      ByteBuffer buffer = compressing.objectToBuffer(random);
+      assertTrue(buffer.getBuf()[buffer.getOffset()] != PayloadCompressor.COMPRESSED);
+      byte[] read = (byte[]) compressing.objectFromByteBuffer(buffer.getBuf(), buffer.getOffset(), buffer.getLength());
+      assertTrue(Arrays.equals(random, read));
+   }
+
+   public void testPayloadsAreReadWhateverTheThreshold() throws Exception {
+      String value = repeat("mixed ", 1000);
+      ByteBuffer compressed = compressing.objectToBuffer(value);
+      assertEquals(value, plain.objectFromByteBuffer(compressed.getBuf(), compressed.getOffset(), compressed.getLength()));
+
+      ByteBuffer uncompressed = plain.objectToBuffer(value);
+      assertEquals(value, compressing.objectFromByteBuffer(uncompressed.getBuf(), uncompressed.getOffset(), uncompressed.getLength()));
+   }
+
+   public void testCompressedPayloadReadFromStream() throws Exception {
+      String value = repeat("streamed ", 1000);
+      ByteBuffer compressed = compressing.objectToBuffer(value);
+      ByteArrayInputStream is = new ByteArrayInputStream(compressed.getBuf(), compressed.getOffset(), compressed.getLength());
+      ObjectInput in = plain.startObjectInput(is, false);
+      try {
+         assertEquals(value, plain.objectFromObjectStream(in));
+      } finally {
+         plain.finishObjectInput(in);
+      }
+   }
+
+   public void testMarshalledValuesAreEqualWhateverTheThreshold() throws Exception {
+      String key = repeat("key ", 1000);
+      MarshalledValue compressingValue = new MarshalledValue(key, false, compressing);
+      MarshalledValue plainValue = new MarshalledValue(key, false, plain);
+      compressingValue.serialize();
+      plainValue.serialize();
+      assertEquals(plainValue.getRaw(), compressingValue.getRaw());
+
+      // a key sent by a node compressing the payloads is equal to the one wrapped locally
+      ByteBuffer compressed = compressing.objectToBuffer(compressingValue);
+      assertEquals(PayloadCompressor.COMPRESSED, compressed.getBuf()[compressed.getOffset()]);
+      MarshalledValue received = (MarshalledValue) plain.objectFromByteBuffer(compressed.getBuf(), compressed.getOffset(), compressed.getLength());
+      assertEquals(plainValue.getRaw(), received.getRaw());
+      assertEquals(plainValue, received);
+      assertEquals(plainValue.hashCode(), received.hashCode());
+   }
+
+   public void testCompressedBytesAreNotUsedForEquality() throws Exception {
+      byte[] uncompressed = plain.objectToByteBuffer(repeat("raw ", 1000));
+      ByteBuffer compressed = compressing.objectToBuffer(repeat("raw ", 1000));
+      byte[] compressedBytes = Arrays.copyOfRange(compressed.getBuf(), compressed.getOffset(), compressed.getOffset() + compressed.getLength());
+      assertTrue(Arrays.equals(uncompressed, PayloadCompressor.uncompressed(compressedBytes)));
+      assertTrue(uncompressed == PayloadCompressor.uncompressed(uncompressed));
+   }
+
+   private static String repeat(String s, int times) {
+      StringBuilder sb = new StringBuilder(s.length() * times);
+      for (int i = 0; i < times; i++) sb.append(s);
+      return sb.toString();
+   }
+}
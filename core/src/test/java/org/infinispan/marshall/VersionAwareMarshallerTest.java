@@ -59,6 +59,7 @@
 import org.infinispan.context.Flag;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
 import org.infinispan.distribution.ch.DefaultConsistentHashFactory;
+import org.infinispan.io.ByteBuffer;
 import org.infinispan.loaders.bucket.Bucket;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.marshall.jboss.JBossMarshallingTest.CustomReadObjectMethod;
@@ -215,6 +216,25 @@ public void testMarshalledValueGetMarshalling() throws Exception {
       assert rmv.get() instanceof Pojo;
    }
 
+   public void testMarshalledBuffersAreNotShared() throws Exception {
+      ByteBuffer first = marshaller.objectToBuffer("first");
+      ByteBuffer second = marshaller.objectToBuffer(Arrays.asList("second", "list"));
+      assert first.getBuf() != second.getBuf();
+      assertEquals(first.getLength(), first.getBuf().length);
+      assertEquals("first", marshaller.objectFromByteBuffer(first.getBuf(), first.getOffset(), first.getLength()));
+      assertEquals(Arrays.asList("second", "list"),
+            marshaller.objectFromByteBuffer(second.getBuf(), second.getOffset(), second.getLength()));
+   }
+
+   public void testNestedMarshalling() throws Exception {
+      SelfMarshallingPojo.marshaller = marshaller;
+      List<Object> l = new ArrayList<Object>();
+      l.add(new SelfMarshallingPojo("a"));
+      l.add("between");
+      l.add(new SelfMarshallingPojo("b"));
+      marshallAndAssertEquality(l);
+   }
+
    public void testSingletonListMarshalling() throws Exception {
       GlobalTransaction gtx = gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(12345)), false);
       List l = Collections.singletonList(gtx);
@@ -588,6 +608,50 @@ protected void marshallAndAssertEquality(Object writeObj) throws Exception {
       assert readObj.equals(writeObj) : "Writen[" + writeObj + "] and read[" + readObj + "] objects should be the same";
    }
 
+   /**
+    * Marshals its value with the same marshaller from within its own marshalling.
+    */
+   public static class SelfMarshallingPojo implements Externalizable {
+      static StreamingMarshaller marshaller;
+      String value;
+
+      public SelfMarshallingPojo() {
+      }
+
+      SelfMarshallingPojo(String value) {
+         this.value = value;
+      }
+
+      @Override
+      public void writeExternal(ObjectOutput out) throws IOException {
+         try {
+            byte[] bytes = marshaller.objectToByteBuffer(value);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+         }
+      }
+
+      @Override
+      public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+         byte[] bytes = new byte[in.readInt()];
+         in.readFully(bytes);
+         value = (String) marshaller.objectFromByteBuffer(bytes);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof SelfMarshallingPojo && value.equals(((SelfMarshallingPojo) o).value);
+      }
+
+      @Override
+      public int hashCode() {
+         return value.hashCode();
+      }
+   }
+
    public static class Pojo implements Externalizable {
       int i;
       boolean b;
@@ -216,7 +216,7 @@ public Iterator<InternalCacheEntry> answer(InvocationOnMock invocation) {
 
       verifyNoMoreInteractions(stateTransferLock);
 
-      stateProvider.startOutboundTransfer(F, 1, Collections.singleton(0));
+      stateProvider.startOutboundTransfer(F, 1, Collections.singleton(0), 1);
 
       assertTrue(stateProvider.isStateTransferInProgress());
 
@@ -226,7 +226,7 @@ public Iterator<InternalCacheEntry> answer(InvocationOnMock invocation) {
 
       assertFalse(stateProvider.isStateTransferInProgress());
 
-      stateProvider.startOutboundTransfer(D, 1, Collections.singleton(0));
+      stateProvider.startOutboundTransfer(D, 1, Collections.singleton(0), 1);
 
       assertTrue(stateProvider.isStateTransferInProgress());
 
@@ -327,7 +327,7 @@ public Iterator<InternalCacheEntry> answer(InvocationOnMock invocation) {
 
       verifyNoMoreInteractions(stateTransferLock);
 
-      stateProvider.startOutboundTransfer(F, 1, Collections.singleton(0));
+      stateProvider.startOutboundTransfer(F, 1, Collections.singleton(0), 1);
 
       assertTrue(stateProvider.isStateTransferInProgress());
 
@@ -338,7 +338,7 @@ public Iterator<InternalCacheEntry> answer(InvocationOnMock invocation) {
 
       assertFalse(stateProvider.isStateTransferInProgress());
 
-      stateProvider.startOutboundTransfer(E, 1, Collections.singleton(0));
+      stateProvider.startOutboundTransfer(E, 1, Collections.singleton(0), 1);
 
       assertTrue(stateProvider.isStateTransferInProgress());
 
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.DataContainer;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that a joiner receives all the state with small chunks, several chunks in flight and several sources, and
+ * that the received entries waiting to be applied stay within the granted windows.
+ */
+@Test(groups = "functional", testName = "statetransfer.StateTransferFlowControlTest")
+public class StateTransferFlowControlTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 1000;
+   private static final int CHUNK_SIZE = 10;
+   private static final int MAX_IN_FLIGHT_CHUNKS = 3;
+   private static final int MAX_CONCURRENT_SOURCES = 2;
+
+   private ConfigurationBuilder builder;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      builder = TestCacheManagerFactory.getDefaultCacheConfiguration(false);
+      builder.clustering().cacheMode(CacheMode.DIST_SYNC)
+            .l1().disable()
+            .hash().numOwners(1).numSegments(40)
+            .stateTransfer().fetchInMemoryState(true).chunkSize(CHUNK_SIZE)
+            .maxInFlightChunks(MAX_IN_FLIGHT_CHUNKS).maxConcurrentSources(MAX_CONCURRENT_SOURCES);
+      createCluster(builder, 3);
+      waitForClusterToForm();
+   }
+
+   public void testJoinerReceivesAllState() {
+      Cache<Object, Object> c0 = cache(0);
+      for (int i = 0; i < NUM_KEYS; i++) {
+         c0.put("key" + i, "value" + i);
+      }
+
+      addClusterEnabledCacheManager(builder);
+      waitForClusterToForm();
+
+      for (int i = 0; i < NUM_KEYS; i++) {
+         assertEquals("value" + i, cache(3).get("key" + i));
+      }
+
+      // with a single owner, every key the joiner owns now was received through state transfer
+      DataContainer dataContainer = TestingUtil.extractComponent(cache(3), DataContainer.class);
+      StateTransferManagerImpl stm = (StateTransferManagerImpl) TestingUtil.extractComponent(cache(3), StateTransferManager.class);
+      assertEquals(dataContainer.size(), stm.getReceivedStateEntries());
+      assertTrue(stm.getReceivedStateEntries() > 0);
+      assertTrue(stm.getPendingStateEntriesHighWaterMark() > 0);
+      assertTrue(stm.getPendingStateEntriesHighWaterMark() <= CHUNK_SIZE * MAX_IN_FLIGHT_CHUNKS * MAX_CONCURRENT_SOURCES);
+   }
+}
@@ -43,6 +43,8 @@
 import org.infinispan.test.fwk.TransportFlags;
 import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
 import org.infinispan.util.InfinispanCollections;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.jgroups.protocols.DISCARD;
 import org.testng.annotations.Test;
 
@@ -83,6 +85,23 @@ public Map<Address, Response> invokeRemotely(Collection<Address> recipients, Rep
          }
          return super.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, totalOrder, anycast);
       }
+
+      @Override
+      public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                           ResponseMode mode, long timeout, boolean usePriorityQueue) {
+         if (callOnStateResponseCommand != null && rpcCommand.getClass() == StateResponseCommand.class) {
+            log.trace("Ignoring StateResponseCommand");
+            try {
+               callOnStateResponseCommand.call();
+            } catch (Exception e) {
+               log.error("Error in callOnStateResponseCommand", e);
+            }
+            SettableNotifyingFuture<Map<Address, Response>> future = new SettableNotifyingFuture<Map<Address, Response>>();
+            future.set(InfinispanCollections.<Address, Response>emptyMap());
+            return future;
+         }
+         return super.invokeRemotelyInFuture(recipients, rpcCommand, mode, timeout, usePriorityQueue);
+      }
    }
 
    private MockTransport mockTransport = new MockTransport();
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.DefaultTimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+@Test(groups = "unit", testName = "statetransfer.StateTransferThrottleTest")
+public class StateTransferThrottleTest extends AbstractInfinispanTest {
+
+   private static final int RATE = 1000000;
+
+   private StateTransferThrottle throttle;
+
+   @BeforeMethod
+   public void setUp() {
+      GlobalConfigurationBuilder builder = new GlobalConfigurationBuilder();
+      builder.transport().stateTransferBandwidth(RATE);
+      throttle = new StateTransferThrottle();
+      throttle.inject(builder.build(), new DefaultTimeService());
+      throttle.start();
+   }
+
+   public void testBurstUpToBucketSizeIsNotThrottled() throws Exception {
+      long start = System.nanoTime();
+      throttle.acquire(RATE / 2);
+      throttle.acquire(RATE / 2);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+      assertEquals(0, throttle.getThrottledTime());
+      assertEquals(RATE, throttle.getSentBytes());
+   }
+
+   public void testSenderWaitsForDebtToBePaid() throws Exception {
+      throttle.acquire(RATE);
+      long start = System.nanoTime();
+      throttle.acquire(RATE / 4);
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue("Waited only " + elapsedMillis + " ms", elapsedMillis >= 200);
+      assertTrue(throttle.getThrottledTime() >= 200);
+   }
+
+   public void testDisablingTheLimitAtRuntime() throws Exception {
+      assertTrue(throttle.isEnabled());
+      throttle.acquire(RATE);
+      throttle.setMaxBytesPerSecond(0);
+      assertFalse(throttle.isEnabled());
+      long start = System.nanoTime();
+      throttle.acquire(RATE * 10);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+      assertEquals(0, throttle.getThrottledTime());
+   }
+
+   public void testLoweringTheLimitAtRuntime() throws Exception {
+      throttle.setMaxBytesPerSecond(RATE / 10);
+      throttle.acquire(RATE / 10);
+      long start = System.nanoTime();
+      throttle.acquire(RATE / 40);
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue("Waited only " + elapsedMillis + " ms", elapsedMillis >= 200);
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class)
+   public void testNegativeLimitIsRejected() {
+      throttle.setMaxBytesPerSecond(-1);
+   }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Test that {@link CacheTopologyCommandBatcher} sends the queued commands together and in order.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "topology.CacheTopologyCommandBatcherTest")
+public class CacheTopologyCommandBatcherTest extends AbstractInfinispanTest {
+
+   private QueueingExecutor executor;
+   private List<List<CacheTopologyControlCommand>> sent;
+   private CacheTopologyCommandBatcher batcher;
+
+   @BeforeMethod
+   public void setUp() {
+      executor = new QueueingExecutor();
+      sent = new ArrayList<List<CacheTopologyControlCommand>>();
+      batcher = new CacheTopologyCommandBatcher(executor) {
+         @Override
+         protected void send(List<CacheTopologyControlCommand> commands) {
+            sent.add(commands);
+         }
+      };
+   }
+
+   public void testCommandsQueuedBeforeTheFlushAreSentTogether() {
+      CacheTopologyControlCommand c1 = command("c1");
+      CacheTopologyControlCommand c2 = command("c2");
+      batcher.add(c1);
+      batcher.add(c2);
+      assertEquals(executor.tasks.size(), 1);
+      executor.runAll();
+      assertEquals(sent, Arrays.asList(Arrays.asList(c1, c2)));
+   }
+
+   public void testHeldCommandsAreSentOnRelease() {
+      CacheTopologyControlCommand c1 = command("c1");
+      CacheTopologyControlCommand c2 = command("c2");
+      CacheTopologyControlCommand c3 = command("c3");
+      batcher.hold();
+      batcher.add(c1);
+      batcher.hold();
+      batcher.add(c2);
+      batcher.release();
+      batcher.add(c3);
+      assertTrue(executor.tasks.isEmpty());
+
+      batcher.release();
+      executor.runAll();
+      assertEquals(sent, Arrays.asList(Arrays.asList(c1, c2, c3)));
+   }
+
+   public void testFlushScheduledBeforeHoldWaitsForRelease() {
+      CacheTopologyControlCommand c1 = command("c1");
+      CacheTopologyControlCommand c2 = command("c2");
+      batcher.add(c1);
+      batcher.hold();
+      batcher.add(c2);
+      executor.runAll();
+      assertTrue(sent.isEmpty());
+
+      batcher.release();
+      executor.runAll();
+      assertEquals(sent, Arrays.asList(Arrays.asList(c1, c2)));
+   }
+
+   private CacheTopologyControlCommand command(String cacheName) {
+      return new CacheTopologyControlCommand(cacheName, CacheTopologyControlCommand.Type.REBALANCE_CONFIRM, null,
+                                             1, null, 1);
+   }
+
+   private static class QueueingExecutor extends AbstractExecutorService {
+      final List<Runnable> tasks = new ArrayList<Runnable>();
+
+      void runAll() {
+         while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+         }
+      }
+
+      @Override
+      public void execute(Runnable command) {
+         tasks.add(command);
+      }
+
+      @Override
+      public void shutdown() {
+      }
+
+      @Override
+      public List<Runnable> shutdownNow() {
+         return new ArrayList<Runnable>();
+      }
+
+      @Override
+      public boolean isShutdown() {
+         return false;
+      }
+
+      @Override
+      public boolean isTerminated() {
+         return false;
+      }
+
+      @Override
+      public boolean awaitTermination(long timeout, TimeUnit unit) {
+         return true;
+      }
+   }
+}
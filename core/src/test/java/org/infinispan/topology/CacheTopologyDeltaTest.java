@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.topology;
+
+import java.util.Arrays;
+
+import org.infinispan.commons.hash.MurmurHash3;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.DefaultConsistentHashFactory;
+import org.infinispan.distribution.ch.ReplicatedConsistentHash;
+import org.infinispan.distribution.ch.ReplicatedConsistentHashFactory;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Test that the topology updates of a rebalance can be rebuilt from their {@link CacheTopologyDelta}s.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "topology.CacheTopologyDeltaTest")
+public class CacheTopologyDeltaTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(0, "A");
+   private final Address b = new TestAddress(1, "B");
+   private final Address c = new TestAddress(2, "C");
+
+   private final DefaultConsistentHashFactory chFactory = new DefaultConsistentHashFactory();
+
+   public void testRebalanceRoundTrip() {
+      DefaultConsistentHash ch1 = chFactory.create(new MurmurHash3(), 2, 60, Arrays.asList(a, b));
+      DefaultConsistentHash ch2 = chFactory.rebalance(chFactory.updateMembers(ch1, Arrays.asList(a, b, c)));
+      CacheTopology base = new CacheTopology(5, ch1, null);
+
+      // rebalance start: the current CH is unchanged, the pending CH only differs in the segments moving to C
+      CacheTopology rebalanceStart = new CacheTopology(6, ch1, ch2);
+      CacheTopologyDelta startDelta = CacheTopologyDelta.create(base, rebalanceStart);
+      assertNotNull(startDelta);
+      assertEquals(startDelta.getBaseTopologyId(), 5);
+      assertTopologyEquals(startDelta.apply(base), rebalanceStart);
+
+      // rebalance end: the new current CH is the old pending CH
+      CacheTopology rebalanceEnd = new CacheTopology(7, ch2, null);
+      CacheTopologyDelta endDelta = CacheTopologyDelta.create(rebalanceStart, rebalanceEnd);
+      assertNotNull(endDelta);
+      CacheTopology appliedEnd = endDelta.apply(startDelta.apply(base));
+      assertTopologyEquals(appliedEnd, rebalanceEnd);
+   }
+
+   public void testLeaverRoundTrip() {
+      DefaultConsistentHash ch1 = chFactory.create(new MurmurHash3(), 2, 60, Arrays.asList(a, b, c));
+      DefaultConsistentHash ch2 = chFactory.updateMembers(ch1, Arrays.asList(a, c));
+      CacheTopology base = new CacheTopology(3, ch1, null);
+      CacheTopology update = new CacheTopology(4, ch2, null);
+      assertTopologyEquals(CacheTopologyDelta.create(base, update).apply(base), update);
+   }
+
+   public void testWrongBaseTopology() {
+      DefaultConsistentHash ch1 = chFactory.create(new MurmurHash3(), 2, 60, Arrays.asList(a, b));
+      DefaultConsistentHash ch2 = chFactory.rebalance(chFactory.updateMembers(ch1, Arrays.asList(a, b, c)));
+      CacheTopologyDelta delta = CacheTopologyDelta.create(new CacheTopology(5, ch1, null),
+            new CacheTopology(6, ch1, ch2));
+      assertNull(delta.apply(new CacheTopology(4, ch1, null)));
+      assertNull(delta.apply(null));
+   }
+
+   public void testUnsupportedConsistentHash() {
+      DefaultConsistentHash ch = chFactory.create(new MurmurHash3(), 2, 60, Arrays.asList(a, b));
+      ReplicatedConsistentHash replicatedCH = new ReplicatedConsistentHashFactory().create(new MurmurHash3(), 2, 60,
+            Arrays.asList(a, b));
+      assertNull(CacheTopologyDelta.create(new CacheTopology(1, ch, null), new CacheTopology(2, replicatedCH, null)));
+      assertNull(CacheTopologyDelta.create(new CacheTopology(1, replicatedCH, null), new CacheTopology(2, ch, null)));
+      assertNull(CacheTopologyDelta.create(null, new CacheTopology(2, ch, null)));
+   }
+
+   private void assertTopologyEquals(CacheTopology actual, CacheTopology expected) {
+      assertNotNull(actual);
+      assertEquals(actual.getTopologyId(), expected.getTopologyId());
+      assertEquals(actual.getCurrentCH(), expected.getCurrentCH());
+      assertEquals(actual.getPendingCH(), expected.getPendingCH());
+   }
+}
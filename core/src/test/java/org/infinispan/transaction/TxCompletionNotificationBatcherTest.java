@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.transaction;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.distribution.TestAddress;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.rpc.RpcOptions;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.AssertJUnit.assertEquals;
+
+/**
+ * Tests that {@link TxCompletionNotificationBatcher} sends one completion notification per destination for all the
+ * transactions queued before a flush.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "transaction.TxCompletionNotificationBatcherTest")
+public class TxCompletionNotificationBatcherTest extends AbstractInfinispanTest {
+
+   private final Address a = new TestAddress(1);
+   private final Address b = new TestAddress(2);
+
+   private RpcManager rpcManager;
+   private CommandsFactory commandsFactory;
+   private ExecutorService executor;
+   private TxCompletionNotificationBatcher batcher;
+
+   @BeforeMethod
+   public void setUp() {
+      rpcManager = mock(RpcManager.class);
+      commandsFactory = mock(CommandsFactory.class);
+      executor = mock(ExecutorService.class);
+      batcher = new TxCompletionNotificationBatcher();
+      batcher.inject(rpcManager, commandsFactory, executor);
+      batcher.start();
+   }
+
+   public void testNotificationsAreGroupedPerDestination() {
+      GlobalTransaction gtx1 = newGlobalTransaction();
+      GlobalTransaction gtx2 = newGlobalTransaction();
+      GlobalTransaction gtx3 = newGlobalTransaction();
+      GlobalTransaction gtx4 = newGlobalTransaction();
+
+      batcher.notifyCompleted(gtx1, null);
+      batcher.notifyCompleted(gtx2, Arrays.asList(a, b));
+      batcher.notifyCompleted(gtx3, null);
+      batcher.notifyCompleted(gtx4, Collections.singleton(a));
+
+      // only the first notification schedules a flush
+      ArgumentCaptor<Runnable> flushTask = ArgumentCaptor.forClass(Runnable.class);
+      verify(executor).execute(flushTask.capture());
+      verify(rpcManager, never()).invokeRemotely(anyCollectionOf(Address.class), any(ReplicableCommand.class), any(RpcOptions.class));
+
+      flushTask.getValue().run();
+      verify(commandsFactory).buildTxCompletionNotificationCommand(Arrays.asList(gtx1, gtx3));
+      verify(commandsFactory).buildTxCompletionNotificationCommand(Arrays.asList(gtx2, gtx4));
+      verify(commandsFactory).buildTxCompletionNotificationCommand(null, gtx2);
+      verify(rpcManager).invokeRemotely((Collection<Address>) isNull(), any(ReplicableCommand.class), any(RpcOptions.class));
+      verify(rpcManager).invokeRemotely(eq(Collections.singleton(a)), any(ReplicableCommand.class), any(RpcOptions.class));
+      verify(rpcManager).invokeRemotely(eq(Collections.singleton(b)), any(ReplicableCommand.class), any(RpcOptions.class));
+      assertEquals(4, batcher.getNotifications());
+      assertEquals(3, batcher.getNotificationMessages());
+
+      // the next notification schedules a new flush
+      batcher.notifyCompleted(newGlobalTransaction(), null);
+      verify(executor, times(2)).execute(any(Runnable.class));
+   }
+
+   public void testStopSendsPendingNotifications() {
+      GlobalTransaction gtx = newGlobalTransaction();
+      batcher.notifyCompleted(gtx, Collections.singleton(a));
+      batcher.stop();
+
+      verify(commandsFactory).buildTxCompletionNotificationCommand(null, gtx);
+      verify(rpcManager).invokeRemotely(eq(Collections.singleton(a)), any(ReplicableCommand.class), any(RpcOptions.class));
+   }
+
+   private GlobalTransaction newGlobalTransaction() {
+      return TransactionFactory.TxFactoryEnum.NODLD_NORECOVERY_XA.newGlobalTransaction(a, false, null, true);
+   }
+}
@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.distribution.MagicKey;
+import org.infinispan.distribution.rehash.XAResourceAdapter;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.tx.Use1PcForInducedTransactionTest.InvocationCountInterceptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests that a transaction is committed in one phase on the other owners when the originator is the primary owner of
+ * all its keys.
+ *
+ * @since 5.3
+ */
+@Test(groups = "functional", testName = "tx.OnePhaseCommitForPrimaryOwnerTest")
+public class OnePhaseCommitForPrimaryOwnerTest extends MultipleCacheManagersTest {
+
+   private InvocationCountInterceptor ic1;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      createCluster(buildConfiguration(), 3);
+      waitForClusterToForm();
+   }
+
+   protected ConfigurationBuilder buildConfiguration() {
+      ConfigurationBuilder builder = getDefaultClusteredCacheConfig(CacheMode.DIST_SYNC, true);
+      builder.clustering().hash().numOwners(2);
+      return builder;
+   }
+
+   @BeforeMethod
+   public void addInterceptor() {
+      if (ic1 == null) {
+         ic1 = new InvocationCountInterceptor();
+         advancedCache(1).addInterceptor(ic1, 1);
+      }
+      ic1.prepareInvocations = 0;
+      ic1.commitInvocations = 0;
+   }
+
+   public void testOriginatorIsPrimaryOwner() throws Exception {
+      MagicKey k1 = new MagicKey("k1", cache(0), cache(1));
+      MagicKey k2 = new MagicKey("k2", cache(0), cache(1));
+
+      tm(0).begin();
+      cache(0).put(k1, "v1");
+      cache(0).put(k2, "v2");
+      tm(0).commit();
+
+      assertEquals(ic1.prepareInvocations, 1);
+      assertEquals(ic1.commitInvocations, 0);
+      assertValues(k1, "v1", k2, "v2");
+      assertNotLocked(k1);
+      assertNotLocked(k2);
+   }
+
+   public void testOriginatorIsNotPrimaryOwner() throws Exception {
+      MagicKey k1 = new MagicKey("k1", cache(0), cache(1));
+      MagicKey k2 = new MagicKey("k2", cache(1), cache(0));
+
+      tm(0).begin();
+      cache(0).put(k1, "v1");
+      cache(0).put(k2, "v2");
+      tm(0).commit();
+
+      assertEquals(ic1.prepareInvocations, 1);
+      assertEquals(ic1.commitInvocations, 1);
+      assertValues(k1, "v1", k2, "v2");
+      assertNotLocked(k1);
+      assertNotLocked(k2);
+   }
+
+   public void testRollbackAfterPrepare() throws Exception {
+      MagicKey k1 = new MagicKey("k1", cache(0), cache(1));
+      cache(0).put(k1, "v0");
+      ic1.prepareInvocations = 0;
+
+      tm(0).begin();
+      cache(0).put(k1, "v1");
+      // the second resource fails the prepare, so the transaction is rolled back after it was prepared here
+      tm(0).getTransaction().enlistResource(new XAResourceAdapter() {
+         @Override
+         public int prepare(Xid xid) throws XAException {
+            throw new XAException(XAException.XA_RBROLLBACK);
+         }
+      });
+      try {
+         tm(0).commit();
+         assert false : "The transaction should have been rolled back";
+      } catch (Exception expected) {
+         // expected
+      }
+
+      assertEquals(ic1.prepareInvocations, 0);
+      assertEquals(ic1.commitInvocations, 0);
+      assertEquals(cache(0).get(k1), "v0");
+      assertEquals(cache(1).get(k1), "v0");
+      assertNotLocked(k1);
+   }
+
+   private void assertValues(Object k1, Object v1, Object k2, Object v2) {
+      for (int i = 0; i < 3; i++) {
+         assertEquals(cache(i).get(k1), v1);
+         assertEquals(cache(i).get(k2), v2);
+      }
+   }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.MagicKey;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the snapshot reads of keys that are not stored on the reading node.
+ *
+ * @since 5.3
+ */
+@Test(groups = "functional", testName = "tx.SnapshotReadDistTest")
+public class SnapshotReadDistTest extends SnapshotReadTest {
+
+   public SnapshotReadDistTest() {
+      cacheMode = CacheMode.DIST_SYNC;
+   }
+
+   public void testRemoteKeyIsValidated() throws Exception {
+      MagicKey key = new MagicKey(cache(1));
+      cache(1).put(key, "v1");
+      AdvancedCache<Object, Object> snapshotCache = advancedCache(0).withFlags(Flag.SNAPSHOT_READ);
+
+      tm(0).begin();
+      assertEquals(snapshotCache.get(key), "v1");
+      Transaction tx = tm(0).suspend();
+      cache(1).put(key, "v2");
+      tm(0).resume(tx);
+      assertEquals(snapshotCache.get(key), "v1");
+      try {
+         tm(0).commit();
+         fail("The remote key was modified, the transaction should have been rolled back");
+      } catch (RollbackException expected) {
+         // expected
+      }
+   }
+
+   public void testUnmodifiedRemoteKeysAreValid() throws Exception {
+      MagicKey key = new MagicKey(cache(1));
+      MagicKey missing = new MagicKey(cache(1));
+      cache(1).put(key, "v1");
+      AdvancedCache<Object, Object> snapshotCache = advancedCache(0).withFlags(Flag.SNAPSHOT_READ);
+
+      tm(0).begin();
+      assertEquals(snapshotCache.get(key), "v1");
+      assertNull(snapshotCache.get(missing));
+      tm(0).commit();
+   }
+
+   public void testRemoteKeyCreatedAfterItWasReadIsDetected() throws Exception {
+      MagicKey key = new MagicKey(cache(1));
+      AdvancedCache<Object, Object> snapshotCache = advancedCache(0).withFlags(Flag.SNAPSHOT_READ);
+
+      tm(0).begin();
+      assertNull(snapshotCache.get(key));
+      Transaction tx = tm(0).suspend();
+      cache(1).put(key, "v1");
+      tm(0).resume(tx);
+      try {
+         tm(0).commit();
+         fail("The remote key was created, the transaction should have been rolled back");
+      } catch (RollbackException expected) {
+         // expected
+      }
+   }
+}
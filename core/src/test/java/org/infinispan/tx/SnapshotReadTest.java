@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.VersioningScheme;
+import org.infinispan.context.Flag;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.tx.Use1PcForInducedTransactionTest.InvocationCountInterceptor;
+import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.infinispan.test.TestingUtil.k;
+import static org.infinispan.test.TestingUtil.v;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests the read-only transactions reading with {@link Flag#SNAPSHOT_READ}.
+ *
+ * @since 5.3
+ */
+@Test(groups = "functional", testName = "tx.SnapshotReadTest")
+public class SnapshotReadTest extends MultipleCacheManagersTest {
+
+   private InvocationCountInterceptor ic1;
+   protected CacheMode cacheMode = CacheMode.REPL_SYNC;
+   protected LockingMode lockingMode = LockingMode.OPTIMISTIC;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      ConfigurationBuilder builder = getDefaultClusteredCacheConfig(cacheMode, true);
+      builder.transaction().lockingMode(lockingMode)
+            .clustering().hash().numOwners(1);
+      if (lockingMode == LockingMode.OPTIMISTIC) {
+         builder.locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true)
+               .versioning().enable().scheme(VersioningScheme.SIMPLE);
+      }
+      createCluster(builder, 2);
+      waitForClusterToForm();
+   }
+
+   @BeforeMethod
+   public void addInterceptor() {
+      if (ic1 == null) {
+         ic1 = new InvocationCountInterceptor();
+         advancedCache(1).addInterceptor(ic1, 1);
+      }
+      ic1.prepareInvocations = 0;
+      ic1.commitInvocations = 0;
+   }
+
+   public void testSnapshotReadDoesNotRegisterTheTransaction(Method m) throws Exception {
+      cache(0).put(k(m), v(m));
+      ic1.prepareInvocations = 0;
+      AdvancedCache<Object, Object> snapshotCache = snapshotCache(0);
+
+      tm(0).begin();
+      assertEquals(snapshotCache.get(k(m)), v(m));
+      assertEquals(TestingUtil.getTransactionTable(cache(0)).getLocalTxCount(), 0);
+      assertFalse(lockManager(0).isLocked(k(m)));
+      tm(0).commit();
+
+      assertEquals(ic1.prepareInvocations, 0);
+      assertEquals(ic1.commitInvocations, 0);
+      assertEquals(TestingUtil.getTransactionTable(cache(1)).getRemoteTxCount(), 0);
+   }
+
+   public void testSnapshotReadsAreRepeatable(Method m) throws Exception {
+      cache(0).put(k(m, 1), v(m, 1));
+      cache(0).put(k(m, 2), v(m, 1));
+      AdvancedCache<Object, Object> snapshotCache = snapshotCache(0);
+
+      tm(0).begin();
+      assertEquals(snapshotCache.get(k(m, 1)), v(m, 1));
+      Map<Object, Object> values = snapshotCache.getAll(Util.<Object>asSet(k(m, 1), k(m, 2)));
+      assertEquals(values.get(k(m, 1)), v(m, 1));
+      assertEquals(values.get(k(m, 2)), v(m, 1));
+
+      // a key that was not read yet can still change
+      Transaction tx = tm(0).suspend();
+      cache(1).put(k(m, 3), v(m, 2));
+      tm(0).resume(tx);
+      assertEquals(snapshotCache.get(k(m, 3)), v(m, 2));
+      assertEquals(snapshotCache.get(k(m, 1)), v(m, 1));
+      tm(0).commit();
+   }
+
+   public void testSnapshotIsValidatedBeforeCompletion(Method m) throws Exception {
+      cache(0).put(k(m), v(m, 1));
+      AdvancedCache<Object, Object> snapshotCache = snapshotCache(0);
+
+      tm(0).begin();
+      assertEquals(snapshotCache.get(k(m)), v(m, 1));
+
+      Transaction tx = tm(0).suspend();
+      cache(1).put(k(m), v(m, 2));
+      tm(0).resume(tx);
+      // the transaction still sees the value it read first
+      assertEquals(snapshotCache.get(k(m)), v(m, 1));
+      try {
+         tm(0).commit();
+         fail("The snapshot is not consistent, the transaction should have been rolled back");
+      } catch (RollbackException expected) {
+         // expected
+      }
+      assertEquals(cache(0).get(k(m)), v(m, 2));
+   }
+
+   public void testSnapshotReadSeesOwnWrites(Method m) throws Exception {
+      cache(0).put(k(m, 1), v(m, 1));
+      cache(0).put(k(m, 2), v(m, 1));
+      AdvancedCache<Object, Object> snapshotCache = snapshotCache(0);
+
+      tm(0).begin();
+      cache(0).put(k(m, 1), v(m, 2));
+      cache(0).remove(k(m, 2));
+      assertEquals(snapshotCache.get(k(m, 1)), v(m, 2));
+      assertFalse(snapshotCache.containsKey(k(m, 2)));
+      Map<Object, Object> values = snapshotCache.getAll(Util.<Object>asSet(k(m, 1), k(m, 2)));
+      assertEquals(values.get(k(m, 1)), v(m, 2));
+      assertFalse(values.containsKey(k(m, 2)));
+      tm(0).commit();
+
+      assertEquals(cache(1).get(k(m, 1)), v(m, 2));
+      assertEquals(cache(1).get(k(m, 2)), null);
+   }
+
+   public void testSnapshotReadOutsideOfTransaction(Method m) {
+      cache(0).put(k(m), v(m));
+      assertEquals(snapshotCache(1).get(k(m)), v(m));
+      assertEquals(snapshotCache(1).get(k(m, 2)), null);
+   }
+
+   private AdvancedCache<Object, Object> snapshotCache(int index) {
+      return advancedCache(index).withFlags(Flag.SNAPSHOT_READ);
+   }
+}
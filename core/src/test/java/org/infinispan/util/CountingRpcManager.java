@@ -23,6 +23,7 @@
 import org.infinispan.Cache;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.remoting.RpcException;
 import org.infinispan.remoting.responses.Response;
@@ -52,6 +53,7 @@ public class CountingRpcManager implements RpcManager {
 
    public volatile int lockCount;
    public volatile int clusterGet;
+   public volatile int clusterGetAll;
    public volatile int otherCount;
 
    protected final RpcManager realOne;
@@ -75,6 +77,8 @@ protected void aboutToInvokeRpc(ReplicableCommand rpcCommand) {
          lockCount++;
       } else if (rpcCommand instanceof ClusteredGetCommand) {
          clusterGet++;
+      } else if (rpcCommand instanceof ClusteredGetAllCommand) {
+         clusterGetAll++;
       } else {
          otherCount++;
       }
@@ -83,6 +87,7 @@ protected void aboutToInvokeRpc(ReplicableCommand rpcCommand) {
    public void resetStats() {
       lockCount = 0;
       clusterGet = 0;
+      clusterGetAll = 0;
       otherCount = 0;
    }
 
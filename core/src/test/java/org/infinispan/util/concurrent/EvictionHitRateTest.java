@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Compares the hit rates of the eviction strategies on a generated trace mixing point lookups of
+ * a hot set with periodic scans over keys that are never read again.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "util.concurrent.EvictionHitRateTest")
+public class EvictionHitRateTest extends AbstractInfinispanTest {
+
+   private static final int CAPACITY = 1000;
+   private static final int HOT_KEYS = 500;
+   private static final int LOOKUPS_PER_ROUND = 5000;
+   private static final int SCAN_LENGTH = 2 * CAPACITY;
+   private static final int ROUNDS = 20;
+
+   public void testTinyLFUResistsScans() {
+      double lru = hitRate(Eviction.LRU);
+      double lirs = hitRate(Eviction.LIRS);
+      double tinyLfu = hitRate(Eviction.TINYLFU);
+      log.debugf("Hit rates: LRU=%.3f, LIRS=%.3f, TINYLFU=%.3f", lru, lirs, tinyLfu);
+      assertTrue("TINYLFU hit rate " + tinyLfu + " should exceed LRU hit rate " + lru, tinyLfu > lru);
+   }
+
+   private double hitRate(Eviction eviction) {
+      BoundedConcurrentHashMap<Integer, Integer> map = new BoundedConcurrentHashMap<Integer, Integer>(
+            CAPACITY, 1, eviction, AnyEquivalence.<Integer>getInstance(), AnyEquivalence.<Integer>getInstance());
+      Random random = new Random(42);
+      int scanKey = HOT_KEYS;
+      long hits = 0;
+      long lookups = 0;
+      for (int round = 0; round < ROUNDS; round++) {
+         for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            if (access(map, random.nextInt(HOT_KEYS))) hits++;
+            lookups++;
+         }
+         for (int i = 0; i < SCAN_LENGTH; i++) {
+            if (access(map, scanKey++)) hits++;
+            lookups++;
+         }
+         assertTrue(map.size() <= CAPACITY);
+      }
+      return (double) hits / lookups;
+   }
+
+   private boolean access(BoundedConcurrentHashMap<Integer, Integer> map, int key) {
+      if (map.get(key) != null) return true;
+      map.put(key, key);
+      return false;
+   }
+}
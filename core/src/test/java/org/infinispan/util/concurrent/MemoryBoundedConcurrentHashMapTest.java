@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.infinispan.eviction.EntrySizeCalculator;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.AnyEquivalence;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.NullEvictionListener;
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests eviction bounded by the estimated memory footprint of entries.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "util.concurrent.MemoryBoundedConcurrentHashMapTest")
+public class MemoryBoundedConcurrentHashMapTest extends AbstractInfinispanTest {
+
+   private static final EntrySizeCalculator<Integer, byte[]> VALUE_LENGTH = new EntrySizeCalculator<Integer, byte[]>() {
+      @Override
+      public long calculateSize(Integer key, byte[] value) {
+         return value.length;
+      }
+   };
+
+   public void testLRUEvictsUntilWithinBudget() {
+      doTestEvictsUntilWithinBudget(Eviction.LRU);
+   }
+
+   public void testLIRSEvictsUntilWithinBudget() {
+      doTestEvictsUntilWithinBudget(Eviction.LIRS);
+   }
+
+   public void testLRULargeEntryDisplacesSmallOnes() {
+      doTestLargeEntryDisplacesSmallOnes(Eviction.LRU);
+   }
+
+   public void testLIRSLargeEntryDisplacesSmallOnes() {
+      doTestLargeEntryDisplacesSmallOnes(Eviction.LIRS);
+   }
+
+   public void testLRUReplaceAccountsForNewSize() {
+      doTestReplaceAccountsForNewSize(Eviction.LRU);
+   }
+
+   public void testLIRSReplaceAccountsForNewSize() {
+      doTestReplaceAccountsForNewSize(Eviction.LIRS);
+   }
+
+   public void testLRURehashKeepsRecency() {
+      doTestRehashKeepsRecency(Eviction.LRU);
+   }
+
+   public void testLIRSRehashKeepsRecency() {
+      doTestRehashKeepsRecency(Eviction.LIRS);
+   }
+
+   public void testCountBoundedMapDoesNotTrackMemory() {
+      BoundedConcurrentHashMap<Integer, byte[]> map = new BoundedConcurrentHashMap<Integer, byte[]>(
+            10, 1, Eviction.LRU, AnyEquivalence.<Integer>getInstance(), AnyEquivalence.<byte[]>getInstance());
+      map.put(1, new byte[100]);
+      assertEquals(-1, map.memoryUsage());
+   }
+
+   private void doTestEvictsUntilWithinBudget(Eviction eviction) {
+      BoundedConcurrentHashMap<Integer, byte[]> map = createMap(10000, eviction);
+      for (int i = 0; i < 1000; i++) {
+         map.put(i, new byte[500]);
+         assertTrue("Memory usage " + map.memoryUsage() + " exceeds budget", map.memoryUsage() <= 10000);
+      }
+      assertTrue(map.size() <= 20);
+      assertEquals(map.size() * 500L, map.memoryUsage());
+      // the most recently added entry is never evicted
+      assertNotNull(map.get(999));
+   }
+
+   private void doTestLargeEntryDisplacesSmallOnes(Eviction eviction) {
+      BoundedConcurrentHashMap<Integer, byte[]> map = createMap(10000, eviction);
+      for (int i = 0; i < 20; i++) map.put(i, new byte[500]);
+      assertEquals(10000, map.memoryUsage());
+
+      map.put(100, new byte[5000]);
+      assertTrue(map.memoryUsage() <= 10000);
+      assertTrue(map.size() <= 11);
+      assertNotNull(map.get(100));
+   }
+
+   private void doTestReplaceAccountsForNewSize(Eviction eviction) {
+      BoundedConcurrentHashMap<Integer, byte[]> map = createMap(10000, eviction);
+      map.put(1, new byte[1000]);
+      map.put(2, new byte[1000]);
+      assertEquals(2000, map.memoryUsage());
+
+      map.put(1, new byte[100]);
+      assertEquals(1100, map.memoryUsage());
+      map.replace(2, new byte[200]);
+      assertEquals(300, map.memoryUsage());
+      map.remove(1);
+      assertEquals(200, map.memoryUsage());
+      map.clear();
+      assertEquals(0, map.memoryUsage());
+   }
+
+   private void doTestRehashKeepsRecency(Eviction eviction) {
+      // 400 entries fit, and the table is rehashed once it holds more than 384
+      BoundedConcurrentHashMap<Integer, byte[]> map = createMap(4000, eviction);
+      for (int i = 0; i < 600; i++) map.put(i, new byte[10]);
+      assertEquals(400, map.size());
+      // the entries cloned by the rehash are not treated as if they had just been added
+      for (int i = 0; i < 200; i++) assertNull("Entry " + i + " should have been evicted", map.get(i));
+      for (int i = 200; i < 600; i++) assertNotNull("Entry " + i + " should not have been evicted", map.get(i));
+   }
+
+   private BoundedConcurrentHashMap<Integer, byte[]> createMap(long maxMemory, Eviction eviction) {
+      return new BoundedConcurrentHashMap<Integer, byte[]>(maxMemory, 1, eviction,
+            new NullEvictionListener<Integer, byte[]>(), VALUE_LENGTH,
+            AnyEquivalence.<Integer>getInstance(), AnyEquivalence.<byte[]>getInstance());
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks;
+
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.DefaultTimeService;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.infinispan.util.concurrent.WithinThreadExecutor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Test that {@link RemoteCommandParker} only runs remote commands once the locks they need are released.
+ *
+ * @since 5.3
+ */
+@Test(groups = "unit", testName = "util.concurrent.locks.RemoteCommandParkerTest")
+public class RemoteCommandParkerTest extends AbstractInfinispanTest {
+
+   private static final String KEY = "k";
+
+   private LockManager lockManager;
+   private ScheduledExecutorService scheduledExecutor;
+   private RemoteCommandParker parker;
+   private SingleRpcCommand command;
+
+   @BeforeMethod
+   public void setUp() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.clustering().cacheMode(CacheMode.DIST_SYNC);
+      builder.locking().parkRemoteCommands(true).lockAcquisitionTimeout(500);
+      lockManager = mock(LockManager.class);
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      parker = new RemoteCommandParker();
+      parker.inject(builder.build(), lockManager, new WithinThreadExecutor(), scheduledExecutor, new DefaultTimeService());
+      parker.start();
+
+      WriteCommand write = mock(WriteCommand.class);
+      when(write.getAffectedKeys()).thenReturn(Collections.<Object>singleton(KEY));
+      command = new SingleRpcCommand("cache", write);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      parker.stop();
+      scheduledExecutor.shutdownNow();
+   }
+
+   public void testCommandRunsRightAwayWhenKeysAreFree() {
+      RecordingTask task = new RecordingTask();
+      parker.execute(command, task);
+      assertEquals(1, task.runs.get());
+      assertEquals(0, parker.getParkedCommands());
+   }
+
+   public void testCommandIsParkedUntilTheLockIsReleased() {
+      when(lockManager.getOwner(KEY)).thenReturn("another owner");
+      RecordingTask task = new RecordingTask();
+      parker.execute(command, task);
+      assertEquals(0, task.runs.get());
+      assertEquals(1, parker.getParkedCommands());
+
+      when(lockManager.getOwner(KEY)).thenReturn(null);
+      parker.onLocksReleased();
+      assertEquals(1, task.runs.get());
+      assertEquals(0, parker.getParkedCommands());
+   }
+
+   public void testParkedCommandTimesOut() {
+      when(lockManager.getOwner(KEY)).thenReturn("another owner");
+      final RecordingTask task = new RecordingTask();
+      parker.execute(command, task);
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return task.timeout.get() != null;
+         }
+      });
+      assertEquals(0, task.runs.get());
+      assertTrue(task.timeout.get().getMessage().contains(KEY));
+   }
+
+   public void testReleasedLockWakesUpOneCommand() {
+      final AtomicReference<Object> owner = new AtomicReference<Object>("another owner");
+      when(lockManager.getOwner(KEY)).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) {
+            return owner.get();
+         }
+      });
+      RecordingTask first = new RecordingTask() {
+         @Override
+         public void run() {
+            super.run();
+            // keeps the lock, like a prepare does until the commit
+            owner.set(this);
+         }
+      };
+      RecordingTask second = new RecordingTask();
+      parker.execute(command, first);
+      parker.execute(command, second);
+      assertEquals(2, parker.getParkedCommands());
+
+      owner.set(null);
+      parker.onLocksReleased();
+      assertEquals(1, first.runs.get());
+      assertEquals(0, second.runs.get());
+      assertEquals(1, parker.getParkedCommands());
+
+      owner.set(null);
+      parker.onLocksReleased();
+      assertEquals(1, second.runs.get());
+      assertEquals(0, parker.getParkedCommands());
+   }
+
+   public void testParkedTimeIsTakenOutOfTheLockTimeout() throws Exception {
+      when(lockManager.getOwner(KEY)).thenReturn("another owner");
+      RecordingTask task = new RecordingTask();
+      parker.execute(command, task);
+      Thread.sleep(100);
+
+      when(lockManager.getOwner(KEY)).thenReturn(null);
+      parker.onLocksReleased();
+      assertEquals(1, task.runs.get());
+      assertTrue("Lock timeout was " + task.lockTimeout, task.lockTimeout <= 400);
+      assertEquals(500, RemoteCommandParker.lockAcquisitionTimeout(500));
+   }
+
+   private static class RecordingTask implements RemoteCommandParker.ParkableTask {
+      final AtomicInteger runs = new AtomicInteger();
+      final AtomicReference<TimeoutException> timeout = new AtomicReference<TimeoutException>();
+      volatile long lockTimeout = -1;
+
+      @Override
+      public void run() {
+         runs.incrementAndGet();
+         lockTimeout = RemoteCommandParker.lockAcquisitionTimeout(500);
+      }
+
+      @Override
+      public void lockTimedOut(TimeoutException e) {
+         timeout.set(e);
+      }
+   }
+}
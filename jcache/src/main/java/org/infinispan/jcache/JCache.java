@@ -22,6 +22,7 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -185,19 +186,27 @@ public Map<K, V> getAll(Set<? extends K> keys) {
          return InfinispanCollections.emptyMap();
       }
 
-      /**
-       * TODO: Just an idea here to consider down the line: if keys.size() is big (TBD...), each of
-       * this get calls could maybe be swapped by getAsync() in order to paralelise the retrieval of
-       * entries. It'd be interesting to do a small performance test to see after which number of
-       * elements doing it in paralel becomes more efficient than sequential :)
-       */
+      // Keys locked by an entry processor must be read one by one, so that
+      // their lock is honoured. The rest are retrieved in a single call.
       Map<K, V> result = new HashMap<K, V>(keys.size());
+      Set<K> unlockedKeys = new HashSet<K>(keys.size());
       for (K key : keys) {
-         V value = get(key);
-         if (value != null) {
-            result.put(key, value);
+         if (lockRequired(key)) {
+            V value = get(key);
+            if (value != null) {
+               result.put(key, value);
+            }
+         } else {
+            unlockedKeys.add(key);
          }
       }
+
+      Map<K, V> values = cache.getAll(unlockedKeys);
+      for (Map.Entry<K, V> entry : values.entrySet()) {
+         result.put(entry.getKey(), entry.getValue());
+         updateTTLForAccessed(cache,
+               new JCacheEntry<K, V>(entry.getKey(), entry.getValue()));
+      }
       return result;
    }
 
@@ -30,6 +30,7 @@
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.BackupResponse;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.xsite.XSiteBackup;
 
@@ -46,6 +47,13 @@ public Map<Address, Response> invokeRemotely(final Collection<Address> recipient
       return null;
    }
 
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(final Collection<Address> recipients,
+                                                                        final ReplicableCommand rpcCommand, final ResponseMode mode, final long timeout,
+                                                                        final boolean usePriorityQueue) {
+      return null;
+   }
+
    @Override
    public boolean isCoordinator() {
       return false;